@@ -29,8 +29,15 @@ import net.lldp.checksims.algorithm.preprocessor.PreprocessorRegistry;
 import net.lldp.checksims.algorithm.preprocessor.SubmissionPreprocessor;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinter;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinterRegistry;
+import net.lldp.checksims.algorithm.smithwaterman.SmithWaterman;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.ast.SubmissionParser;
+import net.lldp.checksims.parse.cache.ArchiveIndex;
+import net.lldp.checksims.parse.cache.PreparationCache;
 import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.SchedulingStrategy;
 
 import org.apache.commons.cli.*;
 import org.apache.commons.collections4.list.SetUniqueList;
@@ -43,12 +50,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.model.FileHeader;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -60,7 +65,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public final class ChecksimsCommandLine {
     private static Logger logs;
-    private static Set<File> tempFiles = new HashSet<>();
 
     private ChecksimsCommandLine() {}
 
@@ -122,6 +126,25 @@ public final class ChecksimsCommandLine {
                 .desc("Do not show the result of submissions that do not parse correctly")
                 .build();
 
+        Option lowMemory = Option.builder()
+                .longOpt("lowmemory")
+                .desc("use Smith-Waterman alignment which does not hold full score tables in memory")
+                .build();
+
+        Option prefilter = Option.builder()
+                .longOpt("prefilter")
+                .hasArg()
+                .argName("cutoff")
+                .desc("only run the algorithm on pairs whose estimated similarity is at least the given cutoff (0-1)")
+                .build();
+
+        Option schedule = Option.builder()
+                .longOpt("schedule")
+                .hasArg()
+                .argName("strategy")
+                .desc("order in which pairs are compared: fifo (default) or largest (most expensive pairs first)")
+                .build();
+
         Option file = Option.builder("f")
                 .longOpt("file")
                 .hasArg()
@@ -144,6 +167,56 @@ public final class ChecksimsCommandLine {
                 .desc("number of threads to use")
                 .build();
 
+        Option ioJobs = Option.builder()
+                .longOpt("iojobs")
+                .hasArg()
+                .argName("num")
+                .desc("maximum number of threads to use for reading submissions (default "
+                        + ExecutionContext.DEFAULT_IO_THREAD_COUNT + ")")
+                .build();
+
+        Option cache = Option.builder()
+                .longOpt("cachedir")
+                .hasArg()
+                .argName("dir")
+                .desc("cache tokenized or parsed submissions in the given directory, reusing them in later runs")
+                .build();
+
+        Option cacheSize = Option.builder()
+                .longOpt("cachesize")
+                .hasArg()
+                .argName("megabytes")
+                .desc("maximum size of the cache directory (default "
+                        + PreparationCache.DEFAULT_MAX_BYTES / (1024 * 1024) + ")")
+                .build();
+
+        Option resultStore = Option.builder()
+                .longOpt("resultstore")
+                .hasArg()
+                .argName("file")
+                .desc("store the results of every pair in the given file, and only compare new or changed submissions "
+                        + "in later runs")
+                .build();
+
+        Option compact = Option.builder()
+                .longOpt("compact")
+                .desc("keep only the similarity percentages of each pair, for runs too large to hold every result in "
+                        + "memory")
+                .build();
+
+        Option pairResults = Option.builder()
+                .longOpt("pairresults")
+                .hasArg()
+                .argName("file")
+                .desc("write the result of every pair to the given file as it is produced")
+                .build();
+
+        Option sll = Option.builder()
+                .longOpt("sll")
+                .desc("parse with ANTLR's faster SLL prediction first, falling back to full LL prediction only if "
+                        + "that fails")
+                .build();
+
         Option glob = Option.builder("g")
                 .longOpt("glob")
                 .hasArg()
@@ -176,7 +249,7 @@ public final class ChecksimsCommandLine {
 
         Option archiveDir = Option.builder("archive")
                 .longOpt("archivedir")
-                .desc("archive submissions - compared to main submissions but not each other")
+                .desc("archive submissions or archive index files - compared to main submissions but not each other")
                 .argName("path")
                 .hasArgs()
                 .valueSeparator('*')
@@ -200,6 +273,13 @@ public final class ChecksimsCommandLine {
         opts.addOption(file);
         opts.addOption(preprocess);
         opts.addOption(jobs);
+        opts.addOption(ioJobs);
+        opts.addOption(cache);
+        opts.addOption(cacheSize);
+        opts.addOption(resultStore);
+        opts.addOption(compact);
+        opts.addOption(pairResults);
+        opts.addOption(sll);
         opts.addOption(glob);
         opts.addOptionGroup(verbosity);
         opts.addOption(help);
@@ -210,6 +290,9 @@ public final class ChecksimsCommandLine {
         opts.addOption(archiveDir);
         opts.addOption(submissionDir);
         opts.addOption(ignoreInvalid);
+        opts.addOption(lowMemory);
+        opts.addOption(prefilter);
+        opts.addOption(schedule);
 
         return opts;
     }
@@ -239,7 +322,9 @@ public final class ChecksimsCommandLine {
         PrintWriter systemErr = new PrintWriter(System.err, true);
 
         f.printHelp(systemErr, 80, "checksims [args]",
-                "checksims: check similarity of student submissions", getOpts(true), 2, 4, "");
+                "checksims: check similarity of student submissions", getOpts(true), 2, 4,
+                "\nchecksims index <file> [args] writes the prepared submissions to an archive index file, which "
+                        + "may be given to -archive in runs with the same algorithm and preprocessors");
 
         System.err.println("\nSupported Similarity Detection Algorithms:");
         AlgorithmRegistry.getInstance().getSupportedImplementationNames().stream().
@@ -291,11 +376,46 @@ public final class ChecksimsCommandLine {
             config = config.setTokenization(config.getAlgorithm().getPercentableCalculator());
         }
 
+        // Parse Smith-Waterman alignment engine
+        if(cli.hasOption("lowmemory")) {
+            if(!(config.getAlgorithm() instanceof SmithWaterman)) {
+                throw new ChecksimsException("Low-memory alignment is only supported by the "
+                        + SmithWaterman.getInstance().getName() + " algorithm!");
+            }
+
+            config = config.setAlgorithm(SmithWaterman.getLowMemoryInstance());
+        }
+
+        // Parse prefilter cutoff
+        if(cli.hasOption("prefilter")) {
+            double cutoff = Double.parseDouble(cli.getOptionValue("prefilter"));
+
+            if(cutoff < 0.0 || cutoff > 1.0) {
+                throw new ChecksimsException("Prefilter cutoff must be between 0 and 1!");
+            }
+
+            config = config.setPrefilterCutoff(cutoff);
+        }
+
+        // Parse scheduling strategy
+        if(cli.hasOption("schedule")) {
+            config = config.setSchedulingStrategy(SchedulingStrategy.fromString(cli.getOptionValue("schedule")));
+        }
+
         // Parse tokenization
         if(cli.hasOption("t")) {
             config = config.setTokenization(SubmissionPercentableCalculator.fromString(cli.getOptionValue("t")));
         }
 
+        // Parse SLL-first parsing
+        if(cli.hasOption("sll")) {
+            if(!(config.getTokenization() instanceof SubmissionParser)) {
+                throw new ChecksimsException("SLL-first parsing is only supported by syntax tree algorithms!");
+            }
+
+            config = config.setTokenization(((SubmissionParser)config.getTokenization()).withSLLFirst());
+        }
+
         // Parse number of threads to use
         if(cli.hasOption("j")) {
             int numThreads = Integer.parseInt(cli.getOptionValue("j"));
@@ -306,7 +426,47 @@ public final class ChecksimsCommandLine {
 
             config = config.setNumThreads(numThreads);
         }
+
+        // Parse number of threads to use for I/O
+        if(cli.hasOption("iojobs")) {
+            int numIoThreads = Integer.parseInt(cli.getOptionValue("iojobs"));
+
+            if(numIoThreads < 1) {
+                throw new ChecksimsException("I/O thread count must be positive!");
+            }
+
+            config = config.setNumIoThreads(numIoThreads);
+        }
         
+        // Parse cache directory and size
+        if(cli.hasOption("cachedir")) {
+            config = config.setCacheDirectory(Paths.get(cli.getOptionValue("cachedir")));
+        }
+
+        if(cli.hasOption("cachesize")) {
+            long megabytes = Long.parseLong(cli.getOptionValue("cachesize"));
+
+            if(megabytes < 1) {
+                throw new ChecksimsException("Cache size must be positive!");
+            }
+
+            config = config.setCacheSize(megabytes * 1024 * 1024);
+        }
+
+        // Parse result store
+        if(cli.hasOption("resultstore")) {
+            config = config.setResultStoreFile(Paths.get(cli.getOptionValue("resultstore")));
+        }
+
+        // Parse compact results, and where to write each pair's results
+        if(cli.hasOption("compact")) {
+            config = config.setCompactMatrix(true);
+        }
+
+        if(cli.hasOption("pairresults")) {
+            config = config.setPairResultsFile(Paths.get(cli.getOptionValue("pairresults")));
+        }
+
         if(cli.hasOption("ignoreInvalid"))
         {
             config = config.ignoreInvalid();
@@ -347,131 +507,6 @@ public final class ChecksimsCommandLine {
         return config;
     }
     
-    private static void addTempFile(File f)
-    {
-        tempFiles.add(f);
-    }
-    
-    public static void deleteTempFiles()
-    {
-        Set<File> copy = tempFiles;
-        tempFiles = new HashSet<>();
-        for(File f : copy)
-        {
-            deleteTempRecursive(f);
-        }
-    }
-    
-    private static void deleteTempRecursive(File f)
-    {
-        if (f.isDirectory())
-        {
-            for(File ff : f.listFiles())
-            {
-                deleteTempRecursive(ff);
-            }
-        }
-        f.delete();
-    }
-    
-    private static File recursiveTurninExtraction(File turninZip) throws ZipException, ChecksimsException
-    {
-        UUID ran = UUID.randomUUID(); // /tmp/uuid
-        String tmpPath = System.getProperty("java.io.tmpdir");
-        
-        File unzipLocation = new File(tmpPath, ran.toString());
-        if (unzipLocation.mkdir())
-        {
-            ZipFile zip = new ZipFile(turninZip);
-            if (zip.isEncrypted())
-            {
-                throw new ChecksimsException("zipfile: "+turninZip.getPath()+" is encrypted");
-            }
-            @SuppressWarnings("unchecked")
-            List<FileHeader> fileHeaders = zip.getFileHeaders();
-            
-            File studentsDir = new File(unzipLocation, "students");
-            File groupsDir = new File(unzipLocation, "groups");
-            studentsDir.mkdirs();
-            groupsDir.mkdirs();
-            for(FileHeader header: fileHeaders)
-            {
-                if (header.getFileName().startsWith("students") || header.getFileName().startsWith("groups"))
-                {
-                    zip.extractFile(header, unzipLocation.getPath());
-                }
-            }
-            
-            for(File submissionDir : studentsDir.listFiles())
-            {
-                if (submissionDir.isFile())
-                {
-                    throw new ChecksimsException("invalid file in turnin directory. might this be an invalid, hand crafted zip file?");
-                }
-                
-                for(File submission : submissionDir.listFiles())
-                {
-                    if (submission.getAbsolutePath().endsWith(".zip"))
-                    {
-                        ZipFile submissionZip = new ZipFile(submission);
-                        submissionZip.extractAll(submissionDir.getAbsolutePath());
-                        submission.delete(); // remove zip file!
-                    }
-                    if (submission.getAbsolutePath().endsWith(".tar"))
-                    {
-                        throw new RuntimeException(".tar submissions not accepted yet!");
-                    }
-                    // TODO: more archive handling,
-                    // tar.bz2, tar.gz, .tar, .7z, for starters
-                }
-            }
-            addTempFile(unzipLocation);
-            return unzipLocation;
-        }
-        else
-        {
-            throw new ChecksimsException("canno create "+unzipLocation.getPath());
-        }
-    }
-
-    /**
-     * Extract all ZIP files and add turnin format directories.
-     * @param files Set of files to parse.
-     * @return Set of files, with turnin files extracted and user/ and group/ directories added.
-     * @throws ChecksimsException 
-     */
-    static Set<File> extractTurninFiles(Set<File> files) throws ChecksimsException
-    {
-        Set<File> extracted = new HashSet<>();
-
-        for (File t : files)
-        {
-            if (t.isDirectory())
-            {
-                extracted.add(t);
-            }
-            else if (t.getAbsolutePath().endsWith(".zip"))
-            {
-                try
-                {
-                    File turninRoot = recursiveTurninExtraction(t);
-                    extracted.add(new File(turninRoot.getAbsolutePath() + File.separatorChar + "groups"));
-                    extracted.add(new File(turninRoot.getAbsolutePath() + File.separatorChar + "students"));
-                }
-                catch (ZipException e)
-                {
-                    throw new ChecksimsException("Input is not a directory or turnin zip file!", e);
-                }
-            }
-            else
-            {
-                throw new ChecksimsException("Input is not a directory or turnin zip file!");
-            }
-        }
-
-        return extracted;
-    }
-
     /**
      * Parse flags which require submissions to be built.
      *
@@ -519,8 +554,33 @@ public final class ChecksimsCommandLine {
             throw new ChecksimsException("Must provide at least one submission directory!");
         }
 
+        // Submissions are read before the run starts, on a context of their own
+        try(ExecutionContext loading = new ExecutionContext(baseConfig.getNumThreads(), baseConfig.getNumIoThreads(),
+                baseConfig.getSchedulingStrategy())) {
+            return parseFileFlags(cli, toReturn, submissionDirs, globPattern, recursive, retainEmpty, loading);
+        }
+    }
+
+    /**
+     * Build submissions, common code and archive submissions from the parsed file flags.
+     *
+     * @param cli Parse CLI options
+     * @param toReturn Configuration to add submissions to
+     * @param submissionDirs Directories or turnin archives to build submissions from
+     * @param globPattern Glob matcher to use when building submissions
+     * @param recursive Whether to recursively traverse when building submissions
+     * @param retainEmpty Whether to keep empty submissions
+     * @param loading Execution context to read submissions on
+     * @return Modified configuration with submissions (and possibly common code and archive submissions) changed
+     * @throws ChecksimsException Thrown on bad argument
+     * @throws IOException Thrown on error building submissions
+     */
+    private static ChecksimsConfig parseFileFlags(CommandLine cli, ChecksimsConfig toReturn, Set<File> submissionDirs,
+                                                  String globPattern, boolean recursive, boolean retainEmpty,
+                                                  ExecutionContext loading)
+            throws ChecksimsException, IOException {
         // Generate submissions
-        Set<Submission> submissions = getSubmissions(submissionDirs, globPattern, recursive, retainEmpty);
+        Set<Submission> submissions = getSubmissions(submissionDirs, globPattern, recursive, retainEmpty, loading);
 
         logs.debug("Generated " + submissions.size() + " submissions to process.");
 
@@ -552,12 +612,20 @@ public final class ChecksimsCommandLine {
             String[] archiveDirsString = cli.getOptionValues("archive");
 
             // Convert them into a set of files, again using getAbsoluteFile
-            Set<File> archiveDirs = Arrays.stream(archiveDirsString)
-                    .map(File::new)
-                    .map(File::getAbsoluteFile)
-                    .collect(Collectors.toSet());
+            // Archive indexes stand in for archive directories, and are kept apart
+            Set<File> archiveDirs = new HashSet<>();
+            List<ArchiveIndex> archiveIndexes = new ArrayList<>();
+            for(String archive : archiveDirsString) {
+                File archiveFile = new File(archive).getAbsoluteFile();
+
+                if(ArchiveIndex.isIndex(archiveFile.toPath())) {
+                    archiveIndexes.add(ArchiveIndex.open(archiveFile.toPath()));
+                } else {
+                    archiveDirs.add(archiveFile);
+                }
+            }
 
-            archiveDirs = extractTurninFiles(archiveDirs);
+            toReturn = toReturn.setArchiveIndexes(archiveIndexes);
 
             // Ensure that none of them are also submission directories
             for(File archiveDir : archiveDirs) {
@@ -568,12 +636,13 @@ public final class ChecksimsCommandLine {
             }
 
             // Get set of archive submissions
+            // Archive submissions are only needed until they are converted for the algorithm, so read them lazily
             Set<Submission> archiveSubmissions = getSubmissions(archiveDirs, globPattern, recursive,
-                    retainEmpty);
+                    retainEmpty, true, loading);
 
             logs.debug("Generated " + archiveSubmissions.size() + " archive submissions to process");
 
-            if(archiveSubmissions.isEmpty()) {
+            if(archiveSubmissions.isEmpty() && archiveIndexes.isEmpty()) {
                 logs.warn("Did not find any archive submissions to test with!");
             }
 
@@ -621,14 +690,55 @@ public final class ChecksimsCommandLine {
      */
     public static Set<Submission> getSubmissions(Set<File> submissionDirs, String glob, boolean recursive,
                                           boolean retainEmpty) throws IOException, ChecksimsException {
+        try(ExecutionContext loading = new ExecutionContext()) {
+            return getSubmissions(submissionDirs, glob, recursive, retainEmpty, loading);
+        }
+    }
+
+    /**
+     * Build the collection of submissions Checksims will be run on, reading them on the I/O pool of the given context.
+     *
+     * @param submissionDirs Directories to build submissions from
+     * @param glob Glob matcher to use when building submissions
+     * @param recursive Whether to recursively traverse when building submissions
+     * @param retainEmpty Whether to keep empty submissions
+     * @param loading Execution context to read submissions on
+     * @return Collection of submissions which will be used to run Checksims
+     * @throws IOException Thrown on issue traversing directories to build submissions
+     * @throws ChecksimsException Thrown on error reading a submission or turnin archive
+     */
+    public static Set<Submission> getSubmissions(Set<File> submissionDirs, String glob, boolean recursive,
+                                          boolean retainEmpty, ExecutionContext loading)
+            throws IOException, ChecksimsException {
+        return getSubmissions(submissionDirs, glob, recursive, retainEmpty, false, loading);
+    }
+
+    /**
+     * Build a collection of submissions, reading them on the I/O pool of the given context.
+     *
+     * Lazy submissions read their content only when it is requested, and release it once it has been converted for
+     * the algorithm.
+     *
+     * @param submissionDirs Directories to build submissions from
+     * @param glob Glob matcher to use when building submissions
+     * @param recursive Whether to recursively traverse when building submissions
+     * @param retainEmpty Whether to keep empty submissions
+     * @param lazy Whether to defer reading the content of submissions
+     * @param loading Execution context to read submissions on
+     * @return Collection of submissions
+     * @throws IOException Thrown on issue traversing directories to build submissions
+     * @throws ChecksimsException Thrown on error reading a submission or turnin archive
+     */
+    public static Set<Submission> getSubmissions(Set<File> submissionDirs, String glob, boolean recursive,
+                                          boolean retainEmpty, boolean lazy, ExecutionContext loading)
+            throws IOException, ChecksimsException {
         checkNotNull(submissionDirs);
         checkArgument(!submissionDirs.isEmpty(), "Must provide at least one submission directory!");
         checkNotNull(glob);
-
-        submissionDirs = extractTurninFiles(submissionDirs);
-
+        checkNotNull(loading);
 
         // Generate submissions to work on
+        // Turnin archives are streamed in place of a directory, and are always read eagerly
         Set<Submission> submissions = new HashSet<>();
         for(File dir : submissionDirs) {
             if (logs != null)
@@ -636,7 +746,15 @@ public final class ChecksimsCommandLine {
                 logs.debug("Adding directory " + dir.getName());
             }
 
-            submissions.addAll(Submission.submissionListFromDir(dir, glob, recursive));
+            if(dir.isDirectory()) {
+                submissions.addAll(Submission.submissionListFromDir(dir, glob, recursive, lazy, loading,
+                        new DefaultLoggerStatusLogger()));
+            } else if(Submission.isSubmissionArchive(dir)) {
+                submissions.addAll(Submission.submissionListFromArchive(dir, glob, recursive, loading,
+                        new DefaultLoggerStatusLogger()));
+            } else {
+                throw new ChecksimsException("Input is not a directory or turnin archive: " + dir.getPath());
+            }
         }
 
         // If not retaining empty submissions, filter the empty ones out
@@ -644,7 +762,7 @@ public final class ChecksimsCommandLine {
             Set<Submission> submissionsNoEmpty = new HashSet<>();
 
             for(Submission s : submissions) {
-                if(s.getContentAsString().isEmpty()) {
+                if(s.isEmpty()) {
                     if (logs != null)
                     {
                         logs.warn("Discarding empty submission " + s.getName());
@@ -687,17 +805,16 @@ public final class ChecksimsCommandLine {
             System.exit(0);
         }
 
+        // Build an archive index instead of running
+        if(args.length > 0 && args[0].equals("index")) {
+            runIndexCLI(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Parse options, second round: required arguments are required
         cli = parseOpts(args, true);
 
-        // Parse verbose setting
-        if(cli.hasOption("vv")) {
-            logs = startLogger(2);
-        } else if(cli.hasOption("v")) {
-            logs = startLogger(1);
-        } else {
-            logs = startLogger(0);
-        }
+        logs = startLogger(cli);
 
         // First, parse basic flags
         ChecksimsConfig config = parseBaseFlags(cli);
@@ -734,4 +851,46 @@ public final class ChecksimsCommandLine {
 
         logs.trace("CLI parsing complete!");
     }
+
+    /**
+     * Build an archive index, for the "index" command.
+     *
+     * Accepts the same flags as a run. The submissions given are preprocessed and prepared for the given algorithm,
+     * and written to the index file named by the single remaining argument. The index may then be given to -archive
+     * in place of the submissions, by runs using the same algorithm, tokenization, and preprocessors.
+     *
+     * @param args CLI arguments following "index"
+     * @throws ParseException Thrown on error parsing CLI arguments
+     * @throws ChecksimsException Thrown on invalid CLI arguments or error building the index
+     * @throws IOException Thrown on error reading submissions
+     */
+    static void runIndexCLI(String[] args) throws ParseException, ChecksimsException, IOException {
+        checkNotNull(args);
+
+        CommandLine cli = parseOpts(args, true);
+
+        logs = startLogger(cli);
+
+        if(cli.getArgs().length != 1) {
+            throw new ChecksimsException("Must name exactly one archive index file to build!");
+        }
+
+        ChecksimsConfig config = parseFileFlags(cli, parseBaseFlags(cli));
+
+        ChecksimsRunner.buildArchiveIndex(config, Paths.get(cli.getArgs()[0]));
+    }
+
+    /**
+     * @param cli Parsed command line
+     * @return Logger started at the verbosity requested on the command line
+     */
+    private static Logger startLogger(CommandLine cli) {
+        if(cli.hasOption("vv")) {
+            return startLogger(2);
+        } else if(cli.hasOption("v")) {
+            return startLogger(1);
+        } else {
+            return startLogger(0);
+        }
+    }
 }
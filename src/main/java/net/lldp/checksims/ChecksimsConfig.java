@@ -30,10 +30,15 @@ import net.lldp.checksims.algorithm.preprocessor.SubmissionPreprocessor;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinter;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinterRegistry;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.cache.ArchiveIndex;
+import net.lldp.checksims.parse.cache.PreparationCache;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
 import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.SchedulingStrategy;
 
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -57,9 +62,18 @@ public final class ChecksimsConfig {
     private ImmutableList<SubmissionPreprocessor> preprocessors;
     private ImmutableSet<Submission> submissions;
     private ImmutableSet<Submission> archiveSubmissions;
+    private ImmutableList<ArchiveIndex> archiveIndexes;
     private ImmutableSet<MatrixPrinter> outputPrinters;
     private int numThreads;
+    private int numIoThreads;
+    private double prefilterCutoff;
+    private SchedulingStrategy schedulingStrategy;
     private boolean ignoringInvalid;
+    private Path cacheDirectory;
+    private long cacheSize;
+    private Path resultStoreFile;
+    private boolean compactMatrix;
+    private Path pairResultsFile;
 
     /**
      * Base constructor, returns default config.
@@ -73,11 +87,20 @@ public final class ChecksimsConfig {
         this.tokenization = this.algorithm.getPercentableCalculator();
         this.submissions = ImmutableSet.copyOf(new HashSet<>());
         this.archiveSubmissions = ImmutableSet.copyOf(new HashSet<>());
+        this.archiveIndexes = ImmutableList.of();
         this.preprocessors = ImmutableList.copyOf(new ArrayList<>());
         this.outputPrinters = ImmutableSet.copyOf(
                 Collections.singleton(MatrixPrinterRegistry.getInstance().getDefaultImplementation()));
         this.numThreads = Runtime.getRuntime().availableProcessors();
+        this.numIoThreads = ExecutionContext.DEFAULT_IO_THREAD_COUNT;
+        this.prefilterCutoff = 0.0;
+        this.schedulingStrategy = SchedulingStrategy.FIFO;
         this.ignoringInvalid = false;
+        this.cacheDirectory = null;
+        this.cacheSize = PreparationCache.DEFAULT_MAX_BYTES;
+        this.resultStoreFile = null;
+        this.compactMatrix = false;
+        this.pairResultsFile = null;
         this.logger = new DefaultLoggerStatusLogger();
     }
 
@@ -91,14 +114,25 @@ public final class ChecksimsConfig {
         this.tokenization = old.getTokenization();
         this.submissions = old.getSubmissions();
         this.archiveSubmissions = old.getArchiveSubmissions();
+        this.archiveIndexes = old.getArchiveIndexes();
         this.preprocessors = old.getPreprocessors();
         this.outputPrinters = old.getOutputPrinters();
         this.numThreads = old.getNumThreads();
+        this.numIoThreads = old.getNumIoThreads();
+        this.prefilterCutoff = old.getPrefilterCutoff();
+        this.schedulingStrategy = old.getSchedulingStrategy();
         this.ignoringInvalid = old.ignoringInvalid;
+        this.cacheDirectory = old.getCacheDirectory();
+        this.cacheSize = old.getCacheSize();
+        this.resultStoreFile = old.getResultStoreFile();
+        this.compactMatrix = old.isCompactMatrix();
+        this.pairResultsFile = old.getPairResultsFile();
         this.logger = old.logger;
     }
 
     /**
+     * Also resets the tokenization to the new algorithm's default; set any other tokenization afterwards.
+     *
      * @param newAlgorithm New similarity detection algorithm to use
      * @return This configuration
      */
@@ -106,6 +140,7 @@ public final class ChecksimsConfig {
         checkNotNull(newAlgorithm);
 
         algorithm = newAlgorithm;
+        tokenization = newAlgorithm.getPercentableCalculator();
 
         return this;
     }
@@ -166,6 +201,19 @@ public final class ChecksimsConfig {
         return this;
     }
 
+    /**
+     * @param newArchiveIndexes New list of archive indexes, whose submissions are used as archive submissions. May be
+     *                          empty.
+     * @return This configuration
+     */
+    public ChecksimsConfig setArchiveIndexes(List<ArchiveIndex> newArchiveIndexes) {
+        checkNotNull(newArchiveIndexes);
+
+        this.archiveIndexes = ImmutableList.copyOf(newArchiveIndexes);
+
+        return this;
+    }
+
     /**
      * @param newOutputPrinters Set of output strategies to use. Cannot be empty.
      * @return This configuration
@@ -192,6 +240,102 @@ public final class ChecksimsConfig {
         return this;
     }
 
+    /**
+     * @param newNumIoThreads Maximum number of threads to be used for blocking I/O, such as reading submissions. Must
+     *                        be greater than 0.
+     * @return This configuration
+     */
+    public ChecksimsConfig setNumIoThreads(int newNumIoThreads) {
+        checkArgument(newNumIoThreads > 0, "Attempted to set number of I/O threads to " + newNumIoThreads
+                + " - must be positive integer!");
+
+        numIoThreads = newNumIoThreads;
+
+        return this;
+    }
+
+    /**
+     * @param newPrefilterCutoff Minimum estimated similarity for a pair to be run through the similarity detection
+     *                           algorithm. Pairs below it are given their estimate instead. 0 disables prefiltering.
+     * @return This configuration
+     */
+    public ChecksimsConfig setPrefilterCutoff(double newPrefilterCutoff) {
+        checkArgument(newPrefilterCutoff >= 0.0 && newPrefilterCutoff <= 1.0, "Attempted to set prefilter cutoff to "
+                + newPrefilterCutoff + " - must be between 0 and 1!");
+
+        prefilterCutoff = newPrefilterCutoff;
+
+        return this;
+    }
+
+    /**
+     * @param newSchedulingStrategy Order in which pairs will be dispatched for similarity detection
+     * @return This configuration
+     */
+    public ChecksimsConfig setSchedulingStrategy(SchedulingStrategy newSchedulingStrategy) {
+        checkNotNull(newSchedulingStrategy);
+
+        schedulingStrategy = newSchedulingStrategy;
+
+        return this;
+    }
+
+    /**
+     * @param newCacheDirectory Directory in which prepared submissions are cached between runs. Null disables caching.
+     * @return This configuration
+     */
+    public ChecksimsConfig setCacheDirectory(Path newCacheDirectory) {
+        cacheDirectory = newCacheDirectory;
+
+        return this;
+    }
+
+    /**
+     * @param newCacheSize Maximum size of the cache directory in bytes, beyond which least recently used entries are
+     *                     evicted. Must be greater than 0.
+     * @return This configuration
+     */
+    public ChecksimsConfig setCacheSize(long newCacheSize) {
+        checkArgument(newCacheSize > 0, "Attempted to set cache size to " + newCacheSize
+                + " - must be positive!");
+
+        cacheSize = newCacheSize;
+
+        return this;
+    }
+
+    /**
+     * @param newResultStoreFile File in which the results of every pair are stored between runs, so only new or changed
+     *                           submissions are compared again. Null disables storing results.
+     * @return This configuration
+     */
+    public ChecksimsConfig setResultStoreFile(Path newResultStoreFile) {
+        resultStoreFile = newResultStoreFile;
+
+        return this;
+    }
+
+    /**
+     * @param newCompactMatrix Whether to keep only the two similarity percentages of each pair, rather than its full
+     *                         results, and build a compact similarity matrix from them
+     * @return This configuration
+     */
+    public ChecksimsConfig setCompactMatrix(boolean newCompactMatrix) {
+        compactMatrix = newCompactMatrix;
+
+        return this;
+    }
+
+    /**
+     * @param newPairResultsFile File to write the result of every pair to as it is produced. Null disables writing.
+     * @return This configuration
+     */
+    public ChecksimsConfig setPairResultsFile(Path newPairResultsFile) {
+        pairResultsFile = newPairResultsFile;
+
+        return this;
+    }
+
     /**
      * @return Similarity detection algorithm to use
      */
@@ -227,6 +371,13 @@ public final class ChecksimsConfig {
         return archiveSubmissions;
     }
 
+    /**
+     * @return List of archive indexes to use
+     */
+    public ImmutableList<ArchiveIndex> getArchiveIndexes() {
+        return archiveIndexes;
+    }
+
     /**
      * @return List of output methods requested
      */
@@ -249,6 +400,63 @@ public final class ChecksimsConfig {
         return numThreads;
     }
 
+    /**
+     * @return Maximum number of threads that will be used for blocking I/O
+     */
+    public int getNumIoThreads() {
+        return numIoThreads;
+    }
+
+    /**
+     * @return Minimum estimated similarity for a pair to be run through the similarity detection algorithm. 0 if
+     *         prefiltering is disabled.
+     */
+    public double getPrefilterCutoff() {
+        return prefilterCutoff;
+    }
+
+    /**
+     * @return Order in which pairs will be dispatched for similarity detection
+     */
+    public SchedulingStrategy getSchedulingStrategy() {
+        return schedulingStrategy;
+    }
+
+    /**
+     * @return Directory in which prepared submissions are cached between runs. Null if caching is disabled.
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * @return Maximum size of the cache directory in bytes
+     */
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return File in which the results of every pair are stored between runs. Null if results are not stored.
+     */
+    public Path getResultStoreFile() {
+        return resultStoreFile;
+    }
+
+    /**
+     * @return Whether only the similarity percentages of each pair are kept, in a compact similarity matrix
+     */
+    public boolean isCompactMatrix() {
+        return compactMatrix;
+    }
+
+    /**
+     * @return File the result of every pair is written to as it is produced. Null if results are not written.
+     */
+    public Path getPairResultsFile() {
+        return pairResultsFile;
+    }
+
     @Override
     public String toString() {
         return "ChecksimConfig with algorithm " + algorithm.getName();
@@ -269,7 +477,16 @@ public final class ChecksimsConfig {
 
         return this.algorithm.equals(otherConfig.getAlgorithm())
                 && this.archiveSubmissions.equals(otherConfig.getArchiveSubmissions())
+                && this.archiveIndexes.equals(otherConfig.getArchiveIndexes())
                 && this.numThreads == otherConfig.getNumThreads()
+                && this.numIoThreads == otherConfig.getNumIoThreads()
+                && this.prefilterCutoff == otherConfig.getPrefilterCutoff()
+                && this.schedulingStrategy.equals(otherConfig.getSchedulingStrategy())
+                && Objects.equals(this.cacheDirectory, otherConfig.getCacheDirectory())
+                && this.cacheSize == otherConfig.getCacheSize()
+                && Objects.equals(this.resultStoreFile, otherConfig.getResultStoreFile())
+                && this.compactMatrix == otherConfig.isCompactMatrix()
+                && Objects.equals(this.pairResultsFile, otherConfig.getPairResultsFile())
                 && this.outputPrinters.equals(otherConfig.getOutputPrinters())
                 && this.preprocessors.equals(otherConfig.getPreprocessors())
                 && this.submissions.equals(otherConfig.getSubmissions())
@@ -23,15 +23,29 @@ package net.lldp.checksims;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import net.lldp.checksims.algorithm.AlgorithmResults;
 import net.lldp.checksims.algorithm.AlgorithmRunner;
+import net.lldp.checksims.algorithm.PairResultWriter;
+import net.lldp.checksims.algorithm.ResultSink;
+import net.lldp.checksims.algorithm.ResultStore;
+import net.lldp.checksims.algorithm.SimilarityDetector;
+import net.lldp.checksims.algorithm.prefilter.PairPrefilter;
+import net.lldp.checksims.algorithm.prefilter.PrefilterResults;
 import net.lldp.checksims.algorithm.preprocessor.PreprocessSubmissions;
 import net.lldp.checksims.algorithm.preprocessor.SubmissionPreprocessor;
+import net.lldp.checksims.algorithm.similaritymatrix.PairScores;
 import net.lldp.checksims.algorithm.similaritymatrix.SimilarityMatrix;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinter;
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.cache.ArchiveIndex;
+import net.lldp.checksims.parse.cache.PreparationCache;
 import net.lldp.checksims.submission.Submission;
-import net.lldp.checksims.util.PairGenerator;
-import net.lldp.checksims.util.threading.ParallelAlgorithm;
+import net.lldp.checksims.util.SubmissionPairs;
+import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -40,10 +54,17 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -111,15 +132,32 @@ public final class ChecksimsRunner {
     public static ImmutableMap<String, String> runChecksims(ChecksimsConfig config) throws ChecksimsException {
         checkNotNull(config);
 
+        // Threads used by this run are released when it completes, successfully or not
+        try(ExecutionContext context = new ExecutionContext(config.getNumThreads(), config.getNumIoThreads(),
+                config.getSchedulingStrategy())) {
+            return runChecksims(config, context);
+        }
+    }
+
+    /**
+     * Runs similarity detection according to given configuration, on the threads of a caller-owned context.
+     *
+     * The caller may cancel the context from another thread to abandon the run, and is responsible for closing it.
+     * The thread counts and scheduling strategy of the context are used in place of those in the configuration.
+     *
+     * @param config Configuration defining how Checksims will be run
+     * @param context Execution context to run on
+     * @return Map containing output of all output printers requested. Keys are name of output printer.
+     * @throws ChecksimsException Thrown on error performing similarity detection, or if the context is cancelled
+     */
+    public static ImmutableMap<String, String> runChecksims(ChecksimsConfig config, ExecutionContext context)
+            throws ChecksimsException {
+        checkNotNull(config);
+        checkNotNull(context);
+
         // Create a logger to log activity
         Logger logs = LoggerFactory.getLogger(ChecksimsRunner.class);
 
-        // Set parallelism
-        int threads = config.getNumThreads();
-        ParallelAlgorithm.setThreadCount(threads);
-        // TODO following line may not be necessary as we no longer use parallel streams?
-        System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "" + threads);
-
         ImmutableSet<Submission> submissions = config.getSubmissions();
 
         logs.info("Got " + submissions.size() + " submissions to test.");
@@ -135,59 +173,436 @@ public final class ChecksimsRunner {
         }
 
         // Apply all preprocessors
-        for(SubmissionPreprocessor p : config.getPreprocessors()) {
-            submissions = ImmutableSet.copyOf(PreprocessSubmissions.process(p, submissions, config.getStatusLogger()));
+        long startTime = System.currentTimeMillis();
+        submissions = preprocess(config.getPreprocessors(), submissions, context, config.getStatusLogger());
+
+        if(!archiveSubmissions.isEmpty()) {
+            archiveSubmissions = preprocess(config.getPreprocessors(), archiveSubmissions, context,
+                    config.getStatusLogger());
+        }
 
-            if(!archiveSubmissions.isEmpty()) {
-                archiveSubmissions = ImmutableSet.copyOf(PreprocessSubmissions.process(p, archiveSubmissions, config.getStatusLogger()));
+        logs.info("Finished preprocessing in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        // Indexed archive submissions were preprocessed when their index was built
+        if(!config.getArchiveIndexes().isEmpty()) {
+            if(config.getPrefilterCutoff() > 0.0) {
+                throw new ChecksimsException("Cannot prefilter with an archive index, as indexed submissions have no "
+                        + "source to sketch!");
+            }
+
+            Set<Submission> withIndexed = new HashSet<>(archiveSubmissions);
+            for(ArchiveIndex index : config.getArchiveIndexes()) {
+                logs.info("Got " + index.getSubmissions().size() + " archive submissions from " + index);
+                withIndexed.addAll(index.getSubmissions());
             }
+            archiveSubmissions = ImmutableSet.copyOf(withIndexed);
         }
 
         if(submissions.size() < 2) {
             throw new ChecksimsException("Did not get at least 2 student submissions! Cannot run Checksims!");
         }
 
+        // Archive submissions are never compared to each other, which indexed detectors learn from this flag
+        archiveSubmissions.forEach((archive) -> archive.setFlag(SubmissionPairs.ARCHIVE_FLAG));
+
+        // Submissions prepared by earlier runs are read back from the cache, if one is configured
+        PreparationCache cache = null;
+        if(config.getCacheDirectory() != null) {
+            try {
+                cache = new PreparationCache(config.getCacheDirectory(), config.getCacheSize());
+            } catch(IOException e) {
+                throw new ChecksimsException("Could not open cache directory " + config.getCacheDirectory(), e);
+            }
+        }
+
+        // Results are passed on as they are produced; in compact mode, only their percentages are kept
+        Set<AlgorithmResults> results = null;
+        PairScores scores = null;
+        ResultSink sink;
+        if(config.isCompactMatrix()) {
+            scores = new PairScores(submissions, archiveSubmissions);
+            logs.info("Holding results in " + scores);
+            sink = scores;
+        } else {
+            Set<AlgorithmResults> collected = new HashSet<>();
+            results = collected;
+            sink = collected::add;
+        }
+
+        PairResultWriter writer = null;
+        if(config.getPairResultsFile() != null) {
+            try {
+                writer = new PairResultWriter(config.getPairResultsFile());
+            } catch(IOException e) {
+                throw new ChecksimsException("Could not create pair results file " + config.getPairResultsFile(), e);
+            }
+            sink = writer.andThen(sink);
+        }
+
         // Apply algorithm to submissions
-        Set<Pair<Submission, Submission>> allPairs = PairGenerator.generatePairsWithArchive(submissions,
-                archiveSubmissions);
-        Set<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(allPairs, config.getAlgorithm(), config.getStatusLogger());
+        try(PairResultWriter closeAfter = writer) {
+            detectSimilarity(config.getAlgorithm(), config, submissions, archiveSubmissions, cache, context, sink);
+        } catch(IOException e) {
+            throw new ChecksimsException("Error writing pair results to " + config.getPairResultsFile(), e);
+        }
+
+        if(writer != null) {
+            logs.info("Wrote " + writer.getNumWritten() + " pair results to " + config.getPairResultsFile());
+        }
+
+        if(cache != null) {
+            try {
+                cache.evict();
+            } catch(IOException e) {
+                logs.warn("Could not evict entries from " + cache + ": " + e.getMessage());
+            }
+            cache.logStatistics();
+        }
         
         if (config.isIgnoringInvalid()) {
             Set<Submission> validSubmissions = new HashSet<>();
             Set<Submission> validArchivedSubmissions = new HashSet<>();
-            Set<AlgorithmResults> validResults = new HashSet<>();
             submissions.stream().filter(S -> !S.testFlag("invalid"))
                                 .forEach(S -> validSubmissions.add(S));
             archiveSubmissions.stream().filter(S -> !S.testFlag("invalid"))
                                        .forEach(S -> validArchivedSubmissions.add(S));
-            results.stream().filter(S -> S.isValid())
-                            .forEach(S -> validResults.add(S));
             
             submissions = ImmutableSet.copyOf(validSubmissions);
             archiveSubmissions = ImmutableSet.copyOf(validArchivedSubmissions);
-            results = validResults;
-            
+
+            // Compact scores of invalid submissions are simply never read
+            if(results != null) {
+                Set<AlgorithmResults> validResults = new HashSet<>();
+                results.stream().filter(S -> S.isValid())
+                                .forEach(S -> validResults.add(S));
+                results = validResults;
+            }
         }
         
         
         
-        SimilarityMatrix resultsMatrix = SimilarityMatrix.generateMatrix(submissions, archiveSubmissions, results);
+        startTime = System.currentTimeMillis();
+        SimilarityMatrix resultsMatrix;
+        if(scores != null) {
+            resultsMatrix = SimilarityMatrix.generateCompactMatrix(submissions, archiveSubmissions, scores);
+        } else {
+            resultsMatrix = SimilarityMatrix.generateMatrix(submissions, archiveSubmissions, results);
+        }
+        logs.info("Finished generating similarity matrix in " + (System.currentTimeMillis() - startTime) + " ms");
 
-        // All parallel jobs are done, shut down the parallel executor
-        ParallelAlgorithm.shutdownExecutor();
         config.getStatusLogger().end();
 
         Map<String, String> outputMap = new HashMap<>();
 
         // Output using all output printers
+        startTime = System.currentTimeMillis();
         for(MatrixPrinter p : config.getOutputPrinters()) {
             logs.info("Generating " + p.getName() + " output");
 
             outputMap.put(p.getName(), p.printMatrix(resultsMatrix));
         }
-        
-        ChecksimsCommandLine.deleteTempFiles();
+        logs.info("Finished generating output in " + (System.currentTimeMillis() - startTime) + " ms");
 
         return ImmutableMap.copyOf(outputMap);
     }
+
+    /**
+     * Prepare every submission (including archived submissions) exactly once, then run the algorithm on all pairs.
+     *
+     * Preparation happens before any pair is scheduled, so no submission is tokenized or parsed more than once, and
+     * all workers share the same read-only prepared store.
+     *
+     * If a result store is configured, pairs whose submissions are unchanged since it was saved are given their stored
+     * results, and only the remaining pairs are prepared and compared. The store is then saved with the results of
+     * every pair.
+     *
+     * The result of every pair, whether restored, estimated, or detected, is passed to the given sink as it is produced.
+     *
+     * @param algorithm Algorithm to use
+     * @param config Configuration of the run
+     * @param submissions Preprocessed submissions to compare against each other
+     * @param archiveSubmissions Preprocessed archived submissions to compare against submissions
+     * @param cache Cache to consult before preparing each submission. Null to disable.
+     * @param context Execution context of the current run
+     * @param sink Sink to receive the result of every pair
+     * @throws ChecksimsException Thrown on error performing similarity detection
+     */
+    private static <T extends Percentable> void detectSimilarity(SimilarityDetector<T> algorithm,
+                                                                 ChecksimsConfig config, Set<Submission> submissions,
+                                                                 Set<Submission> archiveSubmissions,
+                                                                 PreparationCache cache, ExecutionContext context,
+                                                                 ResultSink sink)
+            throws ChecksimsException {
+        Logger logs = LoggerFactory.getLogger(ChecksimsRunner.class);
+
+        SubmissionPercentableCalculator<T> calculator = AlgorithmRunner.checkTokenization(algorithm,
+                config.getTokenization());
+        List<String> preprocessorNames = preprocessorNames(config.getPreprocessors());
+
+        ResultStore store = null;
+        if(config.getResultStoreFile() != null) {
+            List<String> configuration = new ArrayList<>();
+            configuration.add(algorithm.getName());
+            configuration.add(calculator.toString());
+            configuration.addAll(preprocessorNames);
+
+            store = ResultStore.open(config.getResultStoreFile(), configuration);
+        }
+
+        if(cache != null) {
+            calculator = cache.wrap(calculator, algorithm.getName(), preprocessorNames);
+        }
+        for(ArchiveIndex index : config.getArchiveIndexes()) {
+            calculator = index.wrap(calculator, algorithm.getName(), preprocessorNames);
+        }
+
+        // Pairs are enumerated lazily as they are scheduled, never all held in memory at once
+        Collection<Pair<Submission, Submission>> pairs = new SubmissionPairs(submissions, archiveSubmissions);
+
+        if(store != null) {
+            int numRestored = 0;
+            for(Pair<Submission, Submission> pair : pairs) {
+                AlgorithmResults result = store.lookup(pair);
+
+                if(result != null) {
+                    algorithm.restoreResults(result);
+                    sink.accept(result);
+                    numRestored++;
+                }
+            }
+
+            int numRemaining = pairs.size() - numRestored;
+
+            logs.info("Restored " + numRestored + " results from " + store + ", " + numRemaining
+                    + " pairs remain to be compared");
+
+            pairs = unstoredPairs(pairs, store, numRemaining);
+        }
+
+        compare(algorithm, calculator, pairs, config.getPrefilterCutoff(), store, context, config.getStatusLogger(),
+                sink);
+
+        if(store != null) {
+            Set<Submission> allSubmissions = new HashSet<>(submissions);
+            allSubmissions.addAll(archiveSubmissions);
+            store.restoreValidity(allSubmissions);
+
+            try {
+                store.save();
+            } catch(IOException e) {
+                logs.warn("Could not save results to " + config.getResultStoreFile() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Prepare the submissions of the given pairs, and run the algorithm on them.
+     *
+     * If a prefilter cutoff is given, every pair is first scored from cheap sketches, and only pairs reaching the cutoff
+     * are prepared and run through the algorithm. The remaining pairs are given their estimated scores.
+     *
+     * @param algorithm Algorithm to use
+     * @param calculator Calculator to prepare submissions with
+     * @param pairs Pairs to compare
+     * @param prefilterCutoff Minimum estimated similarity for a pair to be run through the algorithm. 0 to disable.
+     * @param store Store to record detected results in. Null to disable.
+     * @param context Execution context of the current run
+     * @param logger Status logger to report progress to
+     * @param sink Sink to receive the results of the algorithm, or estimates, for every given pair
+     * @throws ChecksimsException Thrown on error performing similarity detection
+     */
+    private static <T extends Percentable> void compare(SimilarityDetector<T> algorithm,
+                                                        SubmissionPercentableCalculator<T> calculator,
+                                                        Collection<Pair<Submission, Submission>> pairs,
+                                                        double prefilterCutoff, ResultStore store,
+                                                        ExecutionContext context, StatusLogger logger, ResultSink sink)
+            throws ChecksimsException {
+        if(pairs.isEmpty()) {
+            return;
+        }
+
+        if(prefilterCutoff <= 0.0) {
+            detect(algorithm, calculator, pairs, store, context, logger, sink);
+            return;
+        }
+
+        Logger logs = LoggerFactory.getLogger(ChecksimsRunner.class);
+
+        long startTime = System.currentTimeMillis();
+        PrefilterResults filtered = PairPrefilter.filter(pairs,
+                PairPrefilter.sketchSubmissions(submissionsOf(pairs), context, logger), prefilterCutoff, sink);
+        long prefilterTime = System.currentTimeMillis() - startTime;
+
+        logs.info("Prefilter pruned " + filtered.getNumPruned() + " of " + pairs.size() + " pairs below cutoff "
+                + prefilterCutoff + " in " + prefilterTime + " ms");
+
+        Set<Pair<Submission, Submission>> keptPairs = filtered.getKeptPairs();
+        if(keptPairs.isEmpty()) {
+            return;
+        }
+
+        startTime = System.currentTimeMillis();
+        detect(algorithm, calculator, keptPairs, store, context, logger, sink);
+        long detectionTime = System.currentTimeMillis() - startTime;
+
+        // Assume pruned pairs would have cost as much as the average kept pair
+        long timeSaved = detectionTime * filtered.getNumPruned() / keptPairs.size() - prefilterTime;
+
+        logs.info("Prefiltering saved an estimated " + timeSaved + " ms of similarity detection");
+    }
+
+    /**
+     * Prepare the submissions present in the given pairs, and run the algorithm on every pair.
+     *
+     * Estimated results are never recorded in the store, only those detected here.
+     *
+     * @param algorithm Algorithm to use
+     * @param calculator Calculator to prepare submissions with
+     * @param pairs Pairs to compare; must not be empty
+     * @param store Store to record detected results in. Null to disable.
+     * @param context Execution context of the current run
+     * @param logger Status logger to report progress to
+     * @param sink Sink to receive the results of the algorithm for every given pair
+     * @throws ChecksimsException Thrown on error performing similarity detection
+     */
+    private static <T extends Percentable> void detect(SimilarityDetector<T> algorithm,
+                                                       SubmissionPercentableCalculator<T> calculator,
+                                                       Collection<Pair<Submission, Submission>> pairs,
+                                                       ResultStore store, ExecutionContext context,
+                                                       StatusLogger logger, ResultSink sink)
+            throws ChecksimsException {
+        // Only submissions present in a pair need to be prepared
+        PreparedSubmissions<T> prepared = AlgorithmRunner.prepareSubmissions(submissionsOf(pairs), algorithm,
+                calculator, context, logger);
+
+        if(store != null) {
+            sink = ((ResultSink)store::record).andThen(sink);
+        }
+
+        AlgorithmRunner.runAlgorithm(pairs, algorithm, prepared, context, logger, sink);
+
+        if(store != null) {
+            store.recordValidity(prepared.getSubmissions());
+        }
+    }
+
+    /**
+     * View of the given pairs without stored results, filtered as it is iterated, so the remaining pairs are never all
+     * held in memory.
+     *
+     * @param pairs Pairs of submissions
+     * @param store Store holding results for some of the pairs
+     * @param numUnstored Number of the given pairs without stored results
+     * @return Lazily filtered collection of the pairs without stored results
+     */
+    private static Collection<Pair<Submission, Submission>> unstoredPairs(
+            Collection<Pair<Submission, Submission>> pairs, ResultStore store, int numUnstored) {
+        return new AbstractCollection<Pair<Submission, Submission>>() {
+            @Override
+            public Iterator<Pair<Submission, Submission>> iterator() {
+                return Iterators.filter(pairs.iterator(), (pair) -> !store.contains(pair));
+            }
+
+            @Override
+            public int size() {
+                return numUnstored;
+            }
+        };
+    }
+
+    /**
+     * @param pairs Pairs of submissions
+     * @return Every submission present in at least one of the given pairs
+     */
+    private static Set<Submission> submissionsOf(Collection<Pair<Submission, Submission>> pairs) {
+        Set<Submission> submissions = new HashSet<>();
+        for(Pair<Submission, Submission> pair : pairs) {
+            submissions.add(pair.getLeft());
+            submissions.add(pair.getRight());
+        }
+
+        return submissions;
+    }
+
+    /**
+     * Build an archive index from the submissions of a configuration.
+     *
+     * The submissions are preprocessed and prepared for the configured algorithm and tokenization, exactly as archive
+     * submissions would be in a run with the same configuration, and their Percentables are written to the index.
+     *
+     * @param config Configuration giving the submissions to index, and how to prepare them
+     * @param indexFile File to write the index to; replaced if it exists
+     * @throws ChecksimsException Thrown if the algorithm's Percentables cannot be indexed, or on error writing
+     */
+    public static void buildArchiveIndex(ChecksimsConfig config, Path indexFile) throws ChecksimsException {
+        checkNotNull(config);
+        checkNotNull(indexFile);
+
+        try(ExecutionContext context = new ExecutionContext(config.getNumThreads(), config.getNumIoThreads(),
+                config.getSchedulingStrategy())) {
+            buildArchiveIndex(config.getAlgorithm(), config, indexFile, context);
+        }
+    }
+
+    private static <T extends Percentable> void buildArchiveIndex(SimilarityDetector<T> algorithm,
+                                                                  ChecksimsConfig config, Path indexFile,
+                                                                  ExecutionContext context)
+            throws ChecksimsException {
+        Logger logs = LoggerFactory.getLogger(ChecksimsRunner.class);
+
+        SubmissionPercentableCalculator<T> calculator = AlgorithmRunner.checkTokenization(algorithm,
+                config.getTokenization());
+        if(!ArchiveIndex.canIndex(calculator)) {
+            throw new ChecksimsException("Submissions prepared for algorithm " + algorithm.getName()
+                    + " cannot be indexed!");
+        }
+
+        if(config.getSubmissions().isEmpty()) {
+            throw new ChecksimsException("No submissions were found - cannot build an archive index!");
+        }
+
+        Set<Submission> submissions = preprocess(config.getPreprocessors(), config.getSubmissions(), context,
+                config.getStatusLogger());
+
+        PreparedSubmissions<T> prepared = AlgorithmRunner.prepareSubmissions(submissions, algorithm, calculator,
+                context, config.getStatusLogger());
+
+        try {
+            ArchiveIndex.write(indexFile, prepared, calculator, algorithm.getName(),
+                    preprocessorNames(config.getPreprocessors()));
+        } catch(IOException e) {
+            throw new ChecksimsException("Error writing archive index " + indexFile, e);
+        }
+
+        logs.info("Wrote archive index of " + prepared.size() + " submissions to " + indexFile);
+    }
+
+    /**
+     * @param preprocessors Preprocessors to apply, in order
+     * @param submissions Submissions to preprocess
+     * @param context Execution context of the current run
+     * @param logger Status logger to report progress to
+     * @return Preprocessed submissions
+     * @throws ChecksimsException Thrown on error preprocessing
+     */
+    private static ImmutableSet<Submission> preprocess(List<SubmissionPreprocessor> preprocessors,
+                                                       Set<Submission> submissions, ExecutionContext context,
+                                                       StatusLogger logger)
+            throws ChecksimsException {
+        ImmutableSet<Submission> processed = ImmutableSet.copyOf(submissions);
+
+        for(SubmissionPreprocessor p : preprocessors) {
+            processed = ImmutableSet.copyOf(PreprocessSubmissions.process(p, processed, context, logger));
+        }
+
+        return processed;
+    }
+
+    /**
+     * @param preprocessors Preprocessors, in order
+     * @return Names of the given preprocessors, identifying prepared submissions in caches and indexes
+     */
+    private static List<String> preprocessorNames(List<SubmissionPreprocessor> preprocessors) {
+        return preprocessors.stream().map(SubmissionPreprocessor::getName).collect(Collectors.toList());
+    }
 }
@@ -22,14 +22,20 @@
 package net.lldp.checksims.algorithm;
 
 import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
 import net.lldp.checksims.util.threading.ParallelAlgorithm;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -41,34 +47,173 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public final class AlgorithmRunner {
     private AlgorithmRunner() {}
 
+    /**
+     * Tokenize or parse every given submission exactly once, using the algorithm's default Percentable calculator.
+     *
+     * @param submissions Submissions to prepare
+     * @param algorithm Algorithm the submissions will be compared with
+     * @param context Execution context of the current run
+     * @return Immutable store of the Percentable for each submission
+     * @throws ChecksimsException Thrown on error preparing a submission
+     */
+    public static <T extends Percentable> PreparedSubmissions<T> prepareSubmissions(Set<Submission> submissions,
+                                                                               SimilarityDetector<T> algorithm,
+                                                                               ExecutionContext context,
+                                                                               StatusLogger logger)
+            throws ChecksimsException {
+        checkNotNull(algorithm);
+
+        return prepareSubmissions(submissions, algorithm, algorithm.getPercentableCalculator(), context, logger);
+    }
+
+    /**
+     * Tokenize or parse every given submission exactly once, using the given Percentable calculator.
+     *
+     * @param submissions Submissions to prepare
+     * @param algorithm Algorithm the submissions will be compared with
+     * @param calculator Calculator generating the Percentables the algorithm compares
+     * @param context Execution context of the current run
+     * @return Immutable store of the Percentable for each submission
+     * @throws ChecksimsException Thrown on error preparing a submission
+     */
+    public static <T extends Percentable> PreparedSubmissions<T> prepareSubmissions(Set<Submission> submissions,
+                                                                               SimilarityDetector<T> algorithm,
+                                                                               SubmissionPercentableCalculator<T>
+                                                                                       calculator,
+                                                                               ExecutionContext context,
+                                                                               StatusLogger logger)
+            throws ChecksimsException {
+        checkNotNull(submissions);
+        checkNotNull(algorithm);
+        checkNotNull(calculator);
+
+        Logger logs = LoggerFactory.getLogger(AlgorithmRunner.class);
+        long startTime = System.currentTimeMillis();
+
+        logs.info("Preparing " + submissions.size() + " submissions for algorithm " + algorithm.getName());
+
+        PreparedSubmissions<T> prepared = ParallelAlgorithm.parallelSubmissionPreparation(context, calculator,
+                submissions, logger);
+
+        long endTime = System.currentTimeMillis();
+        long timeElapsed = endTime - startTime;
+
+        logs.info("Finished preparing submissions in " + timeElapsed + " ms");
+
+        return prepared;
+    }
+
+    /**
+     * Check that a tokenization can be used by an algorithm in place of its default.
+     *
+     * @param algorithm Algorithm which will compare the submissions
+     * @param tokenization Tokenization requested for the submissions
+     * @return The tokenization, typed to match the algorithm
+     * @throws ChecksimsException Thrown if the algorithm cannot compare what the tokenization produces
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Percentable> SubmissionPercentableCalculator<T> checkTokenization(
+            SimilarityDetector<T> algorithm, SubmissionPercentableCalculator<?> tokenization)
+            throws ChecksimsException {
+        checkNotNull(algorithm);
+        checkNotNull(tokenization);
+
+        if(!tokenization.getTypeClass().equals(algorithm.getPercentableCalculator().getTypeClass())) {
+            throw new ChecksimsException("Tokenization " + tokenization + " cannot be used with algorithm "
+                    + algorithm.getName() + "!");
+        }
+
+        return (SubmissionPercentableCalculator<T>)tokenization;
+    }
+
     /**
      * Run a pairwise similarity detection algorithm.
      *
+     * Every submission present in the given pairs is prepared once before detection begins.
+     *
      * @param submissions Pairs to run on
      * @param algorithm Algorithm to use
+     * @param context Execution context of the current run
      * @return Collection of AlgorithmResults, one for each input pair
      */
-    public static Set<AlgorithmResults> runAlgorithm(Set<Pair<Submission, Submission>> submissions,
-                                                     SimilarityDetector<?> algorithm,
-                                                     StatusLogger logger) throws ChecksimsException {
+    public static <T extends Percentable> Set<AlgorithmResults> runAlgorithm(
+            Collection<Pair<Submission, Submission>> submissions, SimilarityDetector<T> algorithm,
+            ExecutionContext context, StatusLogger logger)
+            throws ChecksimsException {
         checkNotNull(submissions);
         checkArgument(submissions.size() > 0, "Must provide at least one pair of submissions to run on!");
         checkNotNull(algorithm);
 
+        Set<Submission> toPrepare = new HashSet<>();
+        for(Pair<Submission, Submission> pair : submissions) {
+            toPrepare.add(pair.getLeft());
+            toPrepare.add(pair.getRight());
+        }
+
+        return runAlgorithm(submissions, algorithm, prepareSubmissions(toPrepare, algorithm, context, logger), context,
+                logger);
+    }
+
+    /**
+     * Run a pairwise similarity detection algorithm on submissions which have already been prepared.
+     *
+     * @param submissions Pairs to run on
+     * @param algorithm Algorithm to use
+     * @param prepared Percentables for every submission present in the pairs
+     * @param context Execution context of the current run
+     * @return Collection of AlgorithmResults, one for each input pair
+     */
+    public static <T extends Percentable> Set<AlgorithmResults> runAlgorithm(
+            Collection<Pair<Submission, Submission>> submissions, SimilarityDetector<T> algorithm,
+            PreparedSubmissions<T> prepared, ExecutionContext context, StatusLogger logger)
+            throws ChecksimsException {
+        Set<AlgorithmResults> results = new HashSet<>();
+
+        runAlgorithm(submissions, algorithm, prepared, context, logger, results::add);
+
+        return results;
+    }
+
+    /**
+     * Run a pairwise similarity detection algorithm on submissions which have already been prepared, passing each
+     * result to the given sink as it is produced rather than collecting them.
+     *
+     * @param submissions Pairs to run on
+     * @param algorithm Algorithm to use
+     * @param prepared Percentables for every submission present in the pairs
+     * @param context Execution context of the current run
+     * @param sink Sink to receive the result of each input pair
+     */
+    public static <T extends Percentable> void runAlgorithm(
+            Collection<Pair<Submission, Submission>> submissions, SimilarityDetector<T> algorithm,
+            PreparedSubmissions<T> prepared, ExecutionContext context, StatusLogger logger, ResultSink sink)
+            throws ChecksimsException {
+        checkNotNull(submissions);
+        checkArgument(submissions.size() > 0, "Must provide at least one pair of submissions to run on!");
+        checkNotNull(algorithm);
+        checkNotNull(prepared);
+        checkNotNull(sink);
+
         Logger logs = LoggerFactory.getLogger(AlgorithmRunner.class);
         long startTime = System.currentTimeMillis();
 
         logs.info("Performing similarity detection on " + submissions.size() + " pairs using algorithm "
                 + algorithm.getName());
 
-        // Perform parallel analysis of all submission pairs to generate a results list
-        Set<AlgorithmResults> results = ParallelAlgorithm.parallelSimilarityDetection(algorithm, submissions, logger);
+        if(algorithm instanceof IndexedSimilarityDetector) {
+            // Indexed algorithms score every pair from a single index, rather than comparing pair by pair
+            @SuppressWarnings("unchecked")
+            IndexedSimilarityDetector<T> indexed = (IndexedSimilarityDetector<T>)algorithm;
+
+            ParallelAlgorithm.indexedSimilarityDetection(context, indexed, submissions, prepared, logger, sink);
+        } else {
+            // Perform parallel analysis of all submission pairs, passing on each result as it completes
+            ParallelAlgorithm.parallelSimilarityDetection(context, algorithm, submissions, prepared, logger, sink);
+        }
 
         long endTime = System.currentTimeMillis();
         long timeElapsed = endTime - startTime;
 
         logs.info("Finished similarity detection in " + timeElapsed + " ms");
-
-        return results;
     }
 }
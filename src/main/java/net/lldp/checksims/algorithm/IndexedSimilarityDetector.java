@@ -0,0 +1,68 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.threading.ExecutionContext;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * A similarity detector which can derive results for many pairs at once, rather than comparing each pair independently.
+ *
+ * When the algorithm being run implements this interface, the AlgorithmRunner has it build a single index over every
+ * submission, then scores each pair from that index instead of running one pairwise comparison per pair. Results
+ * should match those produced by calling {@link SimilarityDetector#detectSimilarity(Pair, Percentable, Percentable)} on
+ * each pair, except that features common to many submissions may be ignored, which a single pairwise comparison cannot
+ * detect.
+ *
+ * @param <T> Type of Percentable compared
+ */
+public interface IndexedSimilarityDetector<T extends Percentable> {
+    /**
+     * Index over the submissions of a run, from which the results of any pair of them are derived.
+     *
+     * Pairs are scored from many threads at once, so implementations must be safe to query concurrently.
+     */
+    interface Index {
+        /**
+         * @param pair Pair to compare
+         * @return Results of comparing the pair
+         * @throws InternalAlgorithmError Thrown on error detecting similarities
+         */
+        AlgorithmResults detectSimilarity(Pair<Submission, Submission> pair) throws InternalAlgorithmError;
+    }
+
+    /**
+     * Build an index over every prepared submission.
+     *
+     * @param prepared Percentables for every submission present in the pairs to be compared
+     * @param context Execution context of the current run, checked for cancellation while the index is built
+     * @return Index to score pairs of the prepared submissions from
+     * @throws ChecksimsException Thrown on error building the index, or if the context is cancelled
+     */
+    Index buildIndex(PreparedSubmissions<T> prepared, ExecutionContext context) throws ChecksimsException;
+}
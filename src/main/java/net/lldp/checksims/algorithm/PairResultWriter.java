@@ -0,0 +1,141 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm;
+
+import net.lldp.checksims.util.data.Real;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes the result of every compared pair to a file as it is produced, one tab-separated line per pair.
+ *
+ * Each line gives the names of both submissions, the exact fraction of each matched in the other, those fractions as
+ * decimals, and whether the result is valid. The detail of every pair is kept on disk, so the results need not all be
+ * held in memory to be examined after a run.
+ *
+ * Errors writing are not thrown as results arrive; the first is kept and thrown when the writer is closed.
+ */
+public final class PairResultWriter implements ResultSink, Closeable {
+    /**
+     * First line of every file written, naming each column.
+     */
+    public static final String HEADER = "submission_a\tsubmission_b\tmatched_a\tmatched_b\tsimilarity_a\tsimilarity_b\t"
+            + "valid";
+
+    private final Path file;
+    private final Writer out;
+    private long numWritten;
+    private IOException error;
+
+    /**
+     * Create a writer to the given file, replacing it if it exists.
+     *
+     * @param file File to write results to
+     * @throws IOException Thrown on error creating the file
+     */
+    public PairResultWriter(Path file) throws IOException {
+        checkNotNull(file);
+
+        this.file = file;
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.numWritten = 0;
+
+        out.write(HEADER);
+        out.write('\n');
+    }
+
+    @Override
+    public synchronized void accept(AlgorithmResults result) {
+        checkNotNull(result);
+
+        if(error != null) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder();
+        line.append(escape(result.a.getName())).append('\t');
+        line.append(escape(result.b.getName())).append('\t');
+        line.append(fraction(result.percentMatchedA)).append('\t');
+        line.append(fraction(result.percentMatchedB)).append('\t');
+        line.append(result.percentMatchedA.asDouble()).append('\t');
+        line.append(result.percentMatchedB.asDouble()).append('\t');
+        line.append(result.isValid()).append('\n');
+
+        try {
+            out.write(line.toString());
+            numWritten++;
+        } catch(IOException e) {
+            error = e;
+        }
+    }
+
+    private static String fraction(Real real) {
+        return real.getNumerator() + "/" + real.getDenominator();
+    }
+
+    /**
+     * Names are written with tabs and line breaks replaced by spaces, so each result stays on one line.
+     */
+    private static String escape(String name) {
+        return name.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * @return Number of results written so far
+     */
+    public synchronized long getNumWritten() {
+        return numWritten;
+    }
+
+    /**
+     * Flush and close the file.
+     *
+     * @throws IOException Thrown on error closing the file, or the first error writing a result
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+        } catch(IOException e) {
+            if(error == null) {
+                error = e;
+            }
+        }
+
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Pair result writer to " + file;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Receives the results of similarity detection as they are produced, one pair at a time.
+ *
+ * Results passed to a sink are not otherwise retained, so a sink which keeps only what it needs of each result (for
+ * example, the two similarity percentages) bounds the memory needed to hold the results of a run. Sinks are called
+ * from one thread at a time, but not necessarily always the same thread.
+ */
+@FunctionalInterface
+public interface ResultSink {
+    /**
+     * @param result Result of comparing one pair of submissions
+     */
+    void accept(AlgorithmResults result);
+
+    /**
+     * @param next Sink to pass each result to after this one
+     * @return Sink passing each result to this sink, then to the given sink
+     */
+    default ResultSink andThen(ResultSink next) {
+        checkNotNull(next);
+
+        return (result) -> {
+            accept(result);
+            next.accept(result);
+        };
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.lldp.checksims.parse.cache.ArchiveIndex;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.data.Real;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Persistent store of the results of every compared pair, so a rerun only compares new or changed submissions.
+ *
+ * Submissions are identified by a hash of their name and preprocessed content, and results are stored for each pair of
+ * such hashes. The store also records which submissions were invalid, as submissions whose pairs are all restored are
+ * never prepared. A store belongs to one configuration of algorithm, tokenization, and preprocessors; opening it with
+ * another discards what it holds.
+ *
+ * Only results for the pairs of the current run are written back when saving, so results for submissions which have
+ * since changed or been removed are dropped.
+ */
+public final class ResultStore {
+    private static final int MAGIC = 0x43535253;
+    private static final int FORMAT_VERSION = 3;
+    private static final String INVALID_FLAG = "invalid";
+
+    private static Logger logs = LoggerFactory.getLogger(ResultStore.class);
+
+    private final Path file;
+    private final List<String> configuration;
+    private final Map<PairKey, StoredResult> stored;
+    private final Map<Long, Boolean> storedInvalid;
+    private final Map<PairKey, StoredResult> current = new HashMap<>();
+    private final Map<Long, Boolean> currentInvalid = new HashMap<>();
+    private final Map<Submission, Long> keys = new ConcurrentHashMap<>();
+
+    private ResultStore(Path file, List<String> configuration, Map<PairKey, StoredResult> stored,
+                        Map<Long, Boolean> storedInvalid) {
+        this.file = file;
+        this.configuration = configuration;
+        this.stored = stored;
+        this.storedInvalid = storedInvalid;
+    }
+
+    /**
+     * Open a store, reading the results it holds if it was written for the same configuration.
+     *
+     * A missing, unreadable, or differently configured store is treated as empty, and replaced when saved.
+     *
+     * @param file File holding the store
+     * @param configuration Algorithm, tokenization, and preprocessors the results are for
+     * @return Store of the results held by the given file
+     */
+    public static ResultStore open(Path file, List<String> configuration) {
+        checkNotNull(file);
+        checkNotNull(configuration);
+
+        Map<PairKey, StoredResult> stored = new HashMap<>();
+        Map<Long, Boolean> storedInvalid = new HashMap<>();
+
+        if(Files.exists(file)) {
+            try {
+                if(!read(file, configuration, stored, storedInvalid)) {
+                    logs.info("Results in " + file + " are for a different configuration, and will be replaced");
+                }
+            } catch(IOException e) {
+                logs.warn("Discarding unreadable results in " + file + ": " + e.getMessage());
+                stored.clear();
+                storedInvalid.clear();
+            }
+        }
+
+        return new ResultStore(file, new ArrayList<>(configuration), stored, storedInvalid);
+    }
+
+    private static boolean read(Path file, List<String> configuration, Map<PairKey, StoredResult> stored,
+                                Map<Long, Boolean> storedInvalid) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("not a result store of this version");
+            }
+
+            int configurationSize = in.readInt();
+            List<String> storedConfiguration = new ArrayList<>();
+            for(int i = 0; i < configurationSize; i++) {
+                storedConfiguration.add(in.readUTF());
+            }
+            if(!storedConfiguration.equals(configuration)) {
+                return false;
+            }
+
+            int numSubmissions = in.readInt();
+            for(int i = 0; i < numSubmissions; i++) {
+                storedInvalid.put(in.readLong(), in.readBoolean());
+            }
+
+            int numResults = in.readInt();
+            for(int i = 0; i < numResults; i++) {
+                PairKey key = new PairKey(in.readLong(), in.readLong());
+                StoredResult result = new StoredResult(new Real(in.readInt(), in.readInt()),
+                        new Real(in.readInt(), in.readInt()), in.readBoolean());
+                stored.put(key, result);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * @param submission Submission to identify
+     * @return Hash identifying the submission by its name and content, or by its stored entry if from an archive index
+     */
+    long keyOf(Submission submission) {
+        return keys.computeIfAbsent(submission, (s) -> {
+            Hasher hasher = Hashing.sha256().newHasher();
+            hasher.putInt(s.getName().length());
+            hasher.putString(s.getName(), StandardCharsets.UTF_8);
+            if(ArchiveIndex.isIndexed(s)) {
+                // Indexed submissions keep no source, so are identified by what the index stores for them instead
+                hasher.putBoolean(true);
+                ArchiveIndex.hashEntry(s, hasher);
+            } else {
+                hasher.putBoolean(false);
+                hasher.putString(s.getContentAsString(), StandardCharsets.UTF_8);
+
+                // Pairs restored from the store never need the content again, and the rest read it back when prepared
+                s.releaseContent();
+            }
+
+            return hasher.hash().asLong();
+        });
+    }
+
+    /**
+     * @param pair Pair to check
+     * @return Whether results are stored for the pair, in either order
+     */
+    public boolean contains(Pair<Submission, Submission> pair) {
+        checkNotNull(pair);
+
+        long left = keyOf(pair.getLeft());
+        long right = keyOf(pair.getRight());
+
+        return stored.containsKey(new PairKey(left, right)) || stored.containsKey(new PairKey(right, left));
+    }
+
+    /**
+     * Restore the stored results of a pair.
+     *
+     * @param pair Pair to look up
+     * @return Stored results for the pair, with the current run's submissions, or null if none are stored
+     */
+    public AlgorithmResults lookup(Pair<Submission, Submission> pair) {
+        checkNotNull(pair);
+
+        long left = keyOf(pair.getLeft());
+        long right = keyOf(pair.getRight());
+
+        PairKey key = new PairKey(left, right);
+        StoredResult result = stored.get(key);
+        boolean inverted = false;
+        if(result == null) {
+            key = new PairKey(right, left);
+            result = stored.get(key);
+            inverted = true;
+        }
+
+        if(result == null) {
+            return null;
+        }
+
+        synchronized(current) {
+            current.put(key, result);
+        }
+
+        Real matchedLeft = inverted ? result.matchedB : result.matchedA;
+        Real matchedRight = inverted ? result.matchedA : result.matchedB;
+
+        return result.invalid ? new InvalidAlgorithmResults(pair, matchedLeft, matchedRight)
+                : new AlgorithmResults(pair, matchedLeft, matchedRight);
+    }
+
+    /**
+     * Record newly detected results, and the validity of the submissions prepared to detect them.
+     *
+     * @param results Results detected in the current run
+     * @param prepared Submissions prepared in the current run
+     */
+    public void record(Collection<AlgorithmResults> results, Collection<Submission> prepared) {
+        checkNotNull(results);
+        checkNotNull(prepared);
+
+        results.forEach(this::record);
+        recordValidity(prepared);
+    }
+
+    /**
+     * Record a single newly detected result. May be called as results are produced.
+     *
+     * @param result Result detected in the current run
+     */
+    public void record(AlgorithmResults result) {
+        checkNotNull(result);
+
+        synchronized(current) {
+            current.put(new PairKey(keyOf(result.a), keyOf(result.b)),
+                    new StoredResult(result.percentMatchedA, result.percentMatchedB, !result.isValid()));
+        }
+    }
+
+    /**
+     * Record the validity of the submissions prepared in the current run.
+     *
+     * @param prepared Submissions prepared in the current run
+     */
+    public void recordValidity(Collection<Submission> prepared) {
+        checkNotNull(prepared);
+
+        synchronized(current) {
+            for(Submission submission : prepared) {
+                currentInvalid.put(keyOf(submission), submission.testFlag(INVALID_FLAG));
+            }
+        }
+    }
+
+    /**
+     * Flag submissions which were not prepared in the current run invalid, if they were when stored.
+     *
+     * @param submissions Every submission of the current run
+     */
+    public void restoreValidity(Collection<Submission> submissions) {
+        checkNotNull(submissions);
+
+        synchronized(current) {
+            for(Submission submission : submissions) {
+                long key = keyOf(submission);
+                if(currentInvalid.containsKey(key)) {
+                    continue;
+                }
+
+                boolean invalid = storedInvalid.getOrDefault(key, false);
+                if(invalid) {
+                    submission.setFlag(INVALID_FLAG);
+                }
+                currentInvalid.put(key, invalid);
+            }
+        }
+    }
+
+    /**
+     * Write the results of the current run's pairs back to the store's file.
+     *
+     * @throws IOException Thrown on error writing the file
+     */
+    public void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+
+                out.writeInt(configuration.size());
+                for(String part : configuration) {
+                    out.writeUTF(part);
+                }
+
+                synchronized(current) {
+                    out.writeInt(currentInvalid.size());
+                    for(Map.Entry<Long, Boolean> entry : currentInvalid.entrySet()) {
+                        out.writeLong(entry.getKey());
+                        out.writeBoolean(entry.getValue());
+                    }
+
+                    out.writeInt(current.size());
+                    for(Map.Entry<PairKey, StoredResult> entry : current.entrySet()) {
+                        out.writeLong(entry.getKey().a);
+                        out.writeLong(entry.getKey().b);
+                        out.writeInt(entry.getValue().matchedA.getNumerator());
+                        out.writeInt(entry.getValue().matchedA.getDenominator());
+                        out.writeInt(entry.getValue().matchedB.getNumerator());
+                        out.writeInt(entry.getValue().matchedB.getDenominator());
+                        out.writeBoolean(entry.getValue().invalid);
+                    }
+                }
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return Number of results read when the store was opened
+     */
+    public int getNumStored() {
+        return stored.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Result store " + file + " holding " + stored.size() + " results";
+    }
+
+    /**
+     * Ordered pair of submission hashes.
+     */
+    private static final class PairKey {
+        private final long a;
+        private final long b;
+
+        PairKey(long a, long b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof PairKey)) {
+                return false;
+            }
+
+            PairKey otherKey = (PairKey)other;
+
+            return otherKey.a == a && otherKey.b == b;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(a * 31 + b);
+        }
+    }
+
+    /**
+     * Similarity of both submissions of a stored pair, and whether the results were invalid.
+     */
+    private static final class StoredResult {
+        private final Real matchedA;
+        private final Real matchedB;
+        private final boolean invalid;
+
+        StoredResult(Real matchedA, Real matchedB, boolean invalid) {
+            this.matchedA = matchedA;
+            this.matchedB = matchedB;
+            this.invalid = invalid;
+        }
+    }
+}
@@ -58,6 +58,31 @@ public abstract class SimilarityDetector<T extends Percentable> implements Named
     public abstract AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, T rft, T comt)
             throws TokenTypeMismatchException, InternalAlgorithmError;
     
+    /**
+     * Estimate the relative cost of comparing two prepared submissions.
+     *
+     * Used only to schedule expensive pairs ahead of cheap ones; estimates need not be accurate, only ordered roughly
+     * as the real running times are. Defaults to the same cost for every pair.
+     *
+     * @param rft Percentable of the first submission
+     * @param comt Percentable of the second submission
+     * @return Non-negative estimate of the cost of detecting similarity between the two
+     */
+    public long estimateCost(T rft, T comt)
+    {
+        return 1;
+    }
+
+    /**
+     * Reapply any effects detection has on the compared submissions, for results restored from a previous run instead
+     * of being detected again. Defaults to doing nothing, as most detectors have no such effects.
+     *
+     * @param results Restored results, with the current run's submissions
+     */
+    public void restoreResults(AlgorithmResults results)
+    {
+    }
+
     @Override
     public String toString()
     {
@@ -27,19 +27,15 @@ import net.lldp.checksims.algorithm.SimilarityDetector;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
 import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
 import net.lldp.checksims.parse.token.SubmissionTokenizer;
-import net.lldp.checksims.parse.token.Token;
-import net.lldp.checksims.parse.token.TokenList;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenType;
 import net.lldp.checksims.parse.token.TokenTypeMismatchException;
 import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
 import net.lldp.checksims.submission.Submission;
 
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.*;
+import java.util.Arrays;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -49,24 +45,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public final class LineSimilarityChecker extends SimilarityDetector<PercentableTokenListDecorator> { // TODO LINE
     private static LineSimilarityChecker instance;
 
-    /**
-     * Internal class for record-keeping - used to record a line at a specific location in a submission.
-     */
-    class SubmissionLine {
-        public final int lineNum;
-        public final Submission submission;
-
-        SubmissionLine(int lineNum, Submission submission) {
-            this.lineNum = lineNum;
-            this.submission = submission;
-        }
-
-        @Override
-        public String toString() {
-            return "Line " + lineNum + " from submission with name " + submission.getName();
-        }
-    }
-
     private LineSimilarityChecker() {}
 
     // Singleton
@@ -88,14 +66,28 @@ public final class LineSimilarityChecker extends SimilarityDetector<PercentableT
         return new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.LINE));
     }
 
+    /**
+     * Line comparison sorts and merges both submissions, so it is roughly linear in their combined size.
+     *
+     * @param a First submission's lines
+     * @param b Second submission's lines
+     * @return Combined number of lines in both submissions
+     */
+    @Override
+    public long estimateCost(PercentableTokenListDecorator a, PercentableTokenListDecorator b) {
+        return (long)a.size() + b.size();
+    }
+
     /**
      * Detect similarities using line similarity comparator.
      *
+     * Every line of each submission which also appears anywhere in the other submission is marked as matched.
+     *
      * @param a First submission to check
      * @param b Second submission to check
      * @return Results of the similarity detection
      * @throws TokenTypeMismatchException Thrown comparing two submissions with different token types
-     * @throws InternalAlgorithmError Thrown on error obtaining a hash algorithm instance
+     * @throws InternalAlgorithmError Thrown on internal error
      */
     @Override
     public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab,
@@ -105,117 +97,56 @@ public final class LineSimilarityChecker extends SimilarityDetector<PercentableT
         checkNotNull(a);
         checkNotNull(b);
 
-        //TokenList linesA = a.getContentAsTokens();
-        //TokenList linesB = b.getContentAsTokens();
-        //TokenList finalA = TokenList.cloneTokenList(linesA);
-        //TokenList finalB = TokenList.cloneTokenList(linesB);
-
-        /*
-        if(!a.getTokenType().equals(b.getTokenType())) {
-            throw new TokenTypeMismatchException("Token list type mismatch: submission " + a.getName() + " has type " +
-                    linesA.type.toString() + ", while submission " + b.getName() + " has type "
-                    + linesB.type.toString());
-        } else
-            */
-        
+        // The given token arrays are shared by every pair their submissions appear in - work on copies
+        TokenArray linesA = a.getTokenArray().copy();
+        TokenArray linesB = b.getTokenArray().copy();
+
         if(a.equals(b)) {
-            a.getDataCopy().stream().forEach((token) -> token.setValid(false));
-            b.getDataCopy().stream().forEach((token) -> token.setValid(false));
-            return new AlgorithmResults(ab, a, b);
+            linesA.invalidateAll();
+            linesB.invalidateAll();
+            return new AlgorithmResults(ab, new PercentableTokenListDecorator(linesA),
+                    new PercentableTokenListDecorator(linesB));
         }
 
-        MessageDigest hasher;
+        // Identical lines share a lexeme, so comparing lexemes is equivalent to comparing line contents
+        int[] sortedA = sortedLexemes(linesA);
+        int[] sortedB = sortedLexemes(linesB);
 
-        // Get a hashing instance
-        try {
-            hasher = MessageDigest.getInstance("SHA-512");
-        } catch (NoSuchAlgorithmException e) {
-            throw new InternalAlgorithmError("Error instantiating SHA-512 hash algorithm: " + e.getMessage());
-        }
+        // Set lines present in both submissions invalid
+        invalidateLinesIn(linesA, sortedB);
+        invalidateLinesIn(linesB, sortedA);
 
-        // Create a line database map
-        // Per-method basis to ensure we have no mutable state in the class
-        Map<String, List<SubmissionLine>> lineDatabase = new HashMap<>();
-
-        // Hash all lines in A, and put them in the lines database
-        addLinesToMap(a.getDataCopy(), lineDatabase, ab.getLeft(), hasher);
-
-        // Hash all lines in B, and put them in the lines database
-        addLinesToMap(b.getDataCopy(), lineDatabase, ab.getRight(), hasher);
-
-        // Number of matched lines contained in both
-        //int identicalLinesA = 0;
-        //int identicalLinesB = 0;
-
-        // Check all the keys
-        for(String key : lineDatabase.keySet()) {
-
-            // If more than 1 line has the hash...
-            if(lineDatabase.get(key).size() != 1) {
-                int numLinesA = 0;
-                int numLinesB = 0;
-
-                // Count the number of that line in each submission
-                for(SubmissionLine s : lineDatabase.get(key)) {
-                    if(s.submission.equals(ab.getLeft())) {
-                        numLinesA++;
-                    } else if(s.submission.equals(ab.getRight())) {
-                        numLinesB++;
-                    } else {
-                        throw new RuntimeException("Unreachable code!");
-                    }
-                }
-
-                if(numLinesA == 0 || numLinesB == 0) {
-                    // Only one of the submissions includes the line - no plagiarism here
-                    continue;
-                }
-
-                // Set matches invalid
-                for(SubmissionLine s : lineDatabase.get(key)) {
-                    if(s.submission.equals(ab.getLeft())) {
-                        a.getDataCopy().get(s.lineNum).setValid(false);
-                    } else if(s.submission.equals(ab.getRight())) {
-                        b.getDataCopy().get(s.lineNum).setValid(false);
-                    } else {
-                        throw new RuntimeException("Unreachable code!");
-                    }
-                }
-
-                //identicalLinesA += numLinesA;
-                //identicalLinesB += numLinesB;
-            }
-        }
+        return new AlgorithmResults(ab, new PercentableTokenListDecorator(linesA),
+                new PercentableTokenListDecorator(linesB));
+    }
 
-        //int invalTokensA = (int)a.getDataCopy().stream().filter((token) -> !token.isValid()).count();
-        //int invalTokensB = (int)b.getDataCopy().stream().filter((token) -> !token.isValid()).count();
+    /**
+     * @param lines Lines to get lexemes of
+     * @return Sorted array of the lexemes of every line
+     */
+    static int[] sortedLexemes(TokenArray lines) {
+        int[] lexemes = new int[lines.size()];
 
-        /*
-        if(invalTokensA != identicalLinesA) {
-            throw new InternalAlgorithmError("Internal error: number of identical tokens (" + identicalLinesA
-                    + ") does not match number of invalid tokens (" + invalTokensA + ")");
-        } else if(invalTokensB != identicalLinesB) {
-            throw new InternalAlgorithmError("Internal error: number of identical tokens (" + identicalLinesB
-                    + ") does not match number of invalid tokens (" + invalTokensB + ")");
+        for(int i = 0; i < lexemes.length; i++) {
+            lexemes[i] = lines.getLexeme(i);
         }
-        */
 
-        return new AlgorithmResults(ab, a, b);
+        Arrays.sort(lexemes);
+
+        return lexemes;
     }
 
-    void addLinesToMap(TokenList lines, Map<String, List<SubmissionLine>> lineDatabase, Submission submitter,
-                       MessageDigest hasher) {
+    /**
+     * Mark every line whose lexeme appears in the given sorted array as invalid.
+     *
+     * @param lines Lines to invalidate
+     * @param sortedOther Sorted lexemes of the submission being compared against
+     */
+    static void invalidateLinesIn(TokenArray lines, int[] sortedOther) {
         for(int i = 0; i < lines.size(); i++) {
-            Token token = lines.get(i);
-
-            String hash = Hex.encodeHexString(hasher.digest(token.getTokenAsString().getBytes()));
-
-            if(lineDatabase.get(hash) == null) {
-                lineDatabase.put(hash, new ArrayList<>());
+            if(Arrays.binarySearch(sortedOther, lines.getLexeme(i)) >= 0) {
+                lines.setValid(i, false);
             }
-
-            SubmissionLine line = new SubmissionLine(i, submitter);
-            lineDatabase.get(hash).add(line);
         }
     }
 
@@ -0,0 +1,147 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.prefilter;
+
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.util.data.Real;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * MinHash sketch of the token shingles of a single submission.
+ *
+ * Holds the minimum hash of the submission's shingles under each of a fixed number of hash functions, plus the number
+ * of distinct shingles. The fraction of equal minimums in two sketches estimates the Jaccard similarity of their
+ * shingle sets. Instances are immutable.
+ */
+public final class MinHashSketch implements Percentable {
+    private final int[] minimums;
+    private final int numShingles;
+
+    /**
+     * Create a sketch.
+     *
+     * @param minimums Minimum hash under each hash function. Not copied - must not be modified after construction.
+     * @param numShingles Number of distinct shingles sketched
+     */
+    MinHashSketch(int[] minimums, int numShingles) {
+        checkNotNull(minimums);
+        checkArgument(numShingles >= 0, "Number of shingles cannot be negative!");
+
+        this.minimums = minimums;
+        this.numShingles = numShingles;
+    }
+
+    /**
+     * @return Number of distinct shingles sketched
+     */
+    public int getNumShingles() {
+        return numShingles;
+    }
+
+    /**
+     * @return Number of hash functions in this sketch
+     */
+    public int size() {
+        return minimums.length;
+    }
+
+    /**
+     * @param other Sketch to compare against. Must use the same hash functions.
+     * @return Number of hash functions under which both sketches have the same minimum
+     */
+    public int countEqualMinimums(MinHashSketch other) {
+        checkNotNull(other);
+        checkArgument(other.minimums.length == minimums.length, "Cannot compare sketches of differing sizes!");
+
+        int equal = 0;
+        for(int i = 0; i < minimums.length; i++) {
+            if(minimums[i] == other.minimums[i]) {
+                equal++;
+            }
+        }
+
+        return equal;
+    }
+
+    /**
+     * Estimate the fraction of this submission's shingles which also appear in another submission.
+     *
+     * Derived from the estimated Jaccard similarity J and both shingle counts, as |A ∩ B| = J(|A| + |B|) / (1 + J).
+     *
+     * @param other Sketch of the submission to compare against
+     * @return Estimated fraction of this submission contained in the other
+     */
+    public Real estimateContainmentIn(MinHashSketch other) {
+        checkNotNull(other);
+
+        if(numShingles == 0 || other.numShingles == 0) {
+            return Real.ZERO;
+        }
+
+        long equal = countEqualMinimums(other);
+
+        long numerator = equal * (numShingles + other.numShingles);
+        long denominator = (minimums.length + equal) * numShingles;
+
+        if(numerator >= denominator) {
+            return Real.ONE;
+        }
+
+        return new Real(numerator, denominator);
+    }
+
+    /**
+     * A sketch on its own has not been compared against anything.
+     *
+     * @return Zero
+     */
+    @Override
+    public Real getPercentageMatched() {
+        return Real.ZERO;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof MinHashSketch)) {
+            return false;
+        }
+
+        MinHashSketch otherSketch = (MinHashSketch)other;
+
+        return otherSketch.numShingles == numShingles && Arrays.equals(otherSketch.minimums, minimums);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(minimums);
+    }
+
+    @Override
+    public String toString() {
+        return "MinHash sketch of " + numShingles + " shingles";
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.prefilter;
+
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.token.TokenArray;
+import net.lldp.checksims.parse.token.TokenType;
+import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
+import net.lldp.checksims.submission.Submission;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Builds MinHash sketches over the shingles of consecutive whitespace tokens of a submission.
+ *
+ * Sketching is independent of the similarity detector in use, so any detector may be prefiltered.
+ */
+public final class MinHashSketcher implements SubmissionPercentableCalculator<MinHashSketch> {
+    /**
+     * Number of consecutive tokens in each shingle.
+     */
+    public static final int DEFAULT_SHINGLE_SIZE = 3;
+
+    /**
+     * Number of hash functions in each sketch.
+     */
+    public static final int DEFAULT_NUM_HASHES = 64;
+
+    private static final int SEED_STEP = 0x9e3779b9;
+
+    private final int shingleSize;
+    private final int numHashes;
+    private final Tokenizer tokenizer;
+
+    /**
+     * Create a sketcher with the default shingle size and number of hashes.
+     */
+    public MinHashSketcher() {
+        this(DEFAULT_SHINGLE_SIZE, DEFAULT_NUM_HASHES);
+    }
+
+    /**
+     * Create a sketcher.
+     *
+     * @param shingleSize Number of consecutive tokens in each shingle
+     * @param numHashes Number of hash functions in each sketch
+     */
+    public MinHashSketcher(int shingleSize, int numHashes) {
+        checkArgument(shingleSize > 0, "Shingle size must be positive, got " + shingleSize);
+        checkArgument(numHashes > 0, "Number of hashes must be positive, got " + numHashes);
+
+        this.shingleSize = shingleSize;
+        this.numHashes = numHashes;
+        this.tokenizer = Tokenizer.getTokenizer(TokenType.WHITESPACE);
+    }
+
+    @Override
+    public MinHashSketch generateFromSubmission(Submission s) {
+        checkNotNull(s);
+
+        return sketch(tokenizer.tokenize(s.getContentAsString()));
+    }
+
+    /**
+     * @param tokens Tokens to sketch
+     * @return MinHash sketch of the shingles of the given tokens
+     */
+    MinHashSketch sketch(TokenArray tokens) {
+        checkNotNull(tokens);
+
+        int[] shingles = hashShingles(tokens);
+        int[] minimums = new int[numHashes];
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+
+        for(int shingle : shingles) {
+            int seed = 0;
+            for(int i = 0; i < numHashes; i++) {
+                seed += SEED_STEP;
+
+                int hash = mix(shingle ^ seed);
+                if(hash < minimums[i]) {
+                    minimums[i] = hash;
+                }
+            }
+        }
+
+        return new MinHashSketch(minimums, shingles.length);
+    }
+
+    /**
+     * @param tokens Tokens to shingle
+     * @return Distinct hashes of every shingle of the given tokens. A submission shorter than one shingle forms one.
+     */
+    private int[] hashShingles(TokenArray tokens) {
+        if(tokens.size() == 0) {
+            return new int[0];
+        }
+
+        int count = Math.max(1, tokens.size() - shingleSize + 1);
+        int[] hashes = new int[count];
+
+        for(int start = 0; start < count; start++) {
+            int hash = 1;
+            for(int i = start; i < Math.min(start + shingleSize, tokens.size()); i++) {
+                hash = hash * 31 + tokens.getLexeme(i);
+            }
+            hashes[start] = mix(hash);
+        }
+
+        return Arrays.stream(hashes).sorted().distinct().toArray();
+    }
+
+    /**
+     * @param hash Hash to mix
+     * @return Hash with its bits spread, approximating an independent random permutation per seed
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+
+        return hash;
+    }
+
+    @Override
+    public Class<MinHashSketch> getTypeClass() {
+        return MinHashSketch.class;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof MinHashSketcher)) {
+            return false;
+        }
+
+        MinHashSketcher otherSketcher = (MinHashSketcher)other;
+
+        return otherSketcher.shingleSize == shingleSize && otherSketcher.numHashes == numHashes;
+    }
+
+    @Override
+    public int hashCode() {
+        return shingleSize * 31 + numHashes;
+    }
+
+    @Override
+    public String toString() {
+        return "MinHash sketcher with shingles of " + shingleSize + " tokens and " + numHashes + " hashes";
+    }
+}
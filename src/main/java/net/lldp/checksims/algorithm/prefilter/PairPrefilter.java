@@ -0,0 +1,126 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.prefilter;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.algorithm.ResultSink;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.data.Real;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.ParallelAlgorithm;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cheap first phase of a two-phase similarity detection.
+ *
+ * Every pair is scored from MinHash sketches of its submissions. Pairs whose estimated similarity, in either direction,
+ * reaches the cutoff are kept for the full similarity detector; all others have their estimate passed straight to the
+ * result sink as their result.
+ * Estimates do not contribute to submission copy scores.
+ */
+public final class PairPrefilter {
+    private PairPrefilter() {}
+
+    /**
+     * Sketch every given submission in parallel.
+     *
+     * @param submissions Submissions to sketch
+     * @param context Execution context of the current run
+     * @param logger Status logger to report progress to
+     * @return Sketch of every given submission
+     * @throws ChecksimsException Thrown on error sketching a submission
+     */
+    public static PreparedSubmissions<MinHashSketch> sketchSubmissions(Set<Submission> submissions,
+                                                                       ExecutionContext context,
+                                                                       StatusLogger logger)
+            throws ChecksimsException {
+        checkNotNull(submissions);
+
+        return ParallelAlgorithm.parallelSubmissionPreparation(context, new MinHashSketcher(), submissions, logger);
+    }
+
+    /**
+     * Split pairs into those requiring full similarity detection, and those which can be estimated.
+     *
+     * Estimated results are passed to the sink as they are computed, so only the kept pairs are retained.
+     *
+     * @param pairs Pairs to filter
+     * @param sketches Sketches of every submission present in the pairs
+     * @param cutoff Minimum estimated similarity, in either direction, for a pair to be kept. From 0.0 to 1.0.
+     * @param sink Sink to receive the estimated result of every pruned pair
+     * @return Kept pairs, and the number of pairs pruned
+     * @throws InternalAlgorithmError Thrown if a submission was not sketched
+     */
+    public static PrefilterResults filter(Collection<Pair<Submission, Submission>> pairs,
+                                          PreparedSubmissions<MinHashSketch> sketches, double cutoff,
+                                          ResultSink sink)
+            throws InternalAlgorithmError {
+        checkNotNull(pairs);
+        checkNotNull(sketches);
+        checkNotNull(sink);
+        checkArgument(cutoff >= 0.0 && cutoff <= 1.0, "Prefilter cutoff must be between 0 and 1, got %s", cutoff);
+
+        Set<Pair<Submission, Submission>> kept = new HashSet<>();
+        int numPruned = 0;
+
+        for(Pair<Submission, Submission> pair : pairs) {
+            MinHashSketch a = getSketch(sketches, pair.getLeft());
+            MinHashSketch b = getSketch(sketches, pair.getRight());
+
+            Real aInB = a.estimateContainmentIn(b);
+            Real bInA = b.estimateContainmentIn(a);
+
+            if(Math.max(aInB.asDouble(), bInA.asDouble()) >= cutoff) {
+                kept.add(pair);
+            } else {
+                sink.accept(new AlgorithmResults(pair, aInB, bInA));
+                numPruned++;
+            }
+        }
+
+        return new PrefilterResults(kept, numPruned);
+    }
+
+    private static MinHashSketch getSketch(PreparedSubmissions<MinHashSketch> sketches, Submission submission)
+            throws InternalAlgorithmError {
+        MinHashSketch sketch = sketches.get(submission);
+
+        if(sketch == null) {
+            throw new InternalAlgorithmError("Submission " + submission.getName() + " was not sketched!");
+        }
+
+        return sketch;
+    }
+}
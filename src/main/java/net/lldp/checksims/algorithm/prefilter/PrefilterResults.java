@@ -0,0 +1,73 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.prefilter;
+
+import net.lldp.checksims.submission.Submission;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Outcome of prefiltering a set of pairs: the pairs still requiring full similarity detection, and how many were
+ * pruned. Estimated results for pruned pairs go straight to the result sink and are not held here.
+ */
+public final class PrefilterResults {
+    private final Set<Pair<Submission, Submission>> keptPairs;
+    private final int numPruned;
+
+    /**
+     * @param keptPairs Pairs scoring at or above the cutoff
+     * @param numPruned Number of pairs below the cutoff
+     */
+    public PrefilterResults(Set<Pair<Submission, Submission>> keptPairs, int numPruned) {
+        checkNotNull(keptPairs);
+        checkArgument(numPruned >= 0, "Number of pruned pairs must be nonnegative, got %s", numPruned);
+
+        this.keptPairs = Collections.unmodifiableSet(keptPairs);
+        this.numPruned = numPruned;
+    }
+
+    /**
+     * @return Pairs which must still be run through the similarity detector
+     */
+    public Set<Pair<Submission, Submission>> getKeptPairs() {
+        return keptPairs;
+    }
+
+    /**
+     * @return Number of pairs pruned
+     */
+    public int getNumPruned() {
+        return numPruned;
+    }
+
+    @Override
+    public String toString() {
+        return "Prefilter results keeping " + keptPairs.size() + " pairs and pruning " + numPruned;
+    }
+}
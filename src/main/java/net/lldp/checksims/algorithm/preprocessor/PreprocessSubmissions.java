@@ -24,6 +24,7 @@ package net.lldp.checksims.algorithm.preprocessor;
 import net.lldp.checksims.ChecksimsException;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
 import net.lldp.checksims.util.threading.ParallelAlgorithm;
 
 import org.slf4j.Logger;
@@ -46,9 +47,11 @@ public final class PreprocessSubmissions {
      *
      * @param preprocessor Preprocessor to apply. SHOULD NOT MUTATE THE EXISTING TOKENS
      * @param submissions Input list of submissions to apply to
+     * @param context Execution context of the current run
      * @return New list formed by applying the mapping function to each submission. Retains order of input list.
      */
-    public static Set<Submission> process(SubmissionPreprocessor preprocessor, Set<Submission> submissions, StatusLogger logger)
+    public static Set<Submission> process(SubmissionPreprocessor preprocessor, Set<Submission> submissions,
+                                          ExecutionContext context, StatusLogger logger)
             throws ChecksimsException {
         checkNotNull(preprocessor);
         checkNotNull(submissions);
@@ -57,6 +60,6 @@ public final class PreprocessSubmissions {
 
         logs.info("Preprocessing " + submissions.size() + " submissions with preprocessor " + preprocessor.getName());
 
-        return ParallelAlgorithm.parallelSubmissionPreprocessing(preprocessor, submissions, logger);
+        return ParallelAlgorithm.parallelSubmissionPreprocessing(context, preprocessor, submissions, logger);
     }
 }
@@ -0,0 +1,231 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.similaritymatrix;
+
+import com.google.common.collect.ImmutableList;
+
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.ResultSink;
+import net.lldp.checksims.submission.Submission;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compact store of the two similarity percentages of every compared pair, as primitive floats.
+ *
+ * Only the percentages are kept, never the Percentables they were computed from, so a run over thousands of
+ * submissions needs eight bytes per pair instead of full copies of both submissions' tokens or trees. Submissions
+ * compared with each other are stored as a packed triangle; each archive submission has one row of pairs with the
+ * submissions it is compared to. Archive submissions are never compared with each other, so no space is reserved for
+ * those pairs.
+ *
+ * Scores are held in chunks, on the Java heap for small runs, and off it in direct buffers once they would take more
+ * than {@link #DIRECT_THRESHOLD} bytes. As a {@link ResultSink}, results are recorded as they are produced.
+ */
+public final class PairScores implements ResultSink {
+    /**
+     * Scores taking more than this many bytes are held outside the Java heap.
+     */
+    public static final long DIRECT_THRESHOLD = 128L * 1024 * 1024;
+
+    private static final int CHUNK_BITS = 26;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final ImmutableList<Submission> submissions;
+    private final Map<Submission, Integer> ids;
+    private final int numInputs;
+    private final int numArchives;
+    private final FloatBuffer[] chunks;
+    private final boolean direct;
+
+    /**
+     * Create an empty store for the given submissions. No score is known until it is recorded.
+     *
+     * @param inputs Submissions compared with each other
+     * @param archives Archive submissions, compared only with the input submissions
+     */
+    public PairScores(Collection<Submission> inputs, Collection<Submission> archives) {
+        this(inputs, archives, DIRECT_THRESHOLD);
+    }
+
+    /**
+     * @param inputs Submissions compared with each other
+     * @param archives Archive submissions, compared only with the input submissions
+     * @param directThreshold Size in bytes above which scores are held outside the heap
+     */
+    PairScores(Collection<Submission> inputs, Collection<Submission> archives, long directThreshold) {
+        checkNotNull(inputs);
+        checkNotNull(archives);
+
+        this.submissions = ImmutableList.<Submission>builder().addAll(inputs).addAll(archives).build();
+        this.numInputs = inputs.size();
+        this.numArchives = archives.size();
+
+        this.ids = new HashMap<>();
+        for(int i = 0; i < submissions.size(); i++) {
+            checkArgument(ids.put(submissions.get(i), i) == null, "Submission " + submissions.get(i).getName()
+                    + " given more than once!");
+        }
+
+        long numFloats = 2 * ((long)numInputs * (numInputs - 1) / 2 + (long)numInputs * numArchives);
+        this.direct = numFloats * Float.BYTES > directThreshold;
+
+        int numChunks = (int)((numFloats + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        this.chunks = new FloatBuffer[numChunks];
+        for(int i = 0; i < numChunks; i++) {
+            int size = (int)Math.min(CHUNK_SIZE, numFloats - ((long)i << CHUNK_BITS));
+
+            // Unrecorded scores are NaN, so missing results can be detected
+            if(direct) {
+                chunks[i] = ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+                for(int j = 0; j < size; j++) {
+                    chunks[i].put(j, Float.NaN);
+                }
+            } else {
+                float[] chunk = new float[size];
+                Arrays.fill(chunk, Float.NaN);
+                chunks[i] = FloatBuffer.wrap(chunk);
+            }
+        }
+    }
+
+    /**
+     * @return Every submission in this store: the input submissions, then the archive submissions
+     */
+    public ImmutableList<Submission> getSubmissions() {
+        return submissions;
+    }
+
+    /**
+     * @param submission Submission to look up
+     * @return Identifier of the submission within this store, or -1 if it is not present
+     */
+    public int idOf(Submission submission) {
+        checkNotNull(submission);
+
+        Integer id = ids.get(submission);
+
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Record the percentages of a comparison.
+     *
+     * @param result Result of comparing two submissions present in this store
+     */
+    @Override
+    public void accept(AlgorithmResults result) {
+        checkNotNull(result);
+
+        int a = idOf(result.a);
+        int b = idOf(result.b);
+        checkArgument(a != -1 && b != -1, "Results for %s and %s contain a submission not in this store!",
+                result.a.getName(), result.b.getName());
+        checkArgument(a != b, "Cannot record comparison of a submission with itself!");
+
+        long slot = slotOf(a, b) * 2;
+        float aScore = (float)result.percentMatchedA.asDouble();
+        float bScore = (float)result.percentMatchedB.asDouble();
+
+        put(a < b ? slot : slot + 1, aScore);
+        put(a < b ? slot + 1 : slot, bScore);
+    }
+
+    /**
+     * @param x Identifier of a submission
+     * @param y Identifier of a submission
+     * @return Fraction of submission x matched in submission y, NaN if not recorded. 1 if x and y are the same.
+     */
+    public float get(int x, int y) {
+        checkArgument(x >= 0 && x < submissions.size(), "Identifier %s out of bounds", x);
+        checkArgument(y >= 0 && y < submissions.size(), "Identifier %s out of bounds", y);
+
+        if(x == y) {
+            return 1.0f;
+        }
+
+        long slot = slotOf(x, y) * 2;
+
+        return get(x < y ? slot : slot + 1);
+    }
+
+    /**
+     * @return Whether scores are held outside the Java heap
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return Number of bytes used to hold scores
+     */
+    public long getSizeInBytes() {
+        long floats = 0;
+        for(FloatBuffer chunk : chunks) {
+            floats += chunk.capacity();
+        }
+
+        return floats * Float.BYTES;
+    }
+
+    /**
+     * Index of the pair of the given submissions. Pairs of input submissions are packed in a triangle, followed by a
+     * row of pairs for each input submission with every archive submission.
+     */
+    private long slotOf(int x, int y) {
+        int low = Math.min(x, y);
+        int high = Math.max(x, y);
+
+        if(high < numInputs) {
+            return (long)low * (2L * numInputs - low - 1) / 2 + (high - low - 1);
+        }
+
+        checkArgument(low < numInputs, "Archive submissions are not compared with each other!");
+
+        return (long)numInputs * (numInputs - 1) / 2 + (long)low * numArchives + (high - numInputs);
+    }
+
+    private float get(long index) {
+        return chunks[(int)(index >>> CHUNK_BITS)].get((int)(index & (CHUNK_SIZE - 1)));
+    }
+
+    private void put(long index, float value) {
+        chunks[(int)(index >>> CHUNK_BITS)].put((int)(index & (CHUNK_SIZE - 1)), value);
+    }
+
+    @Override
+    public String toString() {
+        return "Scores for " + numInputs + " submissions and " + numArchives + " archive submissions ("
+                + getSizeInBytes() + " bytes" + (direct ? ", off-heap" : "") + ")";
+    }
+}
@@ -41,10 +41,23 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * A Similarity Matrix represents the similarities between a given group of submissions.
  *
+ * A matrix is either built from the full results of every comparison, or, in compact mode, from only their
+ * percentages, held as primitive floats in a {@link PairScores}. Compact matrices create the results they return on
+ * demand, holding their percentages as Reals to four decimal places, and without the Percentables they were computed
+ * from.
+ *
  * TODO consider offering Iterators for the entire similarity matrix, and for individual submissions on the X axis
  */
 public final class SimilarityMatrix {
+    /**
+     * Denominator of the Reals created from the scores of a compact matrix.
+     */
+    private static final int COMPACT_SCALE = 10000;
+
     private final AlgorithmResults[][] entries;
+    private final PairScores scores;
+    private final int[] xIds;
+    private final int[] yIds;
     private final ImmutableList<Submission> xSubmissions;
     private final ImmutableList<Submission> ySubmissions;
     private final ImmutableSet<AlgorithmResults> builtFrom;
@@ -80,11 +93,46 @@ public final class SimilarityMatrix {
                 "Must provide Algorithm Results used to build similarity matrix - instead got empty set!");
 
         this.entries = entries;
+        this.scores = null;
+        this.xIds = null;
+        this.yIds = null;
         this.xSubmissions = ImmutableList.copyOf(xSubmissions);
         this.ySubmissions = ImmutableList.copyOf(ySubmissions);
         this.builtFrom = ImmutableSet.copyOf(builtFrom);
     }
 
+    /**
+     * Create a compact Similarity Matrix. Internal constructor used by factory methods.
+     *
+     * @param scores       Scores of every pair of submissions in the matrix
+     * @param xSubmissions Submissions on the X axis
+     * @param ySubmissions Submissions on the Y axis
+     * @param xIds         Identifier within the scores of each submission on the X axis
+     * @param yIds         Identifier within the scores of each submission on the Y axis
+     */
+    private SimilarityMatrix(PairScores scores, List<Submission> xSubmissions, List<Submission> ySubmissions,
+            int[] xIds, int[] yIds) {
+        checkArgument(!xSubmissions.isEmpty(),
+                "Cannot make similarity matrix with empty list of submissions to be compared!");
+        checkArgument(!ySubmissions.isEmpty(),
+                "Cannot make similarity matrix with empty list of submissions to compare to!");
+
+        this.entries = null;
+        this.scores = scores;
+        this.xIds = xIds;
+        this.yIds = yIds;
+        this.xSubmissions = ImmutableList.copyOf(xSubmissions);
+        this.ySubmissions = ImmutableList.copyOf(ySubmissions);
+        this.builtFrom = null;
+    }
+
+    /**
+     * @return Whether this matrix holds only the percentages of each comparison, rather than their full results
+     */
+    public boolean isCompact() {
+        return scores != null;
+    }
+
     /**
      * @param index Index of submission to retrieve
      * @return Submission for the given row in the array
@@ -131,26 +179,132 @@ public final class SimilarityMatrix {
     }
 
     /**
-     * @return Get the Algorithm Results that were used to build this similarity matrix
+     * Get the Algorithm Results that were used to build this similarity matrix.
+     *
+     * A compact matrix creates a result for every pair on each call, so this should be avoided for large compact
+     * matrices; {@link #getResultsAtLeast(double)} creates only those which are needed.
+     *
+     * @return Results of every comparison in this matrix
      */
     public ImmutableSet<AlgorithmResults> getBaseResults() {
-        return builtFrom;
+        if(!isCompact()) {
+            return builtFrom;
+        }
+
+        ImmutableSet.Builder<AlgorithmResults> results = ImmutableSet.builder();
+        forEachPair((x, y) -> results.add(compactResults(xSubmissions.get(x), ySubmissions.get(y))));
+
+        return results.build();
     }
 
     /**
-     * Get similarities for one submission compared to another.
+     * Get the results of every comparison in which either submission is at least the given fraction matched.
+     *
+     * @param threshold Minimum fraction matched, from 0.0 to 1.0
+     * @return Results of every comparison reaching the threshold in either direction
+     */
+    public Set<AlgorithmResults> getResultsAtLeast(double threshold) {
+        Set<AlgorithmResults> results = new HashSet<>();
+
+        if(!isCompact()) {
+            builtFrom.stream()
+                    .filter((result) -> result.percentMatchedA().gtEQ(threshold)
+                            || result.percentMatchedB().gtEQ(threshold))
+                    .forEach(results::add);
+            return results;
+        }
+
+        // Compare as floats, as the scores were stored, so a percentage exactly at the threshold still reaches it
+        float floatThreshold = (float)threshold;
+        forEachPair((x, y) -> {
+            if(scores.get(xIds[x], yIds[y]) >= floatThreshold || scores.get(yIds[y], xIds[x]) >= floatThreshold) {
+                results.add(compactResults(xSubmissions.get(x), ySubmissions.get(y)));
+            }
+        });
+
+        return results;
+    }
+
+    /**
+     * Visit each distinct pair of different submissions in the matrix once. Submissions on the Y axis which are also on
+     * the X axis are at the same index on both.
+     */
+    private void forEachPair(PairVisitor visitor) {
+        for(int x = 0; x < xSubmissions.size(); x++) {
+            for(int y = 0; y < ySubmissions.size(); y++) {
+                if(y >= xSubmissions.size() || y > x) {
+                    visitor.visit(x, y);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface PairVisitor {
+        void visit(int x, int y);
+    }
+
+    /**
+     * Get the fraction of one submission matched in another.
+     *
+     * Unlike {@link #getEntryFor(int, int)}, no results are created for compact matrices.
      *
      * @param xIndex Index into similarity matrix on the X axis
      * @param yIndex Index into similarity matrix on the Y axis
-     * @return Matrix Entry for given X and Y index
+     * @return Fraction of the X submission matched in the Y submission, from 0.0 to 1.0
      */
-    public AlgorithmResults getEntryFor(int xIndex, int yIndex) {
+    public double getSimilarity(int xIndex, int yIndex) {
+        checkBounds(xIndex, yIndex);
+
+        if(isCompact()) {
+            // Round away the error of widening the float, so a stored 0.9 is exactly 0.9 as a double
+            return Math.round(scores.get(xIds[xIndex], yIds[yIndex]) * 1e7) / 1e7;
+        }
+
+        return entries[xIndex][yIndex].getSimilarityPercent();
+    }
+
+    /**
+     * Create results for a pair of a compact matrix, in the orientation of the given submissions.
+     */
+    private AlgorithmResults compactResults(Submission a, Submission b) {
+        if(a.equals(b)) {
+            return new AlgorithmResults(Pair.of(a, b), Real.ONE, Real.ONE);
+        }
+
+        int aId = scores.idOf(a);
+        int bId = scores.idOf(b);
+
+        return new AlgorithmResults(a, b, toReal(scores.get(aId, bId)), toReal(scores.get(bId, aId)));
+    }
+
+    private static Real toReal(float score) {
+        return new Real(Math.round(score * COMPACT_SCALE), COMPACT_SCALE);
+    }
+
+    private void checkBounds(int xIndex, int yIndex) {
         checkArgument(xIndex >= 0, "X index must be greater than 0!");
         checkArgument(xIndex < xSubmissions.size(), "X index must be less than X submissions size ("
                 + xSubmissions.size() + ")!");
         checkArgument(yIndex >= 0, "Y index must be greater than 0!");
         checkArgument(yIndex < ySubmissions.size(), "Y index must be less than Y submissions size ("
                 + ySubmissions.size() + ")!");
+    }
+
+    /**
+     * Get similarities for one submission compared to another.
+     *
+     * @param xIndex Index into similarity matrix on the X axis
+     * @param yIndex Index into similarity matrix on the Y axis
+     * @return Matrix Entry for given X and Y index
+     */
+    public AlgorithmResults getEntryFor(int xIndex, int yIndex) {
+        checkBounds(xIndex, yIndex);
+
+        if(isCompact()) {
+            // Entries are oriented with the Y submission first, as in full matrices
+            return compactResults(ySubmissions.get(yIndex), xSubmissions.get(xIndex));
+        }
 
         return entries[xIndex][yIndex];
     }
@@ -178,7 +332,7 @@ public final class SimilarityMatrix {
         int xIndex = xSubmissions.indexOf(xSubmission);
         int yIndex = ySubmissions.indexOf(ySubmission);
 
-        return entries[xIndex][yIndex];
+        return getEntryFor(xIndex, yIndex);
     }
 
     @Override
@@ -188,6 +342,10 @@ public final class SimilarityMatrix {
 
     @Override
     public int hashCode() {
+        if(isCompact()) {
+            return xSubmissions.hashCode() ^ ySubmissions.hashCode();
+        }
+
         return builtFrom.stream().mapToInt(AlgorithmResults::hashCode).sum();
     }
 
@@ -199,10 +357,35 @@ public final class SimilarityMatrix {
 
         SimilarityMatrix otherMatrix = (SimilarityMatrix) other;
 
+        if(isCompact() || otherMatrix.isCompact()) {
+            if(!otherMatrix.xSubmissions.equals(xSubmissions) || !otherMatrix.ySubmissions.equals(ySubmissions)) {
+                return false;
+            }
+
+            for(int x = 0; x < xSubmissions.size(); x++) {
+                for(int y = 0; y < ySubmissions.size(); y++) {
+                    if(Float.compare((float)otherMatrix.getSimilarity(x, y), (float)getSimilarity(x, y)) != 0) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
         return otherMatrix.builtFrom.equals(builtFrom) && otherMatrix.xSubmissions.equals(xSubmissions)
                 && otherMatrix.ySubmissions.equals(ySubmissions) && Arrays.deepEquals(otherMatrix.entries, entries);
     }
 
+    /**
+     * Order of submissions in a matrix without archive submissions: most copied first.
+     */
+    private static final Ordering<Submission> BY_COPY_SCORE = Ordering.from(new Comparator<Submission>() {
+        public int compare(Submission a, Submission b) {
+            return ((Double)b.getTotalCopyScore()).compareTo(a.getTotalCopyScore());
+        }
+    });
+
     /**
      * Generate a similarity matrix from a given set of submissions.
      *
@@ -221,15 +404,8 @@ public final class SimilarityMatrix {
         // Generate the matrix we'll use
         AlgorithmResults[][] matrix = new AlgorithmResults[inputSubmissions.size()][inputSubmissions.size()];
 
-        //Ordering sortBy = Ordering.natural();
-        Ordering<Submission> sortBy = Ordering.from(new Comparator<Submission>() {
-            public int compare(Submission a, Submission b) {
-                return ((Double)b.getTotalCopyScore()).compareTo(a.getTotalCopyScore());
-            }
-        });
-        
         // Order the submissions
-        List<Submission> orderedSubmissions = sortBy.immutableSortedCopy(inputSubmissions);
+        List<Submission> orderedSubmissions = BY_COPY_SCORE.immutableSortedCopy(inputSubmissions);
         
         
 
@@ -367,4 +543,66 @@ public final class SimilarityMatrix {
 
         return new SimilarityMatrix(matrix, xSubmissions, ySubmissions, results);
     }
+
+    /**
+     * Generate a compact Similarity Matrix from the scores of every pair.
+     *
+     * Submissions are ordered exactly as {@link #generateMatrix(Set, Set, Set)} would order them. The scores may hold
+     * submissions not in the matrix, such as those excluded for being invalid.
+     *
+     * @param inputSubmissions Submissions used to generate matrix
+     * @param archiveSubmissions Archive submissions - only compared to input submissions, not to each other
+     * @param scores Scores of every pair of the given submissions
+     * @return Compact similarity matrix built from given scores
+     * @throws InternalAlgorithmError Thrown on a missing score, or a submission not present in the scores
+     */
+    public static SimilarityMatrix generateCompactMatrix(Set<Submission> inputSubmissions,
+            Set<Submission> archiveSubmissions, PairScores scores) throws InternalAlgorithmError {
+        checkNotNull(inputSubmissions);
+        checkNotNull(archiveSubmissions);
+        checkNotNull(scores);
+        checkArgument(!inputSubmissions.isEmpty(), "Must provide at least 1 submission to build matrix from");
+
+        List<Submission> xSubmissions;
+        List<Submission> ySubmissions = new ArrayList<>();
+        if(archiveSubmissions.isEmpty()) {
+            xSubmissions = BY_COPY_SCORE.immutableSortedCopy(inputSubmissions);
+            ySubmissions.addAll(xSubmissions);
+        } else {
+            xSubmissions = Ordering.natural().immutableSortedCopy(inputSubmissions);
+            ySubmissions.addAll(xSubmissions);
+            ySubmissions.addAll(Ordering.natural().immutableSortedCopy(archiveSubmissions));
+        }
+
+        int[] xIds = idsOf(xSubmissions, scores);
+        int[] yIds = idsOf(ySubmissions, scores);
+
+        // Verification pass - ensure every pair was scored
+        for(int x = 0; x < xIds.length; x++) {
+            for(int y = 0; y < yIds.length; y++) {
+                if(Float.isNaN(scores.get(xIds[x], yIds[y]))) {
+                    throw new InternalAlgorithmError("Missing Algorithm Results for comparison of submissions \""
+                            + xSubmissions.get(x).getName() + "\" and \"" + ySubmissions.get(y).getName()
+                            + "\"");
+                }
+            }
+        }
+
+        return new SimilarityMatrix(scores, xSubmissions, ySubmissions, xIds, yIds);
+    }
+
+    private static int[] idsOf(List<Submission> submissions, PairScores scores) throws InternalAlgorithmError {
+        int[] ids = new int[submissions.size()];
+
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = scores.idOf(submissions.get(i));
+
+            if(ids[i] == -1) {
+                throw new InternalAlgorithmError("No scores recorded for submission with name \""
+                        + submissions.get(i).getName() + "\"");
+            }
+        }
+
+        return ids;
+    }
 }
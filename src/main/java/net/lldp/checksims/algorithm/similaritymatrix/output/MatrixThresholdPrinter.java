@@ -21,7 +21,6 @@
 
 package net.lldp.checksims.algorithm.similaritymatrix.output;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
 import net.lldp.checksims.algorithm.AlgorithmResults;
@@ -31,9 +30,7 @@ import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.data.Real;
 
 import java.text.DecimalFormat;
-import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -72,11 +69,7 @@ public final class MatrixThresholdPrinter implements MatrixPrinter {
         StringBuilder builder = new StringBuilder();
         DecimalFormat formatter = new DecimalFormat("0.##");
 
-        ImmutableSet<AlgorithmResults> results = matrix.getBaseResults();
-
-        Set<AlgorithmResults> filteredBelowThreshold = results.stream()
-                .filter((result) -> result.percentMatchedA().gtEQ(threshold) || result.percentMatchedB().gtEQ(threshold))
-                .collect(Collectors.toCollection(HashSet::new));
+        Set<AlgorithmResults> filteredBelowThreshold = matrix.getResultsAtLeast(threshold);
 
         if(filteredBelowThreshold.isEmpty()) {
             builder.append("No significant matches found.\n");
@@ -86,7 +86,7 @@ public final class MatrixToCSVPrinter implements MatrixPrinter {
 
             // Next, append all the matrix values, formatted as given
             for(int y = 0; y < arrayBounds.getRight(); y++) {
-                builder.append(formatter.format(matrix.getEntryFor(x, y).getSimilarityPercent()));
+                builder.append(formatter.format(matrix.getSimilarity(x, y)));
                 if(y != (arrayBounds.getRight() - 1)) {
                     builder.append(",");
                 } else {
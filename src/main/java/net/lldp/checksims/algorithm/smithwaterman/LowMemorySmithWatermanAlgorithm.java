@@ -0,0 +1,422 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.algorithm.smithwaterman;
+
+import com.google.common.collect.Iterables;
+
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.parse.token.TokenArray;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.lldp.checksims.algorithm.smithwaterman.SmithWatermanAlgorithm.NO_MATCH_X;
+import static net.lldp.checksims.algorithm.smithwaterman.SmithWatermanAlgorithm.NO_MATCH_Y;
+import static net.lldp.checksims.algorithm.smithwaterman.SmithWatermanAlgorithm.getMaxOfInts;
+import static net.lldp.checksims.algorithm.smithwaterman.SmithWatermanAlgorithm.swConstant;
+import static net.lldp.checksims.algorithm.smithwaterman.SmithWatermanAlgorithm.threshold;
+
+/**
+ * Smith-Waterman alignment which does not hold the full S and M tables in memory.
+ *
+ * Produces exactly the same matches as {@link SmithWatermanAlgorithm#computeSmithWatermanAlignmentExhaustive()}.
+ * The tables are computed a row at a time along the longer token array, with rows as wide as the shorter one, using
+ * two rolling rows and saving a copy of the rows every sqrt(rows) rows. To trace a match back to its origin, only the
+ * block of rows between two saved copies is recomputed at a time. For token arrays of length n and m, n &gt;= m, this
+ * uses memory proportional to sqrt(n) * m, rather than n * m, at the cost of recomputing the rows a match spans.
+ *
+ * Like the exhaustive implementation, the whole table is recomputed after every match.
+ */
+public class LowMemorySmithWatermanAlgorithm {
+    private final TokenArray xArray;
+    private final TokenArray yArray;
+    private final boolean typesMatch;
+
+    // Whether rows run along Y rather than X, as Y is the longer array
+    private final boolean transposed;
+    private final int numRows;
+    private final int rowWidth;
+
+    private final int checkpointInterval;
+    private final int[][] sCheckpoints;
+    private final int[][] mCheckpoints;
+
+    // Match keys of the tokens on each axis, indexed from 1 like the S table
+    private final int[] xKeys;
+    private final int[] yKeys;
+
+    // Match keys of the tokens along a row
+    private int[] columnKeys;
+
+    // S table rows of the block of rows currently loaded for traceback
+    private int[][] block;
+    private int blockStart;
+
+    /**
+     * Prepare for a low-memory Smith-Waterman alignment.
+     *
+     * The given arrays are not modified; matches are marked on copies.
+     *
+     * @param a First token array to align
+     * @param b Second token array to align
+     */
+    public LowMemorySmithWatermanAlgorithm(TokenArray a, TokenArray b) {
+        checkNotNull(a);
+        checkNotNull(b);
+        checkArgument(a.size() != 0, "Cowardly refusing to perform alignment with empty token list A");
+        checkArgument(b.size() != 0, "Cowardly refusing to perform alignment with empty token list B");
+
+        xArray = a.copy();
+        yArray = b.copy();
+        typesMatch = a.getType().equals(b.getType());
+
+        transposed = yArray.size() > xArray.size();
+        numRows = Math.max(xArray.size(), yArray.size());
+        rowWidth = Math.min(xArray.size(), yArray.size());
+
+        xKeys = new int[xArray.size() + 1];
+        yKeys = new int[yArray.size() + 1];
+
+        checkpointInterval = Math.max(1, (int)Math.ceil(Math.sqrt(numRows)));
+
+        int numCheckpoints = numRows / checkpointInterval + 1;
+        sCheckpoints = new int[numCheckpoints][rowWidth + 1];
+        mCheckpoints = new int[numCheckpoints][rowWidth + 1];
+    }
+
+    /**
+     * INTERNAL ONLY - for use in unit tests.
+     *
+     * @return Number of rows between saved copies of the S and M rows
+     */
+    int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * INTERNAL ONLY - for use in unit tests.
+     *
+     * @return Number of cells in each row of the tables, excluding the leading zero
+     */
+    int getRowWidth() {
+        return rowWidth;
+    }
+
+    /**
+     * Compute a Smith-Waterman alignment through the same exhaustive process as the full-table implementation.
+     *
+     * @return Pair of TokenArray representing optimal alignments
+     * @throws InternalAlgorithmError Thrown if internal error causes violation of preconditions
+     */
+    public Pair<TokenArray, TokenArray> computeSmithWatermanAlignmentExhaustive() throws InternalAlgorithmError {
+        Set<Coordinate> largestCoords;
+
+        // Keep computing while we have results over threshold
+        do {
+            largestCoords = computeScores();
+
+            if(largestCoords.isEmpty()) {
+                break;
+            }
+
+            // Arbitrarily break ties - identically to the full-table implementation
+            Coordinate chosenCoord = Iterables.get(largestCoords, 0);
+
+            // Get match coordinates and set them invalid
+            setMatchesInvalid(getMatchCoordinates(chosenCoord));
+        } while(!largestCoords.isEmpty());
+
+        //noinspection SuspiciousNameCombination
+        return Pair.of(xArray, yArray);
+    }
+
+    /**
+     * Compute the S and M tables over the whole array, saving checkpoint rows.
+     *
+     * @return All significant coordinates sharing the largest value in the S table, added in row-major order of X
+     * then Y, as the full-table implementation adds them
+     */
+    Set<Coordinate> computeScores() {
+        for(int x = 1; x <= xArray.size(); x++) {
+            xKeys[x] = matchKey(xArray, x - 1, NO_MATCH_X);
+        }
+        for(int y = 1; y <= yArray.size(); y++) {
+            yKeys[y] = matchKey(yArray, y - 1, NO_MATCH_Y);
+        }
+
+        int[] rowKeys = transposed ? yKeys : xKeys;
+        columnKeys = transposed ? xKeys : yKeys;
+
+        // Invalidations change the scores, so any loaded block is stale
+        block = null;
+
+        int[] sPrev = sCheckpoints[0];
+        int[] mPrev = mCheckpoints[0];
+        int[] sCur = new int[rowWidth + 1];
+        int[] mCur = new int[rowWidth + 1];
+
+        int largest = threshold - 1;
+        List<Coordinate> largestCoords = new ArrayList<>();
+
+        for(int row = 1; row <= numRows; row++) {
+            computeRow(rowKeys[row], sPrev, mPrev, sCur, mCur, rowWidth);
+
+            // Check for significant results
+            for(int column = 1; column <= rowWidth; column++) {
+                int newS = sCur[column];
+
+                if(newS < threshold || newS <= mCur[column]) {
+                    continue;
+                }
+
+                if(newS > largest) {
+                    largest = newS;
+                    largestCoords.clear();
+                }
+                if(newS == largest) {
+                    largestCoords.add(transposed ? Coordinate.of(column, row) : Coordinate.of(row, column));
+                }
+            }
+
+            if(row % checkpointInterval == 0) {
+                System.arraycopy(sCur, 0, sCheckpoints[row / checkpointInterval], 0, rowWidth + 1);
+                System.arraycopy(mCur, 0, mCheckpoints[row / checkpointInterval], 0, rowWidth + 1);
+            }
+
+            int[] tmp = sPrev == sCheckpoints[0] ? new int[rowWidth + 1] : sPrev;
+            sPrev = sCur;
+            sCur = tmp;
+
+            tmp = mPrev == mCheckpoints[0] ? new int[rowWidth + 1] : mPrev;
+            mPrev = mCur;
+            mCur = tmp;
+        }
+
+        // Ties are broken by iteration order of the set, which depends on insertion order and the set's growth
+        if(transposed) {
+            largestCoords.sort(Comparator.comparing(Coordinate::getX).thenComparing(Coordinate::getY));
+        }
+
+        Set<Coordinate> largestSet = new HashSet<>();
+        for(Coordinate coord : largestCoords) {
+            largestSet.add(coord);
+        }
+
+        return largestSet;
+    }
+
+    /**
+     * Compute a single row of the S and M tables. Identical to the computation performed by
+     * {@link SmithWatermanAlgorithm#computeArraySubset(ArraySubset)}, which is symmetric in X and Y, so rows may run
+     * along either axis.
+     *
+     * @param rowKey Match key of the token for this row
+     * @param sPrev Previous row of the S table
+     * @param mPrev Previous row of the M table
+     * @param sCur Row of the S table to compute
+     * @param mCur Row of the M table to compute
+     * @param limit Last column to compute
+     */
+    private void computeRow(int rowKey, int[] sPrev, int[] mPrev, int[] sCur, int[] mCur, int limit) {
+        sCur[0] = 0;
+        mCur[0] = 0;
+
+        for(int column = 1; column <= limit; column++) {
+            int newS;
+            int newM;
+
+            if(rowKey == columnKeys[column]) {
+                // Token Match - increment S table
+                int sPred = sPrev[column - 1];
+                int mPred = mPrev[column - 1];
+
+                newS = sPred + swConstant;
+                newM = sPred > mPred ? sPred : mPred;
+            } else {
+                // Tokens did not match - take the max of the S table predecessors and decrement
+                int max = getMaxOfInts(sPrev[column - 1], sPrev[column], sCur[column - 1]);
+
+                newS = max - swConstant;
+
+                if(newS <= 0) {
+                    newS = 0;
+                    newM = 0;
+                } else {
+                    int maxM = getMaxOfInts(mPrev[column - 1], mPrev[column], mCur[column - 1]);
+
+                    newM = max > maxM ? max : maxM;
+                }
+            }
+
+            // Check threshold
+            if(newM - newS >= threshold) {
+                newM = 0;
+                newS = 0;
+            }
+
+            sCur[column] = newS;
+            mCur[column] = newM;
+        }
+    }
+
+    /**
+     * Get a value from the S table, recomputing the block of rows containing it if it is not loaded.
+     *
+     * Tracebacks only move towards the origin, so each block is recomputed at most once per traceback.
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Value of the S table at the given coordinate
+     */
+    private int getS(int x, int y) {
+        int row = transposed ? y : x;
+        int column = transposed ? x : y;
+
+        if(block == null || row < blockStart || row >= blockStart + block.length) {
+            loadBlock(row, block == null ? rowWidth : block[0].length - 1);
+        }
+
+        return block[row - blockStart][column];
+    }
+
+    /**
+     * Recompute the S table rows between the checkpoints surrounding the given row.
+     *
+     * @param row Row to load
+     * @param limit Last column to compute - nothing beyond this can affect a traceback
+     */
+    private void loadBlock(int row, int limit) {
+        int checkpoint = row == 0 ? 0 : (row - 1) / checkpointInterval;
+        int start = checkpoint * checkpointInterval;
+        int end = Math.min(start + checkpointInterval, numRows);
+        int[] rowKeys = transposed ? yKeys : xKeys;
+
+        int[][] rows = new int[end - start + 1][limit + 1];
+        System.arraycopy(sCheckpoints[checkpoint], 0, rows[0], 0, limit + 1);
+
+        int[] mPrev = mCheckpoints[checkpoint];
+        int[] mCur = new int[limit + 1];
+
+        for(int next = start + 1; next <= end; next++) {
+            computeRow(rowKeys[next], rows[next - start - 1], mPrev, rows[next - start], mCur, limit);
+
+            int[] tmp = mPrev == mCheckpoints[checkpoint] ? new int[limit + 1] : mPrev;
+            mPrev = mCur;
+            mCur = tmp;
+        }
+
+        block = rows;
+        blockStart = start;
+    }
+
+    /**
+     * Retrieve a set of the coordinates that make up a match, following the same path as
+     * {@link SmithWatermanAlgorithm#getMatchCoordinates(Coordinate)}.
+     *
+     * @param matchCoord Coordinate of the end of the match
+     * @return Set of all coordinates that form the match
+     */
+    Set<Coordinate> getMatchCoordinates(Coordinate matchCoord) {
+        checkNotNull(matchCoord);
+
+        // Only columns up to the end of the match are needed
+        block = null;
+        if(transposed) {
+            loadBlock(matchCoord.getY(), matchCoord.getX());
+        } else {
+            loadBlock(matchCoord.getX(), matchCoord.getY());
+        }
+
+        Set<Coordinate> matchCoordinates = new HashSet<>();
+
+        int x = matchCoord.getX();
+        int y = matchCoord.getY();
+
+        int largestPredecessor;
+        do {
+            // Only add the current coordinate if the tokens at the given point match
+            if(xKeys[x] == yKeys[y]) {
+                matchCoordinates.add(Coordinate.of(x, y));
+
+                // If they match, the predecessor is always the upper-left diagonal
+                x = x - 1;
+                y = y - 1;
+
+                largestPredecessor = getS(x, y);
+
+                continue;
+            }
+
+            // Get predecessors
+            int a = getS(x - 1, y - 1);
+            int b = getS(x - 1, y);
+            int c = getS(x, y - 1);
+
+            largestPredecessor = getMaxOfInts(a, b, c);
+
+            // Figure out which predecessor is the largest, and move to its coordinates
+            if(a == largestPredecessor) {
+                x = x - 1;
+                y = y - 1;
+            } else if(b == largestPredecessor) {
+                x = x - 1;
+            } else {
+                y = y - 1;
+            }
+        } while(largestPredecessor > 0);
+
+        return matchCoordinates;
+    }
+
+    /**
+     * Set matched tokens invalid.
+     *
+     * @param coordinates Set of matched coordinates in the S array
+     */
+    private void setMatchesInvalid(Set<Coordinate> coordinates) {
+        for(Coordinate coordinate : coordinates) {
+            xArray.setValid(coordinate.getX() - 1, false);
+            yArray.setValid(coordinate.getY() - 1, false);
+        }
+    }
+
+    /**
+     * @param tokens Token array to get key from
+     * @param index Index of the token
+     * @param noMatch Key to use if the token cannot match anything
+     * @return Key for the given token, equal to the key of any token it matches on the opposite axis
+     */
+    private int matchKey(TokenArray tokens, int index, int noMatch) {
+        if(!typesMatch || !tokens.isValid(index)) {
+            return noMatch;
+        }
+
+        return tokens.getLexeme(index);
+    }
+}
@@ -27,11 +27,13 @@ import net.lldp.checksims.algorithm.SimilarityDetector;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
 import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
 import net.lldp.checksims.parse.token.SubmissionTokenizer;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.TokenType;
 import net.lldp.checksims.parse.token.TokenTypeMismatchException;
 import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
 import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.data.Real;
 
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -42,20 +44,43 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public final class SmithWaterman extends SimilarityDetector<PercentableTokenListDecorator> {
     private static SmithWaterman instance;
+    private static SmithWaterman lowMemoryInstance;
 
-    private SmithWaterman() {}
+    private final boolean lowMemory;
+
+    private SmithWaterman(boolean lowMemory) {
+        this.lowMemory = lowMemory;
+    }
 
     /**
      * @return Singleton instance of the Smith-Waterman algorithm
      */
     public static SmithWaterman getInstance() {
         if(instance == null) {
-            instance = new SmithWaterman();
+            instance = new SmithWaterman(false);
         }
 
         return instance;
     }
 
+    /**
+     * @return Singleton instance of the Smith-Waterman algorithm which does not hold full S and M tables in memory
+     */
+    public static SmithWaterman getLowMemoryInstance() {
+        if(lowMemoryInstance == null) {
+            lowMemoryInstance = new SmithWaterman(true);
+        }
+
+        return lowMemoryInstance;
+    }
+
+    /**
+     * @return Whether this instance uses the low-memory alignment engine
+     */
+    public boolean isLowMemory() {
+        return lowMemory;
+    }
+
     /**
      * @return Name of this implementation
      */
@@ -72,6 +97,18 @@ public final class SmithWaterman extends SimilarityDetector<PercentableTokenList
         return new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.WHITESPACE));
     }
 
+    /**
+     * Cost of Smith-Waterman grows with the size of the alignment matrix.
+     *
+     * @param a First submission's tokens
+     * @param b Second submission's tokens
+     * @return Product of the token counts of both submissions
+     */
+    @Override
+    public long estimateCost(PercentableTokenListDecorator a, PercentableTokenListDecorator b) {
+        return (long)a.size() * b.size();
+    }
+
     /**
      * Apply the Smith-Waterman algorithm to determine the similarity between two submissions.
      *
@@ -110,22 +147,44 @@ public final class SmithWaterman extends SimilarityDetector<PercentableTokenList
         }
 
         // Alright, easy cases taken care of. Generate an instance to perform the actual algorithm
-        SmithWatermanAlgorithm algorithm = new SmithWatermanAlgorithm(a.getDataCopy(), b.getDataCopy());
-
-        Pair<TokenList, TokenList> endLists = algorithm.computeSmithWatermanAlignmentExhaustive();
+        Pair<TokenArray, TokenArray> endArrays;
+        if(lowMemory) {
+            endArrays = new LowMemorySmithWatermanAlgorithm(a.getTokenArray(), b.getTokenArray())
+                    .computeSmithWatermanAlignmentExhaustive();
+        } else {
+            endArrays = new SmithWatermanAlgorithm(a.getTokenArray(), b.getTokenArray())
+                    .computeSmithWatermanAlignment();
+        }
 
-        PercentableTokenListDecorator atb = new PercentableTokenListDecorator(endLists.getLeft());
-        PercentableTokenListDecorator bta = new PercentableTokenListDecorator(endLists.getRight());
-        
-        double x = atb.getPercentageMatched().asDouble();
-        double y = bta.getPercentageMatched().asDouble();
+        PercentableTokenListDecorator atb = new PercentableTokenListDecorator(endArrays.getLeft());
+        PercentableTokenListDecorator bta = new PercentableTokenListDecorator(endArrays.getRight());
         
-        ab.getLeft().increaseScore(y*y, y);
-        ab.getRight().increaseScore(x*x, x);
+        increaseScores(ab.getLeft(), ab.getRight(), atb.getPercentageMatched(), bta.getPercentageMatched());
         
-        return new AlgorithmResults(ab,
-                new PercentableTokenListDecorator(endLists.getLeft()), 
-                new PercentableTokenListDecorator(endLists.getRight()));
+        return new AlgorithmResults(ab, atb, bta);
+    }
+
+    /**
+     * Add the percentages of restored results to the submissions' copy scores, as detecting them would have.
+     *
+     * @param results Restored results, with the current run's submissions
+     */
+    @Override
+    public void restoreResults(AlgorithmResults results) {
+        checkNotNull(results);
+
+        increaseScores(results.a, results.b, results.percentMatchedA, results.percentMatchedB);
+    }
+
+    /**
+     * Add the scores of a comparison to both submissions, used to sort them by how much they were copied.
+     */
+    private static void increaseScores(Submission a, Submission b, Real aMatched, Real bMatched) {
+        double x = aMatched.asDouble();
+        double y = bMatched.asDouble();
+
+        a.increaseScore(y*y, y);
+        b.increaseScore(x*x, x);
     }
 
     @Override
@@ -135,6 +194,6 @@ public final class SmithWaterman extends SimilarityDetector<PercentableTokenList
 
     @Override
     public boolean equals(Object other) {
-        return other instanceof SmithWaterman;
+        return other instanceof SmithWaterman && ((SmithWaterman)other).lowMemory == this.lowMemory;
     }
 }
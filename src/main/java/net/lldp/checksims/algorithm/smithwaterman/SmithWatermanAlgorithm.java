@@ -25,18 +25,23 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
 
 import net.lldp.checksims.algorithm.InternalAlgorithmError;
-import net.lldp.checksims.parse.token.Token;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
-import net.lldp.checksims.parse.token.ValidityEnsuringToken;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -45,18 +50,22 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Actual implementation of the Smith-Waterman algorithm.
  */
 public class SmithWatermanAlgorithm {
-    private final TokenList xList;
-    private final TokenList yList;
+    private final TokenArray xArray;
+    private final TokenArray yArray;
+    private final boolean typesMatch;
     private final ArraySubset wholeArray;
     private final ArraySubset wholeArrayBounds;
     private final int[][] s;
     private final int[][] m;
-    private Map<Integer, Set<Coordinate>> candidates;
 
     private static Logger logs = LoggerFactory.getLogger(SmithWatermanAlgorithm.class);
 
-    private static final int threshold = 5;
-    private static final int swConstant = 1;
+    static final int threshold = 5;
+    static final int swConstant = 1;
+
+    // Lexemes are never negative, so these can never equal a real token's key, or each other
+    static final int NO_MATCH_X = -1;
+    static final int NO_MATCH_Y = -2;
 
     /**
      * Prepare for a Smith-Waterman alignment.
@@ -65,21 +74,33 @@ public class SmithWatermanAlgorithm {
      * @param b Second token list to align
      */
     public SmithWatermanAlgorithm(TokenList a, TokenList b) {
+        this(TokenArray.fromTokenList(checkNotNull(a)), TokenArray.fromTokenList(checkNotNull(b)));
+    }
+
+    /**
+     * Prepare for a Smith-Waterman alignment.
+     *
+     * The given arrays are not modified; matches are marked on copies.
+     *
+     * @param a First token array to align
+     * @param b Second token array to align
+     */
+    public SmithWatermanAlgorithm(TokenArray a, TokenArray b) {
         checkNotNull(a);
         checkNotNull(b);
-        checkArgument(!a.isEmpty(), "Cowardly refusing to perform alignment with empty token list A");
-        checkArgument(!b.isEmpty(), "Cowardly refusing to perform alignment with empty token list B");
+        checkArgument(a.size() != 0, "Cowardly refusing to perform alignment with empty token list A");
+        checkArgument(b.size() != 0, "Cowardly refusing to perform alignment with empty token list B");
 
-        xList = TokenList.cloneTokenList(a);
-        yList = TokenList.cloneTokenList(b);
+        xArray = a.copy();
+        yArray = b.copy();
+        typesMatch = a.getType().equals(b.getType());
 
-        wholeArray = ArraySubset.of(1, 1, xList.size() + 1, yList.size() + 1);
-        wholeArrayBounds = ArraySubset.of(1, 1, xList.size(), yList.size());
+        wholeArray = ArraySubset.of(1, 1, xArray.size() + 1, yArray.size() + 1);
+        wholeArrayBounds = ArraySubset.of(1, 1, xArray.size(), yArray.size());
 
         s = new int[wholeArray.getMax().getX()][wholeArray.getMax().getY()];
         m = new int[wholeArray.getMax().getX()][wholeArray.getMax().getY()];
 
-        candidates = new HashMap<>();
     }
 
     /**
@@ -112,28 +133,37 @@ public class SmithWatermanAlgorithm {
     /**
      * INTERNAL ONLY - for use in unit tests.
      *
-     * @return Smith-Waterman match candidates
+     * @return Copy of the token list along X axis
      */
-    Map<Integer, Set<Coordinate>> getCandidates() {
-        return candidates;
+    TokenList getXList() {
+        return xArray.toTokenList();
     }
 
     /**
      * INTERNAL ONLY - for use in unit tests.
      *
-     * @return Token list along X axis
+     * @return Copy of the token list along Y axis
      */
-    TokenList getXList() {
-        return xList;
+    TokenList getYList() {
+        return yArray.toTokenList();
     }
 
     /**
      * INTERNAL ONLY - for use in unit tests.
      *
-     * @return Token list along Y axis
+     * @return Token array along X axis
      */
-    TokenList getYList() {
-        return yList;
+    TokenArray getXArray() {
+        return xArray;
+    }
+
+    /**
+     * INTERNAL ONLY - for use in unit tests.
+     *
+     * @return Token array along Y axis
+     */
+    TokenArray getYArray() {
+        return yArray;
     }
 
     /**
@@ -141,10 +171,10 @@ public class SmithWatermanAlgorithm {
      *
      * TODO tests for this (already tested through SmithWaterman)
      *
-     * @return Pair of TokenList representing optimal alignments
+     * @return Pair of TokenArray representing optimal alignments
      * @throws InternalAlgorithmError Thrown if internal error causes violation of preconditions
      */
-    public Pair<TokenList, TokenList> computeSmithWatermanAlignmentExhaustive() throws InternalAlgorithmError {
+    public Pair<TokenArray, TokenArray> computeSmithWatermanAlignmentExhaustive() throws InternalAlgorithmError {
         Map<Integer, Set<Coordinate>> localCandidates;
 
         // Keep computing while we have results over threshold
@@ -180,247 +210,217 @@ public class SmithWatermanAlgorithm {
         // IntelliJ has an aversion to passing anything with a 'y' in it as the right side of a pair
         // This alleviates the warning
         //noinspection SuspiciousNameCombination
-        return Pair.of(xList, yList);
+        return Pair.of(xArray, yArray);
     }
 
     /**
-     * Compute a Smith-Waterman alignment.
+     * Compute a Smith-Waterman alignment, recomputing only what each match invalidated.
      *
-     * TODO tests for this
+     * Identifies exactly the same matches as {@link #computeSmithWatermanAlignmentExhaustive()}. Rather than
+     * recomputing the whole array after every match, only cells whose tokens stopped matching, and the cells which
+     * depend on them, are recomputed; propagation stops wherever a recomputed cell is unchanged. Candidates are kept in
+     * a priority queue, and entries made stale by recomputation are discarded as they reach the head.
      *
-     * @return Pair of Token Lists representing optimal detected alignments
+     * @return Pair of Token Arrays representing optimal detected alignments
      * @throws InternalAlgorithmError Thrown if internal error causes violation of preconditions
      */
-    public Pair<TokenList, TokenList> computeSmithWatermanAlignment() throws InternalAlgorithmError {
-        // Make sure our candidates list is initially empty
-        candidates.clear();
+    public Pair<TokenArray, TokenArray> computeSmithWatermanAlignment() throws InternalAlgorithmError {
+        // Largest value first
+        PriorityQueue<Long> candidates = new PriorityQueue<>(Collections.reverseOrder());
 
         // Start by computing the entire array, and adding the results to candidates
-        mergeIntoCandidates(computeArraySubset(wholeArray));
-
-        // Go through all candidates
-        while(!candidates.isEmpty()) {
-            // Need to identify the largest key (largest value in the S-W array)
-            int largestKey = Ordering.natural().max(candidates.keySet());
-
-            // Get coordinate(s) with largest value in S-W array
-            Set<Coordinate> largestCoords = candidates.get(largestKey);
-
-            if(largestCoords == null || largestCoords.isEmpty()) {
-                throw new InternalAlgorithmError("Null or empty mapping from largest coordinates!");
+        Map<Integer, Set<Coordinate>> initial = computeArraySubset(wholeArray);
+        for(Map.Entry<Integer, Set<Coordinate>> entry : initial.entrySet()) {
+            for(Coordinate coord : entry.getValue()) {
+                candidates.add(encodeCandidate(entry.getKey(), coord.getX(), coord.getY()));
             }
+        }
 
-            // Arbitrarily break ties, if they exist
-            Coordinate currMax = Iterables.get(largestCoords, 0);
-
-            // Check to verify that this match is over the threshold
-            // This should never happen, so log if it does
-            // TODO investigate why this is happening
-            if(s[currMax.getX()][currMax.getY()] < threshold) {
-                logs.trace("Potential algorithm error: identified candidate pointing to 0 at " + currMax);
-                largestCoords.remove(currMax);
-                if(largestCoords.isEmpty()) {
-                    candidates.remove(largestKey);
-                } else {
-                    candidates.put(largestKey, largestCoords);
-                }
-                continue;
-            }
+        Map<Integer, List<Integer>> xPositions = positionsByLexeme(xArray);
+        Map<Integer, List<Integer>> yPositions = positionsByLexeme(yArray);
 
-            // Get match coordinates
-            Set<Coordinate> coords = getMatchCoordinates(currMax);
+        Set<Coordinate> largestCoords;
+        while(!(largestCoords = pollLargestCandidates(candidates)).isEmpty()) {
+            // Arbitrarily break ties - identically to the exhaustive implementation
+            Coordinate chosenCoord = Iterables.get(largestCoords, 0);
 
-            // Get match origin
-            Coordinate currOrigin = getFirstMatchCoordinate(coords);
+            Set<Coordinate> matchCoords = getMatchCoordinates(chosenCoord);
 
-            if(currMax.equals(currOrigin)) {
-                throw new InternalAlgorithmError("Maximum and Origin point to same point - " + currMax + " and " +
-                        currOrigin + ". Size of match coordinates set is " + coords.size());
+            if(matchCoords.isEmpty()) {
+                throw new InternalAlgorithmError("Candidate " + chosenCoord + " does not correspond to any match!");
             }
 
-            // Filter postdominated results
-            candidates = filterPostdominated(currOrigin, currMax);
+            // Cells which matched before this match was invalidated, and no longer will
+            PriorityQueue<Long> dirty = new PriorityQueue<>();
+            for(Coordinate coord : matchCoords) {
+                int x = coord.getX();
+                int y = coord.getY();
 
-            // Set match invalid
-            setMatchesInvalid(coords);
+                for(int otherY : yPositions.getOrDefault(xArray.getLexeme(x - 1), Collections.emptyList())) {
+                    if(tokensMatch(x - 1, otherY - 1)) {
+                        dirty.add(encodePosition(x, otherY));
+                    }
+                }
 
-            // Zero the match
-            zeroMatch(currOrigin, currMax);
+                for(int otherX : xPositions.getOrDefault(yArray.getLexeme(y - 1), Collections.emptyList())) {
+                    if(tokensMatch(otherX - 1, y - 1)) {
+                        dirty.add(encodePosition(otherX, y));
+                    }
+                }
+            }
 
-            // Generate array subsets we need to recompute
-            Set<ArraySubset> subsetsToCompute = generateSubsets(currOrigin, currMax);
+            setMatchesInvalid(matchCoords);
 
-            // Recompute given array subsets
-            for(ArraySubset subset : subsetsToCompute) {
-                mergeIntoCandidates(computeArraySubset(subset));
-            }
+            recomputeDirty(dirty, candidates);
         }
 
         // IntelliJ has an aversion to passing anything with a 'y' in it as the right side of a pair
         // This alleviates the warning
         //noinspection SuspiciousNameCombination
-        return Pair.of(xList, yList);
+        return Pair.of(xArray, yArray);
     }
 
     /**
-     * Generate subsets of the Smith-Waterman arrays that require recomputation.
+     * Recompute the given cells, and every cell whose value changes as a result.
      *
-     * TODO unit tests for this once optimizations are added
+     * Cells are recomputed in row-major order, so every cell's predecessors are final before it is recomputed.
      *
-     * @param origin Origin of match requiring recomputation
-     * @param max Max of match requiring recomputation
-     * @return Set of array subsets requiring recomputation
+     * @param dirty Positions of cells requiring recomputation
+     * @param candidates Candidate queue to add significant recomputed cells to
      */
-    Set<ArraySubset> generateSubsets(Coordinate origin, Coordinate max) {
-        checkNotNull(origin);
-        checkNotNull(max);
-        checkArgument(wholeArray.contains(origin), "Origin of requested area out of bounds: " + origin
-                + " not within " + wholeArray);
-        checkArgument(wholeArray.contains(max), "Max of requested area out of bounds: " + max
-                + " not within " + wholeArray);
-
-        Set<ArraySubset> toRecompute = new HashSet<>();
-
-        // There are potentially 4 zones we need to care about
-
-        // First: above and to the left
-        // Check if it exists
-        if(origin.getX() > 1 && origin.getY() > 1) {
-            toRecompute.add(ArraySubset.of(1, 1, origin.getX(), origin.getY()));
-        }
+    void recomputeDirty(PriorityQueue<Long> dirty, PriorityQueue<Long> candidates) {
+        int xMax = xArray.size();
+        int yMax = yArray.size();
+        long last = -1;
 
-        // Second: Above and to the right
-        // Check if it exists
-        if(max.getX() < (wholeArray.getMax().getX() - 1) && origin.getY() > 1) {
-            toRecompute.add(ArraySubset.of(max.getX(), 1, wholeArray.getMax().getX(), origin.getY()));
-        }
+        while(!dirty.isEmpty()) {
+            long position = dirty.poll();
 
-        // Third: Below and to the left
-        // Check if it exists
-        if(origin.getX() > 1 && max.getY() < (wholeArray.getMax().getY() - 1)) {
-            toRecompute.add(ArraySubset.of(1, max.getY(), origin.getX(), wholeArray.getMax().getY() - 1));
-        }
+            // Duplicates are always adjacent
+            if(position == last) {
+                continue;
+            }
+            last = position;
 
-        // Fourth: Below and to the right
-        // Check if it exists
-        if(max.getX() < (wholeArray.getMax().getX() - 1) && max.getY() < (wholeArray.getMax().getY() - 1)) {
-            toRecompute.add(ArraySubset.of(max.getX(), max.getY(), wholeArray.getMax().getX() - 1,
-                    wholeArray.getMax().getY() - 1));
-        }
+            int x = (int)(position / (yMax + 1));
+            int y = (int)(position % (yMax + 1));
 
-        // If none of the subsets were added, we matched the entire array
-        // Nothing to do here, just return
-        if(toRecompute.isEmpty()) {
-            return toRecompute;
-        }
+            int oldS = s[x][y];
+            int oldM = m[x][y];
+
+            computeCell(x, y, tokensMatch(x - 1, y - 1));
+
+            if(isSignificant(x, y)) {
+                candidates.add(encodeCandidate(s[x][y], x, y));
+            }
+
+            if(s[x][y] == oldS && m[x][y] == oldM) {
+                continue;
+            }
 
-        // Now, if we DIDN'T match the entire array
-        // We're going to want to narrow down these subsets
-        // We can do this by removing invalid areas
-        // TODO this optimization
+            // Changed - every cell which uses this one as a predecessor must be recomputed
+            if(y < yMax) {
+                dirty.add(encodePosition(x, y + 1));
+            }
+            if(x < xMax) {
+                dirty.add(encodePosition(x + 1, y));
 
-        return toRecompute;
+                if(y < yMax) {
+                    dirty.add(encodePosition(x + 1, y + 1));
+                }
+            }
+        }
     }
 
     /**
-     * Zero out the portion of S and M arrays that was matched.
+     * Remove every current candidate with the largest value in the S table from the queue.
      *
-     * @param origin Origin of the match
-     * @param max Endpoint of the match
+     * Stale entries, whose cells have since been recomputed, are discarded. The current entries are returned to the
+     * queue, as they remain candidates until recomputed.
+     *
+     * @param candidates Candidate queue
+     * @return Coordinates of all current candidates with the largest value, added in row-major order
      */
-    void zeroMatch(Coordinate origin, Coordinate max) {
-        checkNotNull(origin);
-        checkNotNull(max);
-        checkArgument(wholeArrayBounds.contains(origin), "Origin of requested area out of bounds: " + origin
-                + " not within " + wholeArray);
-        checkArgument(wholeArrayBounds.contains(max), "Max of requested area out of bounds: " + max
-                + " not within " + wholeArray);
-
-        int xLower = origin.getX();
-        int xUpper = max.getX();
-
-        // Zero out the X match
-        for(int x = xLower; x <= xUpper; x++) {
-            for(int y = 1; y < s[0].length; y++) {
-                s[x][y] = 0;
-                m[x][y] = 0;
-            }
+    Set<Coordinate> pollLargestCandidates(PriorityQueue<Long> candidates) {
+        Set<Coordinate> largestCoords = new HashSet<>();
+
+        // Discard stale entries
+        while(!candidates.isEmpty() && !isCurrentCandidate(candidates.peek())) {
+            candidates.poll();
         }
 
-        int yLower = origin.getY();
-        int yUpper = max.getY();
+        if(candidates.isEmpty()) {
+            return largestCoords;
+        }
 
-        // Zero out the Y match
-        for(int x = 1; x < s.length; x++) {
-            for(int y = yLower; y <= yUpper; y++) {
-                s[x][y] = 0;
-                m[x][y] = 0;
+        int largest = candidateValue(candidates.peek());
+
+        SortedSet<Long> positions = new TreeSet<>();
+        while(!candidates.isEmpty() && candidateValue(candidates.peek()) == largest) {
+            long candidate = candidates.poll();
+
+            if(isCurrentCandidate(candidate)) {
+                positions.add(candidate);
             }
         }
+
+        // Insert in the same order a full computation of the array would, so ties are broken identically
+        for(long candidate : positions) {
+            largestCoords.add(Coordinate.of(candidateX(candidate), candidateY(candidate)));
+        }
+
+        candidates.addAll(positions);
+
+        return largestCoords;
     }
 
     /**
-     * Filter postdominated results of a match.
-     *
-     * @param max Endpoint of match
-     * @return Filtered version of candidate results set, with all results postdominated by match removed
+     * @param tokens Token array to index
+     * @return Map from lexeme to the (1-indexed) positions of every token with that lexeme
      */
-    Map<Integer, Set<Coordinate>> filterPostdominated(Coordinate origin, Coordinate max) {
-        checkNotNull(origin);
-        checkNotNull(max);
-        checkArgument(wholeArray.contains(origin), "Origin of requested area out of bounds: " + origin + " not within "
-                + wholeArray);
-        checkArgument(wholeArray.contains(max), "Max of requested area out of bounds: " + max + " not within "
-                + wholeArray);
+    private static Map<Integer, List<Integer>> positionsByLexeme(TokenArray tokens) {
+        Map<Integer, List<Integer>> positions = new HashMap<>();
 
-        if(candidates.isEmpty()) {
-            return candidates;
+        for(int i = 0; i < tokens.size(); i++) {
+            positions.computeIfAbsent(tokens.getLexeme(i), (lexeme) -> new ArrayList<>()).add(i + 1);
         }
 
-        Map<Integer, Set<Coordinate>> filteredResults = new HashMap<>();
+        return positions;
+    }
 
-        // X match invalidation
-        ArraySubset xInval = ArraySubset.of(origin.getX(), 0, max.getX(), wholeArray.getMax().getY());
-        ArraySubset yInval = ArraySubset.of(0, origin.getY(), wholeArray.getMax().getX(), max.getY());
+    // Candidates are encoded as the value in the S table, followed by the cell's position in row-major order
+    private static final int POSITION_BITS = 40;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
 
-        // Loop through all candidates and see if they need to be filtered
-        for(int key : candidates.keySet()) {
-            Set<Coordinate> allCandidates = candidates.get(key);
+    private long encodePosition(int x, int y) {
+        return (long)x * (yArray.size() + 1) + y;
+    }
 
-            Set<Coordinate> newSet = new HashSet<>();
+    private long encodeCandidate(int value, int x, int y) {
+        return ((long)value << POSITION_BITS) | encodePosition(x, y);
+    }
 
-            for(Coordinate coord : allCandidates) {
-                // Unclear how this candidate got added, but it's no longer valid
-                // This shouldn't happen, so log it as well
-                // TODO investigate why this is happening
-                if(s[coord.getX()][coord.getY()] < threshold) {
-                    logs.trace("Potential algorithm error - filtered match lower than threshold at " + coord);
-                    continue;
-                }
+    private static int candidateValue(long candidate) {
+        return (int)(candidate >>> POSITION_BITS);
+    }
 
-                // Identify the origin of the result
-                Coordinate originOfCandidate = getFirstMatchCoordinate(getMatchCoordinates(coord));
-
-                // If the origin is NOT the same as the given origin, it's a candidate
-                if(!originOfCandidate.equals(origin)) {
-                    // Also need to check if the origin and max are not within the rectangles identified
-                    if(xInval.contains(coord)
-                            || yInval.contains(coord)
-                            || xInval.contains(max)
-                            || yInval.contains(max)) {
-                        newSet.add(coord);
-                    }
-                }
-            }
+    private int candidateX(long candidate) {
+        return (int)((candidate & POSITION_MASK) / (yArray.size() + 1));
+    }
 
-            if(!newSet.isEmpty()) {
-                // We didn't filter everything
-                // Add the filtered set to our filtered results
-                filteredResults.put(key, newSet);
-            }
-        }
+    private int candidateY(long candidate) {
+        return (int)((candidate & POSITION_MASK) % (yArray.size() + 1));
+    }
 
-        return filteredResults;
+    /**
+     * @param candidate Encoded candidate
+     * @return True if the candidate's cell still holds the candidate's value, and is still significant
+     */
+    private boolean isCurrentCandidate(long candidate) {
+        int x = candidateX(candidate);
+        int y = candidateY(candidate);
+
+        return s[x][y] == candidateValue(candidate) && isSignificant(x, y);
     }
 
     /**
@@ -438,76 +438,23 @@ public class SmithWatermanAlgorithm {
 
         Map<Integer, Set<Coordinate>> newCandidates = new HashMap<>();
 
-        for(int x = toCompute.getOrigin().getX(); x < toCompute.getMax().getX(); x++) {
-            Token xToken = new ValidityEnsuringToken(xList.get(x - 1));
-
-            for(int y = toCompute.getOrigin().getY(); y < toCompute.getMax().getY(); y++) {
-                int prevX = x - 1;
-                int prevY = y - 1;
-
-                int newS;
-                int newM;
-
-                // Token Match - increment S table
-                if(xToken.isValid() && xToken.equals(yList.get(y - 1))) {
-                    int sPred = s[prevX][prevY];
-                    int mPred = m[prevX][prevY];
-
-                    newS = sPred + swConstant;
-
-                    // Predecessors table is the largest of the S table or M table predecessors
-                    if(sPred > mPred) {
-                        newM = sPred;
-                    } else {
-                        newM = mPred;
-                    }
-                } else {
-                    // Tokens did not match
-                    // Get the max of S table predecessors and decrement
-                    int a = s[prevX][prevY];
-                    int b = s[prevX][y];
-                    int c = s[x][prevY];
-
-                    int max = getMaxOfInts(a, b, c);
-
-                    newS = max - swConstant;
-
-                    if(newS < 0) {
-                        newS = 0;
-                    }
+        // Flatten the Y axis tokens for this subset into match keys once, rather than once per row
+        int yOrigin = toCompute.getOrigin().getY();
+        int[] yKeys = new int[toCompute.getMax().getY() - yOrigin];
+        for(int y = yOrigin; y < toCompute.getMax().getY(); y++) {
+            yKeys[y - yOrigin] = matchKey(yArray, y - 1, NO_MATCH_Y);
+        }
 
-                    // If S is 0, zero out the predecessor table entry
-                    if(newS == 0) {
-                        newM = 0;
-                    } else {
-                        int aM = m[prevX][prevY];
-                        int bM = m[prevX][y];
-                        int cM = m[x][prevY];
-
-                        // Get largest predecessor in M table
-                        int maxM = getMaxOfInts(aM, bM, cM);
-
-                        // If S nonzero, predecessor table entry is largest of the predecessors in the S and M tables
-                        if(max > maxM) {
-                            newM = max;
-                        } else {
-                            newM = maxM;
-                        }
-                    }
-                }
+        for(int x = toCompute.getOrigin().getX(); x < toCompute.getMax().getX(); x++) {
+            int xKey = matchKey(xArray, x - 1, NO_MATCH_X);
 
-                // Check threshold
-                if(newM - newS >= threshold) {
-                    newM = 0;
-                    newS = 0;
-                }
+            for(int y = yOrigin; y < toCompute.getMax().getY(); y++) {
+                computeCell(x, y, xKey == yKeys[y - yOrigin]);
 
-                // Set S and M table entries
-                s[x][y] = newS;
-                m[x][y] = newM;
+                int newS = s[x][y];
 
                 // Check if we our result is significant
-                if(newS >= threshold && newS > newM) {
+                if(isSignificant(x, y)) {
                     // It's significant, add it to our results
                     if(newCandidates.containsKey(newS)) {
                         Set<Coordinate> valuesForKey = newCandidates.get(newS);
@@ -528,29 +475,112 @@ public class SmithWatermanAlgorithm {
     }
 
     /**
-     * Get the closest coordinate to the origin from a given set.
+     * Compute a single cell of the S and M tables from its predecessors.
      *
-     * @param coordinates Coordinates to search within
-     * @return Closest coordinate to origin --- (0,0)
+     * @param x X coordinate of the cell
+     * @param y Y coordinate of the cell
+     * @param tokensMatch Whether the tokens at the given coordinates match
      */
-    static Coordinate getFirstMatchCoordinate(Set<Coordinate> coordinates) {
-        checkNotNull(coordinates);
-        checkArgument(!coordinates.isEmpty(), "Cannot get first match coordinate as match set is empty!");
+    private void computeCell(int x, int y, boolean tokensMatch) {
+        int prevX = x - 1;
+        int prevY = y - 1;
 
-        if(coordinates.size() == 1) {
-            return Iterables.get(coordinates, 0);
-        }
+        int newS;
+        int newM;
+
+        // Token Match - increment S table
+        if(tokensMatch) {
+            int sPred = s[prevX][prevY];
+            int mPred = m[prevX][prevY];
+
+            newS = sPred + swConstant;
+
+            // Predecessors table is the largest of the S table or M table predecessors
+            if(sPred > mPred) {
+                newM = sPred;
+            } else {
+                newM = mPred;
+            }
+        } else {
+            // Tokens did not match
+            // Get the max of S table predecessors and decrement
+            int a = s[prevX][prevY];
+            int b = s[prevX][y];
+            int c = s[x][prevY];
+
+            int max = getMaxOfInts(a, b, c);
+
+            newS = max - swConstant;
+
+            if(newS < 0) {
+                newS = 0;
+            }
 
-        Coordinate candidate = Iterables.get(coordinates, 0);
+            // If S is 0, zero out the predecessor table entry
+            if(newS == 0) {
+                newM = 0;
+            } else {
+                int aM = m[prevX][prevY];
+                int bM = m[prevX][y];
+                int cM = m[x][prevY];
+
+                // Get largest predecessor in M table
+                int maxM = getMaxOfInts(aM, bM, cM);
 
-        // Search for a set of coordinates closer to the origin
-        for(Coordinate coord : coordinates) {
-            if(coord.getX() <= candidate.getX() && coord.getY() <= candidate.getY()) {
-                candidate = coord;
+                // If S nonzero, predecessor table entry is largest of the predecessors in the S and M tables
+                if(max > maxM) {
+                    newM = max;
+                } else {
+                    newM = maxM;
+                }
             }
         }
 
-        return candidate;
+        // Check threshold
+        if(newM - newS >= threshold) {
+            newM = 0;
+            newS = 0;
+        }
+
+        // Set S and M table entries
+        s[x][y] = newS;
+        m[x][y] = newM;
+    }
+
+    /**
+     * @param x X coordinate of the cell
+     * @param y Y coordinate of the cell
+     * @return True if the cell is a candidate for the end of a match
+     */
+    private boolean isSignificant(int x, int y) {
+        return s[x][y] >= threshold && s[x][y] > m[x][y];
+    }
+
+    /**
+     * Get the key used to compare a token against tokens on the opposite axis.
+     *
+     * Two tokens match (are valid, and of identical type and content) if and only if their keys are equal.
+     *
+     * @param tokens Token array to get key from
+     * @param index Index of the token
+     * @param noMatch Key to use if the token cannot match anything. Must differ between X and Y axes.
+     * @return Key for the given token
+     */
+    private int matchKey(TokenArray tokens, int index, int noMatch) {
+        if(!typesMatch || !tokens.isValid(index)) {
+            return noMatch;
+        }
+
+        return tokens.getLexeme(index);
+    }
+
+    /**
+     * @param xIndex Index of token in X array
+     * @param yIndex Index of token in Y array
+     * @return True if both tokens are valid and identical
+     */
+    private boolean tokensMatch(int xIndex, int yIndex) {
+        return matchKey(xArray, xIndex, NO_MATCH_X) == matchKey(yArray, yIndex, NO_MATCH_Y);
     }
 
     /**
@@ -570,8 +600,8 @@ public class SmithWatermanAlgorithm {
             int x = coordinate.getX() - 1;
             int y = coordinate.getY() - 1;
 
-            xList.get(x).setValid(false);
-            yList.get(y).setValid(false);
+            xArray.setValid(x, false);
+            yArray.setValid(y, false);
         }
     }
 
@@ -596,7 +626,7 @@ public class SmithWatermanAlgorithm {
         int largestPredecessor;
         do {
             // Only add the current coordinate if the tokens at the given point match
-            if(new ValidityEnsuringToken(xList.get(x - 1)).equals(yList.get(y - 1))) {
+            if(tokensMatch(x - 1, y - 1)) {
                 matchCoordinates.add(Coordinate.of(x, y));
 
                 // If they match, the predecessor is always the upper-left diagonal
@@ -631,52 +661,6 @@ public class SmithWatermanAlgorithm {
         return matchCoordinates;
     }
 
-    /**
-     * Get the coordinate with the largest value in the S matrix from a given set to check.
-     *
-     * @param toTest Set of coordinates to check within
-     * @return Coordinate from toTest which maps to the largest value in the S matrix. Ties broken arbitrarily.
-     */
-    Coordinate getMaxOfCoordinates(Set<Coordinate> toTest) {
-        checkNotNull(toTest);
-        checkArgument(!toTest.isEmpty(), "Cannot get the maximum of an empty set of coordinates!");
-
-        Coordinate candidate = Iterables.get(toTest, 0);
-        int value = s[candidate.getX()][candidate.getY()];
-
-        for(Coordinate newCandidate : toTest) {
-            int newValue = s[newCandidate.getX()][newCandidate.getY()];
-
-            if(newValue > value) {
-                candidate = newCandidate;
-                value = newValue;
-            }
-        }
-
-        return candidate;
-    }
-
-    /**
-     * Merge given map into the Candidates list.
-     *
-     * @param merge Map to merge into candidates
-     */
-    void mergeIntoCandidates(Map<Integer, Set<Coordinate>> merge) {
-        checkNotNull(merge);
-
-        for(Integer key : merge.keySet()) {
-            Set<Coordinate> contentsToMerge = merge.get(key);
-
-            if(!candidates.containsKey(key)) {
-                candidates.put(key, contentsToMerge);
-            } else {
-                Set<Coordinate> contentsMergeInto = candidates.get(key);
-
-                contentsMergeInto.addAll(contentsToMerge);
-            }
-        }
-    }
-
     /**
      * Get the maximum of 3 integers.
      *
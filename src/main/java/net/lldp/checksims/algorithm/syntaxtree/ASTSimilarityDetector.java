@@ -4,7 +4,7 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import net.lldp.checksims.algorithm.AlgorithmResults;
 import net.lldp.checksims.algorithm.InvalidAlgorithmResults;
-import net.lldp.checksims.parse.ast.AST;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.data.Real;
 
@@ -13,27 +13,53 @@ public abstract class ASTSimilarityDetector
     /**
      * see #SimilarityDetector.detectSimilarity
      */
-    public static AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, AST rft, AST comt) {
+    public static AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, FlatAST rft, FlatAST comt) {
         if (ab.getLeft().testFlag("invalid") || ab.getRight().testFlag("invalid"))
         {
             return new InvalidAlgorithmResults(ab, new Real(0), new Real(0));
         }
-        Real atb = rft.getPercentMatched(comt.getFingerprints());
-        Real bta = comt.getPercentMatched(rft.getFingerprints());
+        Real atb = rft.getPercentMatched(comt);
+        Real bta = comt.getPercentMatched(rft);
 
+        increaseScores(ab.getLeft(), ab.getRight(), atb, bta);
+        
+        return new AlgorithmResults(ab, atb, bta);
+    }
+
+    /**
+     * see #SimilarityDetector.restoreResults
+     */
+    public static void restoreResults(AlgorithmResults results)
+    {
+        if (results.isValid())
+        {
+            increaseScores(results.a, results.b, results.percentMatchedA, results.percentMatchedB);
+        }
+    }
+
+    /**
+     * Adds the scores of a comparison to both submissions, used to sort them by how much they were copied
+     */
+    private static void increaseScores(Submission left, Submission right, Real atb, Real bta)
+    {
         double b = atb.asDouble();
         double a = bta.asDouble();
         
         double d_tmp = a;
-        Submission s_tmp = ab.getRight();
+        Submission s_tmp = right;
         s_tmp.increaseScore(Math.pow(5, d_tmp*10), d_tmp);
         s_tmp.increaseScore(0, b);
         
         d_tmp = b;
-        s_tmp = ab.getLeft();
+        s_tmp = left;
         s_tmp.increaseScore(Math.pow(5, d_tmp*10), d_tmp);
         s_tmp.increaseScore(0, a);
-        
-        return new AlgorithmResults(ab, atb, bta);
+    }
+
+    /**
+     * see #SimilarityDetector.estimateCost
+     */
+    public static long estimateCost(FlatAST rft, FlatAST comt) {
+        return (long)rft.size() + comt.size();
     }
 }
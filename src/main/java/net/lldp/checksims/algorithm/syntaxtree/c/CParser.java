@@ -6,11 +6,11 @@ import net.lldp.checksims.algorithm.AlgorithmResults;
 import net.lldp.checksims.algorithm.SimilarityDetector;
 import net.lldp.checksims.algorithm.syntaxtree.ASTSimilarityDetector;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
-import net.lldp.checksims.parse.ast.AST;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.SubmissionParser;
 import net.lldp.checksims.submission.Submission;
 
-public class CParser extends SimilarityDetector<AST>
+public class CParser extends SimilarityDetector<FlatAST>
 {
     public static CParser getInstance()
     {
@@ -24,16 +24,28 @@ public class CParser extends SimilarityDetector<AST>
     }
 
     @Override
-    public SubmissionPercentableCalculator<AST> getPercentableCalculator()
+    public SubmissionPercentableCalculator<FlatAST> getPercentableCalculator()
     {
         return new SubmissionParser(new CSyntaxParser());
     }
 
     @Override
-    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, AST rft, AST comt)
+    public long estimateCost(FlatAST rft, FlatAST comt)
+    {
+        return ASTSimilarityDetector.estimateCost(rft, comt);
+    }
+
+    @Override
+    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, FlatAST rft, FlatAST comt)
     {
         return ASTSimilarityDetector.detectSimilarity(ab, rft, comt);
     }
+
+    @Override
+    public void restoreResults(AlgorithmResults results)
+    {
+        ASTSimilarityDetector.restoreResults(results);
+    }
     
     @Override
     public String getDefaultGlobPattern()
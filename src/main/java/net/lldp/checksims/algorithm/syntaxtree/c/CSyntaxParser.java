@@ -1,15 +1,16 @@
 package net.lldp.checksims.algorithm.syntaxtree.c;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import net.lldp.checksims.parse.ast.AST;
 import net.lldp.checksims.parse.ast.ASTFactory;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.LanguageDependantSyntaxParser;
 import net.lldp.checksims.parse.ast.c.CLexer;
 import net.lldp.checksims.parse.ast.c.CParser;
@@ -18,40 +19,57 @@ import net.lldp.checksims.submission.Submission;
 
 public class CSyntaxParser implements LanguageDependantSyntaxParser
 {
+    private static final ASTFactory.ParserPool<CParser> parsers =
+            new ASTFactory.ParserPool<>(CParser.class, CLexer.class);
+
+    private static Logger logs = LoggerFactory.getLogger(CSyntaxParser.class);
 
-    @Override
-    public ParseTreeVisitor<AST> getTreeWalker()
-    {
-        return new SuperQuickTreeWalker();
-    }
-    
     public static boolean macroLine(String s) {
         s = s.trim();
         return s.length() > 0 && s.codePointAt(0) == '#';
     }
 
-    @Override
-    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString)
+    private static String stripMacros(String contentAsString)
     {
         String in = Arrays.asList(contentAsString.split("\n"))
             .stream()
             .filter(A -> !macroLine(A))
             .collect(Collectors.joining("\n"));
-        in = in.replace('\r', ' ');
-        
-       	CParser cp = ASTFactory.makeParser(s.getName(), new ANTLRInputStream(in), CParser.class, CLexer.class);
+        return in.replace('\r', ' ');
+    }
+
+    @Override
+    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString, boolean sllFirst)
+    {
+        String in = stripMacros(contentAsString);
         
-        Set<ParserRuleContext> result = new HashSet<>();
+        Set<ParserRuleContext> result = new LinkedHashSet<>();
         try
         {
-            result.add(cp.translationUnit());
+            result.add(parsers.parse(s.getName(), in, sllFirst, CParser::translationUnit));
         }
         catch(ASTFactory.SyntaxErrorException see)
         {
-            System.out.println("Syntax Error for assignment: " + s.getName());
+            logs.warn("Syntax Error for assignment: " + s.getName());
             s.setFlag("invalid");
         }
         
         return result;
     }
+
+    @Override
+    public FlatAST.Builder sourceToTree(Submission s, String contentAsString, boolean sllFirst)
+    {
+        try
+        {
+            return parsers.parseTree(s.getName(), stripMacros(contentAsString), sllFirst,
+                    (cp, listener) -> cp.translationUnit());
+        }
+        catch(ASTFactory.SyntaxErrorException see)
+        {
+            logs.warn("Syntax Error for assignment: " + s.getName());
+            s.setFlag("invalid");
+            return new FlatAST.Builder(1);
+        }
+    }
 }
\ No newline at end of file
@@ -5,14 +5,15 @@ import org.apache.commons.lang3.tuple.Pair;
 import net.lldp.checksims.algorithm.AlgorithmResults;
 import net.lldp.checksims.algorithm.InternalAlgorithmError;
 import net.lldp.checksims.algorithm.SimilarityDetector;
+import net.lldp.checksims.algorithm.syntaxtree.ASTSimilarityDetector;
 import net.lldp.checksims.util.data.Real;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
-import net.lldp.checksims.parse.ast.AST;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.SubmissionParser;
 import net.lldp.checksims.parse.token.TokenTypeMismatchException;
 import net.lldp.checksims.submission.Submission;
 
-public class CPPParser extends SimilarityDetector<AST>
+public class CPPParser extends SimilarityDetector<FlatAST>
 {
     public static CPPParser getInstance()
     {
@@ -26,17 +27,23 @@ public class CPPParser extends SimilarityDetector<AST>
     }
 
     @Override
-    public SubmissionPercentableCalculator<AST> getPercentableCalculator()
+    public SubmissionPercentableCalculator<FlatAST> getPercentableCalculator()
     {
         return new SubmissionParser(new CPPSyntaxParser());
     }
 
     @Override
-    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, AST rft, AST comt)
+    public long estimateCost(FlatAST rft, FlatAST comt)
+    {
+        return ASTSimilarityDetector.estimateCost(rft, comt);
+    }
+
+    @Override
+    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, FlatAST rft, FlatAST comt)
             throws TokenTypeMismatchException, InternalAlgorithmError
     {
-        Real atb = rft.getPercentMatched(comt.getFingerprints());
-        Real bta = comt.getPercentMatched(rft.getFingerprints());
+        Real atb = rft.getPercentMatched(comt);
+        Real bta = comt.getPercentMatched(rft);
         //System.out.println("Similarity: " + atb);
         return new AlgorithmResults(ab, atb, bta);
     }
@@ -1,15 +1,16 @@
 package net.lldp.checksims.algorithm.syntaxtree.cpp;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import net.lldp.checksims.parse.ast.AST;
 import net.lldp.checksims.parse.ast.ASTFactory;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.LanguageDependantSyntaxParser;
 import net.lldp.checksims.parse.ast.cpp.CPP14Lexer;
 import net.lldp.checksims.parse.ast.cpp.CPP14Parser;
@@ -18,37 +19,53 @@ import net.lldp.checksims.submission.Submission;
 
 public class CPPSyntaxParser implements LanguageDependantSyntaxParser
 {
+    private static final ASTFactory.ParserPool<CPP14Parser> parsers =
+            new ASTFactory.ParserPool<>(CPP14Parser.class, CPP14Lexer.class);
 
-    @Override
-    public ParseTreeVisitor<AST> getTreeWalker()
-    {
-        return new SuperQuickTreeWalker();
-    }
+    private static Logger logs = LoggerFactory.getLogger(CPPSyntaxParser.class);
 
-    @Override
-    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString)
+    private static String stripDirectives(String contentAsString)
     {
-        String in = Arrays.asList(contentAsString.split("\n"))
+        return Arrays.asList(contentAsString.split("\n"))
             .stream()
             .map(A -> A.trim())
             .filter(A -> A.length() > 0)
             .filter(A -> A.codePointAt(0) != '#')
             .collect(Collectors.joining("\n"));
+    }
 
-       	CPP14Parser cp = ASTFactory.makeParser(s.getName(), new ANTLRInputStream(in), CPP14Parser.class, CPP14Lexer.class);
+    @Override
+    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString, boolean sllFirst)
+    {
+        String in = stripDirectives(contentAsString);
 
-        Set<ParserRuleContext> result = new HashSet<>();
+        Set<ParserRuleContext> result = new LinkedHashSet<>();
         try
         {
-            result.add(cp.declarationseq());
+            result.add(parsers.parse(s.getName(), in, sllFirst, CPP14Parser::declarationseq));
         }
         catch(ASTFactory.SyntaxErrorException see)
         {
-            System.out.println("Syntax Error for assignment: " + s.getName());
-            return new HashSet<>();
+            logs.warn("Syntax Error for assignment: " + s.getName());
+            return new LinkedHashSet<>();
         }
 
         return result;
     }
 
+    @Override
+    public FlatAST.Builder sourceToTree(Submission s, String contentAsString, boolean sllFirst)
+    {
+        try
+        {
+            return parsers.parseTree(s.getName(), stripDirectives(contentAsString), sllFirst,
+                    (cp, listener) -> cp.declarationseq());
+        }
+        catch(ASTFactory.SyntaxErrorException see)
+        {
+            logs.warn("Syntax Error for assignment: " + s.getName());
+            return new FlatAST.Builder(1);
+        }
+    }
+
 }
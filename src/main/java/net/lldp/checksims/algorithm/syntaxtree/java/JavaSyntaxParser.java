@@ -21,16 +21,17 @@ s * CDDL HEADER START
 package net.lldp.checksims.algorithm.syntaxtree.java;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import net.lldp.checksims.parse.Percentable;
-import net.lldp.checksims.parse.ast.AST;
 import net.lldp.checksims.parse.ast.ASTFactory;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.LanguageDependantSyntaxParser;
 import net.lldp.checksims.parse.ast.java.Java8Lexer;
 import net.lldp.checksims.parse.ast.java.Java8Parser;
@@ -44,45 +45,77 @@ import net.lldp.checksims.util.data.Real;
  */
 public class JavaSyntaxParser implements LanguageDependantSyntaxParser
 {
+    private static final ASTFactory.ParserPool<Java8Parser> parsers =
+            new ASTFactory.ParserPool<>(Java8Parser.class, Java8Lexer.class);
 
-    @Override
-    public ParseTreeVisitor<AST> getTreeWalker()
-    {
-        return new SuperQuickTreeWalker();
-    }
+    private static Logger logs = LoggerFactory.getLogger(JavaSyntaxParser.class);
 
-    @Override
-    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString)
+    private static String stripImports(String contentAsString)
     {
-        String in = Arrays.asList(contentAsString.split("\n"))
+        return Arrays.asList(contentAsString.split("\n"))
             .stream()
             .filter(A -> !(A.contains("import")||A.contains("package")))
             .collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString, boolean sllFirst)
+    {
+        String in = stripImports(contentAsString);
         
-        Java8Parser j8p = ASTFactory.makeParser(s.getName(), new ANTLRInputStream(in), Java8Parser.class, Java8Lexer.class);
-        
-        Set<ParserRuleContext> result = new HashSet<>();
-        boolean endOfFile = true;
-        while(endOfFile)
+        try
         {
-            try
-            {
-                result.add(j8p.typeDeclaration()); // cant use compilationUnit here, since code is mashed together
-            }
-            catch(ASTFactory.EOFParsingException epe)
-            {
-                endOfFile = false;
-            }
-            catch(ASTFactory.SyntaxErrorException see)
-            {
-                s.setFlag("invalid");
-                System.out.println("Syntax Error for assignment: " + s.getName());
-                s.setFlag("invalid");
-                return new HashSet<>();
-            }
+            return parsers.parse(s.getName(), in, sllFirst, j8p -> {
+                Set<ParserRuleContext> result = new LinkedHashSet<>();
+                try
+                {
+                    // stop before the end, so only a declaration cut short by it is an error
+                    while(j8p.getInputStream().LA(1) != Token.EOF)
+                    {
+                        result.add(j8p.typeDeclaration()); // cant use compilationUnit here, since code is mashed together
+                    }
+                }
+                catch(ASTFactory.EOFParsingException epe)
+                {
+                    // keep the declarations before it
+                }
+                return result;
+            });
+        }
+        catch(ASTFactory.SyntaxErrorException see)
+        {
+            s.setFlag("invalid");
+            logs.warn("Syntax Error for assignment: " + s.getName());
+            return new LinkedHashSet<>();
+        }
+    }
+
+    @Override
+    public FlatAST.Builder sourceToTree(Submission s, String contentAsString, boolean sllFirst)
+    {
+        try
+        {
+            return parsers.parseTree(s.getName(), stripImports(contentAsString), sllFirst, (j8p, listener) -> {
+                try
+                {
+                    while(j8p.getInputStream().LA(1) != Token.EOF)
+                    {
+                        j8p.typeDeclaration();
+                    }
+                }
+                catch(ASTFactory.EOFParsingException epe)
+                {
+                    // keep the declarations before it
+                    listener.discardIncomplete();
+                }
+            });
+        }
+        catch(ASTFactory.SyntaxErrorException see)
+        {
+            s.setFlag("invalid");
+            logs.warn("Syntax Error for assignment: " + s.getName());
+            return new FlatAST.Builder(1);
         }
-        
-        return result;
     }
 
 }
@@ -26,7 +26,7 @@ import net.lldp.checksims.algorithm.AlgorithmResults;
 import net.lldp.checksims.algorithm.SimilarityDetector;
 import net.lldp.checksims.algorithm.syntaxtree.ASTSimilarityDetector;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
-import net.lldp.checksims.parse.ast.AST;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.SubmissionParser;
 import net.lldp.checksims.submission.Submission;
 
@@ -36,7 +36,7 @@ import net.lldp.checksims.submission.Submission;
  *
  * An algorithm to compare python submissions
  */
-public class PythonParser extends SimilarityDetector<AST>
+public class PythonParser extends SimilarityDetector<FlatAST>
 {
     /**
      * getInstance required by reflective instantiator
@@ -54,16 +54,28 @@ public class PythonParser extends SimilarityDetector<AST>
     }
 
     @Override
-    public SubmissionPercentableCalculator<AST> getPercentableCalculator()
+    public SubmissionPercentableCalculator<FlatAST> getPercentableCalculator()
     {
         return new SubmissionParser(new PythonSyntaxParser());
     }
 
     @Override
-    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, AST rft, AST comt)
+    public long estimateCost(FlatAST rft, FlatAST comt)
+    {
+        return ASTSimilarityDetector.estimateCost(rft, comt);
+    }
+
+    @Override
+    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, FlatAST rft, FlatAST comt)
     {
         return ASTSimilarityDetector.detectSimilarity(ab, rft, comt);
     }
+
+    @Override
+    public void restoreResults(AlgorithmResults results)
+    {
+        ASTSimilarityDetector.restoreResults(results);
+    }
     
     @Override
     public String getDefaultGlobPattern()
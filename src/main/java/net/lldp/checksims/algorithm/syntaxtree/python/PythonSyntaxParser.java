@@ -20,14 +20,15 @@
  */
 package net.lldp.checksims.algorithm.syntaxtree.python;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import net.lldp.checksims.parse.ast.AST;
 import net.lldp.checksims.parse.ast.ASTFactory;
+import net.lldp.checksims.parse.ast.FlatAST;
 import net.lldp.checksims.parse.ast.LanguageDependantSyntaxParser;
 import net.lldp.checksims.parse.ast.python.Python3Lexer;
 import net.lldp.checksims.parse.ast.python.Python3Parser;
@@ -40,30 +41,42 @@ import net.lldp.checksims.submission.Submission;
  */
 public class PythonSyntaxParser implements LanguageDependantSyntaxParser
 {
+    private static final ASTFactory.ParserPool<Python3Parser> parsers =
+            new ASTFactory.ParserPool<>(Python3Parser.class, Python3Lexer.class);
+
+    private static Logger logs = LoggerFactory.getLogger(PythonSyntaxParser.class);
 
     @Override
-    public ParseTreeVisitor<AST> getTreeWalker()
+    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString, boolean sllFirst)
     {
-        return new SuperQuickTreeWalker();
+        contentAsString = contentAsString.replace((char) 0x0D, ' ');
+        Set<ParserRuleContext> result = new LinkedHashSet<>();
+        try
+        {
+            result.add(parsers.parse(s.getName(), contentAsString, sllFirst, Python3Parser::file_input));
+        }
+        catch(Exception see)
+        {
+            s.setFlag("invalid");
+            logs.warn("Syntax Error for assignment: " + s.getName());
+        }
+        
+        return result;
     }
 
     @Override
-    public Set<ParserRuleContext> sourceToDefaultcontext(Submission s, String contentAsString)
+    public FlatAST.Builder sourceToTree(Submission s, String contentAsString, boolean sllFirst)
     {
         contentAsString = contentAsString.replace((char) 0x0D, ' ');
-        Python3Parser j8p = ASTFactory.makeParser(s.getName(), new ANTLRInputStream(contentAsString), Python3Parser.class, Python3Lexer.class);
-        
-        Set<ParserRuleContext> result = new HashSet<>();
         try
         {
-            result.add(j8p.file_input());
+            return parsers.parseTree(s.getName(), contentAsString, sllFirst, (pp, listener) -> pp.file_input());
         }
         catch(Exception see)
         {
             s.setFlag("invalid");
-            System.out.println("Syntax Error for assignment: " + s.getName());
+            logs.warn("Syntax Error for assignment: " + s.getName());
+            return new FlatAST.Builder(1);
         }
-        
-        return result;
     }
 }
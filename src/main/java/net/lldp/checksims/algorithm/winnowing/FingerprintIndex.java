@@ -0,0 +1,280 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.winnowing;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.SubmissionPairs;
+import net.lldp.checksims.util.threading.ExecutionContext;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Inverted index from fingerprint to the submissions containing it.
+ *
+ * The number of fingerprints shared by every pair of submissions is derived in a single pass over the index: each
+ * fingerprint contributes only to the pairs in its own posting list. Pairs sharing no fingerprints are never visited,
+ * so the cost depends on the number of shared fingerprints rather than the number of pairs.
+ *
+ * As in MOSS, fingerprints present in more than a given number of submissions are treated as common code (boilerplate,
+ * starter code) and ignored, which also bounds the work done for any one posting list. Pairs of two archive
+ * submissions (flagged with {@link SubmissionPairs#ARCHIVE_FLAG}) are never compared, so are not counted either.
+ */
+public final class FingerprintIndex {
+    // Number of posting lists walked between checks for cancellation
+    private static final int CANCELLATION_CHECK_INTERVAL = 1 << 14;
+
+    // Pair keys are never negative, so an empty slot of the pair table is marked by EMPTY_KEY
+    private static final long EMPTY_KEY = -1L;
+
+    private final ImmutableList<Submission> submissions;
+    private final Map<Submission, Integer> ids;
+    private final int numPostings;
+    private final int numCommonFingerprints;
+
+    // Open-addressed table from pair key to number of shared fingerprints
+    private long[] pairKeys;
+    private int[] pairCounts;
+    private int numSharingPairs;
+
+    /**
+     * Build an index over the given submissions, ignoring no fingerprints.
+     *
+     * @param submissions Submissions to index
+     * @param prepared Fingerprints of every given submission
+     * @throws ChecksimsException Thrown if a submission was not fingerprinted
+     */
+    public FingerprintIndex(Collection<Submission> submissions, PreparedSubmissions<Fingerprints> prepared)
+            throws ChecksimsException {
+        this(submissions, prepared, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Build an index over the given submissions.
+     *
+     * @param submissions Submissions to index
+     * @param prepared Fingerprints of every given submission
+     * @param maxDocumentFrequency Fingerprints present in more than this many submissions are ignored
+     * @param context Execution context checked periodically for cancellation, or null to never check
+     * @throws ChecksimsException Thrown if a submission was not fingerprinted, or if the context is cancelled
+     */
+    public FingerprintIndex(Collection<Submission> submissions, PreparedSubmissions<Fingerprints> prepared,
+                            int maxDocumentFrequency, ExecutionContext context)
+            throws ChecksimsException {
+        checkNotNull(submissions);
+        checkNotNull(prepared);
+        checkArgument(maxDocumentFrequency >= 2, "Maximum document frequency must be at least 2, got %s",
+                maxDocumentFrequency);
+
+        this.submissions = ImmutableList.copyOf(submissions);
+        this.ids = new HashMap<>();
+
+        int totalFingerprints = 0;
+        Fingerprints[] fingerprints = new Fingerprints[this.submissions.size()];
+        boolean[] archive = new boolean[fingerprints.length];
+        for(int i = 0; i < fingerprints.length; i++) {
+            Submission submission = this.submissions.get(i);
+
+            checkArgument(!ids.containsKey(submission), "Submission %s given twice!", submission.getName());
+
+            fingerprints[i] = prepared.get(submission);
+            if(fingerprints[i] == null) {
+                throw new InternalAlgorithmError("Submission " + submission.getName()
+                        + " was not fingerprinted before building index!");
+            }
+
+            ids.put(submission, i);
+            archive[i] = submission.testFlag(SubmissionPairs.ARCHIVE_FLAG);
+            totalFingerprints += fingerprints[i].size();
+        }
+
+        // Every posting as fingerprint in the high word, submission ID in the low word
+        // Sorting groups each fingerprint's posting list together, in ascending order of ID
+        long[] postings = new long[totalFingerprints];
+        int next = 0;
+        for(int id = 0; id < fingerprints.length; id++) {
+            for(int i = 0; i < fingerprints[id].size(); i++) {
+                postings[next++] = ((long)fingerprints[id].get(i) << 32) | id;
+            }
+        }
+        Arrays.sort(postings);
+
+        this.numPostings = postings.length;
+        this.pairKeys = new long[16];
+        this.pairCounts = new int[16];
+        Arrays.fill(pairKeys, EMPTY_KEY);
+
+        if(context != null) {
+            context.checkUsable();
+        }
+
+        int numLists = 0;
+        int common = 0;
+        int start = 0;
+        while(start < postings.length) {
+            int end = start + 1;
+            while(end < postings.length && (postings[end] >>> 32) == (postings[start] >>> 32)) {
+                end++;
+            }
+
+            if(context != null && ++numLists % CANCELLATION_CHECK_INTERVAL == 0) {
+                context.checkUsable();
+            }
+
+            if(end - start > maxDocumentFrequency) {
+                common++;
+                start = end;
+                continue;
+            }
+
+            // Fingerprints are distinct within a submission, so every posting in the list is a different submission
+            for(int i = start; i < end; i++) {
+                int low = (int)postings[i];
+                for(int j = i + 1; j < end; j++) {
+                    int high = (int)postings[j];
+                    if(!archive[low] || !archive[high]) {
+                        increment(pairKey(low, high));
+                    }
+                }
+            }
+
+            start = end;
+        }
+
+        this.numCommonFingerprints = common;
+    }
+
+    /**
+     * @param a First submission
+     * @param b Second submission
+     * @return Number of distinct fingerprints present in both submissions
+     */
+    public int getSharedCount(Submission a, Submission b) {
+        checkNotNull(a);
+        checkNotNull(b);
+
+        Integer idA = ids.get(a);
+        Integer idB = ids.get(b);
+        if(idA == null || idB == null) {
+            throw new IllegalArgumentException("Submission " + (idA == null ? a : b).getName() + " is not indexed!");
+        }
+
+        if(idA.equals(idB)) {
+            throw new IllegalArgumentException("Cannot count fingerprints shared by a submission with itself!");
+        }
+
+        int slot = find(pairKey(Math.min(idA, idB), Math.max(idA, idB)));
+
+        return pairKeys[slot] == EMPTY_KEY ? 0 : pairCounts[slot];
+    }
+
+    /**
+     * @return Number of pairs of submissions sharing at least one fingerprint
+     */
+    public int getNumSharingPairs() {
+        return numSharingPairs;
+    }
+
+    /**
+     * @return Total number of postings in the index
+     */
+    public int getNumPostings() {
+        return numPostings;
+    }
+
+    /**
+     * @return Number of distinct fingerprints ignored for being present in too many submissions
+     */
+    public int getNumCommonFingerprints() {
+        return numCommonFingerprints;
+    }
+
+    private long pairKey(int lowId, int highId) {
+        return (long)lowId * submissions.size() + highId;
+    }
+
+    /**
+     * @param key Pair key to find
+     * @return Slot holding the key, or the empty slot it would be inserted into
+     */
+    private int find(long key) {
+        int mask = pairKeys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int)(hash ^ (hash >>> 32)) & mask;
+
+        while(pairKeys[slot] != EMPTY_KEY && pairKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void increment(long key) {
+        int slot = find(key);
+
+        if(pairKeys[slot] == EMPTY_KEY) {
+            // Keep the table at most half full
+            if(2 * (numSharingPairs + 1) > pairKeys.length) {
+                grow();
+                slot = find(key);
+            }
+
+            pairKeys[slot] = key;
+            numSharingPairs++;
+        }
+
+        pairCounts[slot]++;
+    }
+
+    private void grow() {
+        long[] oldKeys = pairKeys;
+        int[] oldCounts = pairCounts;
+
+        pairKeys = new long[oldKeys.length * 2];
+        pairCounts = new int[oldKeys.length * 2];
+        Arrays.fill(pairKeys, EMPTY_KEY);
+
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != EMPTY_KEY) {
+                int slot = find(oldKeys[i]);
+                pairKeys[slot] = oldKeys[i];
+                pairCounts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Fingerprint index of " + submissions.size() + " submissions, with " + numPostings + " postings";
+    }
+}
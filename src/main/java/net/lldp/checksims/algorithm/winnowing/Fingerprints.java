@@ -0,0 +1,133 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.winnowing;
+
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.util.data.Real;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The set of winnowed fingerprints selected from a single submission.
+ *
+ * Fingerprints are stored sorted and without duplicates, so two sets can be intersected with a single merge. Instances
+ * are immutable, and may be shared between any number of pairs.
+ */
+public final class Fingerprints implements Percentable {
+    private final int[] hashes;
+
+    /**
+     * Create a fingerprint set.
+     *
+     * @param hashes Fingerprint hashes. Need not be sorted, and may contain duplicates. Not modified.
+     */
+    public Fingerprints(int[] hashes) {
+        checkNotNull(hashes);
+
+        this.hashes = Arrays.stream(hashes).sorted().distinct().toArray();
+    }
+
+    /**
+     * @return Number of distinct fingerprints in this set
+     */
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * @param index Index of fingerprint, in ascending order
+     * @return Fingerprint hash at the given index
+     */
+    public int get(int index) {
+        return hashes[index];
+    }
+
+    /**
+     * @param other Fingerprints to intersect with
+     * @return Number of distinct fingerprints present in both sets
+     */
+    public int countShared(Fingerprints other) {
+        checkNotNull(other);
+
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+
+        while(i < hashes.length && j < other.hashes.length) {
+            if(hashes[i] < other.hashes[j]) {
+                i++;
+            } else if(hashes[i] > other.hashes[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+
+        return shared;
+    }
+
+    /**
+     * @param shared Number of this set's fingerprints matched by another submission
+     * @return Fraction of this set's fingerprints which were matched
+     */
+    public Real getPercentMatched(int shared) {
+        if(hashes.length == 0) {
+            return Real.ZERO;
+        }
+
+        return new Real(shared, hashes.length);
+    }
+
+    /**
+     * A fingerprint set on its own has not been compared against anything.
+     *
+     * @return Zero
+     */
+    @Override
+    public Real getPercentageMatched() {
+        return Real.ZERO;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof Fingerprints)) {
+            return false;
+        }
+
+        return Arrays.equals(((Fingerprints)other).hashes, this.hashes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(hashes);
+    }
+
+    @Override
+    public String toString() {
+        return "Set of " + hashes.length + " winnowed fingerprints";
+    }
+}
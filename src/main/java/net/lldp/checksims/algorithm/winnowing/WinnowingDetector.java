@@ -0,0 +1,186 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.winnowing;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.IndexedSimilarityDetector;
+import net.lldp.checksims.algorithm.SimilarityDetector;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.data.Real;
+import net.lldp.checksims.util.threading.ExecutionContext;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Winnowing similarity detector, after the algorithm used by MOSS.
+ *
+ * Each submission is reduced to a set of fingerprints. The similarity of submission A to submission B is the fraction
+ * of A's fingerprints which also appear in B. When run over many pairs, a single inverted index of fingerprints is built
+ * and every pair is scored from it, instead of comparing each pair independently. Like MOSS, the index ignores
+ * fingerprints found in more than {@link #DEFAULT_MAX_DOCUMENT_FREQUENCY} submissions, so code common to most of a
+ * class does not count as shared.
+ */
+public final class WinnowingDetector extends SimilarityDetector<Fingerprints>
+        implements IndexedSimilarityDetector<Fingerprints> {
+    /**
+     * Number of whitespace tokens in each fingerprinted k-gram.
+     */
+    public static final int DEFAULT_K = 5;
+
+    /**
+     * Number of k-grams each fingerprint is selected from.
+     */
+    public static final int DEFAULT_WINDOW = 4;
+
+    /**
+     * Fingerprints present in more than this many submissions are considered common code and ignored when indexing.
+     */
+    public static final int DEFAULT_MAX_DOCUMENT_FREQUENCY = 10;
+
+    private static WinnowingDetector instance;
+
+    private static Logger logs = LoggerFactory.getLogger(WinnowingDetector.class);
+
+    private WinnowingDetector() {}
+
+    /**
+     * @return Singleton instance of the winnowing detector
+     */
+    public static WinnowingDetector getInstance() {
+        if(instance == null) {
+            instance = new WinnowingDetector();
+        }
+
+        return instance;
+    }
+
+    @Override
+    public String getName() {
+        return "winnowing";
+    }
+
+    @Override
+    public SubmissionPercentableCalculator<Fingerprints> getPercentableCalculator() {
+        return new WinnowingFingerprinter(DEFAULT_K, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Detect similarities between a single pair by intersecting their fingerprints.
+     *
+     * @param ab Submissions being compared
+     * @param a Fingerprints of the first submission
+     * @param b Fingerprints of the second submission
+     * @return Results of the similarity detection
+     */
+    @Override
+    public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, Fingerprints a, Fingerprints b) {
+        checkNotNull(ab);
+        checkNotNull(a);
+        checkNotNull(b);
+
+        return buildResults(ab, a, b, a.countShared(b));
+    }
+
+    /**
+     * Build a single inverted index of the fingerprints of every prepared submission, to score pairs from.
+     *
+     * @param prepared Fingerprints for every submission present in the pairs to be compared
+     * @param context Execution context of the current run
+     * @return Index scoring each pair by the number of fingerprints it shares
+     * @throws ChecksimsException Thrown if a submission was not fingerprinted, or if the context is cancelled
+     */
+    @Override
+    public Index buildIndex(PreparedSubmissions<Fingerprints> prepared, ExecutionContext context)
+            throws ChecksimsException {
+        checkNotNull(prepared);
+        checkNotNull(context);
+
+        FingerprintIndex index = new FingerprintIndex(prepared.getSubmissions(), prepared,
+                DEFAULT_MAX_DOCUMENT_FREQUENCY, context);
+
+        logs.debug("Built " + index + ", " + index.getNumSharingPairs() + " pairs share fingerprints, "
+                + index.getNumCommonFingerprints() + " common fingerprints ignored");
+
+        return (pair) -> buildResults(pair, prepared.get(pair.getLeft()), prepared.get(pair.getRight()),
+                index.getSharedCount(pair.getLeft(), pair.getRight()));
+    }
+
+    /**
+     * Build the results of a comparison, and record them in the submissions' copy scores.
+     *
+     * @param ab Submissions compared
+     * @param a Fingerprints of the first submission
+     * @param b Fingerprints of the second submission
+     * @param shared Number of fingerprints shared by both submissions
+     * @return Results of the comparison
+     */
+    private static AlgorithmResults buildResults(Pair<Submission, Submission> ab, Fingerprints a, Fingerprints b,
+                                                 int shared) {
+        Real aMatched = a.getPercentMatched(shared);
+        Real bMatched = b.getPercentMatched(shared);
+
+        increaseScores(ab.getLeft(), ab.getRight(), aMatched, bMatched);
+
+        return new AlgorithmResults(ab, aMatched, bMatched);
+    }
+
+    /**
+     * Add the percentages of restored results to the submissions' copy scores, as detecting them would have.
+     *
+     * @param results Restored results, with the current run's submissions
+     */
+    @Override
+    public void restoreResults(AlgorithmResults results) {
+        checkNotNull(results);
+
+        increaseScores(results.a, results.b, results.percentMatchedA, results.percentMatchedB);
+    }
+
+    /**
+     * Add the scores of a comparison to both submissions, used to sort them by how much they were copied.
+     */
+    private static void increaseScores(Submission a, Submission b, Real aMatched, Real bMatched) {
+        double x = aMatched.asDouble();
+        double y = bMatched.asDouble();
+
+        a.increaseScore(y * y, y);
+        b.increaseScore(x * x, x);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.getName().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WinnowingDetector;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.winnowing;
+
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.token.LexemeMap;
+import net.lldp.checksims.parse.token.TokenArray;
+import net.lldp.checksims.parse.token.TokenType;
+import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
+import net.lldp.checksims.submission.Submission;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Selects winnowed k-gram fingerprints from the whitespace tokens of a submission.
+ *
+ * Every run of k consecutive tokens is hashed, and the smallest hash in each window of w consecutive k-gram hashes is
+ * selected as a fingerprint. Any run of at least k + w - 1 tokens shared by two submissions is guaranteed to produce
+ * at least one shared fingerprint; runs shorter than k tokens are ignored as noise.
+ */
+public final class WinnowingFingerprinter implements SubmissionPercentableCalculator<Fingerprints> {
+    private static final int BASE = 0x01000193;
+
+    private final int k;
+    private final int window;
+    private final Tokenizer tokenizer;
+
+    /**
+     * Create a fingerprinter.
+     *
+     * @param k Number of tokens in each hashed k-gram
+     * @param window Number of consecutive k-grams to select each fingerprint from
+     */
+    public WinnowingFingerprinter(int k, int window) {
+        checkArgument(k > 0, "K-gram length must be positive, got " + k);
+        checkArgument(window > 0, "Winnowing window must be positive, got " + window);
+
+        this.k = k;
+        this.window = window;
+        this.tokenizer = Tokenizer.getTokenizer(TokenType.WHITESPACE);
+    }
+
+    /**
+     * @return Number of tokens in each hashed k-gram
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return Number of consecutive k-grams each fingerprint is selected from
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    @Override
+    public Fingerprints generateFromSubmission(Submission s) {
+        checkNotNull(s);
+
+        return fingerprint(tokenizer.tokenize(s.getContentAsString()));
+    }
+
+    /**
+     * Select the fingerprints of a token array.
+     *
+     * @param tokens Tokens to fingerprint
+     * @return Winnowed fingerprints of the given tokens
+     */
+    Fingerprints fingerprint(TokenArray tokens) {
+        checkNotNull(tokens);
+
+        int[] kGrams = hashKGrams(tokens);
+
+        if(kGrams.length == 0) {
+            return new Fingerprints(new int[0]);
+        }
+
+        // A document shorter than one window still gets a single fingerprint
+        int effectiveWindow = Math.min(window, kGrams.length);
+
+        int[] selected = new int[kGrams.length - effectiveWindow + 1];
+        int numSelected = 0;
+        int lastSelected = -1;
+
+        for(int start = 0; start + effectiveWindow <= kGrams.length; start++) {
+            // Rightmost minimum, so a minimum shared by consecutive windows is only selected once
+            int min = start;
+            for(int i = start + 1; i < start + effectiveWindow; i++) {
+                if(kGrams[i] <= kGrams[min]) {
+                    min = i;
+                }
+            }
+
+            if(min != lastSelected) {
+                selected[numSelected++] = kGrams[min];
+                lastSelected = min;
+            }
+        }
+
+        return new Fingerprints(Arrays.copyOf(selected, numSelected));
+    }
+
+    /**
+     * @param tokens Tokens to hash
+     * @return Hash of every k-gram of the given tokens, in order
+     */
+    private int[] hashKGrams(TokenArray tokens) {
+        if(tokens.size() < k) {
+            return new int[0];
+        }
+
+        int[] hashes = new int[tokens.size() - k + 1];
+
+        // Lexemes are only meaningful within one run, so hash the tokens themselves
+        // Otherwise fingerprints stored by one run (cached, or as results) would not match those of the next
+        int[] tokenHashes = new int[tokens.size()];
+        for(int i = 0; i < tokenHashes.length; i++) {
+            tokenHashes[i] = LexemeMap.getTokenForLexeme(tokens.getLexeme(i)).hashCode();
+        }
+
+        // BASE^(k-1), used to remove the oldest token from the rolling hash
+        int highPower = 1;
+        for(int i = 1; i < k; i++) {
+            highPower *= BASE;
+        }
+
+        int rolling = 0;
+        for(int i = 0; i < k; i++) {
+            rolling = rolling * BASE + tokenHashes[i];
+        }
+        hashes[0] = mix(rolling);
+
+        for(int i = k; i < tokenHashes.length; i++) {
+            rolling = (rolling - tokenHashes[i - k] * highPower) * BASE + tokenHashes[i];
+            hashes[i - k + 1] = mix(rolling);
+        }
+
+        return hashes;
+    }
+
+    /**
+     * Spread the bits of a rolling hash, so the minimum of each window is not biased towards particular tokens.
+     *
+     * @param hash Hash to mix
+     * @return Mixed hash
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+
+        return hash;
+    }
+
+    @Override
+    public Class<Fingerprints> getTypeClass() {
+        return Fingerprints.class;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof WinnowingFingerprinter)) {
+            return false;
+        }
+
+        WinnowingFingerprinter otherFingerprinter = (WinnowingFingerprinter)other;
+
+        return otherFingerprinter.k == this.k && otherFingerprinter.window == this.window;
+    }
+
+    @Override
+    public int hashCode() {
+        return k * 31 + window;
+    }
+
+    @Override
+    public String toString() {
+        return "Winnowing fingerprinter with k = " + k + " and window " + window;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2015 Ted Meyer and Michael Andrews
+ */
+package net.lldp.checksims.parse;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import net.lldp.checksims.submission.Submission;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Immutable, per-run store of the Percentables generated for every submission.
+ *
+ * Submissions are tokenized or parsed exactly once, before any pairs are scheduled, and every similarity detection
+ * worker reads its inputs from here. As the store is never modified after construction, it is safe to share between
+ * any number of threads. Detectors must treat the stored Percentables as read-only.
+ *
+ * @param <T> Type of Percentable stored
+ */
+public final class PreparedSubmissions<T extends Percentable> {
+    private final ImmutableMap<Submission, T> prepared;
+
+    /**
+     * Create a store from the given mapping.
+     *
+     * @param prepared Mapping of submission to its generated Percentable
+     */
+    public PreparedSubmissions(Map<Submission, T> prepared) {
+        checkNotNull(prepared);
+
+        this.prepared = ImmutableMap.copyOf(prepared);
+    }
+
+    /**
+     * @param submission Submission to check for
+     * @return Whether the given submission was prepared
+     */
+    public boolean contains(Submission submission) {
+        return prepared.containsKey(submission);
+    }
+
+    /**
+     * @param submission Submission to get the Percentable of
+     * @return Percentable generated for the given submission, or null if it was not prepared
+     */
+    public T get(Submission submission) {
+        checkNotNull(submission);
+
+        return prepared.get(submission);
+    }
+
+    /**
+     * @return All submissions present in this store
+     */
+    public ImmutableSet<Submission> getSubmissions() {
+        return prepared.keySet();
+    }
+
+    /**
+     * @return Number of submissions present in this store
+     */
+    public int size() {
+        return prepared.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Prepared Percentables for " + prepared.size() + " submissions";
+    }
+}
@@ -20,9 +20,17 @@
  */
 package net.lldp.checksims.parse.ast;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * 
@@ -109,6 +117,203 @@ public class ASTFactory
         
     }
     
+    /**
+     * A lexer and parser for one language, created once for each thread that parses with it and reset for every
+     * submission, rather than reflectively constructed each time.
+     *
+     * Generated parsers already share their ATN and DFA caches between instances, so every parser warms the same
+     * caches. Parsing may first be tried with ANTLR's faster SLL prediction, bailing out at the first syntax error;
+     * only if that fails is the submission parsed again with full LL prediction, which reports errors as makeParser's
+     * parsers do. SLL succeeds on almost all valid input, though on ambiguous input it may choose a different parse.
+     *
+     * @param <T> Type of parser
+     */
+    public static final class ParserPool<T extends Parser>
+    {
+        private static final LongAdder fallbacks = new LongAdder();
+        private static Logger logs = LoggerFactory.getLogger(ParserPool.class);
+
+        private final ThreadLocal<PooledParser<T>> parsers;
+
+        /**
+         * @param pclazz the Class type of the parsers to be generated
+         * @param lclazz the Lexer type of the lexers that the parsers will use
+         */
+        public ParserPool(Class<T> pclazz, Class<? extends Lexer> lclazz)
+        {
+            this.parsers = ThreadLocal.withInitial(() -> new PooledParser<>(pclazz, lclazz));
+        }
+
+        /**
+         * Parse a submission with this thread's parser.
+         * @param sn the name of the submission
+         * @param inputText the text to parse
+         * @param sllFirst whether to try SLL prediction before full LL prediction
+         * @param rule parses the input from the given parser; may be called a second time, from the start of the
+         * input, if SLL prediction fails
+         * @return the result of the rule
+         */
+        public <R> R parse(String sn, String inputText, boolean sllFirst, Function<T, R> rule)
+        {
+            PooledParser<T> pooled = parsers.get();
+            try
+            {
+                pooled.reset(sn, new ANTLRInputStream(inputText));
+                if (sllFirst)
+                {
+                    pooled.setSLL(true);
+                    try
+                    {
+                        return rule.apply(pooled.parser);
+                    }
+                    catch (ParseCancellationException e)
+                    {
+                        fallbacks.increment();
+                        logs.debug("SLL parse of " + sn + " failed, retrying with LL");
+                    }
+                    pooled.parser.reset();
+                }
+                pooled.setSLL(false);
+                return rule.apply(pooled.parser);
+            }
+            finally
+            {
+                // Do not hold on to the input until this thread parses again
+                pooled.reset(null, new ANTLRInputStream(""));
+            }
+        }
+
+        /**
+         * Parse a submission with this thread's parser straight into a syntax tree, without building its parse tree,
+         * so that only the rules currently being parsed are held in memory.
+         * @param sn the name of the submission
+         * @param inputText the text to parse
+         * @param sllFirst whether to try SLL prediction before full LL prediction
+         * @param rule parses the input from the given parser, while the given listener appends each rule parsed
+         * to the tree; may be called a second time, with a new listener, if SLL prediction fails
+         * @return a builder holding each top-level rule parsed as a completed subtree
+         */
+        public FlatAST.Builder parseTree(String sn, String inputText, boolean sllFirst,
+                BiConsumer<T, FlatAST.TreeListener> rule)
+        {
+            return parse(sn, inputText, sllFirst, parser -> {
+                FlatAST.Builder builder = new FlatAST.Builder(inputText.length() / 2);
+                FlatAST.TreeListener listener = new FlatAST.TreeListener(builder);
+                parser.setBuildParseTree(false);
+                parser.addParseListener(listener);
+                try
+                {
+                    rule.accept(parser, listener);
+                    return builder;
+                }
+                finally
+                {
+                    parser.removeParseListener(listener);
+                    parser.setBuildParseTree(true);
+                }
+            });
+        }
+
+        /**
+         * @return the number of parses, in any pool, which fell back from SLL to LL prediction
+         */
+        public static long getNumFallbacks()
+        {
+            return fallbacks.sum();
+        }
+    }
+
+    /**
+     * A reusable parser, whose error listeners report against the current submission.
+     *
+     * Lexers are not reused, as grammar actions may keep state which resetting them does not clear (the Python lexer
+     * tracks indentation this way). They hold no caches of their own, so making one for each submission is cheap.
+     */
+    private static final class PooledParser<T extends Parser>
+    {
+        private final Constructor<? extends Lexer> lexerConstructor;
+        private final BaseErrorListener lexerListener;
+        private final T parser;
+        private String sn;
+        private boolean bail;
+
+        PooledParser(Class<T> pclazz, Class<? extends Lexer> lclazz)
+        {
+            lexerListener = new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+                        int line, int charPositionInLine, String msg,
+                        RecognitionException e)
+                {
+                    throw new SyntaxErrorException(sn, msg);
+                }
+            };
+
+            try
+            {
+                lexerConstructor = lclazz.getConstructor(CharStream.class);
+                parser = pclazz.getConstructor(TokenStream.class).newInstance(
+                        new CommonTokenStream(makeLexer(new ANTLRInputStream(""))));
+            }
+            catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException
+                    | IllegalArgumentException | InvocationTargetException e1)
+            {
+                throw new RuntimeException(e1);
+            }
+
+            parser.removeErrorListeners();
+            parser.addErrorListener(
+                    new BaseErrorListener() {
+                        @Override
+                        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+                                int line, int charPositionInLine, String msg,
+                                RecognitionException e)
+                        {
+                            if (bail)
+                            {
+                                throw new ParseCancellationException(msg);
+                            }
+                            CommonToken token = (CommonToken)offendingSymbol;
+                            if ("<EOF>".equals(token.getText()))
+                            {
+                                throw new EOFParsingException();
+                            }
+                            throw new SyntaxErrorException(sn, msg);
+                        }
+                    }
+            );
+        }
+
+        private Lexer makeLexer(CharStream inputText)
+        {
+            try
+            {
+                Lexer lexer = lexerConstructor.newInstance(inputText);
+                lexer.removeErrorListeners();
+                lexer.addErrorListener(lexerListener);
+                return lexer;
+            }
+            catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+                    | InvocationTargetException e1)
+            {
+                throw new RuntimeException(e1);
+            }
+        }
+
+        void reset(String sn, CharStream inputText)
+        {
+            this.sn = sn;
+            parser.setTokenStream(new CommonTokenStream(makeLexer(inputText)));
+        }
+
+        void setSLL(boolean sll)
+        {
+            bail = sll;
+            parser.getInterpreter().setPredictionMode(sll ? PredictionMode.SLL : PredictionMode.LL);
+            parser.setErrorHandler(sll ? new BailErrorStrategy() : new DefaultErrorStrategy());
+        }
+    }
+
     /**
      * 
      * @author ted
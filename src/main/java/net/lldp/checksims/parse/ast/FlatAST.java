@@ -0,0 +1,589 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2015 Ted Meyer and Michael Andrews
+ */
+package net.lldp.checksims.parse.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.util.data.Real;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Compact, primitive representation of a syntax tree.
+ *
+ * Nodes are stored in post-order as parallel int arrays of tag id and subtree size. The children of a node directly
+ * precede it, so subtree sizes double as child offsets: the last child of node i is i - 1, and each earlier child ends
+ * where the one after it begins.
+ *
+ * Every node has a 64-bit Merkle hash over its tag and the hashes of its children, in order, so two subtrees have
+ * the same hash exactly when they have the same shape, up to hash collisions; at 64 bits, these are rare enough to
+ * ignore. For comparison, each tree is reduced once, when built, to a sorted table of its distinct hashes, each
+ * weighted by the total size of the subtrees with that hash. Scoring a pair is then a linear merge of two sorted
+ * arrays, with no lookups or allocation.
+ */
+public final class FlatAST implements Percentable
+{
+    private static final ConcurrentHashMap<String, Tag> tagsByName = new ConcurrentHashMap<>();
+    private static final List<Tag> tagsById = new ArrayList<>();
+
+    /**
+     * Parse tree rules are tagged with the simple name of their context class, looked up once per class.
+     */
+    private static final ClassValue<Tag> ruleTags = new ClassValue<Tag>()
+    {
+        @Override
+        protected Tag computeValue(Class<?> type)
+        {
+            return tagFor(type.getSimpleName());
+        }
+    };
+
+    private final int[] tags;
+    private final int[] sizes;
+    private final long[] fingerprints;
+    private final int[] weights;
+    private final long totalSize;
+    private final long rootHash;
+
+    /**
+     * An interned node tag. Tag ids are never reused, and are the same for every tree built by this process.
+     */
+    private static final class Tag
+    {
+        final int id;
+        final String name;
+        final long hash;
+
+        Tag(int id, String name)
+        {
+            this.id = id;
+            this.name = name;
+
+            // 64-bit FNV-1a of the name, so tag hashes do not depend on the order tags were interned in
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < name.length(); i++)
+            {
+                h = (h ^ name.charAt(i)) * 0x100000001B3L;
+            }
+            this.hash = h;
+        }
+    }
+
+    private static Tag tagFor(String name)
+    {
+        Tag tag = tagsByName.get(name);
+        if (tag != null)
+        {
+            return tag;
+        }
+
+        synchronized (tagsById)
+        {
+            tag = tagsByName.get(name);
+            if (tag == null)
+            {
+                tag = new Tag(tagsById.size(), name);
+                tagsById.add(tag);
+                tagsByName.put(name, tag);
+            }
+            return tag;
+        }
+    }
+
+    private static String tagName(int id)
+    {
+        synchronized (tagsById)
+        {
+            return tagsById.get(id).name;
+        }
+    }
+
+    /**
+     * Internal constructor, used by the builder. Does not copy its arguments.
+     */
+    private FlatAST(int[] tags, int[] sizes, long rootHash, long[] fingerprints, int[] weights, long totalSize)
+    {
+        this.tags = tags;
+        this.sizes = sizes;
+        this.rootHash = rootHash;
+        this.fingerprints = fingerprints;
+        this.weights = weights;
+        this.totalSize = totalSize;
+    }
+
+    /**
+     * Given another tree, generate a similarity score.
+     *
+     * @param other The tree to compare against
+     * @return Sum of the sizes of the subtrees of this tree which also occur in the other, over the sum of the sizes
+     * of all subtrees of this tree
+     */
+    public Real getPercentMatched(FlatAST other)
+    {
+        checkNotNull(other);
+
+        long[] mine = fingerprints;
+        long[] theirs = other.fingerprints;
+
+        long matched = 0;
+        int i = 0;
+        int j = 0;
+        while (i < mine.length && j < theirs.length)
+        {
+            if (mine[i] < theirs[j])
+            {
+                i++;
+            }
+            else if (mine[i] > theirs[j])
+            {
+                j++;
+            }
+            else
+            {
+                matched += weights[i];
+                i++;
+                j++;
+            }
+        }
+
+        return new Real(matched, totalSize);
+    }
+
+    /**
+     * @return Number of distinct fingerprints in this tree's fingerprint table
+     */
+    public int getNumFingerprints()
+    {
+        return fingerprints.length;
+    }
+
+    /**
+     * @return Number of nodes in the tree
+     */
+    public int size()
+    {
+        return sizes.length;
+    }
+
+    /**
+     * @param node Index of a node, in post-order
+     * @return Tag of the node
+     */
+    public String getTag(int node)
+    {
+        return tagName(tags[node]);
+    }
+
+    /**
+     * @return Hash of the whole tree
+     */
+    public long getRootHash()
+    {
+        return rootHash;
+    }
+
+    /**
+     * @param node Index of a node, in post-order
+     * @return Number of nodes in the subtree rooted at the node, including itself
+     */
+    public int getSubtreeSize(int node)
+    {
+        return sizes[node];
+    }
+
+    /**
+     * @param node Index of a node, in post-order
+     * @return Number of direct children of the node
+     */
+    public int getNumChildren(int node)
+    {
+        int children = 0;
+        for (int child = node - 1; child > node - sizes[node]; child -= sizes[child])
+        {
+            children++;
+        }
+        return children;
+    }
+
+    /**
+     * @return Index of the root node, which is always the last
+     */
+    public int getRoot()
+    {
+        return sizes.length - 1;
+    }
+
+    @Override
+    public Real getPercentageMatched()
+    {
+        throw new RuntimeException("cannot evaluate getPercentMatched()");
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof FlatAST))
+        {
+            return false;
+        }
+
+        FlatAST other = (FlatAST) obj;
+        return Arrays.equals(tags, other.tags) && Arrays.equals(sizes, other.sizes);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(rootHash);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Syntax tree " + getTag(getRoot()) + " of " + size() + " nodes";
+    }
+
+    /**
+     * Appends nodes in post-order, computing hashes and sizes as each node is completed.
+     *
+     * Every node takes as its children the most recently completed subtrees which are not yet children of another
+     * node. A tree is complete once exactly one subtree remains.
+     */
+    public static final class Builder
+    {
+        private int[] tags;
+        private long[] hashes;
+        private int[] sizes;
+        private int size = 0;
+
+        private int[] roots = new int[16];
+        private int numRoots = 0;
+
+        /**
+         * @param expectedSize Estimated number of nodes, used to size the initial buffers
+         */
+        public Builder(int expectedSize)
+        {
+            checkArgument(expectedSize >= 0, "Expected size must be non-negative!");
+
+            int capacity = Math.max(expectedSize, 16);
+            this.tags = new int[capacity];
+            this.hashes = new long[capacity];
+            this.sizes = new int[capacity];
+        }
+
+        /**
+         * Append a node without children.
+         *
+         * @param tag Tag of the node
+         * @return This builder
+         */
+        public Builder leaf(String tag)
+        {
+            return node(tag, 0);
+        }
+
+        /**
+         * Append a node whose children are the given number of most recently completed subtrees.
+         *
+         * @param tag Tag of the node
+         * @param numChildren Number of children
+         * @return This builder
+         */
+        public Builder node(String tag, int numChildren)
+        {
+            checkNotNull(tag);
+
+            return node(tagFor(tag), numChildren);
+        }
+
+        private Builder node(Tag tag, int numChildren)
+        {
+            checkArgument(numChildren >= 0 && numChildren <= numRoots,
+                    "Cannot take %s children from %s completed subtrees", numChildren, numRoots);
+
+            if (size == tags.length)
+            {
+                int capacity = size * 2;
+                tags = Arrays.copyOf(tags, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+
+            int firstChild = numRoots - numChildren;
+            int subtreeSize = 1;
+            long hash = tag.hash;
+            for (int i = firstChild; i < numRoots; i++)
+            {
+                subtreeSize += sizes[roots[i]];
+                hash = mix(hash * 31 + hashes[roots[i]]);
+            }
+
+            tags[size] = tag.id;
+            hashes[size] = mix(hash ^ numChildren);
+            sizes[size] = subtreeSize;
+
+            numRoots = firstChild;
+            if (numRoots == roots.length)
+            {
+                roots = Arrays.copyOf(roots, numRoots * 2);
+            }
+            roots[numRoots++] = size;
+            size++;
+
+            return this;
+        }
+
+        /**
+         * Finalizer of the SplitMix64 generator, so every bit of a hash depends on every bit of its input.
+         */
+        private static long mix(long h)
+        {
+            h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+            return h ^ h >>> 31;
+        }
+
+        /**
+         * Append a parse tree. Rules become nodes tagged with the simple name of their context class; tokens become
+         * leaves tagged as the rule containing them.
+         *
+         * @param tree Parse tree to append, as a single completed subtree
+         * @return This builder
+         */
+        public Builder add(ParserRuleContext tree)
+        {
+            checkNotNull(tree);
+
+            // Walk iteratively, as parse trees of long expressions or statement lists may be very deep
+            ParseTree[] path = new ParseTree[64];
+            Tag[] pathTags = new Tag[64];
+            int[] next = new int[64];
+            int depth = 0;
+
+            path[0] = tree;
+            pathTags[0] = ruleTags.get(tree.getClass());
+            next[0] = 0;
+            depth = 1;
+
+            while (depth > 0)
+            {
+                ParseTree top = path[depth - 1];
+                int index = next[depth - 1]++;
+
+                if (index == top.getChildCount())
+                {
+                    node(pathTags[depth - 1], index);
+                    path[--depth] = null;
+                    continue;
+                }
+
+                ParseTree child = top.getChild(index);
+                if (!(child instanceof RuleNode))
+                {
+                    node(pathTags[depth - 1], 0);
+                    continue;
+                }
+
+                if (depth == path.length)
+                {
+                    path = Arrays.copyOf(path, depth * 2);
+                    pathTags = Arrays.copyOf(pathTags, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+                path[depth] = child;
+                pathTags[depth] = ruleTags.get(child.getClass());
+                next[depth] = 0;
+                depth++;
+            }
+
+            return this;
+        }
+
+        /**
+         * @return Number of nodes appended so far
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * @return Number of completed subtrees which are not yet children of another node
+         */
+        public int getNumSubtrees()
+        {
+            return numRoots;
+        }
+
+        /**
+         * @return Tree of every node appended
+         */
+        public FlatAST build()
+        {
+            checkState(numRoots == 1, "Expected a single root, but " + numRoots + " subtrees are incomplete");
+
+            long[] fingerprints = Arrays.copyOf(hashes, size);
+            Arrays.sort(fingerprints);
+            int distinct = 0;
+            for (int i = 0; i < size; i++)
+            {
+                if (distinct == 0 || fingerprints[distinct - 1] != fingerprints[i])
+                {
+                    fingerprints[distinct++] = fingerprints[i];
+                }
+            }
+            fingerprints = Arrays.copyOf(fingerprints, distinct);
+
+            int[] weights = new int[distinct];
+            long totalSize = 0;
+            for (int i = 0; i < size; i++)
+            {
+                weights[Arrays.binarySearch(fingerprints, hashes[i])] += sizes[i];
+                totalSize += sizes[i];
+            }
+
+            return new FlatAST(Arrays.copyOf(tags, size), Arrays.copyOf(sizes, size), hashes[size - 1], fingerprints,
+                    weights, totalSize);
+        }
+    }
+
+    /**
+     * Appends rules to a builder as a parser exits them, so a tree can be built without the parser also building its
+     * parse tree. The tree appended is the same as adding the parse tree would have appended.
+     *
+     * Left-recursive rules need care: the parser exits the context parsed so far before entering the context which
+     * will contain it, so the subtree just completed is moved into the rule entered after it.
+     */
+    public static final class TreeListener implements ParseTreeListener
+    {
+        private final Builder builder;
+
+        // Number of children completed so far for each rule being parsed; the first counts top-level subtrees
+        private int[] children = new int[64];
+        private int depth = 1;
+        private ParserRuleContext lastExited = null;
+
+        // State of the builder before the last top-level rule was entered
+        private int markSize;
+        private int markRoots;
+        private int markLastRoot;
+
+        /**
+         * @param builder Builder to append each top-level rule to, as a completed subtree
+         */
+        public TreeListener(Builder builder)
+        {
+            checkNotNull(builder);
+
+            this.builder = builder;
+            mark();
+        }
+
+        private void mark()
+        {
+            markSize = builder.size;
+            markRoots = builder.numRoots;
+            // the only completed subtree a rule can take from outside itself is the one a left-recursive rule adopts
+            markLastRoot = markRoots > 0 ? builder.roots[markRoots - 1] : -1;
+        }
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx)
+        {
+            if (depth == 1)
+            {
+                mark();
+            }
+
+            int adopted = 0;
+            if (lastExited != null && lastExited.parent == ctx)
+            {
+                children[depth - 1]--;
+                adopted = 1;
+            }
+            lastExited = null;
+
+            if (depth == children.length)
+            {
+                children = Arrays.copyOf(children, depth * 2);
+            }
+            children[depth++] = adopted;
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx)
+        {
+            builder.node(ruleTags.get(ctx.getClass()), children[--depth]);
+            children[depth - 1]++;
+            lastExited = ctx;
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node)
+        {
+            builder.node(ruleTags.get(node.getParent().getClass()), 0);
+            children[depth - 1]++;
+            lastExited = null;
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node)
+        {
+            visitTerminal(node);
+        }
+
+        /**
+         * Remove every node appended since the last top-level rule was entered, after parsing it was abandoned.
+         *
+         * Generated parsers exit every rule they are in as an exception unwinds through them, so a rule cut short
+         * still appears complete, and must be removed this way.
+         */
+        public void discardIncomplete()
+        {
+            builder.size = markSize;
+            builder.numRoots = markRoots;
+            if (markRoots > 0)
+            {
+                builder.roots[markRoots - 1] = markLastRoot;
+            }
+            depth = 1;
+            lastExited = null;
+        }
+    }
+}
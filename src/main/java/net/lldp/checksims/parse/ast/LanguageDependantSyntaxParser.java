@@ -25,7 +25,6 @@ import java.util.Set;
 import net.lldp.checksims.submission.Submission;
 
 import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTreeVisitor;
 
 /**
  * An interface for abstracting over syntax parsers for any implemented language.
@@ -36,18 +35,36 @@ public interface LanguageDependantSyntaxParser
 {
 
     /**
-     * Get the ANTLR treewalker for this language
-     * @return a treewalker for the language specified. This should be generated
-     * by antlr
+     * get all top-level parser rule contexts that are relevant to AST creation and comparison
+     * @param sub the submission to parse
+     * @param contentAsString the content as a string
+     * @return a set of ParserRulecontexts so that they may be turned into ASTs, in source order, as trees are
+     * hashed in order
      */
-    ParseTreeVisitor<AST> getTreeWalker();
+    default Set<ParserRuleContext> sourceToDefaultcontext(Submission sub, String contentAsString)
+    {
+        return sourceToDefaultcontext(sub, contentAsString, false);
+    }
 
     /**
      * get all top-level parser rule contexts that are relevant to AST creation and comparison
      * @param sub the submission to parse
      * @param contentAsString the content as a string
-     * @return a set of ParserRulecontexts so that they may be turned into ASTs
+     * @param sllFirst whether to try parsing with SLL prediction before full LL prediction
+     * @return a set of ParserRulecontexts so that they may be turned into ASTs, in source order, as trees are
+     * hashed in order
+     */
+    Set<ParserRuleContext> sourceToDefaultcontext(Submission sub, String contentAsString, boolean sllFirst);
+
+    /**
+     * parse a submission straight into a syntax tree, appending the same rules that sourceToDefaultcontext would
+     * return as the parser exits them, so that the full parse tree is never built
+     * @param sub the submission to parse
+     * @param contentAsString the content as a string
+     * @param sllFirst whether to try parsing with SLL prediction before full LL prediction
+     * @return a builder holding each top-level rule as a completed subtree, in source order; holding none if the
+     * submission could not be parsed
      */
-    Set<ParserRuleContext> sourceToDefaultcontext(Submission sub, String contentAsString);
+    FlatAST.Builder sourceToTree(Submission sub, String contentAsString, boolean sllFirst);
 
 }
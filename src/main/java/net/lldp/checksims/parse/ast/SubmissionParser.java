@@ -20,8 +20,6 @@
  */
 package net.lldp.checksims.parse.ast;
 
-import java.util.stream.Stream;
-
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
 import net.lldp.checksims.parse.ast.ASTFactory.EOFParsingException;
 import net.lldp.checksims.submission.Submission;
@@ -34,39 +32,74 @@ import net.lldp.checksims.submission.Submission;
  * The submission parser uses a language dependant syntax parser to generate
  * and combine many ASTs present in submissions, and combine them into a single
  * AST for comparison.
+ *
+ * Trees are built into a {@link FlatAST} while the source is parsed, without
+ * ANTLR building a parse tree or creating an object per node.
  */
-public class SubmissionParser implements SubmissionPercentableCalculator<AST>
+public class SubmissionParser implements SubmissionPercentableCalculator<FlatAST>
 {
     private final LanguageDependantSyntaxParser ldsp;
+    private final boolean sllFirst;
     
     /**
      * Default Submission parser, requires a languageDependantSyntaxParser
      * @param ldsp the language dependant syntax parser to use
      */
     public SubmissionParser(LanguageDependantSyntaxParser ldsp)
+    {
+        this(ldsp, false);
+    }
+
+    /**
+     * @param ldsp the language dependant syntax parser to use
+     * @param sllFirst whether to try parsing with SLL prediction before full LL prediction
+     */
+    public SubmissionParser(LanguageDependantSyntaxParser ldsp, boolean sllFirst)
     {
         this.ldsp = ldsp;
+        this.sllFirst = sllFirst;
+    }
+
+    /**
+     * @return a parser using the same language, which tries SLL prediction before full LL prediction
+     */
+    public SubmissionParser withSLLFirst()
+    {
+        return new SubmissionParser(ldsp, true);
+    }
+
+    /**
+     * @return whether SLL prediction is tried before full LL prediction
+     */
+    public boolean isSLLFirst()
+    {
+        return sllFirst;
     }
     
     @Override
-    public AST generateFromSubmission(Submission s)
+    public FlatAST generateFromSubmission(Submission s)
     {
         try
         {
-            Stream<AST> asts = ldsp.sourceToDefaultcontext(s, s.getContentAsString()).stream().map(A -> A.accept(ldsp.getTreeWalker()));
-            return new AST("#PROGRAM", asts).cacheFingerprinting();
+            FlatAST.Builder builder = ldsp.sourceToTree(s, s.getContentAsString(), sllFirst);
+            return builder.node("#PROGRAM", builder.getNumSubtrees()).build();
         }
         catch(EOFParsingException eof)
         {
-            return new AST("#INVALID AST").cacheFingerprinting();
+            return new FlatAST.Builder(1).leaf("#INVALID AST").build();
         }
         
     }
 
     @Override
-    public Class<AST> getTypeClass()
+    public Class<FlatAST> getTypeClass()
     {
-        return AST.class;
+        return FlatAST.class;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Parsing with " + ldsp.getClass().getName() + (sllFirst ? ", SLL first" : "");
     }
-    
 }
@@ -0,0 +1,106 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import net.lldp.checksims.parse.ast.FlatAST;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes syntax trees, as a post-order listing of each node's tag and number of children.
+ *
+ * Each distinct tag is written once, to a dictionary; nodes refer to their tag by dictionary index. Hashes and
+ * fingerprints are not stored, as they are cheap to recompute while rebuilding the tree.
+ */
+final class ASTCodec implements PercentableCodec<FlatAST> {
+    @Override
+    public void write(FlatAST percentable, DataOutputStream out) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] indices = new int[percentable.size()];
+        for(int i = 0; i < indices.length; i++) {
+            indices[i] = dictionary.computeIfAbsent(percentable.getTag(i), (tag) -> {
+                entries.add(tag);
+                return entries.size() - 1;
+            });
+        }
+
+        out.writeInt(entries.size());
+        for(String entry : entries) {
+            PercentableCodec.writeString(entry, out);
+        }
+
+        out.writeInt(indices.length);
+        for(int i = 0; i < indices.length; i++) {
+            out.writeInt(indices[i]);
+            out.writeInt(percentable.getNumChildren(i));
+        }
+    }
+
+    @Override
+    public FlatAST read(DataInputStream in) throws IOException {
+        int numEntries = in.readInt();
+        if(numEntries < 0) {
+            throw new IOException("Malformed dictionary size " + numEntries);
+        }
+
+        String[] tags = new String[numEntries];
+        for(int i = 0; i < numEntries; i++) {
+            tags[i] = PercentableCodec.readString(in);
+            if(tags[i] == null) {
+                throw new IOException("Malformed null tag");
+            }
+        }
+
+        int numNodes = in.readInt();
+        if(numNodes <= 0) {
+            throw new IOException("Malformed node count " + numNodes);
+        }
+
+        FlatAST.Builder builder = new FlatAST.Builder(numNodes);
+        for(int i = 0; i < numNodes; i++) {
+            int index = in.readInt();
+            if(index < 0 || index >= numEntries) {
+                throw new IOException("Malformed dictionary index " + index);
+            }
+
+            try {
+                builder.node(tags[index], in.readInt());
+            } catch(IllegalArgumentException e) {
+                throw new IOException("Malformed child count", e);
+            }
+        }
+
+        try {
+            return builder.build();
+        } catch(IllegalStateException e) {
+            throw new IOException("Malformed syntax tree", e);
+        }
+    }
+}
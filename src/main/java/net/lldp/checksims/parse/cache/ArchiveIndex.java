@@ -0,0 +1,445 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.submission.Submission;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Precomputed archive of prepared submissions, in a single file.
+ *
+ * An index holds the Percentable of every archive submission, as generated for one algorithm, calculator, and chain
+ * of preprocessors, together with each submission's name, line count, and validity. It can stand in for an archive
+ * directory, so archived submissions need not be read, preprocessed, or prepared again on every run; their source is
+ * not kept. Indexes are read through a memory mapping, and each Percentable is only decoded when it is prepared.
+ *
+ * The file starts with a header recording the configuration it was built for, followed by a table of contents and the
+ * encoded Percentables, in the order of the table.
+ */
+public final class ArchiveIndex {
+    private static final int MAGIC = 0x43534958;
+    private static final int FORMAT_VERSION = 2;
+    private static final String INVALID_FLAG = "invalid";
+
+    private final Path file;
+    private final ByteBuffer mapped;
+    private final ImmutableList<String> configuration;
+    private final ImmutableSet<Submission> submissions;
+
+    /**
+     * Map and read the header of an index file.
+     *
+     * @param file Index file to open
+     * @throws IOException Thrown on error reading the file, or if it is not a valid index
+     */
+    private ArchiveIndex(Path file) throws IOException {
+        this.file = file;
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Archive index " + file + " is too large to map");
+            }
+
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        ByteBuffer header = mapped.duplicate();
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(header));
+
+        if(in.readInt() != MAGIC) {
+            throw new IOException(file + " is not an archive index");
+        }
+        int version = in.readInt();
+        if(version != FORMAT_VERSION) {
+            throw new IOException("Archive index " + file + " has unsupported version " + version);
+        }
+
+        int configurationSize = in.readInt();
+        if(configurationSize < 0) {
+            throw new IOException("Malformed archive index " + file);
+        }
+        List<String> parts = new ArrayList<>(configurationSize);
+        for(int i = 0; i < configurationSize; i++) {
+            parts.add(PercentableCodec.readString(in));
+        }
+        this.configuration = ImmutableList.copyOf(parts);
+
+        int count = in.readInt();
+        if(count < 0) {
+            throw new IOException("Malformed archive index " + file);
+        }
+
+        List<String> names = new ArrayList<>(count);
+        int[] linesOfCode = new int[count];
+        boolean[] invalid = new boolean[count];
+        int[] lengths = new int[count];
+        for(int i = 0; i < count; i++) {
+            names.add(PercentableCodec.readString(in));
+            linesOfCode[i] = in.readInt();
+            invalid[i] = in.readBoolean();
+            lengths[i] = in.readInt();
+        }
+
+        // Percentables follow the table of contents, in the same order
+        long offset = header.position();
+        ImmutableSet.Builder<Submission> builder = ImmutableSet.builder();
+        for(int i = 0; i < count; i++) {
+            if(lengths[i] < 0 || offset + lengths[i] > mapped.capacity()) {
+                throw new IOException("Malformed archive index " + file);
+            }
+
+            builder.add(new IndexedSubmission(this, names.get(i), linesOfCode[i], invalid[i], (int)offset,
+                    lengths[i]));
+            offset += lengths[i];
+        }
+        this.submissions = builder.build();
+    }
+
+    /**
+     * @param file File to check
+     * @return Whether the given file is an archive index, judged by its first bytes
+     */
+    public static boolean isIndex(Path file) {
+        checkNotNull(file);
+
+        if(!Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try(DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file Index file to open
+     * @return Archive index read from the given file
+     * @throws IOException Thrown on error reading the file, or if it is not a valid index
+     */
+    public static ArchiveIndex open(Path file) throws IOException {
+        checkNotNull(file);
+
+        return new ArchiveIndex(file);
+    }
+
+    /**
+     * @param calculator Calculator to check
+     * @return Whether the Percentables generated by the given calculator can be stored in an index
+     */
+    public static boolean canIndex(SubmissionPercentableCalculator<?> calculator) {
+        checkNotNull(calculator);
+
+        return PreparationCache.codecFor(calculator.getTypeClass()) != null;
+    }
+
+    /**
+     * Write an index of prepared submissions.
+     *
+     * @param file File to write the index to; replaced if it exists
+     * @param prepared Prepared submissions to index
+     * @param calculator Calculator the submissions were prepared with. Must be indexable.
+     * @param algorithmName Name of the algorithm the Percentables will be compared with
+     * @param preprocessorNames Names of the preprocessors applied to the submissions, in order
+     * @throws IOException Thrown on error writing the index
+     */
+    public static <T extends Percentable> void write(Path file, PreparedSubmissions<T> prepared,
+                                                     SubmissionPercentableCalculator<T> calculator,
+                                                     String algorithmName, List<String> preprocessorNames)
+            throws IOException {
+        checkNotNull(file);
+        checkNotNull(prepared);
+        checkNotNull(algorithmName);
+        checkNotNull(preprocessorNames);
+
+        PercentableCodec<T> codec = PreparationCache.codecFor(calculator.getTypeClass());
+        checkArgument(codec != null, "Results of %s cannot be indexed", calculator);
+
+        List<Submission> ordered = new ArrayList<>(prepared.getSubmissions());
+        ordered.sort(Submission::compareTo);
+
+        List<String> configuration = PreparationCache.describe(calculator, algorithmName, preprocessorNames);
+
+        // Written to a temporary file and moved into place, so an interrupted write never leaves a partial index
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try {
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(channel)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+
+                out.writeInt(configuration.size());
+                for(String part : configuration) {
+                    PercentableCodec.writeString(part, out);
+                }
+
+                // Entry lengths are unknown until each is encoded, so reserve them in the table and patch them after
+                int[] lengthPositions = new int[ordered.size()];
+                out.writeInt(ordered.size());
+                for(int i = 0; i < ordered.size(); i++) {
+                    Submission submission = ordered.get(i);
+
+                    PercentableCodec.writeString(submission.getName(), out);
+                    out.writeInt(submission.getLinesOfCode());
+                    out.writeBoolean(submission.testFlag(INVALID_FLAG));
+                    lengthPositions[i] = out.size();
+                    out.writeInt(0);
+                }
+
+                int[] lengths = new int[ordered.size()];
+                for(int i = 0; i < ordered.size(); i++) {
+                    int start = out.size();
+                    codec.write(prepared.get(ordered.get(i)), out);
+
+                    // DataOutputStream saturates its count at Integer.MAX_VALUE, past the largest index we can map
+                    if(out.size() == Integer.MAX_VALUE) {
+                        throw new IOException("Archive index " + file + " is too large to map");
+                    }
+                    lengths[i] = out.size() - start;
+                }
+                out.flush();
+
+                ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+                for(int i = 0; i < lengths.length; i++) {
+                    length.clear();
+                    length.putInt(lengths[i]);
+                    length.flip();
+                    while(length.hasRemaining()) {
+                        channel.write(length, lengthPositions[i] + length.position());
+                    }
+                }
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @param submission Submission to check
+     * @return Whether the submission was read from an archive index, so has no content
+     */
+    public static boolean isIndexed(Submission submission) {
+        checkNotNull(submission);
+
+        return submission instanceof IndexedSubmission;
+    }
+
+    /**
+     * Add the stored entry of a submission read from an index to a hash, in place of its content, which is not kept.
+     *
+     * An entry is the encoded Percentable of the submission, so it changes whenever the submission's source changed
+     * enough to be compared differently.
+     *
+     * @param submission Submission read from an index
+     * @param hasher Hasher to add the entry to
+     */
+    public static void hashEntry(Submission submission, Hasher hasher) {
+        checkNotNull(hasher);
+        checkArgument(isIndexed(submission), "Submission %s was not read from an archive index", submission);
+
+        IndexedSubmission indexed = (IndexedSubmission)submission;
+        indexed.getIndex().hashEntry(indexed.getOffset(), indexed.getLength(), hasher);
+    }
+
+    /**
+     * @return Every submission in this index. Their content is empty, as source is not kept.
+     */
+    public ImmutableSet<Submission> getSubmissions() {
+        return submissions;
+    }
+
+    /**
+     * Wrap a calculator so submissions of this index are given their stored Percentables.
+     *
+     * Other submissions are passed to the wrapped calculator.
+     *
+     * @param calculator Calculator to wrap
+     * @param algorithmName Name of the algorithm the Percentables will be compared with
+     * @param preprocessorNames Names of the preprocessors applied to other submissions, in order
+     * @return Calculator serving this index
+     * @throws ChecksimsException Thrown if this index was built for a different configuration
+     */
+    public <T extends Percentable> SubmissionPercentableCalculator<T> wrap(SubmissionPercentableCalculator<T> calculator,
+                                                                           String algorithmName,
+                                                                           List<String> preprocessorNames)
+            throws ChecksimsException {
+        checkNotNull(calculator);
+        checkNotNull(algorithmName);
+        checkNotNull(preprocessorNames);
+
+        PercentableCodec<T> codec = PreparationCache.codecFor(calculator.getTypeClass());
+        List<String> expected = PreparationCache.describe(calculator, algorithmName, preprocessorNames);
+        if(codec == null || !configuration.equals(expected)) {
+            throw new ChecksimsException("Archive index " + file + " was built for " + configuration
+                    + ", cannot be used with " + expected + "!");
+        }
+
+        return new IndexCalculator<>(calculator, codec);
+    }
+
+    /**
+     * @param offset Offset of an encoded Percentable in the file
+     * @param length Length of the encoded Percentable
+     * @param codec Codec to decode with
+     * @return Decoded Percentable
+     * @throws IOException Thrown if the entry is malformed
+     */
+    <T extends Percentable> T read(int offset, int length, PercentableCodec<T> codec) throws IOException {
+        // Each reader gets its own view of the mapping, so entries may be decoded concurrently
+        ByteBuffer entry = mapped.duplicate();
+        entry.position(offset);
+        entry.limit(offset + length);
+
+        return codec.read(new DataInputStream(new ByteBufferInputStream(entry)));
+    }
+
+    /**
+     * @param offset Offset of an encoded Percentable in the file
+     * @param length Length of the encoded Percentable
+     * @param hasher Hasher to add the encoded Percentable to
+     */
+    private void hashEntry(int offset, int length, Hasher hasher) {
+        ByteBuffer entry = mapped.duplicate();
+        entry.position(offset);
+        entry.limit(offset + length);
+
+        hasher.putInt(length);
+
+        byte[] chunk = new byte[Math.min(length, 8192)];
+        while(entry.hasRemaining()) {
+            int size = Math.min(chunk.length, entry.remaining());
+            entry.get(chunk, 0, size);
+            hasher.putBytes(chunk, 0, size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Archive index " + file + " of " + submissions.size() + " submissions";
+    }
+
+    /**
+     * Calculator decoding the stored Percentables of submissions of this index, and delegating all others.
+     */
+    private final class IndexCalculator<T extends Percentable> implements SubmissionPercentableCalculator<T> {
+        private final SubmissionPercentableCalculator<T> calculator;
+        private final PercentableCodec<T> codec;
+
+        IndexCalculator(SubmissionPercentableCalculator<T> calculator, PercentableCodec<T> codec) {
+            this.calculator = calculator;
+            this.codec = codec;
+        }
+
+        @Override
+        public T generateFromSubmission(Submission s) {
+            checkNotNull(s);
+
+            if(s instanceof IndexedSubmission && ((IndexedSubmission)s).getIndex() == ArchiveIndex.this) {
+                try {
+                    return ((IndexedSubmission)s).read(codec);
+                } catch(IOException e) {
+                    throw new UncheckedIOException("Error reading submission " + s.getName() + " from " + file, e);
+                }
+            }
+
+            return calculator.generateFromSubmission(s);
+        }
+
+        @Override
+        public Class<T> getTypeClass() {
+            return calculator.getTypeClass();
+        }
+
+        @Override
+        public String toString() {
+            return calculator.toString();
+        }
+    }
+
+    /**
+     * Reads from a ByteBuffer, advancing its position.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if(length == 0) {
+                return 0;
+            }
+            if(!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int toRead = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, toRead);
+            return toRead;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.submission.Submission;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Submission read from an archive index.
+ *
+ * Only the metadata recorded in the index is available; the source of the submission is not kept, so its content is
+ * empty. Its Percentable is decoded from the index when it is prepared.
+ */
+final class IndexedSubmission implements Submission {
+    private final ArchiveIndex index;
+    private final String name;
+    private final int linesOfCode;
+    private final int offset;
+    private final int length;
+    private final Set<String> flags = new HashSet<>();
+    private final Map<Class<? extends Percentable>, Percentable> parsedTypes = new HashMap<>();
+    private double sortingScore;
+    private double maximumScore;
+
+    /**
+     * @param index Index the submission was read from
+     * @param name Name of the submission
+     * @param linesOfCode Number of lines in the submission when it was indexed
+     * @param invalid Whether the submission was flagged invalid when it was indexed
+     * @param offset Offset of the submission's encoded Percentable in the index
+     * @param length Length of the submission's encoded Percentable
+     */
+    IndexedSubmission(ArchiveIndex index, String name, int linesOfCode, boolean invalid, int offset, int length) {
+        this.index = index;
+        this.name = name;
+        this.linesOfCode = linesOfCode;
+        this.offset = offset;
+        this.length = length;
+
+        if(invalid) {
+            flags.add("invalid");
+        }
+    }
+
+    /**
+     * @return Index the submission was read from
+     */
+    ArchiveIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Offset of the submission's encoded Percentable in the index
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Length of the submission's encoded Percentable
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * @param codec Codec to decode with
+     * @return Percentable stored for this submission
+     * @throws IOException Thrown if the entry is malformed
+     */
+    <T extends Percentable> T read(PercentableCodec<T> codec) throws IOException {
+        return index.read(offset, length, codec);
+    }
+
+    @Override
+    public String getContentAsString() {
+        return "";
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    @Override
+    public int getLinesOfCode() {
+        return linesOfCode;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized void increaseScore(double r, double orig) {
+        if(orig > maximumScore) {
+            maximumScore = orig;
+        }
+        sortingScore += r;
+    }
+
+    @Override
+    public synchronized double getTotalCopyScore() {
+        return sortingScore;
+    }
+
+    @Override
+    public synchronized Double getMaximumCopyScore() {
+        return maximumScore;
+    }
+
+    @Override
+    public synchronized void setFlag(String flagName) {
+        flags.add(flagName);
+    }
+
+    @Override
+    public synchronized void unsetFlag(String flagName) {
+        flags.remove(flagName);
+    }
+
+    @Override
+    public synchronized boolean testFlag(String flagName) {
+        return flags.contains(flagName);
+    }
+
+    @Override
+    public <T extends Percentable> void addType(Class<T> clazz, T percentable) {
+        parsedTypes.put(clazz, percentable);
+    }
+
+    @Override
+    public boolean contains(Class<? extends Percentable> clazz) {
+        return parsedTypes.containsKey(clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Percentable> T get(Class<T> clazz) {
+        return (T)parsedTypes.get(clazz);
+    }
+
+    @Override
+    public void invalidateCache() {
+        parsedTypes.clear();
+    }
+
+    @Override
+    public int compareTo(Submission other) {
+        return name.compareTo(other.getName());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof IndexedSubmission)) {
+            return false;
+        }
+
+        IndexedSubmission otherSubmission = (IndexedSubmission)other;
+
+        return otherSubmission.index == index && otherSubmission.name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "An indexed submission with name " + name + " and " + linesOfCode + " lines";
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import net.lldp.checksims.parse.Percentable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes one type of Percentable to and from a cache entry.
+ *
+ * @param <T> Type of Percentable serialized
+ */
+interface PercentableCodec<T extends Percentable> {
+    /**
+     * @param percentable Percentable to serialize
+     * @param out Stream to write to
+     * @throws IOException Thrown on error writing
+     */
+    void write(T percentable, DataOutputStream out) throws IOException;
+
+    /**
+     * @param in Stream to read from
+     * @return Percentable read from the stream, using lexemes of the current LexemeMap generation
+     * @throws IOException Thrown on error reading, or if the entry is malformed
+     */
+    T read(DataInputStream in) throws IOException;
+
+    /**
+     * Write a string of any length. Unlike writeUTF, this is not limited to 64KB.
+     *
+     * @param string String to write; may be null
+     * @param out Stream to write to
+     * @throws IOException Thrown on error writing
+     */
+    static void writeString(String string, DataOutputStream out) throws IOException {
+        if(string == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @param in Stream to read from
+     * @return String written by {@link #writeString(String, DataOutputStream)}; may be null
+     * @throws IOException Thrown on error reading, or if the length is malformed
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length == -1) {
+            return null;
+        } else if(length < 0) {
+            throw new IOException("Malformed string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
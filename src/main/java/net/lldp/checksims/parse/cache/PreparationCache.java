@@ -0,0 +1,410 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.ast.FlatAST;
+import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
+import net.lldp.checksims.submission.Submission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Content-addressed, size-bounded cache of prepared submissions on disk, shared between runs.
+ *
+ * Each entry holds the Percentable generated for one submission. It is keyed by a hash of the submission's content,
+ * the algorithm, the calculator, and the preprocessors applied, so a changed submission or configuration simply misses.
+ * Entries are written to a temporary file and moved into place, so concurrent runs sharing a directory never read a
+ * partial entry. Reading an entry marks it as recently used; {@link #evict()} removes the least recently used entries
+ * until the cache fits its size bound again. Unreadable entries are deleted and treated as misses.
+ */
+public final class PreparationCache {
+    /**
+     * Default size bound of a cache, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final int MAGIC = 0x43534d43;
+    private static final int FORMAT_VERSION = 2;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String INVALID_FLAG = "invalid";
+
+    private static final ImmutableMap<Class<?>, PercentableCodec<?>> codecs = ImmutableMap.of(
+            PercentableTokenListDecorator.class, new TokenCodec(),
+            FlatAST.class, new ASTCodec());
+
+    private static Logger logs = LoggerFactory.getLogger(PreparationCache.class);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Open a cache, creating its directory if it does not exist.
+     *
+     * @param directory Directory holding the cache entries
+     * @param maxBytes Maximum total size of all entries, enforced by {@link #evict()}
+     * @throws IOException Thrown on error creating the directory
+     */
+    public PreparationCache(Path directory, long maxBytes) throws IOException {
+        checkNotNull(directory);
+        checkArgument(maxBytes > 0, "Cache size must be positive, got " + maxBytes);
+
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Wrap a calculator so it consults this cache before generating.
+     *
+     * Calculators producing a Percentable this cache cannot store are returned unchanged.
+     *
+     * @param calculator Calculator to wrap
+     * @param algorithmName Name of the algorithm the Percentables will be compared with
+     * @param preprocessorNames Names of the preprocessors applied to the submissions, in order
+     * @return Caching calculator, or the given calculator if its Percentables cannot be cached
+     */
+    public <T extends Percentable> SubmissionPercentableCalculator<T> wrap(SubmissionPercentableCalculator<T> calculator,
+                                                                           String algorithmName,
+                                                                           List<String> preprocessorNames) {
+        checkNotNull(calculator);
+        checkNotNull(algorithmName);
+        checkNotNull(preprocessorNames);
+
+        PercentableCodec<T> codec = codecFor(calculator.getTypeClass());
+        if(codec == null) {
+            logs.debug("Results of " + calculator + " cannot be cached");
+            return calculator;
+        }
+
+        return new CachingCalculator<>(calculator, codec, describe(calculator, algorithmName, preprocessorNames));
+    }
+
+    /**
+     * @param type Type of Percentable
+     * @return Codec for the given type, or null if it cannot be serialized
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Percentable> PercentableCodec<T> codecFor(Class<T> type) {
+        return (PercentableCodec<T>)codecs.get(type);
+    }
+
+    /**
+     * @param calculator Calculator generating the Percentables
+     * @param algorithmName Name of the algorithm the Percentables will be compared with
+     * @param preprocessorNames Names of the preprocessors applied to the submissions, in order
+     * @return Everything other than content which determines the generated Percentables
+     */
+    static List<String> describe(SubmissionPercentableCalculator<?> calculator, String algorithmName,
+                                 List<String> preprocessorNames) {
+        List<String> configuration = new ArrayList<>();
+        configuration.add(algorithmName);
+        configuration.add(calculator.toString());
+        configuration.addAll(preprocessorNames);
+
+        return configuration;
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits its size bound.
+     *
+     * @throws IOException Thrown on error listing the cache directory
+     */
+    public void evict() throws IOException {
+        List<Path> entries;
+        try(Stream<Path> files = Files.walk(directory, 2)) {
+            entries = files.filter((file) -> file.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .collect(Collectors.toList());
+        }
+
+        List<Entry> found = new ArrayList<>(entries.size());
+        long totalBytes = 0;
+        for(Path entry : entries) {
+            try {
+                Entry e = new Entry(entry, Files.size(entry), Files.getLastModifiedTime(entry));
+                found.add(e);
+                totalBytes += e.size;
+            } catch(IOException e) {
+                // Evicted concurrently by another run
+                logs.trace("Could not stat cache entry " + entry, e);
+            }
+        }
+
+        if(totalBytes <= maxBytes) {
+            return;
+        }
+
+        found.sort(Comparator.comparing((Entry e) -> e.lastUsed));
+        for(Entry entry : found) {
+            if(totalBytes <= maxBytes) {
+                break;
+            }
+
+            try {
+                Files.deleteIfExists(entry.path);
+                totalBytes -= entry.size;
+                evictions.increment();
+            } catch(IOException e) {
+                logs.warn("Could not evict cache entry " + entry.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Number of submissions whose Percentable was read from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of submissions whose Percentable was not cached, and had to be generated
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of entries evicted
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Log hit, miss, and eviction statistics.
+     */
+    public void logStatistics() {
+        long numHits = getHits();
+        long total = numHits + getMisses();
+        long hitPercent = total == 0 ? 0 : numHits * 100 / total;
+
+        logs.info("Preparation cache: " + numHits + " hits, " + getMisses() + " misses (" + hitPercent
+                + "% hit rate), " + stores.sum() + " entries stored, " + getEvictions() + " evicted");
+    }
+
+    /**
+     * @param configuration Everything other than content which determines the generated Percentable
+     * @param content Content of the submission
+     * @return Key of the submission's entry
+     */
+    static HashCode keyFor(List<String> configuration, String content) {
+        Hasher hasher = Hashing.sha256().newHasher();
+
+        hasher.putInt(FORMAT_VERSION);
+        hasher.putInt(configuration.size());
+        for(String part : configuration) {
+            hasher.putInt(part.length());
+            hasher.putString(part, StandardCharsets.UTF_8);
+        }
+        hasher.putString(content, StandardCharsets.UTF_8);
+
+        return hasher.hash();
+    }
+
+    /**
+     * @param key Key of an entry
+     * @return Path of the entry. Entries are spread over subdirectories to keep each directory small.
+     */
+    Path entryPath(HashCode key) {
+        String name = key.toString();
+
+        return directory.resolve(name.substring(0, 2)).resolve(name + ENTRY_SUFFIX);
+    }
+
+    /**
+     * @param key Key of the submission's entry
+     * @param codec Codec to read the entry with
+     * @param submission Submission being prepared, which is flagged invalid if it was when cached
+     * @return Cached Percentable, or null on a miss
+     */
+    private <T extends Percentable> T lookup(HashCode key, PercentableCodec<T> codec, Submission submission) {
+        Path entry = entryPath(key);
+        if(!Files.exists(entry)) {
+            return null;
+        }
+
+        T cached;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("not a cache entry of this version");
+            }
+
+            boolean invalid = in.readBoolean();
+            cached = codec.read(in);
+
+            if(invalid) {
+                submission.setFlag(INVALID_FLAG);
+            }
+        } catch(IOException | RuntimeException e) {
+            logs.warn("Discarding unreadable cache entry " + entry + ": " + e.getMessage());
+
+            try {
+                Files.deleteIfExists(entry);
+            } catch(IOException deleteError) {
+                logs.trace("Could not delete cache entry " + entry, deleteError);
+            }
+
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch(IOException e) {
+            logs.trace("Could not mark cache entry " + entry + " as used", e);
+        }
+
+        return cached;
+    }
+
+    /**
+     * @param key Key of the submission's entry
+     * @param codec Codec to write the entry with
+     * @param prepared Percentable generated for the submission
+     * @param invalid Whether the submission was flagged invalid while generating
+     */
+    private <T extends Percentable> void store(HashCode key, PercentableCodec<T> codec, T prepared, boolean invalid) {
+        Path entry = entryPath(key);
+        Path temp = null;
+
+        try {
+            Files.createDirectories(entry.getParent());
+            temp = Files.createTempFile(entry.getParent(), key.toString(), ".tmp");
+
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeBoolean(invalid);
+                codec.write(prepared, out);
+            }
+
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stores.increment();
+        } catch(IOException e) {
+            logs.warn("Could not store cache entry " + entry + ": " + e.getMessage());
+
+            if(temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch(IOException deleteError) {
+                    logs.trace("Could not delete temporary file " + temp, deleteError);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Preparation cache in " + directory + " of at most " + maxBytes + " bytes";
+    }
+
+    /**
+     * Size and last use of an entry, as found when evicting.
+     */
+    private static final class Entry {
+        private final Path path;
+        private final long size;
+        private final FileTime lastUsed;
+
+        Entry(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Calculator consulting this cache before delegating to the wrapped calculator, and storing what it generates.
+     */
+    private final class CachingCalculator<T extends Percentable> implements SubmissionPercentableCalculator<T> {
+        private final SubmissionPercentableCalculator<T> calculator;
+        private final PercentableCodec<T> codec;
+        private final List<String> configuration;
+
+        CachingCalculator(SubmissionPercentableCalculator<T> calculator, PercentableCodec<T> codec,
+                          List<String> configuration) {
+            this.calculator = calculator;
+            this.codec = codec;
+            this.configuration = configuration;
+        }
+
+        @Override
+        public T generateFromSubmission(Submission s) {
+            checkNotNull(s);
+
+            HashCode key = keyFor(configuration, s.getContentAsString());
+
+            T cached = lookup(key, codec, s);
+            if(cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+
+            T generated = calculator.generateFromSubmission(s);
+            store(key, codec, generated, s.testFlag(INVALID_FLAG));
+
+            return generated;
+        }
+
+        @Override
+        public Class<T> getTypeClass() {
+            return calculator.getTypeClass();
+        }
+
+        @Override
+        public String toString() {
+            return calculator.toString() + ", cached";
+        }
+    }
+}
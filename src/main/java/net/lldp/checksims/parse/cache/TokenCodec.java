@@ -0,0 +1,135 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import net.lldp.checksims.parse.token.LexemeMap;
+import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
+import net.lldp.checksims.parse.token.TokenArray;
+import net.lldp.checksims.parse.token.TokenType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializes token streams.
+ *
+ * Each distinct token is written once, as text, to a dictionary; the stream itself is a list of dictionary indices.
+ * Reading interns every dictionary entry once, producing lexemes valid in the current run.
+ */
+final class TokenCodec implements PercentableCodec<PercentableTokenListDecorator> {
+    private static final byte STRING_TOKEN = 0;
+    private static final byte CHARACTER_TOKEN = 1;
+
+    @Override
+    public void write(PercentableTokenListDecorator percentable, DataOutputStream out) throws IOException {
+        TokenArray tokens = percentable.getTokenArray();
+
+        Map<Integer, Integer> dictionary = new HashMap<>();
+        int[] indices = new int[tokens.size()];
+        for(int i = 0; i < tokens.size(); i++) {
+            indices[i] = dictionary.computeIfAbsent(tokens.getLexeme(i), (lexeme) -> dictionary.size());
+        }
+
+        Object[] entries = new Object[dictionary.size()];
+        for(Map.Entry<Integer, Integer> entry : dictionary.entrySet()) {
+            entries[entry.getValue()] = LexemeMap.getTokenForLexeme(entry.getKey());
+        }
+
+        out.writeUTF(tokens.getType().name());
+
+        out.writeInt(entries.length);
+        for(Object entry : entries) {
+            if(entry instanceof Character) {
+                out.writeByte(CHARACTER_TOKEN);
+                out.writeChar((Character)entry);
+            } else if(entry instanceof String) {
+                out.writeByte(STRING_TOKEN);
+                PercentableCodec.writeString((String)entry, out);
+            } else {
+                throw new IOException("Cannot serialize token " + entry + " of " + entry.getClass());
+            }
+        }
+
+        out.writeInt(indices.length);
+        for(int i = 0; i < indices.length; i++) {
+            out.writeInt(indices[i]);
+            out.writeBoolean(tokens.isValid(i));
+        }
+    }
+
+    @Override
+    public PercentableTokenListDecorator read(DataInputStream in) throws IOException {
+        TokenType type;
+        try {
+            type = TokenType.valueOf(in.readUTF());
+        } catch(IllegalArgumentException e) {
+            throw new IOException("Unknown token type in cache entry", e);
+        }
+
+        int numEntries = in.readInt();
+        if(numEntries < 0) {
+            throw new IOException("Malformed dictionary size " + numEntries);
+        }
+
+        int[] lexemes = new int[numEntries];
+        for(int i = 0; i < numEntries; i++) {
+            byte kind = in.readByte();
+            if(kind == CHARACTER_TOKEN) {
+                lexemes[i] = LexemeMap.getLexemeForToken(in.readChar());
+            } else if(kind == STRING_TOKEN) {
+                lexemes[i] = LexemeMap.getLexemeForToken(PercentableCodec.readString(in));
+            } else {
+                throw new IOException("Malformed token kind " + kind);
+            }
+        }
+
+        int numTokens = in.readInt();
+        if(numTokens < 0) {
+            throw new IOException("Malformed token count " + numTokens);
+        }
+
+        TokenArray.Builder builder = new TokenArray.Builder(type, numTokens);
+        boolean[] valid = new boolean[numTokens];
+        for(int i = 0; i < numTokens; i++) {
+            int index = in.readInt();
+            if(index < 0 || index >= numEntries) {
+                throw new IOException("Malformed dictionary index " + index);
+            }
+
+            builder.add(lexemes[index]);
+            valid[i] = in.readBoolean();
+        }
+
+        TokenArray tokens = builder.build();
+        for(int i = 0; i < numTokens; i++) {
+            if(!valid[i]) {
+                tokens.setValid(i, false);
+            }
+        }
+
+        return new PercentableTokenListDecorator(tokens);
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+/**
+ * The Cache package persists the Percentables generated for submissions between runs of Checksims.
+ *
+ * Entries are addressed by a hash of the submission's content and of everything which determines what is generated
+ * from it, so an entry can never be stale; unused entries are simply evicted once the cache grows past its size bound.
+ * Only Percentables with a codec are cached, and codecs store tokens by their text rather than by lexeme, as lexemes
+ * are only meaningful within a single run.
+ */
+package net.lldp.checksims.parse.cache;
@@ -154,4 +154,18 @@ public final class ConcreteToken implements Token {
 
         return new ConcreteToken(token.getLexeme(), token.getType(), token.isValid());
     }
+
+    /**
+     * Create a token directly from an existing lexeme, without consulting the LexemeMap.
+     *
+     * @param lexeme Lexeme for the new token. Must already be present in the LexemeMap.
+     * @param type Type of the new token
+     * @param valid Validity of the new token
+     * @return New token backed by the given lexeme
+     */
+    static Token fromLexeme(int lexeme, TokenType type, boolean valid) {
+        checkNotNull(type);
+
+        return new ConcreteToken(lexeme, type, valid);
+    }
 }
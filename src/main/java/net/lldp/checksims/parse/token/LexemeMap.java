@@ -21,12 +21,6 @@
 
 package net.lldp.checksims.parse.token;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
-import com.google.common.collect.Maps;
-
-import java.util.concurrent.atomic.AtomicInteger;
-
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -41,34 +35,27 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * This does result in wasted space if tokens are backed by characters. Java uses UTF-16 internally, and LexemeMap maps
  * to 32-bit integers, so representing characters in the LexemeMap doubles their size at present. This is considered
  * unavoidable at present, though in the future it is desired to add Tokens backed by Characters, not integers.
+ *
+ * Mappings are held in a concurrent table, so tokenizers on many threads may intern tokens at once. Runs open a
+ * {@link Scope} for as long as they use tokens; once every open scope is closed, the table is released and a new one
+ * started. Lexemes are never reused, so a token kept past the release of its table cannot be mistaken for a new one.
  */
 public final class LexemeMap {
     private LexemeMap() {}
 
-    // TODO: does this need to be synchronized if we're synchronizing the getLexemeForToken method?
-    private static final BiMap<Object, Integer> lexemeMap = Maps.synchronizedBiMap(HashBiMap.create());
-    private static final AtomicInteger lexemeIndex = new AtomicInteger();
+    private static volatile LexemeTable table = new LexemeTable(0);
+
+    // Guarded by LexemeMap.class
+    private static int openScopes = 0;
 
     /**
      * @param token Token to get lexeme for
      * @return Lexeme representing this token. If no such lexeme existed prior, it is created and mapped to the token.
      */
-    public static synchronized int getLexemeForToken(Object token) {
+    public static int getLexemeForToken(Object token) {
         checkNotNull(token);
 
-        if(!lexemeMap.containsKey(token)) {
-            int newLexeme = lexemeIndex.getAndIncrement();
-
-            Integer previous = lexemeMap.put(token, newLexeme);
-
-            if(previous != null) {
-                throw new RuntimeException("Overwrote lexeme mapping for token " + token.toString());
-            }
-
-            return newLexeme;
-        } else {
-            return lexemeMap.get(token);
-        }
+        return table.intern(token);
     }
 
     /**
@@ -80,11 +67,66 @@ public final class LexemeMap {
      * @return Token of given type
      */
     public static Object getTokenForLexeme(int lexeme) {
-        if(!lexemeMap.inverse().containsKey(lexeme)) {
+        Object token = table.lookup(lexeme);
+
+        if(token == null) {
             throw new RuntimeException("Lexeme " + lexeme + " does not map to any value!");
         }
 
-        return lexemeMap.inverse().get(lexeme);
+        return token;
+    }
+
+    /**
+     * Tokens created in different generations have unrelated lexemes, and must not be compared.
+     *
+     * @return Identifier of the current table, which changes every time a table is released
+     */
+    public static int getGeneration() {
+        return table.getFirstLexeme();
+    }
+
+    /**
+     * @return Number of tokens currently mapped
+     */
+    public static int size() {
+        return table.size();
+    }
+
+    /**
+     * Keep the current mappings alive until the returned scope is closed.
+     *
+     * @return Scope which must be closed when its holder no longer uses any tokens
+     */
+    public static Scope openScope() {
+        synchronized(LexemeMap.class) {
+            openScopes++;
+        }
+
+        return new Scope();
+    }
+
+    /**
+     * Holds the lexeme mappings alive for a run. Closing the last open scope releases every mapping.
+     */
+    public static final class Scope implements AutoCloseable {
+        private boolean closed = false;
+
+        private Scope() {}
+
+        @Override
+        public void close() {
+            synchronized(LexemeMap.class) {
+                if(closed) {
+                    return;
+                }
+                closed = true;
+
+                openScopes--;
+                if(openScopes == 0) {
+                    table = new LexemeTable(table.getNextLexeme());
+                }
+            }
+        }
     }
 
     /**
@@ -93,7 +135,6 @@ public final class LexemeMap {
      * CAUTION! This will obliterate the existing token mappings! DO NOT CALL IN PRODUCTION CODE!
      */
     static void resetMappings() {
-        lexemeMap.clear();
-        lexemeIndex.set(0);
+        table = new LexemeTable(0);
     }
 }
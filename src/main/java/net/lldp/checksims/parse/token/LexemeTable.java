@@ -0,0 +1,165 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.token;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Concurrent interning table backing the LexemeMap.
+ *
+ * Looking up a token which has already been interned takes no locks, so tokenizers on any number of threads do not
+ * contend once a submission's common tokens have been seen. Interning a new token only locks one bin of the table.
+ *
+ * Lexemes are assigned consecutively from a given first lexeme, and the reverse mapping is a primitive array indexed by
+ * lexeme, grown in fixed-size chunks so that existing entries are never copied.
+ */
+final class LexemeTable {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int firstLexeme;
+    private final ConcurrentHashMap<Object, Integer> lexemes;
+    private final AtomicInteger nextIndex;
+    private volatile Object[][] chunks;
+
+    /**
+     * Create an empty table.
+     *
+     * @param firstLexeme Lexeme to assign to the first token interned
+     */
+    LexemeTable(int firstLexeme) {
+        checkArgument(firstLexeme >= 0, "First lexeme must be non-negative!");
+
+        this.firstLexeme = firstLexeme;
+        this.lexemes = new ConcurrentHashMap<>();
+        this.nextIndex = new AtomicInteger(0);
+        this.chunks = new Object[16][];
+    }
+
+    /**
+     * @param token Token to intern
+     * @return Lexeme of the given token, assigned now if the token was not yet present
+     */
+    int intern(Object token) {
+        checkNotNull(token);
+
+        // Fast path: already interned tokens are found without locking
+        Integer lexeme = lexemes.get(token);
+        if(lexeme != null) {
+            return lexeme;
+        }
+
+        return lexemes.computeIfAbsent(token, this::assign);
+    }
+
+    /**
+     * Assign the next lexeme to a token. Called at most once per token, from within the map.
+     *
+     * The reverse entry is written before the lexeme is published through the map, so any thread which can see the
+     * lexeme can also see its token.
+     */
+    private Integer assign(Object token) {
+        int index = nextIndex.getAndIncrement();
+
+        checkState(index >= 0 && index <= Integer.MAX_VALUE - firstLexeme, "Exhausted lexemes!");
+
+        chunkFor(index)[index & CHUNK_MASK] = token;
+
+        return firstLexeme + index;
+    }
+
+    private Object[] chunkFor(int index) {
+        int chunk = index >>> CHUNK_BITS;
+
+        Object[][] current = chunks;
+        if(chunk < current.length && current[chunk] != null) {
+            return current[chunk];
+        }
+
+        synchronized(this) {
+            current = chunks;
+            if(chunk >= current.length) {
+                Object[][] grown = new Object[Math.max(current.length * 2, chunk + 1)][];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if(current[chunk] == null) {
+                current[chunk] = new Object[CHUNK_SIZE];
+            }
+            chunks = current;
+
+            return current[chunk];
+        }
+    }
+
+    /**
+     * @param lexeme Lexeme to look up
+     * @return Token the lexeme was assigned to, or null if it was not assigned by this table
+     */
+    Object lookup(int lexeme) {
+        int index = lexeme - firstLexeme;
+        if(lexeme < firstLexeme || index >= nextIndex.get()) {
+            return null;
+        }
+
+        Object[][] current = chunks;
+        int chunk = index >>> CHUNK_BITS;
+        if(chunk >= current.length || current[chunk] == null) {
+            return null;
+        }
+
+        return current[chunk][index & CHUNK_MASK];
+    }
+
+    /**
+     * @return First lexeme assigned by this table
+     */
+    int getFirstLexeme() {
+        return firstLexeme;
+    }
+
+    /**
+     * @return Lexeme the next new token will be assigned
+     */
+    int getNextLexeme() {
+        return firstLexeme + nextIndex.get();
+    }
+
+    /**
+     * @return Number of tokens interned
+     */
+    int size() {
+        return lexemes.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Lexeme table of " + size() + " tokens starting at lexeme " + firstLexeme;
+    }
+}
@@ -3,42 +3,98 @@ package net.lldp.checksims.parse.token;
 import net.lldp.checksims.parse.Percentable;
 import net.lldp.checksims.util.data.Real;
 
+/**
+ * Percentable wrapper around a submission's tokens.
+ *
+ * May be backed either by a TokenList or by the compact TokenArray. An array-backed decorator only builds a TokenList
+ * when one is requested through getDataCopy(); from then on that list is authoritative, as callers may modify it.
+ *
+ * Lexemes are only meaningful within the LexemeMap generation they were created in, so each decorator records its
+ * generation and can report whether it is still current.
+ */
 public class PercentableTokenListDecorator implements Percentable
 {
-    private final TokenList data;
-    
+    private volatile TokenList data;
+    private final TokenArray array;
+    private final int generation;
+
     public PercentableTokenListDecorator(TokenList data)
     {
         this.data = data;
+        this.array = null;
+        this.generation = LexemeMap.getGeneration();
+    }
+
+    public PercentableTokenListDecorator(TokenArray array)
+    {
+        this.data = null;
+        this.array = array;
+        this.generation = LexemeMap.getGeneration();
     }
-    
+
+    /**
+     * @return Whether these tokens were created in the current LexemeMap generation, and can be compared with new ones
+     */
+    public boolean isCurrent()
+    {
+        return generation == LexemeMap.getGeneration();
+    }
+
     @Override
     public Real getPercentageMatched()
     {
-        long validTokenCount = data.stream().filter((token) -> !token.isValid()).count();
-        if (data.size() == 0)
+        TokenList list = data;
+        if (list == null)
+        {
+            if (array.size() == 0)
+            {
+                return Real.ZERO;
+            }
+            return new Real(array.size() - array.numValid(), array.size());
+        }
+
+        long validTokenCount = list.stream().filter((token) -> !token.isValid()).count();
+        if (list.size() == 0)
         {
             return Real.ZERO;
         }
-        return new Real(validTokenCount, data.size());
+        return new Real(validTokenCount, list.size());
     }
 
     public int size()
     {
-        return data.size();
+        TokenList list = data;
+        return list == null ? array.size() : list.size();
     }
-    
-    public TokenList getDataCopy()
+
+    public synchronized TokenList getDataCopy()
     {
+        if (data == null)
+        {
+            data = array.toTokenList();
+        }
         return data;
     }
 
+    /**
+     * Get the compact form of these tokens. The returned array may be shared with other threads and must not be
+     * modified; use {@link TokenArray#copy()} to obtain one which can be.
+     *
+     * @return these tokens as a TokenArray
+     */
+    public TokenArray getTokenArray()
+    {
+        TokenList list = data;
+        return list == null ? array : TokenArray.fromTokenList(list);
+    }
+
     @Override
     public String toString()
     {
-        return data.join(true);
+        TokenList list = data;
+        return list == null ? array.toTokenList().join(true) : list.join(true);
     }
-    
+
     @Override
     public boolean equals(Object other)
     {
@@ -54,11 +110,18 @@ public class PercentableTokenListDecorator implements Percentable
         {
             return false;
         }
-        return ((PercentableTokenListDecorator)other).data.equals(this.data);
+
+        PercentableTokenListDecorator otherDecorator = (PercentableTokenListDecorator)other;
+        if (otherDecorator.data != null && this.data != null)
+        {
+            return otherDecorator.data.equals(this.data);
+        }
+        return otherDecorator.getTokenArray().equals(this.getTokenArray());
     }
 
     public TokenList getImmutableDataCopy()
     {
-        return TokenList.immutableCopy(data);
+        TokenList list = data;
+        return TokenList.immutableCopy(list == null ? array.toTokenList() : list);
     }
 }
@@ -13,10 +13,26 @@ public class SubmissionTokenizer implements SubmissionPercentableCalculator<Perc
         this.tokenizer = tokenizer;
     }
     
+    /**
+     * Tokens cached on the submission are reused only if they were created in the current LexemeMap generation.
+     */
+    @Override
+    public PercentableTokenListDecorator fromSubmission(Submission s)
+    {
+        if (s.contains(getTypeClass()) && s.get(getTypeClass()).isCurrent())
+        {
+            return s.get(getTypeClass());
+        }
+        PercentableTokenListDecorator t = generateFromSubmission(s);
+        s.addType(getTypeClass(), t);
+        return t;
+    }
+
     @Override
     public PercentableTokenListDecorator generateFromSubmission(Submission s)
     {
-        return new PercentableTokenListDecorator(tokenizer.splitString(s.getContentAsString()));
+        // Keep only the compact form - boxed tokens are built on demand, if ever
+        return new PercentableTokenListDecorator(tokenizer.tokenize(s.getContentAsString()));
     }
     
     @Override
@@ -37,6 +53,12 @@ public class SubmissionTokenizer implements SubmissionPercentableCalculator<Perc
         return ((SubmissionTokenizer)other).tokenizer.equals(this.tokenizer);
     }
 
+    @Override
+    public String toString()
+    {
+        return "Tokenization into " + tokenizer.getType();
+    }
+
     @Override
     public Class<PercentableTokenListDecorator> getTypeClass()
     {
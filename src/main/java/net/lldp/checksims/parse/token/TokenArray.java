@@ -0,0 +1,236 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.parse.token;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compact, primitive representation of a TokenList.
+ *
+ * Tokens are stored as an array of lexemes plus a bit set recording which tokens are valid, instead of one boxed Token
+ * object per token. Algorithms comparing many pairs of submissions should operate on this representation.
+ *
+ * The lexeme array is never modified after construction and is shared between copies. Only validity is mutable, so
+ * copying a TokenArray to mark matches is cheap.
+ */
+public final class TokenArray {
+    private final TokenType type;
+    private final int[] lexemes;
+    private final BitSet valid;
+
+    /**
+     * Internal constructor. Does not copy its arguments.
+     *
+     * @param type Type of all tokens in the array
+     * @param lexemes Lexemes of each token, in order
+     * @param valid Validity of each token
+     */
+    private TokenArray(TokenType type, int[] lexemes, BitSet valid) {
+        this.type = type;
+        this.lexemes = lexemes;
+        this.valid = valid;
+    }
+
+    /**
+     * Convert a TokenList into its compact representation.
+     *
+     * @param tokens Token list to convert
+     * @return TokenArray containing the same lexemes and validity as the given list
+     */
+    public static TokenArray fromTokenList(TokenList tokens) {
+        checkNotNull(tokens);
+
+        int[] lexemes = new int[tokens.size()];
+        BitSet valid = new BitSet(tokens.size());
+
+        int i = 0;
+        for(Token token : tokens) {
+            lexemes[i] = token.getLexeme();
+            valid.set(i, token.isValid());
+            i++;
+        }
+
+        return new TokenArray(tokens.type, lexemes, valid);
+    }
+
+    /**
+     * Accumulates lexemes directly into a primitive buffer, for tokenizers which never need boxed tokens.
+     */
+    public static final class Builder {
+        private final TokenType type;
+        private int[] lexemes;
+        private int size;
+
+        /**
+         * @param type Type of all tokens to be added
+         * @param expectedSize Estimated number of tokens, used to size the initial buffer
+         */
+        public Builder(TokenType type, int expectedSize) {
+            checkNotNull(type);
+            checkArgument(expectedSize >= 0, "Expected size must be non-negative!");
+
+            this.type = type;
+            this.lexemes = new int[Math.max(expectedSize, 16)];
+            this.size = 0;
+        }
+
+        /**
+         * Append a valid token.
+         *
+         * @param lexeme Lexeme of the token to append
+         * @return This builder
+         */
+        public Builder add(int lexeme) {
+            if(size == lexemes.length) {
+                lexemes = Arrays.copyOf(lexemes, lexemes.length * 2);
+            }
+            lexemes[size++] = lexeme;
+
+            return this;
+        }
+
+        /**
+         * @return Number of tokens added so far
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return TokenArray containing every token added, all valid
+         */
+        public TokenArray build() {
+            BitSet valid = new BitSet(size);
+            valid.set(0, size);
+
+            return new TokenArray(type, size == lexemes.length ? lexemes : Arrays.copyOf(lexemes, size), valid);
+        }
+    }
+
+    /**
+     * @return Copy of this array with independent validity. Lexemes are shared, as they are never modified.
+     */
+    public TokenArray copy() {
+        return new TokenArray(type, lexemes, (BitSet)valid.clone());
+    }
+
+    /**
+     * Convert back to a TokenList.
+     *
+     * @return New TokenList containing a token for every lexeme in this array, with matching validity
+     */
+    public TokenList toTokenList() {
+        TokenList tokens = new TokenList(type);
+
+        for(int i = 0; i < lexemes.length; i++) {
+            tokens.add(ConcreteToken.fromLexeme(lexemes[i], type, valid.get(i)));
+        }
+
+        return tokens;
+    }
+
+    /**
+     * @return Type of all tokens in this array
+     */
+    public TokenType getType() {
+        return type;
+    }
+
+    /**
+     * @return Number of tokens in this array
+     */
+    public int size() {
+        return lexemes.length;
+    }
+
+    /**
+     * @param index Index of token
+     * @return Lexeme of the token at the given index
+     */
+    public int getLexeme(int index) {
+        return lexemes[index];
+    }
+
+    /**
+     * @param index Index of token
+     * @return Whether the token at the given index is valid
+     */
+    public boolean isValid(int index) {
+        checkArgument(index >= 0 && index < lexemes.length, "Index %s out of bounds for TokenArray of size %s", index,
+                lexemes.length);
+
+        return valid.get(index);
+    }
+
+    /**
+     * @param index Index of token
+     * @param isValid New validity of the token at the given index
+     */
+    public void setValid(int index, boolean isValid) {
+        checkArgument(index >= 0 && index < lexemes.length, "Index %s out of bounds for TokenArray of size %s", index,
+                lexemes.length);
+
+        valid.set(index, isValid);
+    }
+
+    /**
+     * Mark every token in the array invalid.
+     */
+    public void invalidateAll() {
+        valid.clear();
+    }
+
+    /**
+     * @return Number of valid tokens in this array
+     */
+    public int numValid() {
+        return valid.cardinality();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof TokenArray)) {
+            return false;
+        }
+
+        TokenArray otherArray = (TokenArray)other;
+
+        return otherArray.type.equals(this.type)
+                && Arrays.equals(otherArray.lexemes, this.lexemes)
+                && otherArray.valid.equals(this.valid);
+    }
+
+    @Override
+    public int hashCode() {
+        return type.hashCode() ^ Arrays.hashCode(lexemes);
+    }
+
+    @Override
+    public String toString() {
+        return "Token array of type " + type.toString() + " containing " + lexemes.length + " tokens ("
+                + numValid() + " valid)";
+    }
+}
@@ -86,6 +86,10 @@ public class TokenList extends PredicatedList<Token> {
                 sepChar = "";
                 break;
             case WHITESPACE:
+            case JAVA:
+            case C:
+            case CPP:
+            case PYTHON:
                 sepChar = " ";
                 break;
             case LINE:
@@ -103,8 +107,8 @@ public class TokenList extends PredicatedList<Token> {
             }
         });
 
-        // Trim the last trailing whitespace in whitespace tokenization
-        if(type.equals(TokenType.WHITESPACE)) {
+        // Trim the last trailing whitespace in space-separated tokenizations
+        if(sepChar.equals(" ")) {
             return b.toString().trim();
         }
 
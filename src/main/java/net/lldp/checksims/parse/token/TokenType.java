@@ -35,11 +35,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  * Each token has a Type, representing how it was generated. Line tokens, for example, are generated by splitting an
  * input string at every newline. Tokens are only considered equal if their contents and type match.
+ *
+ * Language token types are produced by running the lexer of a programming language, with identifiers and literals
+ * normalized so that renaming variables or changing constants does not hide similarity.
  */
 public enum TokenType {
     CHARACTER("character"),
     WHITESPACE("whitespace"),
-    LINE("line");
+    LINE("line"),
+    JAVA("java"),
+    C("c"),
+    CPP("cpp"),
+    PYTHON("python");
 
     private String name;
 
@@ -21,14 +21,10 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
-import net.lldp.checksims.parse.token.ConcreteToken;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.TokenType;
 
-import org.apache.commons.lang3.ArrayUtils;
-
-import java.util.Arrays;
-
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -60,15 +56,27 @@ public final class CharTokenizer implements Tokenizer {
     public TokenList splitString(String string) {
         checkNotNull(string);
 
-        TokenList toReturn = new TokenList(this.getType());
+        return tokenize(string).toTokenList();
+    }
 
-        char[] chars = string.toCharArray();
+    /**
+     * Split text into character tokens, without boxing each character.
+     *
+     * @param text Text to split
+     * @return Input text, with a single token representing each character
+     */
+    @Override
+    public TokenArray tokenize(CharSequence text) {
+        checkNotNull(text);
 
-        Arrays.stream(ArrayUtils.toObject(chars))
-                .map((character) -> new ConcreteToken(character, TokenType.CHARACTER))
-                .forEachOrdered(toReturn::add);
+        SpanInterner interner = new SpanInterner(text);
+        TokenArray.Builder builder = new TokenArray.Builder(this.getType(), text.length());
+
+        for(int i = 0; i < text.length(); i++) {
+            builder.add(interner.internChar(text.charAt(i)));
+        }
 
-        return toReturn;
+        return builder.build();
     }
 
     @Override
@@ -0,0 +1,202 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.token.tokenizer;
+
+import com.google.common.collect.ImmutableSet;
+
+import net.lldp.checksims.parse.ast.c.CLexer;
+import net.lldp.checksims.parse.ast.c.CParser;
+import net.lldp.checksims.parse.ast.cpp.CPP14Lexer;
+import net.lldp.checksims.parse.ast.cpp.CPP14Parser;
+import net.lldp.checksims.parse.ast.java.Java8Lexer;
+import net.lldp.checksims.parse.ast.java.Java8Parser;
+import net.lldp.checksims.parse.ast.python.Python3Lexer;
+import net.lldp.checksims.parse.ast.python.Python3Parser;
+import net.lldp.checksims.parse.token.LexemeMap;
+import net.lldp.checksims.parse.token.TokenArray;
+import net.lldp.checksims.parse.token.TokenList;
+import net.lldp.checksims.parse.token.TokenType;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.Vocabulary;
+import org.antlr.v4.runtime.VocabularyImpl;
+
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Split a file into the tokens of a programming language, using only the ANTLR lexer of the language.
+ *
+ * Every identifier becomes the same token, as does every numeric, character or string literal, so renaming variables
+ * or changing constants does not affect similarity. Keywords and operators are kept as they are. Comments and
+ * whitespace are dropped.
+ *
+ * Lexing is much cheaper than a full parse, and never fails: characters the lexer does not recognize are skipped, so
+ * submissions with syntax errors are still tokenized.
+ */
+public final class LexerTokenizer implements Tokenizer {
+    private static final String IDENTIFIER = "<identifier>";
+    private static final String LITERAL = "<literal>";
+
+    private static final LexerTokenizer java = new LexerTokenizer(TokenType.JAVA, Java8Lexer::new, Java8Parser.VOCABULARY,
+            ImmutableSet.of(Java8Lexer.Identifier),
+            ImmutableSet.of(Java8Lexer.IntegerLiteral, Java8Lexer.FloatingPointLiteral, Java8Lexer.CharacterLiteral,
+                    Java8Lexer.StringLiteral));
+    private static final LexerTokenizer c = new LexerTokenizer(TokenType.C, CLexer::new, CParser.VOCABULARY,
+            ImmutableSet.of(CLexer.Identifier),
+            ImmutableSet.of(CLexer.Constant, CLexer.StringLiteral));
+    private static final LexerTokenizer cpp = new LexerTokenizer(TokenType.CPP, CPP14Lexer::new, CPP14Parser.VOCABULARY,
+            ImmutableSet.of(CPP14Lexer.Identifier),
+            ImmutableSet.of(CPP14Lexer.Integerliteral, CPP14Lexer.Characterliteral, CPP14Lexer.Floatingliteral,
+                    CPP14Lexer.Stringliteral, CPP14Lexer.Userdefinedintegerliteral,
+                    CPP14Lexer.Userdefinedfloatingliteral, CPP14Lexer.Userdefinedstringliteral,
+                    CPP14Lexer.Userdefinedcharacterliteral));
+    private static final LexerTokenizer python = new LexerTokenizer(TokenType.PYTHON, Python3Lexer::new,
+            // Generated by an older ANTLR, whose lexers do not name their tokens
+            VocabularyImpl.fromTokenNames(Python3Parser.tokenNames),
+            ImmutableSet.of(Python3Lexer.NAME),
+            ImmutableSet.of(Python3Lexer.STRING_LITERAL, Python3Lexer.BYTES_LITERAL, Python3Lexer.DECIMAL_INTEGER,
+                    Python3Lexer.OCT_INTEGER, Python3Lexer.HEX_INTEGER, Python3Lexer.BIN_INTEGER,
+                    Python3Lexer.FLOAT_NUMBER, Python3Lexer.IMAG_NUMBER));
+
+    private final TokenType type;
+    private final Function<CharStream, Lexer> lexerFactory;
+    private final String[] normalized;
+
+    /**
+     * @param type Type of tokens produced
+     * @param lexerFactory Creates a lexer of the language over the given input
+     * @param vocabulary Names of the lexer's token types
+     * @param identifiers Lexer token types of identifiers
+     * @param literals Lexer token types of literals
+     */
+    private LexerTokenizer(TokenType type, Function<CharStream, Lexer> lexerFactory, Vocabulary vocabulary,
+                           ImmutableSet<Integer> identifiers, ImmutableSet<Integer> literals) {
+        this.type = type;
+        this.lexerFactory = lexerFactory;
+
+        // Every lexer token type maps to a single fixed string, so lexemes can be looked up by type alone
+        // Tokens emitted only by lexer actions, such as Python's INDENT, are numbered above those of the lexer's rules
+        int maxTokenType = lexerFactory.apply(new ANTLRInputStream("")).getATN().maxTokenType;
+        while(vocabulary.getSymbolicName(maxTokenType + 1) != null) {
+            maxTokenType++;
+        }
+
+        this.normalized = new String[maxTokenType + 1];
+        for(int i = 0; i < normalized.length; i++) {
+            if(identifiers.contains(i)) {
+                normalized[i] = IDENTIFIER;
+            } else if(literals.contains(i)) {
+                normalized[i] = LITERAL;
+            } else if(vocabulary.getLiteralName(i) != null) {
+                // Keywords and operators; strip the quotes ANTLR adds
+                String literal = vocabulary.getLiteralName(i);
+                normalized[i] = literal.substring(1, literal.length() - 1);
+            } else {
+                normalized[i] = vocabulary.getSymbolicName(i);
+            }
+        }
+    }
+
+    /**
+     * @param type Language token type
+     * @return Singleton LexerTokenizer for the given language
+     */
+    public static LexerTokenizer getInstance(TokenType type) {
+        checkNotNull(type);
+
+        switch(type) {
+            case JAVA:
+                return java;
+            case C:
+                return c;
+            case CPP:
+                return cpp;
+            case PYTHON:
+                return python;
+            default:
+                throw new IllegalArgumentException("No lexer for " + type);
+        }
+    }
+
+    /**
+     * Split a string into normalized language tokens.
+     *
+     * @param string String to split
+     * @return List of language tokens representing the input string
+     */
+    @Override
+    public TokenList splitString(String string) {
+        checkNotNull(string);
+
+        return tokenize(string).toTokenList();
+    }
+
+    /**
+     * Lex text into normalized language tokens.
+     *
+     * @param text Text to lex
+     * @return Language tokens representing the input text
+     */
+    @Override
+    public TokenArray tokenize(CharSequence text) {
+        checkNotNull(text);
+
+        Lexer lexer = lexerFactory.apply(new ANTLRInputStream(text.toString()));
+        // The default listener prints every unrecognized character; they are simply skipped
+        lexer.removeErrorListeners();
+
+        // Lexeme + 1 for each lexer token type seen so far, or 0
+        int[] lexemes = new int[normalized.length];
+        TokenArray.Builder builder = new TokenArray.Builder(type, text.length() / 4);
+
+        for(Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            int tokenType = token.getType();
+            if(token.getChannel() != Token.DEFAULT_CHANNEL || tokenType < 0 || tokenType >= normalized.length
+                    || normalized[tokenType] == null) {
+                continue;
+            }
+
+            if(lexemes[tokenType] == 0) {
+                lexemes[tokenType] = LexemeMap.getLexemeForToken(normalized[tokenType]) + 1;
+            }
+            builder.add(lexemes[tokenType] - 1);
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public TokenType getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "Singleton lexer tokenizer for " + type;
+    }
+}
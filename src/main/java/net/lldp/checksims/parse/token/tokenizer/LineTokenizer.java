@@ -21,12 +21,10 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
-import net.lldp.checksims.parse.token.ConcreteToken;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.TokenType;
 
-import java.util.Arrays;
-
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -58,17 +56,43 @@ public final class LineTokenizer implements Tokenizer {
     public TokenList splitString(String string) {
         checkNotNull(string);
 
-        TokenList toReturn = new TokenList(this.getType());
+        return tokenize(string).toTokenList();
+    }
+
+    /**
+     * Split text into newline-delineated tokens in a single pass.
+     *
+     * Empty lines are tokens, except at the end of the text, where they are dropped.
+     *
+     * @param text Text to split
+     * @return LINE tokens representing the input text
+     */
+    @Override
+    public TokenArray tokenize(CharSequence text) {
+        checkNotNull(text);
+
+        int end = text.length();
+        while(end > 0 && text.charAt(end - 1) == '\n') {
+            end--;
+        }
+
+        SpanInterner interner = new SpanInterner(text);
+        TokenArray.Builder builder = new TokenArray.Builder(this.getType(), end / 32);
 
-        if(string.isEmpty()) {
-            return toReturn;
+        if(end == 0) {
+            return builder.build();
         }
 
-        Arrays.stream(string.split("\n"))
-                .map((str) -> new ConcreteToken(str, TokenType.LINE))
-                .forEachOrdered(toReturn::add);
+        int start = 0;
+        for(int i = 0; i < end; i++) {
+            if(text.charAt(i) == '\n') {
+                builder.add(interner.internSpan(start, i));
+                start = i + 1;
+            }
+        }
+        builder.add(interner.internSpan(start, end));
 
-        return toReturn;
+        return builder.build();
     }
 
     @Override
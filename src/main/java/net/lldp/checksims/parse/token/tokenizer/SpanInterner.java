@@ -0,0 +1,165 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.token.tokenizer;
+
+import net.lldp.checksims.parse.token.LexemeMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Interns spans of text as tokens without creating a String for each occurrence.
+ *
+ * Spans already seen by this interner are found by hashing and comparing their characters in place. Only the first
+ * occurrence of each distinct span is copied into a String and passed to the LexemeMap. Characters are likewise
+ * mapped to lexemes without boxing after their first occurrence.
+ *
+ * An interner is intended to live for a single tokenization, and is not thread-safe.
+ */
+final class SpanInterner {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int CHAR_CACHE_SIZE = 256;
+
+    private final CharSequence text;
+
+    // Open-addressed table of distinct spans seen so far. Empty slots have a null string.
+    private String[] strings;
+    private int[] hashes;
+    private int[] lexemes;
+    private int count;
+
+    // Lexeme + 1 for characters below CHAR_CACHE_SIZE, or 0 if not yet seen
+    private final int[] charLexemes;
+
+    /**
+     * @param text Text spans are taken from
+     */
+    SpanInterner(CharSequence text) {
+        checkNotNull(text);
+
+        this.text = text;
+        this.strings = new String[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.lexemes = new int[INITIAL_CAPACITY];
+        this.count = 0;
+        this.charLexemes = new int[CHAR_CACHE_SIZE];
+    }
+
+    /**
+     * @param start Index of first character of the span
+     * @param end Index after the last character of the span
+     * @return Lexeme of the String containing the characters of the span
+     */
+    int internSpan(int start, int end) {
+        int hash = 0;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+
+        int mask = strings.length - 1;
+        int slot = mix(hash) & mask;
+        while(strings[slot] != null) {
+            if(hashes[slot] == hash && matches(strings[slot], start, end)) {
+                return lexemes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String token = text.subSequence(start, end).toString();
+        int lexeme = LexemeMap.getLexemeForToken(token);
+
+        strings[slot] = token;
+        hashes[slot] = hash;
+        lexemes[slot] = lexeme;
+        if(++count * 2 > strings.length) {
+            grow();
+        }
+
+        return lexeme;
+    }
+
+    /**
+     * @param character Character to intern
+     * @return Lexeme of the given character
+     */
+    int internChar(char character) {
+        if(character < CHAR_CACHE_SIZE) {
+            int cached = charLexemes[character];
+            if(cached != 0) {
+                return cached - 1;
+            }
+
+            int lexeme = LexemeMap.getLexemeForToken(character);
+            charLexemes[character] = lexeme + 1;
+            return lexeme;
+        }
+
+        return LexemeMap.getLexemeForToken(character);
+    }
+
+    private boolean matches(String candidate, int start, int end) {
+        if(candidate.length() != end - start) {
+            return false;
+        }
+
+        for(int i = 0; i < candidate.length(); i++) {
+            if(candidate.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void grow() {
+        String[] oldStrings = strings;
+        int[] oldHashes = hashes;
+        int[] oldLexemes = lexemes;
+
+        strings = new String[oldStrings.length * 2];
+        hashes = new int[oldStrings.length * 2];
+        lexemes = new int[oldStrings.length * 2];
+
+        int mask = strings.length - 1;
+        for(int i = 0; i < oldStrings.length; i++) {
+            if(oldStrings[i] == null) {
+                continue;
+            }
+
+            int slot = mix(oldHashes[i]) & mask;
+            while(strings[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            strings[slot] = oldStrings[i];
+            hashes[slot] = oldHashes[i];
+            lexemes[slot] = oldLexemes[i];
+        }
+    }
+
+    /**
+     * Spread hash bits, as String hashes of short spans differ mostly in their low bits.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
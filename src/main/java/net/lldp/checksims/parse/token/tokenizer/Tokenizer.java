@@ -21,6 +21,7 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.TokenType;
 
@@ -36,6 +37,19 @@ public interface Tokenizer {
      */
     TokenList splitString(String string);
 
+    /**
+     * Tokenize text directly into compact form.
+     *
+     * Tokenizers should override this to avoid creating a token object per token, as the result is all most callers
+     * need.
+     *
+     * @param text Text to tokenize
+     * @return A TokenArray of type returned by getType(), containing tokens generated from the text
+     */
+    default TokenArray tokenize(CharSequence text) {
+        return TokenArray.fromTokenList(splitString(text.toString()));
+    }
+
     /**
      * @return Type of tokens produced by this tokenizer.
      */
@@ -55,6 +69,11 @@ public interface Tokenizer {
                 return LineTokenizer.getInstance();
             case WHITESPACE:
                 return WhitespaceTokenizer.getInstance();
+            case JAVA:
+            case C:
+            case CPP:
+            case PYTHON:
+                return LexerTokenizer.getInstance(type);
             default:
                 // TODO handle more gracefully
                 throw new RuntimeException("Unhandled tokenization requested!");
@@ -21,12 +21,10 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
-import net.lldp.checksims.parse.token.ConcreteToken;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.TokenType;
 
-import java.util.Arrays;
-
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -58,16 +56,46 @@ public final class WhitespaceTokenizer implements Tokenizer {
     public TokenList splitString(String string) {
         checkNotNull(string);
 
-        TokenList toReturn = new TokenList(this.getType());
+        return tokenize(string).toTokenList();
+    }
 
-        String[] split = string.split("\\s+");
+    /**
+     * Split text into whitespace-delineated tokens in a single pass.
+     *
+     * @param text Input text
+     * @return WHITESPACE tokens representing the input text
+     */
+    @Override
+    public TokenArray tokenize(CharSequence text) {
+        checkNotNull(text);
 
-        Arrays.stream(split)
-                .filter((str) -> !str.isEmpty())
-                .map((str) -> new ConcreteToken(str, TokenType.WHITESPACE))
-                .forEachOrdered(toReturn::add);
+        SpanInterner interner = new SpanInterner(text);
+        TokenArray.Builder builder = new TokenArray.Builder(this.getType(), text.length() / 8);
 
-        return toReturn;
+        int start = -1;
+        for(int i = 0; i < text.length(); i++) {
+            if(isWhitespace(text.charAt(i))) {
+                if(start != -1) {
+                    builder.add(interner.internSpan(start, i));
+                    start = -1;
+                }
+            } else if(start == -1) {
+                start = i;
+            }
+        }
+        if(start != -1) {
+            builder.add(interner.internSpan(start, text.length()));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * @param c Character to check
+     * @return Whether the character is whitespace, as matched by \s in a regular expression
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     @Override
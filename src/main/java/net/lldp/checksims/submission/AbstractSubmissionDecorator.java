@@ -55,6 +55,16 @@ public abstract class AbstractSubmissionDecorator implements Submission {
         return wrappedSubmission.getContentAsString();
     }
 
+    @Override
+    public boolean isEmpty() {
+        return wrappedSubmission.isEmpty();
+    }
+
+    @Override
+    public void releaseContent() {
+        wrappedSubmission.releaseContent();
+    }
+
     @Override
     public String getName() {
         return wrappedSubmission.getName();
@@ -24,6 +24,8 @@ package net.lldp.checksims.submission;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -37,10 +39,14 @@ import net.lldp.checksims.parse.Percentable;
  * Concrete implementation of the Submission interface.
  *
  * Intended to be the only concrete implementation of Submission that is not a decorator.
+ *
+ * Content is either held in memory for the lifetime of the submission, or read from files when requested. Content
+ * read from files may be released, and is read again if requested after that.
  */
 public final class ConcreteSubmission implements Submission {
     private final Set<String> flags = new HashSet<>();
-    private final String content;
+    private volatile String content;
+    private final SubmissionLoader.FileContent source;
     private final String name;
     private final Map<Class<? extends Percentable>, Percentable> parsedTypes = new HashMap<>();
     private double sortingScore;
@@ -66,12 +72,60 @@ public final class ConcreteSubmission implements Submission {
 
         this.name = name;
         this.content = content;
+        this.source = null;
+        this.sortingScore = 0;
+    }
+
+    /**
+     * Construct a new Concrete Submission whose content is read from files when first requested.
+     *
+     * @param name Name of new submission
+     * @param source Files containing the content of the submission
+     */
+    ConcreteSubmission(String name, SubmissionLoader.FileContent source) {
+        checkNotNull(name);
+        checkArgument(!name.isEmpty(), "Submission name cannot be empty");
+        checkNotNull(source);
+
+        this.name = name;
+        this.content = null;
+        this.source = source;
         this.sortingScore = 0;
     }
 
     @Override
     public String getContentAsString() {
-        return content;
+        String current = content;
+        if(current != null) {
+            return current;
+        }
+
+        synchronized(this) {
+            current = content;
+            if(current == null) {
+                try {
+                    current = source.read();
+                } catch(IOException e) {
+                    throw new UncheckedIOException("Error reading content of submission " + name, e);
+                }
+
+                content = current;
+            }
+
+            return current;
+        }
+    }
+
+    @Override
+    public synchronized void releaseContent() {
+        if(source != null) {
+            content = null;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return source == null ? content.isEmpty() : source.isEmpty();
     }
 
     @Override
@@ -81,7 +135,9 @@ public final class ConcreteSubmission implements Submission {
 
     @Override
     public String toString() {
-        return "A submission with name " + name + " and " + getContentAsString().length() + " bytes";
+        long size = source == null ? content.length() : source.getSize();
+
+        return "A submission with name " + name + " and " + size + " bytes";
     }
 
     @Override
@@ -97,10 +153,18 @@ public final class ConcreteSubmission implements Submission {
             return false;
         }
 
-        Submission otherSubmission = (Submission)other;
+        ConcreteSubmission otherSubmission = (ConcreteSubmission)other;
+
+        if(!otherSubmission.name.equals(this.name)) {
+            return false;
+        }
+
+        // Submissions read from the same files are equal without reading them
+        if(otherSubmission.source != null && otherSubmission.source.equals(this.source)) {
+            return true;
+        }
 
-        return otherSubmission.getName().equals(this.name)
-                && otherSubmission.getContentAsString().equals(this.content);
+        return otherSubmission.getContentAsString().equals(this.getContentAsString());
     }
 
     @Override
@@ -165,7 +229,7 @@ public final class ConcreteSubmission implements Submission {
     }
 
     @Override
-    public void increaseScore(double r, double orig)
+    public synchronized void increaseScore(double r, double orig)
     {
         if (orig > maximumScore)
         {
@@ -175,13 +239,13 @@ public final class ConcreteSubmission implements Submission {
     }
 
     @Override
-    public double getTotalCopyScore()
+    public synchronized double getTotalCopyScore()
     {
         return sortingScore;
     }
 
     @Override
-    public Double getMaximumCopyScore()
+    public synchronized Double getMaximumCopyScore()
     {
         return maximumScore;
     }
@@ -21,23 +21,24 @@
 
 package net.lldp.checksims.submission;
 
-import com.google.common.collect.Ordering;
-
+import net.lldp.checksims.ChecksimsException;
 import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.util.completion.StatusLogger;
 import net.lldp.checksims.util.data.Real;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.ParallelAlgorithm;
 
-import org.apache.commons.io.FileUtils;
-import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -99,6 +100,21 @@ public interface Submission extends Comparable<Submission> {
      */
     String getContentAsString();
 
+    /**
+     * @return Whether the body of the submission is empty
+     */
+    default boolean isEmpty() {
+        return getContentAsString().isEmpty();
+    }
+
+    /**
+     * Drop the body of the submission from memory, if it can be read again when next requested.
+     *
+     * Called once a submission's content has been converted to the representation an algorithm needs. Submissions
+     * which cannot read their content again keep it.
+     */
+    default void releaseContent() {}
+
     /**
      * get the total number of lines of code in this submission.
      * @return
@@ -154,8 +170,140 @@ public interface Submission extends Comparable<Submission> {
         checkNotNull(glob);
         checkArgument(!glob.isEmpty(), "Glob pattern cannot be empty!");
 
+        SubmissionLoader loader = new SubmissionLoader(glob, recursive);
+        long startTime = System.currentTimeMillis();
+
         Set<Submission> submissions = new HashSet<>();
-        Logger local = LoggerFactory.getLogger(Submission.class);
+
+        for(File f : listSubmissionDirectories(directory)) {
+            submissions.addAll(loader.loadStudentDirectory(f.toPath()));
+        }
+
+        loader.logThroughput(System.currentTimeMillis() - startTime);
+
+        return submissions;
+    }
+
+    /**
+     * Generate a list of all student submissions from a directory, reading student directories in parallel.
+     *
+     * Reads are blocking I/O, and run on the I/O pool of the given context, so that many directories on slow or
+     * network-mounted storage are read and decoded at once. The total amount read and the read rate are logged.
+     *
+     * @param directory Directory containing student submission directories
+     * @param glob Match pattern used to identify files to include in submission
+     * @param recursive Whether to recursively traverse student directories
+     * @param context Execution context to read submissions on
+     * @param logger Status logger to report progress to
+     * @return Set of submissions including all unique nonempty submissions in the given directory
+     * @throws IOException Thrown on error listing the given directory
+     * @throws ChecksimsException Thrown on error reading a submission, or if the context is cancelled
+     */
+    static Set<Submission> submissionListFromDir(File directory, String glob, boolean recursive,
+                                                 ExecutionContext context, StatusLogger logger)
+            throws IOException, ChecksimsException {
+        return submissionListFromDir(directory, glob, recursive, false, context, logger);
+    }
+
+    /**
+     * Generate a list of all student submissions from a directory, reading student directories in parallel.
+     *
+     * Lazy submissions only record their files when listed, and read their content when it is first requested. They
+     * may release their content once it has been converted for an algorithm, so that large sets of submissions, such
+     * as archives of prior terms, need not all be held in memory.
+     *
+     * @param directory Directory containing student submission directories
+     * @param glob Match pattern used to identify files to include in submission
+     * @param recursive Whether to recursively traverse student directories
+     * @param lazy Whether to defer reading the content of submissions until it is requested
+     * @param context Execution context to read submissions on
+     * @param logger Status logger to report progress to
+     * @return Set of submissions including all unique nonempty submissions in the given directory
+     * @throws IOException Thrown on error listing the given directory
+     * @throws ChecksimsException Thrown on error reading a submission, or if the context is cancelled
+     */
+    static Set<Submission> submissionListFromDir(File directory, String glob, boolean recursive, boolean lazy,
+                                                 ExecutionContext context, StatusLogger logger)
+            throws IOException, ChecksimsException {
+        checkNotNull(directory);
+        checkNotNull(glob);
+        checkArgument(!glob.isEmpty(), "Glob pattern cannot be empty!");
+        checkNotNull(context);
+
+        SubmissionLoader loader = new SubmissionLoader(glob, recursive, lazy);
+        long startTime = System.currentTimeMillis();
+
+        List<Callable<Set<Submission>>> readers = Arrays.stream(listSubmissionDirectories(directory))
+                .map((f) -> (Callable<Set<Submission>>)() -> loader.loadStudentDirectory(f.toPath()))
+                .collect(Collectors.toList());
+
+        Set<Submission> submissions = new HashSet<>();
+        for(Set<Submission> read : ParallelAlgorithm.parallelBlockingTasks(context, readers, logger)) {
+            submissions.addAll(read);
+        }
+
+        loader.logThroughput(System.currentTimeMillis() - startTime);
+
+        return submissions;
+    }
+
+    /**
+     * Generate a list of all student and group submissions from a turnin archive, without extracting it to disk.
+     *
+     * The archive is streamed once, keeping only files matching the glob pattern, and zip or tar archives found at the
+     * top level of each submission are expanded in memory as though they had been extracted in place. Submissions are
+     * then built in parallel. Their content is always read immediately, as there are no files to read it from later.
+     *
+     * @param archive Zip, tar, or gzipped tar turnin archive, holding students/ and groups/ directories
+     * @param glob Match pattern used to identify files to include in submission
+     * @param recursive Whether to include files in subdirectories of each submission
+     * @param context Execution context to build submissions on
+     * @param logger Status logger to report progress to
+     * @return Set of submissions including all unique nonempty submissions in the given archive
+     * @throws IOException Thrown on error reading the archive, or if it is not a turnin archive
+     * @throws ChecksimsException Thrown on error building a submission, or if the context is cancelled
+     */
+    static Set<Submission> submissionListFromArchive(File archive, String glob, boolean recursive,
+                                                     ExecutionContext context, StatusLogger logger)
+            throws IOException, ChecksimsException {
+        checkNotNull(archive);
+        checkNotNull(glob);
+        checkArgument(!glob.isEmpty(), "Glob pattern cannot be empty!");
+        checkNotNull(context);
+
+        if(!archive.exists()) {
+            throw new NoSuchFileException("Does not exist: " + archive.getAbsolutePath());
+        }
+
+        SubmissionLoader loader = new SubmissionLoader(glob, recursive);
+        long startTime = System.currentTimeMillis();
+
+        Set<Submission> submissions = new TurninArchive(loader).load(archive.toPath(), context, logger);
+
+        loader.logThroughput(System.currentTimeMillis() - startTime);
+
+        return submissions;
+    }
+
+    /**
+     * @param file File to check
+     * @return Whether the file is named as an archive format which submissions can be read from
+     */
+    static boolean isSubmissionArchive(File file) {
+        checkNotNull(file);
+
+        return file.isFile() && TurninArchive.isArchive(file.getName());
+    }
+
+    /**
+     * List the student directories within a directory of submissions.
+     *
+     * @param directory Directory containing student submission directories
+     * @return Every subdirectory of the given directory
+     * @throws IOException Thrown if the given directory does not exist, or is not a directory
+     */
+    static File[] listSubmissionDirectories(File directory) throws IOException {
+        checkNotNull(directory);
 
         if(!directory.exists()) {
             throw new NoSuchFileException("Does not exist: " + directory.getAbsolutePath());
@@ -164,24 +312,23 @@ public interface Submission extends Comparable<Submission> {
         }
 
         // List all the subdirectories we find
-        File[] contents = directory.listFiles(File::isDirectory);
-
-        for(File f : contents) {
-            try {
-                Submission s = submissionFromDir(f, glob, recursive);
-                submissions.add(s);
-                if(s.getContentAsString().isEmpty()) {
-                    local.warn("Warning: Submission " + s.getName() + " is empty!");
-                } else {
-                    local.debug("Created submission with name " + s.getName());
-                }
-            } catch (NoMatchingFilesException e) {
-                local.warn("Could not create submission from directory " + f.getName()
-                        + " - no files matching pattern found!");
-            }
-        }
+        return directory.listFiles(File::isDirectory);
+    }
 
-        return submissions;
+    /**
+     * Read the submission in a single student directory, logging the outcome.
+     *
+     * @param directory Student directory
+     * @param glob Match pattern used to identify files to include in submission
+     * @param recursive Whether to recursively traverse the directory
+     * @return Set containing the submission, or an empty set if no files in the directory match the glob
+     * @throws IOException Thrown on error reading from a file
+     */
+    static Set<Submission> submissionFromStudentDir(File directory, String glob, boolean recursive)
+            throws IOException {
+        checkNotNull(directory);
+
+        return new SubmissionLoader(glob, recursive).loadStudentDirectory(directory.toPath());
     }
 
     /**
@@ -207,9 +354,7 @@ public interface Submission extends Comparable<Submission> {
 
         // TODO consider verbose logging of which files we're adding to the submission?
 
-        Set<File> files = getAllMatchingFiles(directory, glob, recursive);
-
-        return submissionFromFiles(directory.getName(), files);
+        return new SubmissionLoader(glob, recursive).loadDirectory(directory.toPath());
     }
 
     /**
@@ -219,46 +364,16 @@ public interface Submission extends Comparable<Submission> {
      * @param glob Match pattern used to identify files to include
      * @return List of all matching files in this directory and subdirectories
      */
-    static Set<File> getAllMatchingFiles(File directory, String glob, boolean recursive)
-            throws NoSuchFileException, NotDirectoryException {
+    static Set<File> getAllMatchingFiles(File directory, String glob, boolean recursive) throws IOException {
         checkNotNull(directory);
-        checkNotNull(glob);
-        checkArgument(!glob.isEmpty(), "Glob pattern cannot be empty");
-
-        if(!directory.exists()) {
-            throw new NoSuchFileException("Does not exist: " + directory.getAbsolutePath());
-        } else if(!directory.isDirectory()) {
-            throw new NotDirectoryException("Not a directory: " + directory.getAbsolutePath());
-        }
-
-        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
-
-        Set<File> allFiles = new HashSet<>();
-        Logger logs = LoggerFactory.getLogger(Submission.class);
 
         if(recursive) {
-            logs.trace("Recursively traversing directory " + directory.getName());
+            LoggerFactory.getLogger(Submission.class).trace("Recursively traversing directory " + directory.getName());
         }
 
-        // Get files in this directory
-        File[] contents = directory.listFiles((f) -> matcher.matches(Paths.get(f.getAbsolutePath()).getFileName()) && f.isFile());
-
-        // TODO consider mapping to absolute paths?
-
-        // Add this directory
-        Collections.addAll(allFiles, contents);
-
-        // Get subdirectories
-        File[] subdirs = directory.listFiles(File::isDirectory);
-
-        // Recursively call on all subdirectories if specified
-        if(recursive) {
-            for(File subdir : subdirs) {
-                allFiles.addAll(getAllMatchingFiles(subdir, glob, true));
-            }
-        }
-
-        return allFiles;
+        return new SubmissionLoader(glob, recursive).findMatchingFiles(directory.toPath()).stream()
+                .map(Path::toFile)
+                .collect(Collectors.toSet());
     }
 
     /**
@@ -280,36 +395,8 @@ public interface Submission extends Comparable<Submission> {
         checkArgument(!name.isEmpty(), "Submission name cannot be empty");
         checkNotNull(files);
 
-        Logger logs = LoggerFactory.getLogger(Submission.class);
-
-        if(files.size() == 0) {
-            throw new NoMatchingFilesException("No matching files found, cannot create submission named \"" + name
-                    + "\"");
-        }
-
-        // To ensure submission generation is deterministic, sort files by name, and read them in that order
-        List<File> orderedFiles = Ordering.from((File file1, File file2) -> file1.getName().compareTo(file2.getName()))
-                .immutableSortedCopy(files);
-
-        StringBuilder fileContent = new StringBuilder();
-
-        // Could do this with a .stream().forEach(...) but we'd have to handle the IOException inside
-        for(File f : orderedFiles) {
-            String content = FileUtils.readFileToString(f, StandardCharsets.UTF_8);
-
-            fileContent.append(content);
-
-            if(!content.endsWith("\n") && !content.isEmpty()) {
-                fileContent.append("\n");
-            }
-        }
-
-        String contentString = fileContent.toString();
-
-        if(contentString.length() > 7500 * 4) { // large number of tokens * average token length
-            logs.warn("Warning: Submission " + name + " has very large source size (" + contentString.length() + ")");
-        }
+        Set<Path> paths = files.stream().map(File::toPath).collect(Collectors.toSet());
 
-        return new ConcreteSubmission(name, contentString);
+        return new SubmissionLoader("*", false).loadFiles(name, paths);
     }
 }
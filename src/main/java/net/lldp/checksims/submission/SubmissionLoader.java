@@ -0,0 +1,476 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.submission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads submissions from disk using NIO.
+ *
+ * Directories are walked with a single traversal that obtains file attributes alongside names. Small files are read
+ * through a direct buffer reused by each thread; large files are memory-mapped, so their contents are never copied
+ * into the Java heap before decoding. Files are decoded as UTF-8, with malformed input replaced.
+ *
+ * A loader may be shared between threads, and counts the bytes read through it so that throughput can be reported.
+ *
+ * A lazy loader only records which files make up each submission. Their content is read when first requested, and
+ * may be released and read again later, so that submissions needed only for their derived representation do not
+ * keep their source in memory.
+ */
+final class SubmissionLoader {
+    /**
+     * Files at least this large are memory-mapped rather than read into a pooled buffer.
+     */
+    static final int MAP_THRESHOLD = 256 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> readBuffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MAP_THRESHOLD));
+
+    private static Logger logs = LoggerFactory.getLogger(SubmissionLoader.class);
+
+    private final PathMatcher matcher;
+    private final boolean recursive;
+    private final boolean lazy;
+    private final LongAdder bytesRead;
+    private final LongAdder filesRead;
+
+    /**
+     * @param glob Match pattern used to identify files to include in submissions
+     * @param recursive Whether to recursively traverse submission directories
+     */
+    SubmissionLoader(String glob, boolean recursive) {
+        this(glob, recursive, false);
+    }
+
+    /**
+     * @param glob Match pattern used to identify files to include in submissions
+     * @param recursive Whether to recursively traverse submission directories
+     * @param lazy Whether to defer reading content until it is requested
+     */
+    SubmissionLoader(String glob, boolean recursive, boolean lazy) {
+        checkNotNull(glob);
+        checkArgument(!glob.isEmpty(), "Glob pattern cannot be empty!");
+
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.recursive = recursive;
+        this.lazy = lazy;
+        this.bytesRead = new LongAdder();
+        this.filesRead = new LongAdder();
+    }
+
+    /**
+     * Find every file in a directory whose name matches the glob pattern.
+     *
+     * Symbolic links are followed; links which would cause a directory to be visited twice are skipped.
+     *
+     * @param directory Directory to search
+     * @return All matching regular files in the directory, and its subdirectories if recursive
+     * @throws IOException Thrown if the directory does not exist or cannot be traversed
+     */
+    List<Path> findMatchingFiles(Path directory) throws IOException {
+        checkNotNull(directory);
+
+        if(!Files.exists(directory)) {
+            throw new NoSuchFileException("Does not exist: " + directory.toAbsolutePath());
+        } else if(!Files.isDirectory(directory)) {
+            throw new NotDirectoryException("Not a directory: " + directory.toAbsolutePath());
+        }
+
+        List<Path> matching = new ArrayList<>();
+
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), recursive ? Integer.MAX_VALUE : 1,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if(attrs.isRegularFile() && matcher.matches(file.getFileName())) {
+                            matching.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                        if(e instanceof FileSystemLoopException) {
+                            logs.warn("Skipping directory " + file + " - symbolic link loop");
+                            return FileVisitResult.CONTINUE;
+                        }
+                        throw e;
+                    }
+                });
+
+        return matching;
+    }
+
+    /**
+     * Read the submission in a single student directory, logging the outcome.
+     *
+     * @param directory Student directory
+     * @return Set containing the submission, or an empty set if no files in the directory match the glob
+     * @throws IOException Thrown on error reading the directory or a file
+     */
+    Set<Submission> loadStudentDirectory(Path directory) throws IOException {
+        try {
+            Submission s = loadDirectory(directory);
+            if(s.isEmpty()) {
+                logs.warn("Warning: Submission " + s.getName() + " is empty!");
+            } else {
+                logs.debug("Created submission with name " + s.getName());
+            }
+            return Collections.singleton(s);
+        } catch (NoMatchingFilesException e) {
+            logs.warn("Could not create submission from directory " + directory.getFileName()
+                    + " - no files matching pattern found!");
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * Read a submission from every matching file in a directory.
+     *
+     * @param directory Directory containing the submission
+     * @return Submission named after the directory, containing all matching files
+     * @throws IOException Thrown on error reading the directory or a file
+     * @throws NoMatchingFilesException Thrown if no files in the directory match
+     */
+    Submission loadDirectory(Path directory) throws IOException, NoMatchingFilesException {
+        checkNotNull(directory);
+
+        return loadFiles(directory.getFileName().toString(), findMatchingFiles(directory));
+    }
+
+    /**
+     * Read a submission from the given files, or only record them if this loader is lazy.
+     *
+     * To ensure submission generation is deterministic, files are read in order of name. The content of each file
+     * which does not end with a newline is followed by one.
+     *
+     * @param name Name of the new submission
+     * @param files Files to include in the submission
+     * @return A new submission formed from the contents of all given files, appended
+     * @throws IOException Thrown on error reading from a file
+     * @throws NoMatchingFilesException Thrown if no files are given
+     */
+    Submission loadFiles(String name, Collection<Path> files) throws IOException, NoMatchingFilesException {
+        checkNotNull(name);
+        checkArgument(!name.isEmpty(), "Submission name cannot be empty");
+        checkNotNull(files);
+
+        if(files.isEmpty()) {
+            throw new NoMatchingFilesException("No matching files found, cannot create submission named \"" + name
+                    + "\"");
+        }
+
+        List<Path> orderedFiles = new ArrayList<>(files);
+        orderedFiles.sort(Comparator.comparing((Path p) -> p.getFileName().toString()).thenComparing(Path::toString));
+
+        if(lazy) {
+            FileContent source = new FileContent(orderedFiles);
+            warnIfLarge(name, source.getSize());
+            return new ConcreteSubmission(name, source);
+        }
+
+        String contentString = readContent(orderedFiles);
+        warnIfLarge(name, contentString.length());
+
+        return new ConcreteSubmission(name, contentString);
+    }
+
+    /**
+     * Read and concatenate the given files, in order, ending each with a newline.
+     */
+    private String readContent(List<Path> orderedFiles) throws IOException {
+        StringBuilder fileContent = new StringBuilder();
+
+        for(Path file : orderedFiles) {
+            appendFile(fileContent, readFile(file));
+        }
+
+        return fileContent.toString();
+    }
+
+    /**
+     * Append the content of one file, followed by a newline if it does not end with one.
+     */
+    private static void appendFile(StringBuilder fileContent, CharBuffer content) {
+        int length = content.remaining();
+
+        fileContent.append(content.array(), content.arrayOffset() + content.position(), length);
+
+        if(length > 0 && content.get(content.limit() - 1) != '\n') {
+            fileContent.append('\n');
+        }
+    }
+
+    /**
+     * Build a submission from file contents already held in memory, such as entries streamed out of an archive.
+     *
+     * Files are ordered and concatenated exactly as {@link #loadFiles(String, Collection)} would if they had been
+     * read from disk. Content is always read immediately, as there is nothing on disk to read it from later.
+     *
+     * @param name Name of the new submission
+     * @param files Content of each file in the submission, keyed by its path relative to the submission
+     * @return A new submission formed from the contents of all given files, appended
+     * @throws IOException Thrown on error decoding a file
+     * @throws NoMatchingFilesException Thrown if no files are given
+     */
+    Submission loadContents(String name, Map<String, byte[]> files) throws IOException, NoMatchingFilesException {
+        checkNotNull(name);
+        checkArgument(!name.isEmpty(), "Submission name cannot be empty");
+        checkNotNull(files);
+
+        if(files.isEmpty()) {
+            throw new NoMatchingFilesException("No matching files found, cannot create submission named \"" + name
+                    + "\"");
+        }
+
+        List<String> orderedFiles = new ArrayList<>(files.keySet());
+        orderedFiles.sort(Comparator.comparing(SubmissionLoader::fileNameOf).thenComparing(Comparator.naturalOrder()));
+
+        StringBuilder fileContent = new StringBuilder();
+        for(String file : orderedFiles) {
+            byte[] bytes = files.get(file);
+
+            bytesRead.add(bytes.length);
+            filesRead.increment();
+
+            appendFile(fileContent, decode(ByteBuffer.wrap(bytes)));
+        }
+
+        String contentString = fileContent.toString();
+        warnIfLarge(name, contentString.length());
+
+        return new ConcreteSubmission(name, contentString);
+    }
+
+    /**
+     * @param path Path of a file, with components separated by forward slashes
+     * @return Final component of the path
+     */
+    static String fileNameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @param fileName Name of a file, without any directory
+     * @return Whether the name matches this loader's glob pattern
+     */
+    boolean matches(String fileName) {
+        checkNotNull(fileName);
+
+        try {
+            return !fileName.isEmpty() && matcher.matches(Paths.get(fileName));
+        } catch (InvalidPathException e) {
+            // Archive entries may carry names this platform cannot represent, and no glob can match them
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether this loader includes files in subdirectories of a submission
+     */
+    boolean isRecursive() {
+        return recursive;
+    }
+
+    private static void warnIfLarge(String name, long size) {
+        if(size > 7500 * 4) { // large number of tokens * average token length
+            logs.warn("Warning: Submission " + name + " has very large source size (" + size + ")");
+        }
+    }
+
+    /**
+     * The files making up a submission whose content is read on demand.
+     */
+    final class FileContent {
+        private final List<Path> files;
+        private final long size;
+
+        /**
+         * @param orderedFiles Files of the submission, in the order their content is concatenated
+         * @throws IOException Thrown if the size of a file cannot be read
+         */
+        private FileContent(List<Path> orderedFiles) throws IOException {
+            this.files = Collections.unmodifiableList(new ArrayList<>(orderedFiles));
+
+            long total = 0;
+            for(Path file : files) {
+                total += Files.size(file);
+            }
+            this.size = total;
+        }
+
+        /**
+         * @return Content of every file, read now
+         * @throws IOException Thrown on error reading a file
+         */
+        String read() throws IOException {
+            return readContent(files);
+        }
+
+        /**
+         * @return Total size of the files, in bytes
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * @return Whether every file is empty, in which case the content is empty
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FileContent && ((FileContent)other).files.equals(files);
+        }
+
+        @Override
+        public int hashCode() {
+            return files.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return files.size() + " files (" + size + " bytes)";
+        }
+    }
+
+    /**
+     * Read and decode a single file.
+     *
+     * @param file File to read
+     * @return Contents of the file, decoded as UTF-8 into a heap buffer
+     * @throws IOException Thrown on error reading the file
+     */
+    CharBuffer readFile(Path file) throws IOException {
+        checkNotNull(file);
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException("File " + file + " is too large to read (" + size + " bytes)");
+            }
+
+            ByteBuffer bytes;
+            if(size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = readBuffers.get();
+                bytes.clear();
+                while(bytes.hasRemaining() && channel.read(bytes) != -1) {
+                    // Read until the buffer is full or the file ends
+                }
+
+                if(!bytes.hasRemaining() && channel.size() > bytes.capacity()) {
+                    // The file grew past the buffer after its size was taken
+                    bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } else {
+                    bytes.flip();
+                }
+            }
+
+            bytesRead.add(bytes.remaining());
+            filesRead.increment();
+
+            return decode(bytes);
+        }
+    }
+
+    private static CharBuffer decode(ByteBuffer bytes) throws CharacterCodingException {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
+    }
+
+    /**
+     * @return Total bytes read through this loader
+     */
+    long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return Number of files read through this loader
+     */
+    long getFilesRead() {
+        return filesRead.sum();
+    }
+
+    /**
+     * Log the amount of data read and the rate it was read at.
+     *
+     * @param elapsedMillis Time taken to read
+     */
+    void logThroughput(long elapsedMillis) {
+        long bytes = getBytesRead();
+        double megabytes = bytes / (1024.0 * 1024.0);
+        double rate = megabytes / Math.max(elapsedMillis, 1) * 1000;
+
+        logs.info(String.format("Read %d files (%.1f MB) in %d ms (%.1f MB/s)", getFilesRead(), megabytes,
+                elapsedMillis, rate));
+    }
+
+    @Override
+    public String toString() {
+        return "Submission loader (" + getFilesRead() + " files, " + getBytesRead() + " bytes read)";
+    }
+}
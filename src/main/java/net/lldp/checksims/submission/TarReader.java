@@ -0,0 +1,267 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.submission;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads the regular files out of a tar stream, in order, without writing anything to disk.
+ *
+ * Understands POSIX ustar headers, including the name prefix field, as well as GNU long names and the path record of
+ * pax extended headers. Links, devices and directories are skipped.
+ */
+final class TarReader {
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /**
+     * Receives each regular file in an archive.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * @param path Path of the file within the archive
+         * @param content Content of the file. Only valid during this call, and must not be closed.
+         * @throws IOException Thrown on error reading the content
+         */
+        void visit(String path, InputStream content) throws IOException;
+    }
+
+    /**
+     * @param in Uncompressed tar stream to read
+     */
+    TarReader(InputStream in) {
+        checkNotNull(in);
+
+        this.in = in;
+    }
+
+    /**
+     * Read every entry in the archive, passing each regular file to the given visitor.
+     *
+     * @param visitor Visitor to receive files
+     * @throws IOException Thrown on error reading the stream, or if it is not a valid tar archive
+     */
+    void forEachFile(EntryVisitor visitor) throws IOException {
+        checkNotNull(visitor);
+
+        String longName = null;
+
+        while(readHeader()) {
+            long size = parseSize();
+            char type = (char)header[156];
+
+            String name;
+            if(longName != null) {
+                name = longName;
+                longName = null;
+            } else {
+                name = parseName();
+            }
+
+            EntryStream content = new EntryStream(size);
+            if(type == 'L') {
+                longName = trimAtNull(new String(ByteStreams.toByteArray(content), StandardCharsets.UTF_8));
+            } else if(type == 'x') {
+                longName = paxPath(new String(ByteStreams.toByteArray(content), StandardCharsets.UTF_8));
+            } else if(type == '0' || type == '\0' || type == '7') {
+                visitor.visit(name, content);
+            }
+
+            // Skip whatever the visitor did not read, then the padding to the next block
+            ByteStreams.skipFully(in, content.remaining + padding(size));
+        }
+    }
+
+    /**
+     * Read the next header block.
+     *
+     * @return False if the end of the archive has been reached
+     */
+    private boolean readHeader() throws IOException {
+        int read = ByteStreams.read(in, header, 0, BLOCK_SIZE);
+        if(read == 0) {
+            return false;
+        } else if(read < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+
+        for(byte b : header) {
+            if(b != 0) {
+                verifyChecksum();
+                return true;
+            }
+        }
+
+        // A zeroed block marks the end of the archive
+        return false;
+    }
+
+    private void verifyChecksum() throws IOException {
+        long expected = parseOctal(148, 8);
+
+        long actual = 0;
+        for(int i = 0; i < BLOCK_SIZE; i++) {
+            actual += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+        }
+
+        if(actual != expected) {
+            throw new IOException("Not a tar archive, or corrupt header (bad checksum)");
+        }
+    }
+
+    private String parseName() {
+        String name = field(0, 100);
+
+        if(field(257, 5).equals("ustar")) {
+            String prefix = field(345, 155);
+            if(!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+        }
+
+        return name;
+    }
+
+    private long parseSize() throws IOException {
+        if((header[124] & 0x80) != 0) {
+            // Base-256 encoding, used for files of 8GB or more
+            long size = 0;
+            for(int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xFF);
+            }
+            return size;
+        }
+
+        return parseOctal(124, 12);
+    }
+
+    private long parseOctal(int offset, int length) throws IOException {
+        long value = 0;
+
+        for(int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if(b == 0 || b == ' ') {
+                if(value != 0) {
+                    break;
+                }
+                continue;
+            }
+            if(b < '0' || b > '7') {
+                throw new IOException("Not a tar archive, or corrupt header (bad numeric field)");
+            }
+            value = (value << 3) + (b - '0');
+        }
+
+        return value;
+    }
+
+    private String field(int offset, int length) {
+        int end = offset;
+        while(end < offset + length && header[end] != 0) {
+            end++;
+        }
+
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimAtNull(String s) {
+        int nul = s.indexOf('\0');
+
+        return nul == -1 ? s : s.substring(0, nul);
+    }
+
+    /**
+     * @param records Records of a pax extended header, each of the form "length key=value\n"
+     * @return Value of the path record, or null if there is none
+     */
+    private static String paxPath(String records) {
+        for(String record : records.split("\n")) {
+            int start = record.indexOf(' ');
+            if(start != -1 && record.startsWith("path=", start + 1)) {
+                return record.substring(start + 6);
+            }
+        }
+
+        return null;
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    /**
+     * Bounds reads to the content of the current entry. Closing it has no effect.
+     */
+    private final class EntryStream extends InputStream {
+        private long remaining;
+
+        private EntryStream(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(remaining == 0) {
+                return -1;
+            }
+
+            int b = in.read();
+            if(b == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(remaining == 0) {
+                return -1;
+            }
+
+            int read = in.read(buffer, offset, (int)Math.min(length, remaining));
+            if(read == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining -= read;
+
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The underlying stream still holds the rest of the archive
+        }
+    }
+}
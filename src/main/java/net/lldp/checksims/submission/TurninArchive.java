@@ -0,0 +1,250 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.submission;
+
+import com.google.common.io.ByteStreams;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.ParallelAlgorithm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads submissions straight out of a turnin archive, without extracting it to disk.
+ *
+ * A turnin archive holds a students/ and a groups/ directory, each containing one directory per submission. Files in
+ * those directories become the submission; archives at the top level of a submission directory are expanded into it,
+ * as though they had been extracted in place. Zip, tar, and gzipped tar archives are accepted, both for the turnin
+ * archive itself and for the archives nested within it.
+ *
+ * The turnin archive is streamed once, keeping only files matching the glob pattern and nested archives. Each
+ * submission is then decoded, and its nested archives streamed, in parallel with the others.
+ */
+final class TurninArchive {
+    private static Logger logs = LoggerFactory.getLogger(TurninArchive.class);
+
+    private final SubmissionLoader loader;
+
+    /**
+     * @param loader Loader providing the glob pattern and recursion setting, and counting the bytes read
+     */
+    TurninArchive(SubmissionLoader loader) {
+        checkNotNull(loader);
+
+        this.loader = loader;
+    }
+
+    /**
+     * @param fileName Name of a file
+     * @return Whether the file is an archive format which can be read
+     */
+    static boolean isArchive(String fileName) {
+        checkNotNull(fileName);
+
+        String lower = fileName.toLowerCase(Locale.ROOT);
+
+        return lower.endsWith(".zip") || lower.endsWith(".tar") || lower.endsWith(".tar.gz")
+                || lower.endsWith(".tgz");
+    }
+
+    /**
+     * Read every submission in a turnin archive.
+     *
+     * @param archive Turnin archive to read
+     * @param context Execution context to decode submissions and expand nested archives on
+     * @param logger Status logger to report progress to
+     * @return Every submission in the archive with at least one matching file
+     * @throws IOException Thrown on error reading the archive, or if it is not a turnin archive
+     * @throws ChecksimsException Thrown on error reading a submission, or if the context is cancelled
+     */
+    Set<Submission> load(Path archive, ExecutionContext context, StatusLogger logger)
+            throws IOException, ChecksimsException {
+        checkNotNull(archive);
+        checkNotNull(context);
+        checkNotNull(logger);
+
+        Map<String, SubmissionEntries> entries = new LinkedHashMap<>();
+
+        try(InputStream in = new BufferedInputStream(Files.newInputStream(archive))) {
+            forEachFile(archive.getFileName().toString(), in, (path, content) -> {
+                String[] components = normalize(path).split("/");
+                if(!components[0].equals("students") && !components[0].equals("groups")) {
+                    return;
+                }
+
+                if(components.length < 3) {
+                    throw new IOException("Invalid file " + path + " in turnin archive " + archive
+                            + " - might this be a hand crafted archive?");
+                }
+
+                SubmissionEntries submission = entries.computeIfAbsent(components[0] + "/" + components[1],
+                        (key) -> new SubmissionEntries(components[1]));
+                String relative = String.join("/", Arrays.copyOfRange(components, 2, components.length));
+
+                if(components.length == 3 && isArchive(relative)) {
+                    submission.archives.put(relative, ByteStreams.toByteArray(content));
+                } else {
+                    submission.addIfMatching(relative, content);
+                }
+            });
+        }
+
+        List<Callable<Set<Submission>>> readers = new ArrayList<>();
+        for(SubmissionEntries submission : entries.values()) {
+            readers.add(submission::load);
+        }
+
+        Set<Submission> submissions = new HashSet<>();
+        for(Set<Submission> read : ParallelAlgorithm.parallelBlockingTasks(context, readers, logger)) {
+            submissions.addAll(read);
+        }
+
+        return submissions;
+    }
+
+    /**
+     * Pass every regular file in an archive to the given visitor, choosing the archive format by file name.
+     *
+     * @param archiveName Name of the archive
+     * @param in Stream of the archive's content
+     * @param visitor Visitor to receive files
+     * @throws IOException Thrown on error reading the archive, or if its format is not recognized
+     */
+    static void forEachFile(String archiveName, InputStream in, TarReader.EntryVisitor visitor) throws IOException {
+        String lower = archiveName.toLowerCase(Locale.ROOT);
+
+        if(lower.endsWith(".zip")) {
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+            while((entry = zip.getNextEntry()) != null) {
+                if(!entry.isDirectory()) {
+                    visitor.visit(entry.getName(), zip);
+                }
+            }
+        } else if(lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) {
+            new TarReader(new GZIPInputStream(in)).forEachFile(visitor);
+        } else if(lower.endsWith(".tar")) {
+            new TarReader(in).forEachFile(visitor);
+        } else {
+            throw new IOException("Unrecognized archive format: " + archiveName);
+        }
+    }
+
+    /**
+     * @param path Path of an archive entry
+     * @return The path with forward slashes, and without any leading "./" or "/"
+     */
+    private static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+
+        while(normalized.startsWith("./") || normalized.startsWith("/")) {
+            normalized = normalized.substring(normalized.startsWith("/") ? 1 : 2);
+        }
+
+        return normalized;
+    }
+
+    /**
+     * Files and nested archives collected for one submission directory of a turnin archive.
+     */
+    private final class SubmissionEntries {
+        private final String name;
+        private final Map<String, byte[]> files = new HashMap<>();
+        private final Map<String, byte[]> archives = new LinkedHashMap<>();
+
+        private SubmissionEntries(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Keep a file if its name matches the glob, and it lies within the depth being read.
+         *
+         * @param relative Path of the file relative to the submission directory
+         * @param content Content of the file
+         */
+        private void addIfMatching(String relative, InputStream content) throws IOException {
+            boolean topLevel = relative.indexOf('/') == -1;
+
+            if((topLevel || loader.isRecursive()) && loader.matches(SubmissionLoader.fileNameOf(relative))) {
+                files.put(relative, ByteStreams.toByteArray(content));
+            }
+        }
+
+        /**
+         * Expand nested archives, then build the submission.
+         *
+         * @return Set containing the submission, or an empty set if it has no matching files
+         * @throws IOException Thrown on error reading a nested archive or decoding a file
+         */
+        private Set<Submission> load() throws IOException {
+            for(Map.Entry<String, byte[]> archive : archives.entrySet()) {
+                try {
+                    forEachFile(archive.getKey(), new ByteArrayInputStream(archive.getValue()),
+                            (path, content) -> addIfMatching(normalize(path), content));
+                } catch (IOException e) {
+                    throw new IOException("Error reading archive " + archive.getKey() + " of submission " + name, e);
+                }
+            }
+
+            try {
+                Submission s = loader.loadContents(name, files);
+                if(s.isEmpty()) {
+                    logs.warn("Warning: Submission " + s.getName() + " is empty!");
+                } else {
+                    logs.debug("Created submission with name " + s.getName());
+                }
+                return Collections.singleton(s);
+            } catch (NoMatchingFilesException e) {
+                logs.warn("Could not create submission from directory " + name
+                        + " - no files matching pattern found!");
+                return Collections.emptySet();
+            }
+        }
+    }
+}
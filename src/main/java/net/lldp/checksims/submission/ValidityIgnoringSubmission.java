@@ -124,19 +124,19 @@ public final class ValidityIgnoringSubmission extends AbstractSubmissionDecorato
     }
 
     @Override
-    public void increaseScore(double r, double o)
+    public synchronized void increaseScore(double r, double o)
     {
         real += r;
     }
 
     @Override
-    public double getTotalCopyScore()
+    public synchronized double getTotalCopyScore()
     {
         return real;
     }
 
     @Override
-    public Double getMaximumCopyScore()
+    public synchronized Double getMaximumCopyScore()
     {
         return 0d;
     }
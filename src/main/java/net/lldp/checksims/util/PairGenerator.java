@@ -24,9 +24,10 @@ package net.lldp.checksims.util;
 import net.lldp.checksims.submission.Submission;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.util.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -43,40 +44,15 @@ public final class PairGenerator {
      */
     public static Set<Pair<Submission, Submission>> generatePairs(Set<Submission> submissions) {
         checkNotNull(submissions);
-        checkArgument(submissions.size() >= 2, "Cannot generate pairs with less than 2 submissions!");
 
-        Set<Pair<Submission, Submission>> pairs = new HashSet<>();
-
-        List<Submission> remaining = new ArrayList<>();
-        remaining.addAll(submissions);
-
-        while(remaining.size() >= 2) {
-            // Get the first submission in the list and remove it
-            Submission first = remaining.get(0);
-            remaining.remove(0);
-
-            // Form a pair for every remaining submission by pairing with the first, removed submission
-            for(Submission submission : remaining) {
-                Pair<Submission, Submission> pair = Pair.of(first, submission);
-                Pair<Submission, Submission> reversed = Pair.of(submission, first);
-
-                // Something's wrong, we've made a duplicate pair (but reversed)
-                // Should never happen
-                if(pairs.contains(reversed)) {
-                    throw new RuntimeException("Internal error in pair generation: duplicate pair produced!");
-                }
-
-                // Add the newly-generated pair to our return
-                pairs.add(pair);
-            }
-        }
-
-        return pairs;
+        return generatePairsWithArchive(submissions, Collections.emptySet());
     }
 
     /**
      * Generate all pairs for normal submissions, and pairs for archive submissions to compare to normal submissions.
      *
+     * Materializes every pair. Where the pairs only need to be iterated, use {@link SubmissionPairs} instead.
+     *
      * @param submissions Normal submissions - compared to each other and archive submissions
      * @param archiveSubmissions Archive submissions - only compared to normal submissions, not each other
      * @return Set of all unordered pairs required for comparison with archive directory
@@ -89,38 +65,6 @@ public final class PairGenerator {
         // TODO it may be desirable to allow comparison of a single submission to an archive
         // However, generatePairs fails if only 1 submission is given
         // (This would also require tweaks in the frontend)
-        Set<Pair<Submission, Submission>> basePairs = generatePairs(submissions);
-
-        // If we have no archive submissions, just return the same result generatePairs would
-        if(archiveSubmissions.isEmpty()) {
-            return basePairs;
-        }
-
-        // Now we need to add pairs for the archive submissions
-        List<Submission> remaining = new ArrayList<>();
-        remaining.addAll(archiveSubmissions);
-
-        // Loop through each archive submission
-        while(!remaining.isEmpty()) {
-            Submission first = remaining.get(0);
-            remaining.remove(0);
-
-            // For each archive submission, generate pairs for each normal submission
-            for(Submission s : submissions) {
-                Pair<Submission, Submission> pair = Pair.of(first, s);
-                Pair<Submission, Submission> reversed = Pair.of(s, first);
-
-                // Something's wrong, we've made a duplicate pair (but reversed)
-                // Should never happen
-                if(basePairs.contains(reversed)) {
-                    throw new RuntimeException("Internal error in pair generation: duplicate pair produced!");
-                }
-
-                // One pair for each normal submission, consisting of the archive submission and the normal submission
-                basePairs.add(pair);
-            }
-        }
-
-        return basePairs;
+        return new HashSet<>(new SubmissionPairs(submissions, archiveSubmissions));
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.util;
+
+import com.google.common.collect.ImmutableList;
+
+import net.lldp.checksims.submission.Submission;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Lazily enumerated collection of all unordered pairs of submissions to compare.
+ *
+ * Pairs are produced on demand while iterating, by index: every pair (i, j) with i &lt; j of the normal submissions,
+ * followed by every archive submission paired with every normal submission. Only the two submission lists are held in
+ * memory, no matter how many pairs there are.
+ *
+ * Produces exactly the pairs given by {@link PairGenerator#generatePairsWithArchive(Set, Set)}.
+ */
+public final class SubmissionPairs extends AbstractCollection<Pair<Submission, Submission>> {
+    /**
+     * Flag set on archive submissions once the archive for a run is known.
+     */
+    public static final String ARCHIVE_FLAG = "archive";
+
+    private final ImmutableList<Submission> submissions;
+    private final ImmutableList<Submission> archiveSubmissions;
+    private final int size;
+
+    /**
+     * Create the collection of pairs for the given submissions.
+     *
+     * @param submissions Normal submissions - compared to each other and archive submissions
+     * @param archiveSubmissions Archive submissions - only compared to normal submissions, not each other
+     */
+    public SubmissionPairs(Set<Submission> submissions, Set<Submission> archiveSubmissions) {
+        checkNotNull(submissions);
+        checkNotNull(archiveSubmissions);
+        checkArgument(submissions.size() >= 2, "Cannot generate pairs with less than 2 submissions!");
+
+        this.submissions = ImmutableList.copyOf(submissions);
+        this.archiveSubmissions = ImmutableList.copyOf(archiveSubmissions);
+
+        long n = submissions.size();
+        long numPairs = n * (n - 1) / 2 + n * archiveSubmissions.size();
+
+        checkArgument(numPairs <= Integer.MAX_VALUE, "Too many submissions to enumerate pairs: " + numPairs
+                + " pairs required!");
+
+        this.size = (int)numPairs;
+    }
+
+    /**
+     * @return Number of pairs in this collection
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Pair<Submission, Submission>> iterator() {
+        return new PairIterator();
+    }
+
+    @Override
+    public String toString() {
+        return "All " + size + " pairs of " + submissions.size() + " submissions and " + archiveSubmissions.size()
+                + " archive submissions";
+    }
+
+    /**
+     * Index-based iterator over all pairs. Each pair is only created when it is returned.
+     */
+    private final class PairIterator implements Iterator<Pair<Submission, Submission>> {
+        // While first < submissions.size(), enumerating normal pairs; afterwards, archive pairs
+        private int first = 0;
+        private int second = 1;
+        private int archive = 0;
+
+        @Override
+        public boolean hasNext() {
+            if(first < submissions.size() - 1) {
+                return true;
+            }
+
+            return archive < archiveSubmissions.size();
+        }
+
+        @Override
+        public Pair<Submission, Submission> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if(first < submissions.size() - 1) {
+                Pair<Submission, Submission> pair = Pair.of(submissions.get(first), submissions.get(second));
+
+                second++;
+                if(second == submissions.size()) {
+                    first++;
+                    second = first + 1;
+                }
+
+                return pair;
+            }
+
+            // Archive pairs, archive submission first as generatePairsWithArchive does
+            // Reuse second to walk the normal submissions
+            if(second >= submissions.size()) {
+                second = 0;
+            }
+
+            Pair<Submission, Submission> pair = Pair.of(archiveSubmissions.get(archive), submissions.get(second));
+
+            second++;
+            if(second == submissions.size()) {
+                archive++;
+                second = 0;
+            }
+
+            return pair;
+        }
+    }
+}
@@ -213,6 +213,22 @@ public class Real implements Percentable
         return this;
     }
 
+    /**
+     * @return the numerator of this real
+     */
+    public int getNumerator()
+    {
+        return numerator;
+    }
+
+    /**
+     * @return the denominator of this real
+     */
+    public int getDenominator()
+    {
+        return denominator;
+    }
+
     /**
      * Get this real as a floating point double.
      * @return the numerator / denominator as a double.
@@ -0,0 +1,293 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.util.threading;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.parse.token.LexemeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Thread pools and scheduling settings owned by a single run of Checksims.
+ *
+ * Every run creates its own context, so any number of runs may proceed concurrently in one JVM without sharing
+ * threads. CPU-bound work runs on a pool sized to the thread count. Blocking I/O, such as reading submissions from
+ * network storage, runs on a separate and much larger pool, so that many slow requests can be outstanding at once
+ * without starving detection of processors. Threads of the I/O pool exit when idle. A context may be cancelled from
+ * any thread, which abandons all work in progress; parallel operations using it then fail with a ChecksimsException.
+ * Closing the context stops its threads and waits briefly for them to exit. A closed or cancelled context cannot be
+ * reused.
+ *
+ * A context also holds a LexemeMap scope, so token mappings created during the run are released once it and every
+ * other open context are closed.
+ */
+public final class ExecutionContext implements AutoCloseable {
+    private static final long TERMINATION_WAIT_SECONDS = 5;
+
+    /**
+     * Default number of threads for blocking I/O. Independent of processor count, as these threads mostly wait.
+     */
+    public static final int DEFAULT_IO_THREAD_COUNT = 32;
+    private static final AtomicInteger contextCount = new AtomicInteger(0);
+
+    private static Logger logs = LoggerFactory.getLogger(ExecutionContext.class);
+
+    private final int threadCount;
+    private final int ioThreadCount;
+    private final SchedulingStrategy schedulingStrategy;
+    private final ThreadPoolExecutor executor;
+    private final int id;
+    private final LexemeMap.Scope lexemeScope;
+    private ForkJoinPool workStealingPool;
+    private ThreadPoolExecutor ioExecutor;
+    private volatile boolean cancelled;
+
+    /**
+     * Create a context with its own thread pools.
+     *
+     * @param threadCount Number of threads to use for CPU-bound parallel operations
+     * @param ioThreadCount Maximum number of threads to use for blocking I/O
+     * @param schedulingStrategy Order in which pairs are dispatched for similarity detection
+     */
+    public ExecutionContext(int threadCount, int ioThreadCount, SchedulingStrategy schedulingStrategy) {
+        checkArgument(threadCount > 0, "Attempted to set number of threads to " + threadCount
+                + ", but must be positive integer!");
+        checkArgument(ioThreadCount > 0, "Attempted to set number of I/O threads to " + ioThreadCount
+                + ", but must be positive integer!");
+        checkNotNull(schedulingStrategy);
+
+        this.threadCount = threadCount;
+        this.ioThreadCount = ioThreadCount;
+        this.schedulingStrategy = schedulingStrategy;
+        this.id = contextCount.incrementAndGet();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory("worker"), new ThreadPoolExecutor.AbortPolicy());
+        this.workStealingPool = null;
+        this.ioExecutor = null;
+        this.cancelled = false;
+        this.lexemeScope = LexemeMap.openScope();
+    }
+
+    /**
+     * Create a context with the default number of I/O threads.
+     *
+     * @param threadCount Number of threads to use for CPU-bound parallel operations
+     * @param schedulingStrategy Order in which pairs are dispatched for similarity detection
+     */
+    public ExecutionContext(int threadCount, SchedulingStrategy schedulingStrategy) {
+        this(threadCount, DEFAULT_IO_THREAD_COUNT, schedulingStrategy);
+    }
+
+    /**
+     * Create a context using every available processor, and FIFO scheduling.
+     */
+    public ExecutionContext() {
+        this(Runtime.getRuntime().availableProcessors(), SchedulingStrategy.FIFO);
+    }
+
+    /**
+     * @return Number of threads used for parallel operations
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return Maximum number of threads used for blocking I/O
+     */
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    /**
+     * @return Order in which pairs are dispatched for similarity detection
+     */
+    public SchedulingStrategy getSchedulingStrategy() {
+        return schedulingStrategy;
+    }
+
+    /**
+     * @return Fixed-size thread pool of this context
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * The work-stealing pool is only created the first time it is requested.
+     *
+     * @return Work-stealing pool of this context
+     * @throws ChecksimsException Thrown if the context has been closed or cancelled
+     */
+    synchronized ExecutorService getWorkStealingPool() throws ChecksimsException {
+        checkUsable();
+
+        if(workStealingPool == null) {
+            workStealingPool = new ForkJoinPool(threadCount);
+        }
+
+        return workStealingPool;
+    }
+
+    /**
+     * The I/O pool is only created the first time it is requested. Its threads time out when idle, so it holds no
+     * threads between I/O-bound stages.
+     *
+     * @return Thread pool of this context for blocking I/O
+     * @throws ChecksimsException Thrown if the context has been closed or cancelled
+     */
+    synchronized ExecutorService getIoExecutor() throws ChecksimsException {
+        checkUsable();
+
+        if(ioExecutor == null) {
+            ioExecutor = new ThreadPoolExecutor(ioThreadCount, ioThreadCount, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new WorkerThreadFactory("io"), new ThreadPoolExecutor.AbortPolicy());
+            ioExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return ioExecutor;
+    }
+
+    /**
+     * Long-running work done outside the executors of this context should call this periodically, so that it stops
+     * promptly once the run is cancelled.
+     *
+     * @throws ChecksimsException Thrown if the context has been closed or cancelled
+     */
+    public void checkUsable() throws ChecksimsException {
+        if(cancelled) {
+            throw new ChecksimsException("Checksims run was cancelled!");
+        }
+
+        if(executor.isShutdown()) {
+            throw new ChecksimsException("Attempted to use execution context after it was closed!");
+        }
+    }
+
+    /**
+     * Abandon all work in progress. Running tasks are interrupted, and queued tasks are discarded.
+     *
+     * May be called from any thread. Has no effect if the context is already closed.
+     */
+    public void cancel() {
+        cancelled = true;
+
+        shutdownNow();
+    }
+
+    /**
+     * @return Whether this context was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stop all threads of this context, waiting a short time for running tasks to exit.
+     */
+    @Override
+    public void close() {
+        shutdownNow();
+
+        try {
+            if(!executor.awaitTermination(TERMINATION_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                logs.warn("Worker threads of " + this + " did not exit in time");
+            }
+
+            ForkJoinPool pool = getCreatedWorkStealingPool();
+            if(pool != null && !pool.awaitTermination(TERMINATION_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                logs.warn("Work-stealing threads of " + this + " did not exit in time");
+            }
+
+            ExecutorService io = getCreatedIoExecutor();
+            if(io != null && !io.awaitTermination(TERMINATION_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                logs.warn("I/O threads of " + this + " did not exit in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lexemeScope.close();
+        }
+    }
+
+    /**
+     * Stop all threads without waiting, after a fatal error in a task.
+     */
+    void shutdownNow() {
+        executor.shutdownNow();
+
+        ForkJoinPool pool = getCreatedWorkStealingPool();
+        if(pool != null) {
+            pool.shutdownNow();
+        }
+
+        ExecutorService io = getCreatedIoExecutor();
+        if(io != null) {
+            io.shutdownNow();
+        }
+    }
+
+    private synchronized ForkJoinPool getCreatedWorkStealingPool() {
+        return workStealingPool;
+    }
+
+    private synchronized ExecutorService getCreatedIoExecutor() {
+        return ioExecutor;
+    }
+
+    @Override
+    public String toString() {
+        return "Execution context " + id + " with " + threadCount + " threads";
+    }
+
+    /**
+     * Names the threads of a context after it, and marks them as daemons so an unclosed context cannot keep the JVM
+     * alive.
+     */
+    private final class WorkerThreadFactory implements ThreadFactory {
+        private final String kind;
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        WorkerThreadFactory(String kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "checksims-" + id + "-" + kind + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
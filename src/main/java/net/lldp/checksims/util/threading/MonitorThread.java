@@ -27,7 +27,7 @@ import net.lldp.checksims.util.completion.StatusLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.LongSupplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -35,21 +35,32 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Monitor thread for parallel execution jobs.
  */
 class MonitorThread implements Runnable {
-    private final ThreadPoolExecutor toMonitor;
-    private boolean doRun;
+    private final LongSupplier completed;
+    private final LongSupplier expected;
+    private volatile boolean doRun;
     long currentComplete;
     long total;
 
     private static Logger logs = LoggerFactory.getLogger(MonitorThread.class);
     private final StatusLogger logger;
 
-    MonitorThread(ThreadPoolExecutor toMonitor, StatusLogger logger) {
-        checkNotNull(toMonitor);
+    /**
+     * Monitor progress reported by counters, as tasks are submitted gradually and may run on an executor which does
+     * not count its tasks.
+     *
+     * @param completed Number of tasks completed so far
+     * @param expected Number of tasks expected in total
+     * @param logger Logger to report status to
+     */
+    MonitorThread(LongSupplier completed, LongSupplier expected, StatusLogger logger) {
+        checkNotNull(completed);
+        checkNotNull(expected);
 
-        this.toMonitor = toMonitor;
+        this.completed = completed;
+        this.expected = expected;
         doRun = true;
         currentComplete = 0;
-        total = toMonitor.getTaskCount();
+        total = expected.getAsLong();
         
         if (logger instanceof DefaultLoggerStatusLogger)
         {
@@ -66,8 +77,8 @@ class MonitorThread implements Runnable {
     @Override
     public void run() {
         while(doRun) {
-            long newComplete = toMonitor.getCompletedTaskCount();
-            total = toMonitor.getTaskCount();
+            long newComplete = completed.getAsLong();
+            total = expected.getAsLong();
 
             // Only print if we have an update
             if(newComplete != currentComplete) {
@@ -86,6 +97,6 @@ class MonitorThread implements Runnable {
 
     @Override
     public String toString() {
-        return "Monitoring thread for a ThreadPoolExecutor";
+        return "Monitoring thread for parallel execution";
     }
 }
@@ -25,9 +25,14 @@ import com.google.common.collect.ImmutableSet;
 
 import net.lldp.checksims.ChecksimsException;
 import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.IndexedSimilarityDetector;
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.algorithm.ResultSink;
 import net.lldp.checksims.algorithm.SimilarityDetector;
 import net.lldp.checksims.algorithm.preprocessor.SubmissionPreprocessor;
 import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.completion.StatusLogger;
 
@@ -37,78 +42,238 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Apply a given algorithm to a given set of data in parallel.
+ * Apply a given algorithm to a given set of data in parallel, using the thread pools of an execution context.
  */
 public final class ParallelAlgorithm {
     private ParallelAlgorithm() {}
 
     private static Logger logs = LoggerFactory.getLogger(ParallelAlgorithm.class);
 
-    private static int threadCount = Runtime.getRuntime().availableProcessors();
-    private static ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+    private static final long CANCELLATION_POLL_MILLIS = 100;
 
-    /**
-     * @param threads Number of threads to be used for execution
-     */
-    public static void setThreadCount(int threads) {
-        checkArgument(threads > 0, "Attempted to set number of threads to " + threads
-                + ", but must be positive integer!");
-
-        threadCount = threads;
-        executor.shutdown();
-        // Set up the executor again with the new thread count
-        executor = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
-                new ThreadPoolExecutor.AbortPolicy());
-    }
+    // Pairs scored by each task of an indexed detection, as scoring one pair from an index is very cheap
+    private static final int INDEXED_PAIRS_PER_TASK = 1024;
 
     /**
-     * Shut down the executor, preventing any more jobs from being processed.
+     * Detect similarities in parallel.
+     *
+     * Workers are created lazily, and only a small multiple of the thread count is scheduled at any time. Results are
+     * collected as they complete. Under the FIFO strategy, pairs are drawn from the given collection as they are needed,
+     * so a lazily enumerated collection is never materialized. Under the largest-first strategy, the cost of every pair
+     * is estimated up front, and pairs are dispatched most expensive first onto a work-stealing pool.
+     *
+     * @param context Execution context of the current run
+     * @param algorithm Algorithm to use for similarity detection
+     * @param pairs Pairs of submissions to perform detection on
+     * @param prepared Percentables generated for every submission present in the pairs
+     * @return Collection of results, one for each pair
      */
-    public static void shutdownExecutor() {
-        executor.shutdown();
+    public static <T extends Percentable> Set<AlgorithmResults> parallelSimilarityDetection(ExecutionContext context,
+                                                                    SimilarityDetector<T> algorithm,
+                                                                    Collection<Pair<Submission, Submission>> pairs,
+                                                                    PreparedSubmissions<T> prepared,
+                                                                    StatusLogger logger)
+            throws ChecksimsException {
+        ImmutableSet.Builder<AlgorithmResults> results = ImmutableSet.builder();
+
+        parallelSimilarityDetection(context, algorithm, pairs, prepared, logger, results::add);
+
+        return results.build();
     }
 
     /**
-     * @return Number of threads to be used for execution. Defaults to number of CPUs available on system.
+     * Detect similarities in parallel, passing each result to the given sink as it completes instead of collecting
+     * them. The sink is called on the calling thread.
+     *
+     * @param context Execution context of the current run
+     * @param algorithm Algorithm to use for similarity detection
+     * @param pairs Pairs of submissions to perform detection on
+     * @param prepared Percentables generated for every submission present in the pairs
+     * @param logger Status logger to report progress to
+     * @param sink Sink to receive the result of each pair
+     * @throws ChecksimsException Thrown on error performing similarity detection, or if the context is cancelled
      */
-    public static int getThreadCount() {
-        return threadCount;
+    public static <T extends Percentable> void parallelSimilarityDetection(ExecutionContext context,
+                                                                          SimilarityDetector<T> algorithm,
+                                                                          Collection<Pair<Submission, Submission>>
+                                                                                  pairs,
+                                                                          PreparedSubmissions<T> prepared,
+                                                                          StatusLogger logger, ResultSink sink)
+            throws ChecksimsException {
+        checkNotNull(context);
+        checkNotNull(algorithm);
+        checkNotNull(pairs);
+        checkNotNull(prepared);
+        checkNotNull(sink);
+
+        Iterator<Pair<Submission, Submission>> pairIterator;
+        ExecutorService runOn;
+        if(context.getSchedulingStrategy() == SchedulingStrategy.LARGEST_FIRST) {
+            pairIterator = largestFirst(algorithm, pairs, prepared);
+            runOn = context.getWorkStealingPool();
+        } else {
+            pairIterator = pairs.iterator();
+            runOn = context.getExecutor();
+        }
+
+        // Map the pairs to SimilarityDetectionWorker instances, as they are needed
+        Iterator<SimilarityDetectionWorker<T>> workers = new Iterator<SimilarityDetectionWorker<T>>() {
+            @Override
+            public boolean hasNext() {
+                return pairIterator.hasNext();
+            }
+
+            @Override
+            public SimilarityDetectionWorker<T> next() {
+                return new SimilarityDetectionWorker<>(algorithm, pairIterator.next(), prepared);
+            }
+        };
+
+        executeTasksBounded(context, runOn, context.getThreadCount(), workers, pairs.size(), sink::accept, logger);
     }
 
     /**
-     * Detect similarities in parallel.
+     * Detect similarities with an indexed algorithm, passing each result to the given sink as it completes.
      *
-     * @param algorithm Algorithm to use for similarity detection
+     * A single index is built over every prepared submission on the calling thread, checking for cancellation as it
+     * goes. Pairs are then drawn from the given collection as they are needed, and scored from the index in batches on
+     * the fixed thread pool of the context. The sink is called on the calling thread.
+     *
+     * @param context Execution context of the current run
+     * @param algorithm Indexed algorithm to use for similarity detection
      * @param pairs Pairs of submissions to perform detection on
-     * @return Collection of results, one for each pair
+     * @param prepared Percentables generated for every submission present in the pairs
+     * @param logger Status logger to report progress to
+     * @param sink Sink to receive the result of each pair
+     * @throws ChecksimsException Thrown on error performing similarity detection, or if the context is cancelled
      */
-    public static <T extends Percentable> Set<AlgorithmResults> parallelSimilarityDetection(SimilarityDetector<T> algorithm,
-                                                                    Set<Pair<Submission, Submission>> pairs,
-                                                                    StatusLogger logger)
+    public static <T extends Percentable> void indexedSimilarityDetection(ExecutionContext context,
+                                                                         IndexedSimilarityDetector<T> algorithm,
+                                                                         Collection<Pair<Submission, Submission>>
+                                                                                 pairs,
+                                                                         PreparedSubmissions<T> prepared,
+                                                                         StatusLogger logger, ResultSink sink)
             throws ChecksimsException {
+        checkNotNull(context);
         checkNotNull(algorithm);
         checkNotNull(pairs);
+        checkNotNull(prepared);
+        checkNotNull(sink);
 
-        // Map the pairs to ChecksimsWorker instances
-        Collection<SimilarityDetectionWorker<T>> workers = pairs.stream()
-                .map((pair) -> new SimilarityDetectionWorker<T>(algorithm, pair))
-                .collect(Collectors.toList());
+        context.checkUsable();
+
+        IndexedSimilarityDetector.Index index = algorithm.buildIndex(prepared, context);
+
+        // Group the pairs into batches, as they are needed
+        Iterator<Pair<Submission, Submission>> pairIterator = pairs.iterator();
+        Iterator<Callable<List<AlgorithmResults>>> batches = new Iterator<Callable<List<AlgorithmResults>>>() {
+            @Override
+            public boolean hasNext() {
+                return pairIterator.hasNext();
+            }
 
-        //TODO do something with the right side?
-        return ImmutableSet.copyOf(executeTasks(workers, logger));
+            @Override
+            public Callable<List<AlgorithmResults>> next() {
+                List<Pair<Submission, Submission>> batch = new ArrayList<>(INDEXED_PAIRS_PER_TASK);
+                while(batch.size() < INDEXED_PAIRS_PER_TASK && pairIterator.hasNext()) {
+                    batch.add(pairIterator.next());
+                }
+
+                return () -> {
+                    List<AlgorithmResults> results = new ArrayList<>(batch.size());
+                    for(Pair<Submission, Submission> pair : batch) {
+                        results.add(index.detectSimilarity(pair));
+                    }
+
+                    return results;
+                };
+            }
+        };
+
+        int numBatches = (int)(((long)pairs.size() + INDEXED_PAIRS_PER_TASK - 1) / INDEXED_PAIRS_PER_TASK);
+
+        executeTasksBounded(context, context.getExecutor(), context.getThreadCount(), batches, numBatches,
+                (results) -> results.forEach(sink::accept), logger);
     }
 
-    public static Set<Submission> parallelSubmissionPreprocessing(SubmissionPreprocessor preprocessor,
+    /**
+     * Order pairs by estimated cost, most expensive first.
+     *
+     * Each pair is recorded as a single long: the estimated cost, as float bits (which order identically to the
+     * non-negative floats they represent), above the indices of both submissions. Pairs are rebuilt as they are drawn.
+     *
+     * @param algorithm Algorithm used to estimate the cost of each pair
+     * @param pairs Pairs to order
+     * @param prepared Percentables generated for every submission present in the pairs
+     * @return Iterator over the given pairs, in descending order of estimated cost
+     * @throws InternalAlgorithmError Thrown if a pair contains a submission which was not prepared
+     */
+    static <T extends Percentable> Iterator<Pair<Submission, Submission>> largestFirst(
+            SimilarityDetector<T> algorithm, Collection<Pair<Submission, Submission>> pairs,
+            PreparedSubmissions<T> prepared) throws InternalAlgorithmError {
+        List<Submission> submissions = new ArrayList<>(prepared.getSubmissions());
+        checkArgument(submissions.size() <= 1 << 16, "Cannot order pairs of more than " + (1 << 16)
+                + " submissions by cost!");
+
+        Map<Submission, Integer> ids = new HashMap<>();
+        for(int i = 0; i < submissions.size(); i++) {
+            ids.put(submissions.get(i), i);
+        }
+
+        long[] keys = new long[pairs.size()];
+        int next = 0;
+        for(Pair<Submission, Submission> pair : pairs) {
+            Integer left = ids.get(pair.getLeft());
+            Integer right = ids.get(pair.getRight());
+
+            if(left == null || right == null) {
+                throw new InternalAlgorithmError("Pair " + pair.getLeft().getName() + " and "
+                        + pair.getRight().getName() + " contains a submission which was not prepared!");
+            }
+
+            float cost = Math.max(0, algorithm.estimateCost(prepared.get(pair.getLeft()),
+                    prepared.get(pair.getRight())));
+
+            keys[next++] = ((long)Float.floatToIntBits(cost) << 32) | ((long)left << 16) | right;
+        }
+
+        Arrays.sort(keys);
+
+        return new Iterator<Pair<Submission, Submission>>() {
+            private int index = keys.length - 1;
+
+            @Override
+            public boolean hasNext() {
+                return index >= 0;
+            }
+
+            @Override
+            public Pair<Submission, Submission> next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                long key = keys[index--];
+
+                return Pair.of(submissions.get((int)(key >>> 16) & 0xFFFF), submissions.get((int)key & 0xFFFF));
+            }
+        };
+    }
+
+    public static Set<Submission> parallelSubmissionPreprocessing(ExecutionContext context,
+                                                                  SubmissionPreprocessor preprocessor,
                                                                   Set<Submission> submissions,
                                                                   StatusLogger logger)
             throws ChecksimsException {
+        checkNotNull(context);
         checkNotNull(preprocessor);
         checkNotNull(submissions);
 
@@ -117,66 +282,175 @@ public final class ParallelAlgorithm {
                 .map((submission) -> new PreprocessorWorker(submission, preprocessor))
                 .collect(Collectors.toList());
 
-        return ImmutableSet.copyOf(executeTasks(workers, logger));
+        return ImmutableSet.copyOf(executeTasks(context, workers, logger));
     }
-    
+
     /**
-     * Internal backend: Execute given tasks on a new thread pool.
+     * Tokenize or parse submissions in parallel, each exactly once.
      *
-     * Expects Callable tasks, with non-void returns. If the need for void returning functions emerges, might need
-     * another version of this?
+     * @param context Execution context of the current run
+     * @param calculator Calculator used to generate a Percentable for each submission
+     * @param submissions Submissions to prepare
+     * @return Immutable store mapping each submission to its Percentable
+     */
+    public static <T extends Percentable> PreparedSubmissions<T> parallelSubmissionPreparation(
+            ExecutionContext context, SubmissionPercentableCalculator<T> calculator, Set<Submission> submissions,
+            StatusLogger logger)
+            throws ChecksimsException {
+        checkNotNull(context);
+        checkNotNull(calculator);
+        checkNotNull(submissions);
+
+        // Map the submissions to PreparationWorker instances
+        Collection<PreparationWorker<T>> workers = submissions.stream()
+                .map((submission) -> new PreparationWorker<T>(submission, calculator))
+                .collect(Collectors.toList());
+
+        Map<Submission, T> prepared = new HashMap<>();
+        for(Pair<Submission, T> result : executeTasks(context, workers, logger)) {
+            prepared.put(result.getLeft(), result.getRight());
+        }
+
+        return new PreparedSubmissions<>(prepared);
+    }
+
+    /**
+     * Run blocking, I/O-bound tasks in parallel, on the I/O pool of the given context.
+     *
+     * Many more of these tasks run at once than there are processors, so that slow reads overlap rather than queue.
+     * CPU-bound work should not be submitted this way.
+     *
+     * @param context Execution context of the current run
+     * @param tasks Tasks to run
+     * @param <T> Type returned by the tasks
+     * @return Results of every task, in no particular order
+     * @throws ChecksimsException Thrown if any task fails, or on the context being cancelled
+     */
+    public static <T> Collection<T> parallelBlockingTasks(ExecutionContext context,
+                                                          Collection<? extends Callable<T>> tasks, StatusLogger logger)
+            throws ChecksimsException {
+        checkNotNull(context);
+        checkNotNull(tasks);
+
+        List<T> results = new ArrayList<>(tasks.size());
+
+        executeTasksBounded(context, context.getIoExecutor(), context.getIoThreadCount(), tasks.iterator(),
+                tasks.size(), results::add, logger);
+
+        return results;
+    }
+
+    /**
+     * Internal backend: Execute tasks drawn lazily from an iterator, with a bounded number in flight.
+     *
+     * At most twice the given parallelism of tasks are scheduled at once; a new task is drawn only when a running one
+     * completes. Results are passed to the given consumer, on the calling thread, in order of completion.
      *
+     * If the context is cancelled, or any task fails, all work in progress is abandoned and an exception is thrown.
+     * Tasks still outstanding when this returns or throws for any reason, including an exception from the consumer,
+     * are cancelled.
+     *
+     * @param context Execution context of the current run
+     * @param runOn Executor of the context to run the tasks on
+     * @param parallelism Number of threads of the executor
      * @param tasks Tasks to execute
+     * @param numTasks Number of tasks the iterator will produce, for progress reporting
+     * @param consumer Consumer of the results of each task
      * @param <T> Type returned by the tasks
-     * @return Collection of Ts
      */
-    private static <T, T2 extends Callable<T>> Collection<T> executeTasks(Collection<T2> tasks, StatusLogger logger)
+    private static <T, T2 extends Callable<T>> void executeTasksBounded(ExecutionContext context,
+                                                                         ExecutorService runOn, int parallelism,
+                                                                         Iterator<T2> tasks, int numTasks,
+                                                                         Consumer<T> consumer, StatusLogger logger)
             throws ChecksimsException {
+        checkNotNull(context);
+        checkNotNull(runOn);
         checkNotNull(tasks);
+        checkNotNull(consumer);
 
-        if(tasks.size() == 0) {
+        if(!tasks.hasNext()) {
             logs.warn("Parallel execution called with no tasks - no work done!");
-            return new ArrayList<>();
+            return;
         }
 
-        if(executor.isShutdown()) {
-            throw new ChecksimsException("Attempted to call executeTasks while executor was shut down!");
-        }
+        context.checkUsable();
 
-        logs.info("Starting work using " + threadCount + " threads.");
+        logs.info("Starting work using " + parallelism + " threads.");
 
-        // Invoke the executor on all the worker instances
-        try {
-            // Create a monitoring thread to show progress
-            MonitorThread monitor = new MonitorThread(executor, logger);
-            Thread monitorThread = new Thread(monitor);
-            monitorThread.start();
+        int maxInFlight = parallelism * 2;
+        Set<Future<T>> inFlight = new HashSet<>();
 
-            List<Future<T>> results = executor.invokeAll(tasks);
+        CompletionService<T> completion = new ExecutorCompletionService<>(runOn);
+        AtomicLong completed = new AtomicLong();
 
-            // Stop the monitor
-            monitor.shutDown();
+        // Create a monitoring thread to show progress
+        MonitorThread monitor = new MonitorThread(completed::get, () -> numTasks, logger);
+        Thread monitorThread = new Thread(monitor);
+        monitorThread.start();
 
-            // Unpack the futures
-            ArrayList<T> unpackInto = new ArrayList<>();
+        try {
+            while(tasks.hasNext() || !inFlight.isEmpty()) {
+                // Top up the executor, then wait for one task to finish
+                while(inFlight.size() < maxInFlight && tasks.hasNext()) {
+                    inFlight.add(completion.submit(tasks.next()));
+                }
+
+                // Wake periodically, as tasks discarded by a cancellation will never complete
+                Future<T> done = completion.poll(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if(done == null) {
+                    context.checkUsable();
+                    continue;
+                }
+                inFlight.remove(done);
 
-            for(Future<T> future : results) {
                 try {
-                    unpackInto.add(future.get());
+                    consumer.accept(done.get());
+                    completed.incrementAndGet();
                 } catch(ExecutionException e) {
-                    executor.shutdownNow();
+                    // Tasks interrupted by a cancellation fail too - report the cancellation instead
+                    context.checkUsable();
+                    context.shutdownNow();
                     logs.error("Fatal error in executed job!");
                     throw new ChecksimsException("Error while executing worker for future", e.getCause());
                 }
             }
-
-            return unpackInto;
         } catch (InterruptedException e) {
-            executor.shutdownNow();
+            context.shutdownNow();
             throw new ChecksimsException("Execution of Checksims was interrupted!", e);
         } catch (RejectedExecutionException e) {
-            executor.shutdownNow();
+            context.shutdownNow();
+            context.checkUsable();
             throw new ChecksimsException("Could not schedule execution of all tasks!", e);
+        } finally {
+            // Don't leave tasks running after we stop consuming their results
+            inFlight.forEach((future) -> future.cancel(true));
+
+            // Stop the monitor
+            monitor.shutDown();
         }
     }
+
+    /**
+     * Internal backend: Execute given tasks on the fixed thread pool of the given context.
+     *
+     * Expects Callable tasks, with non-void returns. If the need for void returning functions emerges, might need
+     * another version of this?
+     *
+     * @param context Execution context of the current run
+     * @param tasks Tasks to execute
+     * @param <T> Type returned by the tasks
+     * @return Collection of Ts
+     */
+    private static <T, T2 extends Callable<T>> Collection<T> executeTasks(ExecutionContext context,
+                                                                           Collection<T2> tasks, StatusLogger logger)
+            throws ChecksimsException {
+        checkNotNull(tasks);
+
+        List<T> results = new ArrayList<>(tasks.size());
+
+        executeTasksBounded(context, context.getExecutor(), context.getThreadCount(), tasks.iterator(), tasks.size(),
+                results::add, logger);
+
+        return results;
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.util.threading;
+
+import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.submission.Submission;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Worker for parallel tokenization or parsing of a single submission.
+ */
+public class PreparationWorker<T extends Percentable> implements Callable<Pair<Submission, T>> {
+    private final Submission prepare;
+    private final SubmissionPercentableCalculator<T> calculator;
+
+    private static Logger logs = LoggerFactory.getLogger(PreparationWorker.class);
+
+    /**
+     * Create a Callable worker to generate the Percentable for a single submission.
+     *
+     * @param toPrepare Submission to tokenize or parse
+     * @param calculator Calculator used to generate the Percentable
+     */
+    public PreparationWorker(Submission toPrepare, SubmissionPercentableCalculator<T> calculator) {
+        checkNotNull(toPrepare);
+        checkNotNull(calculator);
+
+        this.prepare = toPrepare;
+        this.calculator = calculator;
+    }
+
+    /**
+     * Generates the Percentable for the submission given at construction.
+     *
+     * A fresh Percentable is always generated, bypassing the submission's own cache, so that the result belongs only
+     * to the current run. The submission may then release its content, which is no longer needed.
+     *
+     * @return Submission paired with its generated Percentable
+     */
+    @Override
+    public Pair<Submission, T> call() {
+        logs.trace("Preparing submission " + prepare.getName());
+
+        T prepared = calculator.generateFromSubmission(prepare);
+        prepare.releaseContent();
+
+        return Pair.of(prepare, prepared);
+    }
+
+    @Override
+    public String toString() {
+        return "Preparation worker for submission " + prepare.getName();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.util.threading;
+
+import net.lldp.checksims.ChecksimsException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Order in which pairs of submissions are dispatched for similarity detection.
+ */
+public enum SchedulingStrategy {
+    /**
+     * Dispatch pairs in the order they are enumerated, onto a fixed thread pool. Pairs are never all held in memory.
+     */
+    FIFO("fifo"),
+
+    /**
+     * Estimate the cost of every pair, and dispatch the most expensive first onto a work-stealing pool, so that no
+     * single large pair is left running alone at the end of a run. Requires a compact table of every pair's cost.
+     */
+    LARGEST_FIRST("largest");
+
+    private String name;
+
+    SchedulingStrategy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return Name of this strategy, as given on the command line
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "Scheduling strategy " + name;
+    }
+
+    /**
+     * Convert String into SchedulingStrategy.
+     *
+     * @param input String to convert
+     * @return SchedulingStrategy with name given in input string
+     * @throws ChecksimsException Thrown if there is no strategy with name in string
+     */
+    public static SchedulingStrategy fromString(String input) throws ChecksimsException {
+        checkNotNull(input);
+        checkArgument(!input.isEmpty(), "Empty string is not a valid scheduling strategy!");
+
+        String lowerInput = input.toLowerCase();
+
+        List<SchedulingStrategy> matching = Arrays.stream(SchedulingStrategy.values())
+                .filter((strategy) -> strategy.name.equals(lowerInput))
+                .collect(Collectors.toList());
+
+        if(matching.isEmpty()) {
+            throw new ChecksimsException("No scheduling strategy with name " + input + " found!");
+        }
+
+        return matching.get(0);
+    }
+}
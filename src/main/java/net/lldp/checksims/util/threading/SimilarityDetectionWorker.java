@@ -25,6 +25,7 @@ import net.lldp.checksims.algorithm.AlgorithmResults;
 import net.lldp.checksims.algorithm.InternalAlgorithmError;
 import net.lldp.checksims.algorithm.SimilarityDetector;
 import net.lldp.checksims.parse.Percentable;
+import net.lldp.checksims.parse.PreparedSubmissions;
 import net.lldp.checksims.parse.token.TokenTypeMismatchException;
 import net.lldp.checksims.submission.Submission;
 
@@ -44,6 +45,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class SimilarityDetectionWorker<T extends Percentable> implements Callable<AlgorithmResults> {
     private final SimilarityDetector<T> algorithm;
     private final Pair<Submission, Submission> submissions;
+    private final PreparedSubmissions<T> prepared;
 
     private static Logger logs = LoggerFactory.getLogger(SimilarityDetectionWorker.class);
 
@@ -52,15 +54,19 @@ public class SimilarityDetectionWorker<T extends Percentable> implements Callabl
      *
      * @param algorithm Algorithm to use
      * @param submissions Assignments to compare
+     * @param prepared Percentables generated for all submissions in this run
      */
-    public SimilarityDetectionWorker(SimilarityDetector<T> algorithm, Pair<Submission, Submission> submissions) {
+    public SimilarityDetectionWorker(SimilarityDetector<T> algorithm, Pair<Submission, Submission> submissions,
+                                     PreparedSubmissions<T> prepared) {
         checkNotNull(algorithm);
         checkNotNull(submissions);
         checkNotNull(submissions.getLeft());
         checkNotNull(submissions.getRight());
+        checkNotNull(prepared);
 
         this.algorithm = algorithm;
         this.submissions = submissions;
+        this.prepared = prepared;
     }
 
     /**
@@ -80,16 +86,31 @@ public class SimilarityDetectionWorker<T extends Percentable> implements Callabl
      */
     @Override
     public AlgorithmResults call() throws TokenTypeMismatchException, InternalAlgorithmError {
-        logs.debug("Running " + algorithm.getName() + " on submissions " + submissions.getLeft().getName() +
-                "(" + submissions.getLeft().getContentAsString().length() + " bytes) and " + submissions.getRight().getName() + " (" +
-                submissions.getRight().getContentAsString().length() + " bytes)");
-        
-        T left = algorithm.getPercentableCalculator().fromSubmission(submissions.getLeft());
-        T right = algorithm.getPercentableCalculator().fromSubmission(submissions.getRight());
+        logs.debug("Running " + algorithm.getName() + " on submissions " + submissions.getLeft() + " and "
+                + submissions.getRight());
         
+        T left = getPrepared(submissions.getLeft());
+        T right = getPrepared(submissions.getRight());
+
         return algorithm.detectSimilarity(submissions, left, right);
     }
 
+    /**
+     * @param submission Submission to retrieve
+     * @return Percentable prepared for the given submission
+     * @throws InternalAlgorithmError Thrown if the submission was not prepared before detection began
+     */
+    private T getPrepared(Submission submission) throws InternalAlgorithmError {
+        T percentable = prepared.get(submission);
+
+        if(percentable == null) {
+            throw new InternalAlgorithmError("Submission " + submission.getName()
+                    + " was not prepared before similarity detection!");
+        }
+
+        return percentable;
+    }
+
     @Override
     public String toString() {
         return "Similarity detection worker for submissions \"" + submissions.getLeft().getName() + "\" and \""
@@ -22,8 +22,8 @@
 /**
  * The threading package contains a thread pool allowing parallel computation of several tasks.
  *
- * All tasks are handled as individual implementations of Callable, which are submitted to the core executor in
- * ParallelAlgorithm. ParallelAlgorithm also contains convenience methods for common tasks, which create the Callable
- * workers and return easily-usable output.
+ * All tasks are handled as individual implementations of Callable, which ParallelAlgorithm submits to the thread pools
+ * of an ExecutionContext. Each run of Checksims owns its own context. ParallelAlgorithm also contains convenience
+ * methods for common tasks, which create the Callable workers and return easily-usable output.
  */
 package net.lldp.checksims.util.threading;
@@ -27,10 +27,14 @@ import net.lldp.checksims.algorithm.AlgorithmRegistry;
 import net.lldp.checksims.algorithm.preprocessor.SubmissionPreprocessor;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinter;
 import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixPrinterRegistry;
+import net.lldp.checksims.algorithm.smithwaterman.SmithWaterman;
+import net.lldp.checksims.parse.ast.SubmissionParser;
+import net.lldp.checksims.parse.cache.PreparationCache;
 import net.lldp.checksims.parse.token.SubmissionTokenizer;
 import net.lldp.checksims.parse.token.TokenType;
 import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
-import net.lldp.checksims.util.threading.ParallelAlgorithm;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.SchedulingStrategy;
 
 import org.apache.commons.cli.AlreadySelectedException;
 import org.apache.commons.cli.CommandLine;
@@ -40,6 +44,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -122,6 +127,82 @@ public class ChecksimsCommandLineTest {
         ChecksimsCommandLine.runCLI(argsInvalid);
     }
 
+    @Test
+    public void TestParseLowMemorySmithWaterman() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-a", "smithwaterman", "--lowmemory" });
+
+        assertEquals(SmithWaterman.getLowMemoryInstance(), config.getAlgorithm());
+    }
+
+    @Test
+    public void TestParseLowMemoryDefault() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-a", "smithwaterman" });
+
+        assertEquals(SmithWaterman.getInstance(), config.getAlgorithm());
+    }
+
+    @Test(expected = ChecksimsException.class)
+    public void TestParseLowMemoryOtherAlgorithm() throws Exception {
+        parseToConfig(new String[] { "-a", "linecompare", "--lowmemory" });
+    }
+
+    @Test
+    public void TestParseSLLFirst() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-a", "javaparser", "--sll" });
+
+        assertTrue(((SubmissionParser)config.getTokenization()).isSLLFirst());
+    }
+
+    @Test
+    public void TestParseSLLFirstDefault() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-a", "javaparser" });
+
+        assertFalse(((SubmissionParser)config.getTokenization()).isSLLFirst());
+    }
+
+    @Test(expected = ChecksimsException.class)
+    public void TestParseSLLFirstOtherAlgorithm() throws Exception {
+        parseToConfig(new String[] { "-a", "smithwaterman", "--sll" });
+    }
+
+    @Test
+    public void TestParsePrefilterCutoff() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "--prefilter", "0.25" });
+
+        assertEquals(0.25, config.getPrefilterCutoff(), 0.0);
+    }
+
+    @Test
+    public void TestParsePrefilterDefaultDisabled() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-j", "1" });
+
+        assertEquals(0.0, config.getPrefilterCutoff(), 0.0);
+    }
+
+    @Test(expected = ChecksimsException.class)
+    public void TestParsePrefilterOutOfRange() throws Exception {
+        parseToConfig(new String[] { "--prefilter", "1.5" });
+    }
+
+    @Test
+    public void TestParseScheduleLargestFirst() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "--schedule", "largest" });
+
+        assertEquals(SchedulingStrategy.LARGEST_FIRST, config.getSchedulingStrategy());
+    }
+
+    @Test
+    public void TestParseScheduleDefaultFifo() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-j", "1" });
+
+        assertEquals(SchedulingStrategy.FIFO, config.getSchedulingStrategy());
+    }
+
+    @Test(expected = ChecksimsException.class)
+    public void TestParseScheduleInvalid() throws Exception {
+        parseToConfig(new String[] { "--schedule", "random" });
+    }
+
     @Test
     public void TestParseTokenizationLine() throws Exception {
         ChecksimsConfig config = parseToConfig(new String[] { "-t", "line" });
@@ -157,6 +238,13 @@ public class ChecksimsCommandLineTest {
         assertEquals(new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.CHARACTER)), config.getTokenization());
     }
 
+    @Test
+    public void TestParseTokenizationJava() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "-a", "smithwaterman", "-t", "java" });
+
+        assertEquals(new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.JAVA)), config.getTokenization());
+    }
+
     @Test
     public void TestParseTokenizationDefault() throws Exception {
         ChecksimsConfig config = parseToConfig(new String[] {});
@@ -218,7 +306,47 @@ public class ChecksimsCommandLineTest {
     public void TestParseNumThreadsDefault() throws Exception {
         ChecksimsConfig config = parseToConfig(new String[] {});
 
-        assertEquals(ParallelAlgorithm.getThreadCount(), config.getNumThreads());
+        assertEquals(Runtime.getRuntime().availableProcessors(), config.getNumThreads());
+    }
+
+    @Test
+    public void TestParseNumIoThreads() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "--iojobs", "64" });
+
+        assertEquals(64, config.getNumIoThreads());
+    }
+
+    @Test
+    public void TestParseNumIoThreadsDefault() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] {});
+
+        assertEquals(ExecutionContext.DEFAULT_IO_THREAD_COUNT, config.getNumIoThreads());
+    }
+
+    @Test(expected = ChecksimsException.class)
+    public void TestParseNumIoThreadsZero() throws Exception {
+        parseToConfig(new String[] { "--iojobs", "0" });
+    }
+
+    @Test
+    public void TestParseCache() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] { "--cachedir", "cachedir", "--cachesize", "16" });
+
+        assertEquals(Paths.get("cachedir"), config.getCacheDirectory());
+        assertEquals(16L * 1024 * 1024, config.getCacheSize());
+    }
+
+    @Test
+    public void TestParseCacheDefault() throws Exception {
+        ChecksimsConfig config = parseToConfig(new String[] {});
+
+        assertNull(config.getCacheDirectory());
+        assertEquals(PreparationCache.DEFAULT_MAX_BYTES, config.getCacheSize());
+    }
+
+    @Test(expected = ChecksimsException.class)
+    public void TestParseCacheSizeInvalid() throws Exception {
+        parseToConfig(new String[] { "--cachesize", "0" });
     }
 
     @Test
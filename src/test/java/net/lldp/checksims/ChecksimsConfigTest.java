@@ -21,7 +21,9 @@
 
 package net.lldp.checksims;
 
+import net.lldp.checksims.algorithm.linesimilarity.LineSimilarityChecker;
 import net.lldp.checksims.algorithm.preprocessor.LowercasePreprocessor;
+import net.lldp.checksims.util.threading.SchedulingStrategy;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -49,6 +51,14 @@ public class ChecksimsConfigTest {
         config.setAlgorithm(null);
     }
 
+    @Test
+    public void TestSetAlgorithmResetsTokenization() {
+        ChecksimsConfig config = new ChecksimsConfig();
+        config.setAlgorithm(LineSimilarityChecker.getInstance());
+
+        assertEquals(LineSimilarityChecker.getInstance().getPercentableCalculator(), config.getTokenization());
+    }
+
     @Test
     public void TestSetTokenizationNull() {
         expectedEx.expect(NullPointerException.class);
@@ -129,6 +139,64 @@ public class ChecksimsConfigTest {
         config.setNumThreads(0);
     }
 
+    @Test
+    public void TestSetPrefilterCutoffNegative() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        ChecksimsConfig config = new ChecksimsConfig();
+        config.setPrefilterCutoff(-0.1);
+    }
+
+    @Test
+    public void TestSetPrefilterCutoffAboveOne() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        ChecksimsConfig config = new ChecksimsConfig();
+        config.setPrefilterCutoff(1.1);
+    }
+
+    @Test
+    public void TestCopyConstructorKeepsPrefilterCutoff() {
+        ChecksimsConfig config = new ChecksimsConfig().setPrefilterCutoff(0.5);
+
+        assertEquals(config, new ChecksimsConfig(config));
+        assertNotEquals(new ChecksimsConfig(), config);
+    }
+
+    @Test
+    public void TestSetNumIoThreadsZero() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        ChecksimsConfig config = new ChecksimsConfig();
+        config.setNumIoThreads(0);
+    }
+
+    @Test
+    public void TestCopyConstructorKeepsNumIoThreads() {
+        ChecksimsConfig config = new ChecksimsConfig().setNumIoThreads(3);
+
+        assertEquals(3, new ChecksimsConfig(config).getNumIoThreads());
+        assertEquals(config, new ChecksimsConfig(config));
+        assertNotEquals(new ChecksimsConfig(), config);
+    }
+
+    @Test
+    public void TestSetSchedulingStrategyNull() {
+        expectedEx.expect(NullPointerException.class);
+
+        ChecksimsConfig config = new ChecksimsConfig();
+        config.setSchedulingStrategy(null);
+    }
+
+    @Test
+    public void TestCopyConstructorKeepsSchedulingStrategy() {
+        ChecksimsConfig config = new ChecksimsConfig().setSchedulingStrategy(SchedulingStrategy.LARGEST_FIRST);
+
+        assertEquals(SchedulingStrategy.FIFO, new ChecksimsConfig().getSchedulingStrategy());
+        assertEquals(config, new ChecksimsConfig(config));
+        assertNotEquals(new ChecksimsConfig(), config);
+    }
+
     @Test
     public void TestBaseConfigEquality() {
         assertTrue(new ChecksimsConfig().equals(new ChecksimsConfig()));
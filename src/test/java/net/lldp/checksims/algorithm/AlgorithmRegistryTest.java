@@ -24,6 +24,7 @@ package net.lldp.checksims.algorithm;
 import net.lldp.checksims.ChecksimsException;
 import net.lldp.checksims.algorithm.linesimilarity.LineSimilarityChecker;
 import net.lldp.checksims.algorithm.smithwaterman.SmithWaterman;
+import net.lldp.checksims.algorithm.winnowing.WinnowingDetector;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -58,6 +59,13 @@ public class AlgorithmRegistryTest {
         checkRegistryContainsImpl(smithWatermanName, instance);
     }
 
+    @Test
+    public void TestIncludesWinnowing() throws ChecksimsException {
+        String winnowingName = WinnowingDetector.getInstance().getName();
+
+        checkRegistryContainsImpl(winnowingName, instance);
+    }
+
     @Test
     public void TestDefaultAlgorithmIsLineCompare() {
         String lineCompareName = LineSimilarityChecker.getInstance().getName();
@@ -22,6 +22,8 @@
 package net.lldp.checksims.algorithm;
 
 import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.algorithm.syntaxtree.java.JavaParser;
+import net.lldp.checksims.parse.PreparedSubmissions;
 import net.lldp.checksims.parse.SubmissionPercentableCalculator;
 import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
 import net.lldp.checksims.parse.token.SubmissionTokenizer;
@@ -32,8 +34,11 @@ import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.testutil.AlgorithmUtils;
 import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
 import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.SchedulingStrategy;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -42,10 +47,13 @@ import org.junit.rules.ExpectedException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
 import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
 import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for the AlgorithmRunner class
@@ -57,8 +65,11 @@ public class AlgorithmRunnerTest {
     private Submission d;
     
     private StatusLogger logger;
+    private ExecutionContext context;
 
     private SimilarityDetector<PercentableTokenListDecorator> detectNothing;
+    private SimilarityDetector<PercentableTokenListDecorator> countPreparations;
+    private AtomicInteger preparations;
 
     @Rule
     public ExpectedException expectedEx = ExpectedException.none();
@@ -87,39 +98,75 @@ public class AlgorithmRunnerTest {
             }
         };
 
+        preparations = new AtomicInteger(0);
+        countPreparations = new SimilarityDetector<PercentableTokenListDecorator>() {
+
+            @Override
+            public String getName() {
+                return "countpreparations";
+            }
+
+            @Override
+            public SubmissionPercentableCalculator<PercentableTokenListDecorator> getPercentableCalculator()
+            {
+                return new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.CHARACTER)) {
+                    @Override
+                    public PercentableTokenListDecorator generateFromSubmission(Submission s)
+                    {
+                        preparations.incrementAndGet();
+                        return super.generateFromSubmission(s);
+                    }
+                };
+            }
+
+            @Override
+            public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab,
+                    PercentableTokenListDecorator rft, PercentableTokenListDecorator comt)
+                    throws TokenTypeMismatchException, InternalAlgorithmError
+            {
+                return new AlgorithmResults(ab, rft, comt);
+            }
+        };
+
         a = submissionFromString("A", "A");
         b = submissionFromString("B", "B");
         c = submissionFromString("C", "C");
         d = submissionFromString("D", "D");
         
         logger = new DefaultLoggerStatusLogger();
+        context = new ExecutionContext();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
     }
 
     @Test
     public void TestRunAlgorithmNull() throws ChecksimsException {
         expectedEx.expect(NullPointerException.class);
 
-        AlgorithmRunner.runAlgorithm(null, detectNothing, logger);
+        AlgorithmRunner.runAlgorithm(null, detectNothing, context, logger);
     }
 
     @Test
     public void TestRunAlgorithmNullAlgorithm() throws ChecksimsException {
         expectedEx.expect(NullPointerException.class);
 
-        AlgorithmRunner.runAlgorithm(singleton(Pair.of(a, b)), null, logger);
+        AlgorithmRunner.runAlgorithm(singleton(Pair.of(a, b)), null, context, logger);
     }
 
     @Test
     public void TestRunAlgorithmEmptySet() throws ChecksimsException {
         expectedEx.expect(IllegalArgumentException.class);
 
-        AlgorithmRunner.runAlgorithm(new HashSet<>(), null, logger);
+        AlgorithmRunner.runAlgorithm(new HashSet<>(), null, context, logger);
     }
 
     @Test
     public void TestRunAlgorithmSinglePair() throws ChecksimsException {
         Set<Pair<Submission, Submission>> submissions = singleton(Pair.of(a, b));
-        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, logger);
+        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, context, logger);
 
         AlgorithmUtils.checkResultsContainsPairs(results, submissions);
     }
@@ -127,7 +174,7 @@ public class AlgorithmRunnerTest {
     @Test
     public void TestRunAlgorithmTwoPairs() throws ChecksimsException {
         Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(a, c));
-        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, logger);
+        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, context, logger);
 
         AlgorithmUtils.checkResultsContainsPairs(results, submissions);
     }
@@ -135,7 +182,7 @@ public class AlgorithmRunnerTest {
     @Test
     public void TestRunAlgorithmThreePairs() throws ChecksimsException {
         Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(a, c), Pair.of(b, c));
-        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, logger);
+        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, context, logger);
 
         AlgorithmUtils.checkResultsContainsPairs(results, submissions);
     }
@@ -143,8 +190,105 @@ public class AlgorithmRunnerTest {
     @Test
     public void TestRunAlgorithmAllPossiblePairs() throws ChecksimsException {
         Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(a, c), Pair.of(a, d), Pair.of(b, c), Pair.of(b, d), Pair.of(c, d));
-        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, logger);
+        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing, context, logger);
 
         AlgorithmUtils.checkResultsContainsPairs(results, submissions);
     }
+
+    @Test
+    public void TestPrepareSubmissionsNull() throws ChecksimsException {
+        expectedEx.expect(NullPointerException.class);
+
+        AlgorithmRunner.prepareSubmissions(null, detectNothing, context, logger);
+    }
+
+    @Test
+    public void TestPrepareSubmissionsContainsAll() throws ChecksimsException {
+        Set<Submission> submissions = setFromElements(a, b, c);
+        PreparedSubmissions<PercentableTokenListDecorator> prepared = AlgorithmRunner.prepareSubmissions(submissions,
+                detectNothing, context, logger);
+
+        assertEquals(submissions, prepared.getSubmissions());
+        assertTrue(prepared.contains(a));
+    }
+
+    @Test
+    public void TestPrepareSubmissionsWithTokenization() throws ChecksimsException {
+        SubmissionPercentableCalculator<PercentableTokenListDecorator> java = AlgorithmRunner.checkTokenization(
+                detectNothing, new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.JAVA)));
+        PreparedSubmissions<PercentableTokenListDecorator> prepared = AlgorithmRunner.prepareSubmissions(
+                setFromElements(a, b), detectNothing, java, context, logger);
+
+        assertEquals(TokenType.JAVA, prepared.get(a).getTokenArray().getType());
+    }
+
+    @Test
+    public void TestCheckTokenizationMismatch() throws ChecksimsException {
+        expectedEx.expect(ChecksimsException.class);
+
+        AlgorithmRunner.checkTokenization(JavaParser.getInstance(),
+                new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.JAVA)));
+    }
+
+    @Test
+    public void TestRunAlgorithmPreparesEachSubmissionOnce() throws ChecksimsException {
+        Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(a, c), Pair.of(a, d), Pair.of(b, c), Pair.of(b, d), Pair.of(c, d));
+        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, countPreparations, context, logger);
+
+        AlgorithmUtils.checkResultsContainsPairs(results, submissions);
+        assertEquals(4, preparations.get());
+    }
+
+    @Test
+    public void TestRunAlgorithmWithPreparedSubmissions() throws ChecksimsException {
+        PreparedSubmissions<PercentableTokenListDecorator> prepared = AlgorithmRunner.prepareSubmissions(
+                setFromElements(a, b, c, d), countPreparations, context, logger);
+        Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(c, d));
+        Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, countPreparations, prepared,
+                context, logger);
+
+        AlgorithmUtils.checkResultsContainsPairs(results, submissions);
+        assertEquals(4, preparations.get());
+    }
+
+    @Test
+    public void TestRunAlgorithmLargestFirst() throws ChecksimsException {
+        Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(a, c), Pair.of(a, d), Pair.of(b, c), Pair.of(b, d), Pair.of(c, d));
+
+        try(ExecutionContext largestFirst = new ExecutionContext(2, SchedulingStrategy.LARGEST_FIRST)) {
+            Collection<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(submissions, detectNothing,
+                    largestFirst, logger);
+
+            AlgorithmUtils.checkResultsContainsPairs(results, submissions);
+        }
+    }
+
+    @Test
+    public void TestRunAlgorithmTwiceOnOneContext() throws ChecksimsException {
+        Set<Pair<Submission, Submission>> submissions = setFromElements(Pair.of(a, b), Pair.of(c, d));
+
+        AlgorithmUtils.checkResultsContainsPairs(AlgorithmRunner.runAlgorithm(submissions, detectNothing, context,
+                logger), submissions);
+        AlgorithmUtils.checkResultsContainsPairs(AlgorithmRunner.runAlgorithm(submissions, detectNothing, context,
+                logger), submissions);
+    }
+
+    @Test
+    public void TestRunAlgorithmClosedContext() throws ChecksimsException {
+        expectedEx.expect(ChecksimsException.class);
+
+        context.close();
+
+        AlgorithmRunner.runAlgorithm(singleton(Pair.of(a, b)), detectNothing, context, logger);
+    }
+
+    @Test
+    public void TestRunAlgorithmCancelledContext() throws ChecksimsException {
+        expectedEx.expect(ChecksimsException.class);
+        expectedEx.expectMessage("cancelled");
+
+        context.cancel();
+
+        AlgorithmRunner.runAlgorithm(singleton(Pair.of(a, b)), detectNothing, context, logger);
+    }
 }
@@ -0,0 +1,308 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+import net.lldp.checksims.ChecksimsConfig;
+import net.lldp.checksims.ChecksimsRunner;
+import net.lldp.checksims.algorithm.linesimilarity.LineSimilarityChecker;
+import net.lldp.checksims.algorithm.smithwaterman.SmithWaterman;
+import net.lldp.checksims.algorithm.winnowing.WinnowingDetector;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.cache.ArchiveIndex;
+import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
+import net.lldp.checksims.parse.token.TokenTypeMismatchException;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
+import net.lldp.checksims.util.data.Real;
+import net.lldp.checksims.util.threading.ExecutionContext;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the persistent store of pair results
+ */
+public class ResultStoreTest {
+    private static final List<String> CONFIGURATION = Arrays.asList("linecompare", "Tokenization into line");
+
+    private Path file;
+    private Submission a;
+    private Submission b;
+    private Submission c;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve("results");
+        a = submissionFromString("A", "one\ntwo\nthree");
+        b = submissionFromString("B", "one\nfour");
+        c = submissionFromString("C", "five");
+    }
+
+    @Test
+    public void TestRecordedResultsAreRestoredInEitherOrder() throws Exception {
+        ResultStore store = ResultStore.open(file, CONFIGURATION);
+        assertNull(store.lookup(Pair.of(a, b)));
+
+        AlgorithmResults results = new AlgorithmResults(a, b, new Real(1, 3), new Real(1, 2));
+        store.record(Collections.singleton(results), Arrays.asList(a, b));
+        store.save();
+
+        ResultStore reopened = ResultStore.open(file, CONFIGURATION);
+        assertTrue(reopened.contains(Pair.of(a, b)));
+        assertTrue(reopened.contains(Pair.of(b, a)));
+        assertFalse(reopened.contains(Pair.of(a, c)));
+
+        AlgorithmResults restored = reopened.lookup(Pair.of(b, a));
+
+        assertNotNull(restored);
+        assertEquals(b, restored.a);
+        assertEquals(new Real(1, 2), restored.percentMatchedA);
+        assertEquals(new Real(1, 3), restored.percentMatchedB);
+        assertTrue(restored.isValid());
+    }
+
+    @Test
+    public void TestChangedSubmissionIsNotRestored() throws Exception {
+        ResultStore store = ResultStore.open(file, CONFIGURATION);
+        store.record(Collections.singleton(new AlgorithmResults(a, b, new Real(1, 3), new Real(1, 2))),
+                Arrays.asList(a, b));
+        store.save();
+
+        Submission changed = submissionFromString("B", "one\nfour\nfive");
+
+        assertNull(ResultStore.open(file, CONFIGURATION).lookup(Pair.of(a, changed)));
+    }
+
+    @Test
+    public void TestOtherConfigurationIsDiscarded() throws Exception {
+        ResultStore store = ResultStore.open(file, CONFIGURATION);
+        store.record(Collections.singleton(new AlgorithmResults(a, b, new Real(1, 3), new Real(1, 2))),
+                Arrays.asList(a, b));
+        store.save();
+
+        ResultStore other = ResultStore.open(file, Arrays.asList("smithwaterman", "Tokenization into whitespace"));
+
+        assertEquals(0, other.getNumStored());
+        assertNull(other.lookup(Pair.of(a, b)));
+    }
+
+    @Test
+    public void TestValidityIsRestored() throws Exception {
+        a.setFlag("invalid");
+        ResultStore store = ResultStore.open(file, CONFIGURATION);
+        store.record(Collections.singleton(new InvalidAlgorithmResults(Pair.of(a, b), Real.ZERO, Real.ZERO)),
+                Arrays.asList(a, b));
+        store.save();
+
+        Submission sameA = submissionFromString("A", "one\ntwo\nthree");
+        Submission sameB = submissionFromString("B", "one\nfour");
+        ResultStore reopened = ResultStore.open(file, CONFIGURATION);
+
+        assertFalse(reopened.lookup(Pair.of(sameA, sameB)).isValid());
+
+        reopened.restoreValidity(Arrays.asList(sameA, sameB));
+
+        assertTrue(sameA.testFlag("invalid"));
+        assertFalse(sameB.testFlag("invalid"));
+    }
+
+    @Test
+    public void TestIndexedSubmissionIsKeyedByEntry() throws Exception {
+        ResultStore store = ResultStore.open(file, CONFIGURATION);
+        Submission indexed = indexOf(submissionFromString("Archived", "one\ntwo"));
+        store.record(Collections.singleton(new AlgorithmResults(a, indexed, new Real(1, 3), new Real(1, 2))),
+                Arrays.asList(a, indexed));
+        store.save();
+
+        ResultStore reopened = ResultStore.open(file, CONFIGURATION);
+        Submission unchanged = indexOf(submissionFromString("Archived", "one\ntwo"));
+        Submission changed = indexOf(submissionFromString("Archived", "one\ntwo\nfive"));
+
+        assertTrue(reopened.contains(Pair.of(a, unchanged)));
+        assertFalse(reopened.contains(Pair.of(a, changed)));
+    }
+
+    /**
+     * @param submission Submission to index on its own
+     * @return The submission, as read back from a new archive index
+     */
+    private Submission indexOf(Submission submission) throws Exception {
+        SubmissionPercentableCalculator<PercentableTokenListDecorator> calculator =
+                LineSimilarityChecker.getInstance().getPercentableCalculator();
+        Path indexFile = folder.newFile().toPath();
+
+        ArchiveIndex.write(indexFile, new PreparedSubmissions<>(Collections.singletonMap(submission,
+                calculator.generateFromSubmission(submission))), calculator, "linecompare", Collections.emptyList());
+
+        return Iterables.getOnlyElement(ArchiveIndex.open(indexFile).getSubmissions());
+    }
+
+    @Test
+    public void TestLookupReleasesLazyContent() throws Exception {
+        Path students = folder.newFolder("students").toPath();
+        Path fileA = Files.createDirectory(students.resolve("A")).resolve("a.txt");
+        Path fileB = Files.createDirectory(students.resolve("B")).resolve("b.txt");
+        Files.write(fileA, "one".getBytes(StandardCharsets.UTF_8));
+        Files.write(fileB, "two".getBytes(StandardCharsets.UTF_8));
+
+        List<Submission> lazy;
+        try(ExecutionContext context = new ExecutionContext()) {
+            lazy = new ArrayList<>(Submission.submissionListFromDir(students.toFile(), "*.txt", false, true, context,
+                    new DefaultLoggerStatusLogger()));
+        }
+
+        assertNull(ResultStore.open(file, CONFIGURATION).lookup(Pair.of(lazy.get(0), lazy.get(1))));
+
+        // Content hashed for the lookup is not held, so is read again when next requested
+        Files.write(fileA, "changed".getBytes(StandardCharsets.UTF_8));
+        Files.write(fileB, "changed".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("changed\n", lazy.get(0).getContentAsString());
+        assertEquals("changed\n", lazy.get(1).getContentAsString());
+    }
+
+    @Test
+    public void TestRerunOnlyComparesNewSubmission() throws Exception {
+        CountingDetector detector = new CountingDetector();
+        ChecksimsConfig config = new ChecksimsConfig().setAlgorithm(detector).setNumThreads(1)
+                .setResultStoreFile(file);
+
+        ChecksimsRunner.runChecksims(new ChecksimsConfig(config).setSubmissions(setFromElements(a, b)));
+        assertEquals(1, detector.comparisons.get());
+
+        Submission sameA = submissionFromString("A", "one\ntwo\nthree");
+        Submission sameB = submissionFromString("B", "one\nfour");
+        ImmutableMap<String, String> incremental = ChecksimsRunner.runChecksims(new ChecksimsConfig(config)
+                .setSubmissions(setFromElements(sameA, sameB, c)));
+        assertEquals(3, detector.comparisons.get());
+
+        ImmutableMap<String, String> full = ChecksimsRunner.runChecksims(new ChecksimsConfig(config)
+                .setResultStoreFile(null).setSubmissions(setFromElements(a, b, c)));
+
+        assertEquals(full, incremental);
+    }
+
+    @Test
+    public void TestSmithWatermanRerunMatchesFullRun() throws Exception {
+        checkRerunMatchesFullRun(SmithWaterman.getInstance());
+    }
+
+    @Test
+    public void TestWinnowingRerunMatchesFullRun() throws Exception {
+        checkRerunMatchesFullRun(WinnowingDetector.getInstance());
+    }
+
+    /**
+     * Run the algorithm on two submissions with a result store, then on three with the store and without it, and check
+     * the output and copy scores of the last two runs are the same.
+     */
+    private void checkRerunMatchesFullRun(SimilarityDetector<?> algorithm) throws Exception {
+        ChecksimsConfig config = new ChecksimsConfig().setAlgorithm(algorithm).setNumThreads(1)
+                .setResultStoreFile(file);
+
+        ChecksimsRunner.runChecksims(new ChecksimsConfig(config).setSubmissions(setFromElements(codeA(), codeB())));
+
+        List<Submission> incremental = Arrays.asList(codeA(), codeB(), codeC());
+        ImmutableMap<String, String> incrementalOutput = ChecksimsRunner.runChecksims(new ChecksimsConfig(config)
+                .setSubmissions(ImmutableSet.copyOf(incremental)));
+
+        List<Submission> full = Arrays.asList(codeA(), codeB(), codeC());
+        ImmutableMap<String, String> fullOutput = ChecksimsRunner.runChecksims(new ChecksimsConfig(config)
+                .setResultStoreFile(null).setSubmissions(ImmutableSet.copyOf(full)));
+
+        assertEquals(fullOutput, incrementalOutput);
+        for(int i = 0; i < full.size(); i++) {
+            assertTrue(full.get(i).getTotalCopyScore() > 0.0);
+            assertEquals(full.get(i).getTotalCopyScore(), incremental.get(i).getTotalCopyScore(), 1e-9);
+            assertEquals(full.get(i).getMaximumCopyScore(), incremental.get(i).getMaximumCopyScore(), 1e-9);
+        }
+    }
+
+    private static Submission codeA() {
+        return submissionFromString("A", "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+    }
+
+    private static Submission codeB() {
+        return submissionFromString("B", "void helper ( int y ) { print ( y ) ; } "
+                + "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+    }
+
+    private static Submission codeC() {
+        return submissionFromString("C", "void helper ( int y ) { print ( y ) ; } "
+                + "int other ( ) { return 42 ; }");
+    }
+
+    /**
+     * Line comparison, counting how many pairs it compares.
+     */
+    private static final class CountingDetector extends SimilarityDetector<PercentableTokenListDecorator> {
+        private final AtomicInteger comparisons = new AtomicInteger(0);
+
+        @Override
+        public String getName() {
+            return "countinglinecompare";
+        }
+
+        @Override
+        public SubmissionPercentableCalculator<PercentableTokenListDecorator> getPercentableCalculator() {
+            return LineSimilarityChecker.getInstance().getPercentableCalculator();
+        }
+
+        @Override
+        public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab, PercentableTokenListDecorator rft,
+                                                 PercentableTokenListDecorator comt)
+                throws TokenTypeMismatchException, InternalAlgorithmError {
+            comparisons.incrementAndGet();
+
+            return LineSimilarityChecker.getInstance().detectSimilarity(ab, rft, comt);
+        }
+    }
+}
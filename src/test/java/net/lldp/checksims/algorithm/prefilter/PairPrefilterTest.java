@@ -0,0 +1,156 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.prefilter;
+
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.data.Real;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the MinHash pair prefilter
+ */
+public class PairPrefilterTest {
+    private Submission empty;
+    private Submission alpha;
+    private Submission alphaCopy;
+    private Submission unrelated;
+    private MinHashSketcher sketcher;
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        empty = submissionFromString("Empty", "");
+        alpha = submissionFromString("Alpha", "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+        alphaCopy = submissionFromString("AlphaCopy",
+                "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+        unrelated = submissionFromString("Unrelated",
+                "the quick brown fox jumps over the lazy dog while nobody watches it");
+
+        sketcher = new MinHashSketcher();
+    }
+
+    private PreparedSubmissions<MinHashSketch> sketch(Submission... submissions) {
+        Map<Submission, MinHashSketch> sketches = new HashMap<>();
+
+        for(Submission s : submissions) {
+            sketches.put(s, sketcher.generateFromSubmission(s));
+        }
+
+        return new PreparedSubmissions<>(sketches);
+    }
+
+    @Test
+    public void TestEmptySubmissionHasNoShingles() {
+        MinHashSketch sketch = sketcher.generateFromSubmission(empty);
+
+        assertEquals(0, sketch.getNumShingles());
+        assertEquals(Real.ZERO, sketch.estimateContainmentIn(sketcher.generateFromSubmission(alpha)));
+    }
+
+    @Test
+    public void TestIdenticalContentFullyContained() {
+        MinHashSketch a = sketcher.generateFromSubmission(alpha);
+        MinHashSketch b = sketcher.generateFromSubmission(alphaCopy);
+
+        assertEquals(a.size(), a.countEqualMinimums(b));
+        assertEquals(Real.ONE, a.estimateContainmentIn(b));
+    }
+
+    @Test
+    public void TestUnrelatedContentNotContained() {
+        MinHashSketch a = sketcher.generateFromSubmission(alpha);
+        MinHashSketch b = sketcher.generateFromSubmission(unrelated);
+
+        assertTrue(a.estimateContainmentIn(b).asDouble() < 0.1);
+    }
+
+    @Test
+    public void TestSketcherRejectsNonpositiveShingles() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        new MinHashSketcher(0, 64);
+    }
+
+    @Test
+    public void TestFilterRejectsCutoffAboveOne() throws Exception {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        PairPrefilter.filter(setFromElements(Pair.of(alpha, alphaCopy)), sketch(alpha, alphaCopy), 1.5,
+                results -> { });
+    }
+
+    @Test
+    public void TestFilterKeepsSimilarPrunesDissimilar() throws Exception {
+        Pair<Submission, Submission> similar = Pair.of(alpha, alphaCopy);
+        Pair<Submission, Submission> dissimilar = Pair.of(alpha, unrelated);
+        Set<Pair<Submission, Submission>> pairs = setFromElements(similar, dissimilar);
+
+        List<AlgorithmResults> estimates = new ArrayList<>();
+
+        PrefilterResults results = PairPrefilter.filter(pairs, sketch(alpha, alphaCopy, unrelated), 0.5,
+                estimates::add);
+
+        assertEquals(setFromElements(similar), results.getKeptPairs());
+        assertEquals(1, results.getNumPruned());
+        assertEquals(1, estimates.size());
+
+        AlgorithmResults estimate = estimates.get(0);
+        assertEquals(alpha, estimate.a);
+        assertEquals(unrelated, estimate.b);
+    }
+
+    @Test
+    public void TestFilterZeroCutoffKeepsAll() throws Exception {
+        Set<Pair<Submission, Submission>> pairs = setFromElements(Pair.of(alpha, alphaCopy), Pair.of(alpha, unrelated),
+                Pair.of(alpha, empty));
+
+        List<AlgorithmResults> estimates = new ArrayList<>();
+
+        PrefilterResults results = PairPrefilter.filter(pairs, sketch(alpha, alphaCopy, unrelated, empty), 0.0,
+                estimates::add);
+
+        assertEquals(pairs, results.getKeptPairs());
+        assertEquals(0, results.getNumPruned());
+        assertTrue(estimates.isEmpty());
+    }
+}
@@ -24,7 +24,9 @@ package net.lldp.checksims.algorithm.preprocessor;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
 import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -45,6 +47,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
     private Submission abcde;
     private Submission def;
     private StatusLogger logger;
+    private ExecutionContext context;
 
     @Before
     public void setUp() throws Exception {
@@ -53,6 +56,12 @@ public class CommonCodeLineRemovalPreprocessorTest {
         abcde = submissionFromString("ABCDE", "A\nB\nC\nD\nE\n");
         def = submissionFromString("DEF", "D\nE\nF\n");
         logger = new DefaultLoggerStatusLogger();
+        context = new ExecutionContext();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
     }
 
     @Test
@@ -60,7 +69,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
         SubmissionPreprocessor handler = new CommonCodeLineRemovalPreprocessor(abc);
         Set<Submission> removeFrom = singleton(empty);
 
-        Collection<Submission> result = PreprocessSubmissions.process(handler, removeFrom, logger);
+        Collection<Submission> result = PreprocessSubmissions.process(handler, removeFrom, context, logger);
 
         checkSubmissionCollections(result, removeFrom);
     }
@@ -71,7 +80,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
         Set<Submission> removeFrom = singleton(abc);
         Submission expected = submissionFromString(abc.getName(), empty.getContentAsString());
 
-        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, context, logger);
 
         checkSubmissionCollections(results, singletonList(expected));
     }
@@ -81,7 +90,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
         SubmissionPreprocessor handler = new CommonCodeLineRemovalPreprocessor(def);
         Set<Submission> removeFrom = singleton(abc);
 
-        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, context, logger);
 
         checkSubmissionCollections(results, removeFrom);
     }
@@ -92,7 +101,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
         Set<Submission> removeFrom = singleton(abcde);
         Submission expected = submissionFromString(abcde.getName(), "D\nE\n");
 
-        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, context, logger);
 
         checkSubmissionCollections(results, singletonList(expected));
     }
@@ -103,7 +112,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
         Set<Submission> removeFrom = singleton(abc);
         Submission expected = submissionFromString(abc.getName(), empty.getContentAsString());
 
-        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, context, logger);
 
         checkSubmissionCollections(results, singletonList(expected));
     }
@@ -117,7 +126,7 @@ public class CommonCodeLineRemovalPreprocessorTest {
         Submission expected3 = def;
         Collection<Submission> expected = Arrays.asList(expected1, expected2, expected3);
 
-        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(handler, removeFrom, context, logger);
 
         checkSubmissionCollections(results, expected);
     }
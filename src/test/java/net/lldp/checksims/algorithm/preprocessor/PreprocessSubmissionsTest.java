@@ -26,7 +26,9 @@ import net.lldp.checksims.submission.ConcreteSubmission;
 import net.lldp.checksims.submission.Submission;
 import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
 import net.lldp.checksims.util.completion.StatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -50,12 +52,14 @@ public class PreprocessSubmissionsTest {
     private SubmissionPreprocessor identity;
     private SubmissionPreprocessor renamer;
     private StatusLogger logger;
+    private ExecutionContext context;
 
     @Before
     public void setUp() {
         a = submissionFromString("Submission A", "A");
         b = submissionFromString("Submission B", "B");
         logger = new DefaultLoggerStatusLogger();
+        context = new ExecutionContext();
 
         empty = new HashSet<>();
         oneSubmission = singleton(a);
@@ -86,9 +90,14 @@ public class PreprocessSubmissionsTest {
         };
     }
 
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
     @Test
     public void testEmptyReturnsEmpty() throws ChecksimsException {
-        Collection<Submission> results = PreprocessSubmissions.process(identity, empty, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(identity, empty, context, logger);
 
         assertNotNull(results);
         assertTrue(results.isEmpty());
@@ -96,7 +105,7 @@ public class PreprocessSubmissionsTest {
 
     @Test
     public void testOneSubmissionIdentity() throws ChecksimsException {
-        Collection<Submission> results = PreprocessSubmissions.process(identity, oneSubmission, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(identity, oneSubmission, context, logger);
 
         assertNotNull(results);
         assertEquals(results, oneSubmission);
@@ -104,7 +113,7 @@ public class PreprocessSubmissionsTest {
 
     @Test
     public void testOneSubmissionRename() throws ChecksimsException {
-        Collection<Submission> results = PreprocessSubmissions.process(renamer, oneSubmission, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(renamer, oneSubmission, context, logger);
         Submission expected = submissionFromString("renamed " + a.getName(), a.getContentAsString());
 
         checkSubmissionCollections(singleton(expected), results);
@@ -112,14 +121,14 @@ public class PreprocessSubmissionsTest {
 
     @Test
     public void testTwoSubmissionIdentity() throws ChecksimsException {
-        Collection<Submission> results = PreprocessSubmissions.process(identity, twoSubmissions, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(identity, twoSubmissions, context, logger);
 
         checkSubmissionCollections(twoSubmissions, results);
     }
 
     @Test
     public void testTwoSubmissionRename() throws ChecksimsException {
-        Collection<Submission> results = PreprocessSubmissions.process(renamer, twoSubmissions, logger);
+        Collection<Submission> results = PreprocessSubmissions.process(renamer, twoSubmissions, context, logger);
         Submission expectedA = submissionFromString("renamed " + a.getName(), a.getContentAsString());
         Submission expectedB = submissionFromString("renamed " + b.getName(), b.getContentAsString());
         List<Submission> expected = Arrays.asList(expectedA, expectedB);
@@ -0,0 +1,185 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.similaritymatrix;
+
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixThresholdPrinter;
+import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixToCSVPrinter;
+import net.lldp.checksims.algorithm.similaritymatrix.output.MatrixToHTMLPrinter;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.data.Real;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for compact pair scores, and the compact similarity matrices built from them
+ */
+public class PairScoresTest {
+    private Submission a;
+    private Submission b;
+    private Submission c;
+    private Submission archived;
+    private AlgorithmResults aToB;
+    private AlgorithmResults cToA;
+    private AlgorithmResults bToC;
+    private AlgorithmResults aToArchived;
+    private AlgorithmResults archivedToB;
+    private AlgorithmResults cToArchived;
+
+    @Before
+    public void setUp() {
+        a = submissionFromString("A", "A");
+        b = submissionFromString("B", "B");
+        c = submissionFromString("C", "C");
+        archived = submissionFromString("Z", "Z");
+
+        aToB = new AlgorithmResults(a, b, new Real(3, 4), new Real(1, 2));
+        cToA = new AlgorithmResults(c, a, new Real(1, 3), new Real(1, 10));
+        bToC = new AlgorithmResults(b, c, Real.ZERO, new Real(9, 10));
+        aToArchived = new AlgorithmResults(a, archived, new Real(7, 10), new Real(1, 5));
+        archivedToB = new AlgorithmResults(archived, b, new Real(2, 5), new Real(4, 5));
+        cToArchived = new AlgorithmResults(c, archived, Real.ZERO, Real.ZERO);
+    }
+
+    @Test
+    public void TestRecordedScoresInBothDirections() {
+        PairScores scores = new PairScores(Arrays.asList(a, b, c), Collections.emptyList());
+        scores.accept(aToB);
+        scores.accept(cToA);
+
+        int aId = scores.idOf(a);
+        int bId = scores.idOf(b);
+        int cId = scores.idOf(c);
+
+        assertEquals(0.75f, scores.get(aId, bId), 0.0f);
+        assertEquals(0.5f, scores.get(bId, aId), 0.0f);
+        assertEquals(0.1f, scores.get(aId, cId), 0.0f);
+        assertEquals(1.0f / 3, scores.get(cId, aId), 0.0f);
+        assertEquals(1.0f, scores.get(bId, bId), 0.0f);
+        assertTrue(Float.isNaN(scores.get(bId, cId)));
+        assertEquals(-1, scores.idOf(archived));
+        assertEquals(3 * 2 * Float.BYTES, scores.getSizeInBytes());
+    }
+
+    @Test
+    public void TestArchivePairsHaveNoTriangle() {
+        PairScores scores = new PairScores(Arrays.asList(a, b), Arrays.asList(c, archived));
+
+        // One input pair, and four pairs of an input with an archive submission
+        assertEquals(5 * 2 * Float.BYTES, scores.getSizeInBytes());
+
+        scores.accept(archivedToB);
+        assertEquals(0.4f, scores.get(scores.idOf(archived), scores.idOf(b)), 0.0f);
+        assertEquals(0.8f, scores.get(scores.idOf(b), scores.idOf(archived)), 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestArchiveSubmissionsNotComparedWithEachOther() {
+        PairScores scores = new PairScores(Arrays.asList(a, b), Arrays.asList(c, archived));
+
+        scores.accept(cToArchived);
+    }
+
+    @Test
+    public void TestDirectScoresMatchHeapScores() {
+        PairScores heap = new PairScores(Arrays.asList(a, b, c), Collections.emptyList());
+        PairScores direct = new PairScores(Arrays.asList(a, b, c), Collections.emptyList(), 0);
+        for(AlgorithmResults result : Arrays.asList(aToB, cToA, bToC)) {
+            heap.accept(result);
+            direct.accept(result);
+        }
+
+        assertFalse(heap.isDirect());
+        assertTrue(direct.isDirect());
+        for(int x = 0; x < 3; x++) {
+            for(int y = 0; y < 3; y++) {
+                assertEquals(heap.get(x, y), direct.get(x, y), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void TestCompactMatrixPrintsAsFullMatrix() throws Exception {
+        Set<AlgorithmResults> results = setFromElements(aToB, cToA, bToC);
+        PairScores scores = new PairScores(Arrays.asList(c, b, a), Collections.emptyList());
+        results.forEach(scores::accept);
+
+        SimilarityMatrix full = SimilarityMatrix.generateMatrix(setFromElements(a, b, c), results);
+        SimilarityMatrix compact = SimilarityMatrix.generateCompactMatrix(setFromElements(a, b, c),
+                Collections.emptySet(), scores);
+
+        assertTrue(compact.isCompact());
+        assertEquals(full.getXSubmissions(), compact.getXSubmissions());
+        assertEquals(full.getResultsAtLeast(0.7).size(), compact.getResultsAtLeast(0.7).size());
+        assertEquals(3, compact.getBaseResults().size());
+        assertEquals(MatrixToCSVPrinter.getInstance().printMatrix(full),
+                MatrixToCSVPrinter.getInstance().printMatrix(compact));
+        assertEquals(MatrixThresholdPrinter.getInstance().printMatrix(full),
+                MatrixThresholdPrinter.getInstance().printMatrix(compact));
+        assertEquals(MatrixToHTMLPrinter.getInstance().printMatrix(full),
+                MatrixToHTMLPrinter.getInstance().printMatrix(compact));
+    }
+
+    @Test
+    public void TestCompactMatrixWithArchive() throws Exception {
+        Set<AlgorithmResults> results = setFromElements(aToB, aToArchived, archivedToB);
+        PairScores scores = new PairScores(Arrays.asList(a, b), Collections.singletonList(archived));
+        results.forEach(scores::accept);
+
+        SimilarityMatrix full = SimilarityMatrix.generateMatrix(setFromElements(a, b), setFromElements(archived),
+                results);
+        SimilarityMatrix compact = SimilarityMatrix.generateCompactMatrix(setFromElements(a, b),
+                setFromElements(archived), scores);
+
+        assertEquals(full.getYSubmissions(), compact.getYSubmissions());
+        for(int x = 0; x < 2; x++) {
+            for(int y = 0; y < 3; y++) {
+                assertEquals(full.getEntryFor(x, y).a, compact.getEntryFor(x, y).a);
+                assertEquals(full.getSimilarity(x, y), compact.getSimilarity(x, y), 1e-6);
+            }
+        }
+        assertEquals(MatrixThresholdPrinter.getInstance().printMatrix(full),
+                MatrixThresholdPrinter.getInstance().printMatrix(compact));
+    }
+
+    @Test(expected = InternalAlgorithmError.class)
+    public void TestCompactMatrixMissingScore() throws Exception {
+        PairScores scores = new PairScores(Arrays.asList(a, b, c), Collections.emptyList());
+        scores.accept(aToB);
+        scores.accept(cToA);
+
+        SimilarityMatrix.generateCompactMatrix(setFromElements(a, b, c), Collections.emptySet(), scores);
+    }
+}
@@ -21,10 +21,13 @@
 
 package net.lldp.checksims.algorithm.smithwaterman;
 
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.TokenType;
 import net.lldp.checksims.testutil.TokenUtils;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -152,12 +155,6 @@ public class SmithWatermanAlgorithmTest {
         assertEquals(helloTest.getWholeArray().getMax().getY(), helloTest.getS()[0].length);
     }
 
-    @Test
-    public void TestInitSmithWatermanCandidatesIsEmpty() {
-        assertTrue(helloTest.getCandidates().isEmpty());
-        assertTrue(bigTest.getCandidates().isEmpty());
-    }
-
     @Test
     public void TestInitSmithWatermanListsInitializedProperly() {
         assertEquals(hello, helloTest.getXList());
@@ -168,106 +165,12 @@ public class SmithWatermanAlgorithmTest {
 
     @Test
     public void TestInitSmithWatermanListsAreClones() {
-        helloTest.getXList().get(0).setValid(false);
+        helloTest.getXArray().setValid(0, false);
 
         assertNotEquals(hello, helloTest.getXList());
         assertEquals(hello, helloTest.getYList());
     }
 
-    @Test
-    public void TestMergeCandidatesNull() {
-        expectedEx.expect(NullPointerException.class);
-
-        helloTest.mergeIntoCandidates(null);
-    }
-
-    @Test
-    public void TestMergeCandidatesEmpty() {
-        helloTest.mergeIntoCandidates(new HashMap<>());
-
-        assertTrue(helloTest.getCandidates().isEmpty());
-    }
-
-    @Test
-    public void TestMergeCandidatesIntoEmpty() {
-        Map<Integer, Set<Coordinate>> toMerge = new HashMap<>();
-        toMerge.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2)));
-
-        helloTest.mergeIntoCandidates(toMerge);
-
-        assertEquals(toMerge, helloTest.getCandidates());
-    }
-
-    @Test
-    public void TestMergeCandidatesNoConflicts() {
-        Map<Integer, Set<Coordinate>> original = helloTest.getCandidates();
-        original.put(6, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2)));
-
-        Map<Integer, Set<Coordinate>> toMerge = new HashMap<>();
-        toMerge.put(5, setFromElements(Coordinate.of(3, 3), Coordinate.of(4, 4), Coordinate.of(5, 5)));
-
-        Map<Integer, Set<Coordinate>> expected = new HashMap<>();
-        expected.put(6, original.get(6));
-        expected.put(5, toMerge.get(5));
-
-        helloTest.mergeIntoCandidates(toMerge);
-
-        assertEquals(expected, helloTest.getCandidates());
-    }
-
-    @Test
-    public void TestMergeCandidatesSameKey() {
-        Map<Integer, Set<Coordinate>> original = helloTest.getCandidates();
-        original.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2)));
-
-        Map<Integer, Set<Coordinate>> toMerge = new HashMap<>();
-        toMerge.put(5, setFromElements(Coordinate.of(3, 3), Coordinate.of(4, 4), Coordinate.of(5, 5)));
-
-        Map<Integer, Set<Coordinate>> expected = new HashMap<>();
-        expected.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2), Coordinate.of(3, 3),
-                Coordinate.of(4, 4), Coordinate.of(5, 5)));
-
-        helloTest.mergeIntoCandidates(toMerge);
-
-        assertEquals(expected, helloTest.getCandidates());
-    }
-
-    @Test
-    public void TestMergeCandidatesFollowsSetInvariants() {
-        Map<Integer, Set<Coordinate>> original = helloTest.getCandidates();
-        original.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2)));
-
-        Map<Integer, Set<Coordinate>> toMerge = new HashMap<>();
-        toMerge.put(5, setFromElements(Coordinate.of(2, 2), Coordinate.of(4, 4), Coordinate.of(5, 5)));
-
-        Map<Integer, Set<Coordinate>> expected = new HashMap<>();
-        expected.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2), Coordinate.of(4, 4),
-                Coordinate.of(5, 5)));
-
-        helloTest.mergeIntoCandidates(toMerge);
-
-        assertEquals(expected, helloTest.getCandidates());
-    }
-
-    @Test
-    public void TestMergeCandidatesDoesNotModifyExistingElements() {
-        Map<Integer, Set<Coordinate>> original = helloTest.getCandidates();
-        original.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2)));
-        original.put(6, setFromElements(Coordinate.of(10, 10)));
-
-        Map<Integer, Set<Coordinate>> toMerge = new HashMap<>();
-        toMerge.put(5, setFromElements(Coordinate.of(3, 3), Coordinate.of(4, 4), Coordinate.of(5, 5)));
-
-        Map<Integer, Set<Coordinate>> expected = new HashMap<>();
-        expected.put(5, setFromElements(Coordinate.of(1, 1), Coordinate.of(2, 2), Coordinate.of(3, 3),
-                Coordinate.of(4, 4), Coordinate.of(5, 5)));
-        expected.put(6, setFromElements(Coordinate.of(10, 10)));
-
-        helloTest.mergeIntoCandidates(toMerge);
-
-        assertEquals(expected, helloTest.getCandidates());
-    }
-
     @Test
     public void TestComputeArraySubsetNullSubset() {
         expectedEx.expect(NullPointerException.class);
@@ -374,7 +277,7 @@ public class SmithWatermanAlgorithmTest {
     public void TestRecomputeArrayAfterCompute() {
         helloTest.computeArraySubset(helloTest.getWholeArray());
 
-        helloTest.getXList().get(4).setValid(false);
+        helloTest.getXArray().setValid(4, false);
 
         helloTest.computeArraySubset(ArraySubset.of(5, 5, 6, 6));
 
@@ -402,7 +305,7 @@ public class SmithWatermanAlgorithmTest {
 
     @Test
     public void TestComputeArrayNoSignificantResults() {
-        helloTest.getXList().get(4).setValid(false);
+        helloTest.getXArray().setValid(4, false);
 
         Map<Integer, Set<Coordinate>> results = helloTest.computeArraySubset(helloTest.getWholeArray());
 
@@ -467,7 +370,7 @@ public class SmithWatermanAlgorithmTest {
 
     @Test
     public void TestGetMatchCoordinatesBigTestThree() {
-        bigTest.getYList().get(6).setValid(false);
+        bigTest.getYArray().setValid(6, false);
 
         bigTest.computeArraySubset(bigTest.getWholeArray());
 
@@ -528,290 +431,249 @@ public class SmithWatermanAlgorithmTest {
     }
 
     @Test
-    public void TestGetFirstMatchNull() {
-        expectedEx.expect(NullPointerException.class);
+    public void TestGetMaxAllZeroes() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(0, 0, 0);
 
-        SmithWatermanAlgorithm.getFirstMatchCoordinate(null);
+        assertEquals(0, max);
     }
 
     @Test
-    public void TestGetFirstMatchEmpty() {
-        expectedEx.expect(IllegalArgumentException.class);
+    public void TestGetMaxAllSameNonzero() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(3, 3, 3);
 
-        SmithWatermanAlgorithm.getFirstMatchCoordinate(new HashSet<>());
+        assertEquals(3, max);
     }
 
     @Test
-    public void TestOneElementGetFirstMatch() {
-        Coordinate expected = Coordinate.of(1, 2);
-        Coordinate result = SmithWatermanAlgorithm.getFirstMatchCoordinate(setFromElements(expected));
+    public void TestGetMaxAllSameNegative() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(-5, -5, -5);
 
-        assertEquals(expected, result);
+        assertEquals(-5, max);
     }
 
     @Test
-    public void TestTwoElementsGetFirstMatch() {
-        Coordinate expected = Coordinate.of(1, 1);
-        Set<Coordinate> testWith = setFromElements(expected, Coordinate.of(2, 2));
-
-        Coordinate result = SmithWatermanAlgorithm.getFirstMatchCoordinate(testWith);
+    public void TestGetMaxALargest() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(10, 4, 3);
 
-        assertEquals(expected, result);
+        assertEquals(10, max);
     }
 
     @Test
-    public void TestBigTestGetFirstMatch() {
-        Set<Coordinate> match = setFromElements(Coordinate.of(10, 9), Coordinate.of(9, 8), Coordinate.of(8, 7),
-                Coordinate.of(7, 6), Coordinate.of(6, 5), Coordinate.of(5, 4), Coordinate.of(3, 3), Coordinate.of(2, 2),
-                Coordinate.of(1, 1));
-        Coordinate expected = Coordinate.of(1, 1);
-
-        Coordinate result = SmithWatermanAlgorithm.getFirstMatchCoordinate(match);
+    public void TestGetMaxALargestBCSame() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(5, 4, 4);
 
-        assertEquals(expected, result);
+        assertEquals(5, max);
     }
 
     @Test
-    public void TestFilterPostDominatedNullFirst() {
-        expectedEx.expect(NullPointerException.class);
+    public void TestGetMaxBLargest() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(9, 18, 17);
 
-        helloTest.filterPostdominated(null, Coordinate.of(4, 5));
+        assertEquals(18, max);
     }
 
     @Test
-    public void TestFilterPostDominatedNullSecond() {
-        expectedEx.expect(NullPointerException.class);
+    public void TestGetMaxBLargestACSame() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(9, 120, 9);
 
-        helloTest.filterPostdominated(Coordinate.of(4, 5), null);
+        assertEquals(120, max);
     }
 
     @Test
-    public void TestFilterPostDominatedFirstOutOfArray() {
-        expectedEx.expect(IllegalArgumentException.class);
+    public void TestGetMaxCLargest() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(1200, 1300, 1400);
 
-        helloTest.filterPostdominated(Coordinate.of(100, 100), Coordinate.of(3, 3));
+        assertEquals(1400, max);
     }
 
     @Test
-    public void TestFilterPostDominatedSecondOutOfArray() {
-        expectedEx.expect(IllegalArgumentException.class);
+    public void TestGetMaxCLargestABSame() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(123, 123, 456);
 
-        helloTest.filterPostdominated(Coordinate.of(1, 1), Coordinate.of(8, 8));
+        assertEquals(456, max);
     }
 
     @Test
-    public void TestFilterPostDominatedEmpty() {
-        Map<Integer, Set<Coordinate>> results = helloTest.filterPostdominated(Coordinate.of(1, 1), Coordinate.of(6, 6));
+    public void TestUntestedBranch() {
+        int max = SmithWatermanAlgorithm.getMaxOfInts(3, 1, 2);
 
-        assertTrue(results.isEmpty());
+        assertEquals(3, max);
     }
 
-    @Test
-    public void TestFilterPostDominatedAllOfHelloFiltered() {
-        helloTest.mergeIntoCandidates(helloTest.computeArraySubset(helloTest.getWholeArray()));
-
-        Map<Integer, Set<Coordinate>> results = helloTest.filterPostdominated(Coordinate.of(1, 1), Coordinate.of(6, 6));
+    /**
+     * Check that the incremental alignment marks exactly the same tokens as the exhaustive alignment.
+     */
+    private static void checkIncrementalMatchesExhaustive(TokenList a, TokenList b) throws InternalAlgorithmError {
+        Pair<TokenArray, TokenArray> expected = new SmithWatermanAlgorithm(a, b).computeSmithWatermanAlignmentExhaustive();
+        Pair<TokenArray, TokenArray> actual = new SmithWatermanAlgorithm(a, b).computeSmithWatermanAlignment();
 
-        assertTrue(results.isEmpty());
+        assertEquals(expected.getLeft(), actual.getLeft());
+        assertEquals(expected.getRight(), actual.getRight());
     }
 
     @Test
-    public void TestFilterPostDominatedBigTestFiltered() {
-        Map<Integer, Set<Coordinate>> expected = new HashMap<>();
-        expected.put(5, setFromElements(Coordinate.of(23, 22)));
-        expected.put(6, setFromElements(Coordinate.of(24, 23)));
-
-        bigTest.mergeIntoCandidates(bigTest.computeArraySubset(bigTest.getWholeArray()));
-
-        Map<Integer, Set<Coordinate>> results = bigTest.filterPostdominated(Coordinate.of(1, 1), Coordinate.of(10, 9));
-
-        assertEquals(expected, results);
+    public void TestIncrementalMatchesExhaustiveHello() throws Exception {
+        checkIncrementalMatchesExhaustive(hello, hello);
     }
 
     @Test
-    public void TestZeroMatchNullFirst() {
-        expectedEx.expect(NullPointerException.class);
-
-        helloTest.zeroMatch(null, Coordinate.of(1, 1));
+    public void TestIncrementalMatchesExhaustiveBigTest() throws Exception {
+        checkIncrementalMatchesExhaustive(bigTest1, bigTest2);
+        checkIncrementalMatchesExhaustive(bigTest2, bigTest1);
     }
 
     @Test
-    public void TestZeroMatchNullSecond() {
-        expectedEx.expect(NullPointerException.class);
-
-        helloTest.zeroMatch(Coordinate.of(3, 3), null);
+    public void TestIncrementalMatchesExhaustiveNoMatch() throws Exception {
+        checkIncrementalMatchesExhaustive(hello, TokenUtils.makeTokenListCharacter('x', 'y', 'z'));
     }
 
     @Test
-    public void TestZeroMatchOutOfBoundsFirst() {
-        expectedEx.expect(IllegalArgumentException.class);
-
-        helloTest.zeroMatch(Coordinate.of(100, 100), Coordinate.of(6, 6));
-    }
+    public void TestIncrementalMatchesExhaustiveRandom() throws Exception {
+        Random random = new Random(5678);
 
-    @Test
-    public void TestZeroMatchOutOfBoundsSecond() {
-        expectedEx.expect(IllegalArgumentException.class);
+        for(int i = 0; i < 50; i++) {
+            TokenList a = randomTokenList(random, 1 + random.nextInt(150), 'e');
+            TokenList b = randomTokenList(random, 1 + random.nextInt(150), 'e');
 
-        helloTest.zeroMatch(Coordinate.of(1, 1), Coordinate.of(100, 100));
+            checkIncrementalMatchesExhaustive(a, b);
+        }
     }
 
     @Test
-    public void TestZeroMatchHello() {
-        int[][] expected = new int[6][6];
-
-        helloTest.computeArraySubset(helloTest.getWholeArray());
-
-        helloTest.zeroMatch(Coordinate.of(1, 1), Coordinate.of(5, 5));
+    public void TestIncrementalMatchesExhaustiveSharedRuns() throws Exception {
+        Random random = new Random(8765);
 
-        assertTrue(Arrays.deepEquals(expected, helloTest.getS()));
-        assertTrue(Arrays.deepEquals(expected, helloTest.getM()));
-    }
-
-    @Test
-    public void TestZeroMatchBigTest() {
-        int[][] expected = new int[][] {
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 7, 6, 5, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 6, 6, 5, 6, 5, 4, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5, 5, 5, 5, 5, 4, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 6, 5, 4, 4, 4, 4, 0, 0, 0, 0, 1, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5, 5, 6, 5, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 4, 4, 5, 5, 4, 0, 0, 0, 0, 0, 0, 0, 1, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5, 4, 4, 4, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 4, 4, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 1, 0, 0, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 1, 0, 0, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, 3, 2, 1, 0 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 4, 3, 2 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 3, 5, 4 },
-                { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 4, 6 }
-        };
-
-
-        bigTest.computeArraySubset(bigTest.getWholeArray());
+        // Many long matches, each of which invalidates cells across the whole array
+        for(int i = 0; i < 10; i++) {
+            TokenList a = randomTokenList(random, 300, 'z');
+            TokenList b = TokenList.cloneTokenList(a);
 
-        bigTest.zeroMatch(Coordinate.of(1, 1), Coordinate.of(10, 9));
+            for(int j = 0; j < 20; j++) {
+                b.set(random.nextInt(b.size()), TokenUtils.makeCharToken((char)('a' + random.nextInt(26))));
+            }
 
-        assertTrue(Arrays.deepEquals(expected, bigTest.getS()));
+            checkIncrementalMatchesExhaustive(a, b);
+        }
     }
 
-    @Test
-    public void TestGetMaxAllZeroes() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(0, 0, 0);
+    /**
+     * Check that the low-memory alignment marks exactly the same tokens as the full-table exhaustive alignment.
+     */
+    private static void checkLowMemoryMatchesExhaustive(TokenList a, TokenList b) throws InternalAlgorithmError {
+        Pair<TokenArray, TokenArray> expected = new SmithWatermanAlgorithm(a, b).computeSmithWatermanAlignmentExhaustive();
+        Pair<TokenArray, TokenArray> actual = new LowMemorySmithWatermanAlgorithm(TokenArray.fromTokenList(a),
+                TokenArray.fromTokenList(b)).computeSmithWatermanAlignmentExhaustive();
 
-        assertEquals(0, max);
+        assertEquals(expected.getLeft(), actual.getLeft());
+        assertEquals(expected.getRight(), actual.getRight());
     }
 
-    @Test
-    public void TestGetMaxAllSameNonzero() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(3, 3, 3);
+    private static TokenList randomTokenList(Random random, int size, char maxChar) {
+        Character[] chars = new Character[size];
 
-        assertEquals(3, max);
+        for(int i = 0; i < size; i++) {
+            chars[i] = (char)('a' + random.nextInt(maxChar - 'a' + 1));
+        }
+
+        return TokenUtils.makeTokenListCharacter(chars);
     }
 
     @Test
-    public void TestGetMaxAllSameNegative() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(-5, -5, -5);
+    public void TestLowMemoryInitNullThrowsException() {
+        expectedEx.expect(NullPointerException.class);
 
-        assertEquals(-5, max);
+        new LowMemorySmithWatermanAlgorithm(null, TokenArray.fromTokenList(hello));
     }
 
     @Test
-    public void TestGetMaxALargest() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(10, 4, 3);
+    public void TestLowMemoryInitEmptyThrowsException() {
+        expectedEx.expect(IllegalArgumentException.class);
 
-        assertEquals(10, max);
+        new LowMemorySmithWatermanAlgorithm(TokenArray.fromTokenList(empty), TokenArray.fromTokenList(hello));
     }
 
     @Test
-    public void TestGetMaxALargestBCSame() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(5, 4, 4);
+    public void TestLowMemoryDoesNotModifyInputs() throws Exception {
+        TokenArray input = TokenArray.fromTokenList(hello);
 
-        assertEquals(5, max);
+        new LowMemorySmithWatermanAlgorithm(input, input).computeSmithWatermanAlignmentExhaustive();
+
+        assertEquals(TokenArray.fromTokenList(hello), input);
     }
 
     @Test
-    public void TestGetMaxBLargest() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(9, 18, 17);
-
-        assertEquals(18, max);
+    public void TestLowMemoryMatchesExhaustiveHello() throws Exception {
+        checkLowMemoryMatchesExhaustive(hello, hello);
     }
 
     @Test
-    public void TestGetMaxBLargestACSame() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(9, 120, 9);
-
-        assertEquals(120, max);
+    public void TestLowMemoryMatchesExhaustiveBigTest() throws Exception {
+        checkLowMemoryMatchesExhaustive(bigTest1, bigTest2);
+        checkLowMemoryMatchesExhaustive(bigTest2, bigTest1);
     }
 
     @Test
-    public void TestGetMaxCLargest() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(1200, 1300, 1400);
-
-        assertEquals(1400, max);
+    public void TestLowMemoryMatchesExhaustiveNoMatch() throws Exception {
+        checkLowMemoryMatchesExhaustive(hello, TokenUtils.makeTokenListCharacter('x', 'y', 'z'));
     }
 
     @Test
-    public void TestGetMaxCLargestABSame() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(123, 123, 456);
+    public void TestLowMemoryMatchesExhaustiveRandom() throws Exception {
+        Random random = new Random(1234);
 
-        assertEquals(456, max);
+        for(int i = 0; i < 50; i++) {
+            TokenList a = randomTokenList(random, 1 + random.nextInt(150), 'e');
+            TokenList b = randomTokenList(random, 1 + random.nextInt(150), 'e');
+
+            checkLowMemoryMatchesExhaustive(a, b);
+        }
     }
 
     @Test
-    public void TestUntestedBranch() {
-        int max = SmithWatermanAlgorithm.getMaxOfInts(3, 1, 2);
+    public void TestLowMemoryMatchesExhaustiveSharedRuns() throws Exception {
+        Random random = new Random(4321);
 
-        assertEquals(3, max);
-    }
+        // Long shared runs with mutations, so matches span several checkpoint blocks
+        for(int i = 0; i < 10; i++) {
+            TokenList a = randomTokenList(random, 300, 'z');
+            TokenList b = TokenList.cloneTokenList(a);
 
-    @Test
-    public void TestGetMaxOfCoordinatesPassNull() {
-        expectedEx.expect(NullPointerException.class);
+            for(int j = 0; j < 20; j++) {
+                b.set(random.nextInt(b.size()), TokenUtils.makeCharToken((char)('a' + random.nextInt(26))));
+            }
 
-        bigTest.computeArraySubset(bigTest.getWholeArray());
-        bigTest.getMaxOfCoordinates(null);
+            checkLowMemoryMatchesExhaustive(a, b);
+        }
     }
 
     @Test
-    public void TestGetMaxOfCoordinatesPassEmpty() {
-        expectedEx.expect(IllegalArgumentException.class);
+    public void TestLowMemoryMatchesExhaustiveUnequalLengths() throws Exception {
+        Random random = new Random(2468);
 
-        bigTest.computeArraySubset(bigTest.getWholeArray());
-        bigTest.getMaxOfCoordinates(new HashSet<>());
+        // Rows run along the longer array, whichever side it is on
+        for(int i = 0; i < 10; i++) {
+            TokenList shorter = randomTokenList(random, 20 + random.nextInt(40), 'f');
+            TokenList longer = randomTokenList(random, 150 + random.nextInt(150), 'f');
+
+            checkLowMemoryMatchesExhaustive(shorter, longer);
+            checkLowMemoryMatchesExhaustive(longer, shorter);
+        }
     }
 
     @Test
-    public void TestGetMaxOfCoordinatesOneCoordinate() {
-        Set<Coordinate> toCheck = setFromElements(Coordinate.of(10, 10));
-
-        bigTest.computeArraySubset(bigTest.getWholeArray());
-        Coordinate result = bigTest.getMaxOfCoordinates(toCheck);
+    public void TestLowMemoryRowsSpanShorterArray() {
+        TokenArray shorter = TokenArray.fromTokenList(hello);
+        TokenArray longer = TokenArray.fromTokenList(bigTest1);
 
-        assertEquals(Coordinate.of(10, 10), result);
+        assertEquals(hello.size(), new LowMemorySmithWatermanAlgorithm(shorter, longer).getRowWidth());
+        assertEquals(hello.size(), new LowMemorySmithWatermanAlgorithm(longer, shorter).getRowWidth());
     }
 
     @Test
-    public void TestGetMaxOfCoordinatesBigTest() {
-        Set<Coordinate> toCheck = setFromElements( Coordinate.of(9, 8), Coordinate.of(8, 7), Coordinate.of(10, 9),
-                Coordinate.of(7, 6), Coordinate.of(6, 5), Coordinate.of(5, 4), Coordinate.of(3, 3), Coordinate.of(2, 2),
-                Coordinate.of(1, 1));
-        Coordinate expected = Coordinate.of(10, 9);
+    public void TestLowMemoryCheckpointInterval() {
+        LowMemorySmithWatermanAlgorithm algorithm = new LowMemorySmithWatermanAlgorithm(
+                TokenArray.fromTokenList(bigTest1), TokenArray.fromTokenList(bigTest2));
 
-        bigTest.computeArraySubset(bigTest.getWholeArray());
-        Coordinate result = bigTest.getMaxOfCoordinates(toCheck);
-
-        assertEquals(expected, result);
+        assertEquals(5, algorithm.getCheckpointInterval());
     }
 }
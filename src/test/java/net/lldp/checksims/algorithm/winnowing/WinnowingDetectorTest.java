@@ -0,0 +1,290 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.algorithm.winnowing;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.AlgorithmRunner;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.token.LexemeMap;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.PairGenerator;
+import net.lldp.checksims.util.SubmissionPairs;
+import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
+import net.lldp.checksims.util.data.Real;
+import net.lldp.checksims.util.threading.ExecutionContext;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static net.lldp.checksims.testutil.AlgorithmUtils.checkResultsContainsPairs;
+import static net.lldp.checksims.testutil.AlgorithmUtils.checkResultsNoMatch;
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the winnowing detector and its fingerprint index
+ */
+public class WinnowingDetectorTest {
+    private Submission empty;
+    private Submission shortSub;
+    private Submission alpha;
+    private Submission alphaCopy;
+    private Submission alphaExtended;
+    private Submission unrelated;
+    private WinnowingDetector winnowing;
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        empty = submissionFromString("Empty", "");
+        shortSub = submissionFromString("Short", "one two");
+        alpha = submissionFromString("Alpha", "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+        alphaCopy = submissionFromString("AlphaCopy",
+                "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+        alphaExtended = submissionFromString("AlphaExtended", "void helper ( int y ) { print ( y ) ; } "
+                + "int main ( ) { int x = 0 ; while ( x < 10 ) { x ++ ; } return x ; }");
+        unrelated = submissionFromString("Unrelated",
+                "the quick brown fox jumps over the lazy dog while nobody watches it");
+
+        winnowing = WinnowingDetector.getInstance();
+    }
+
+    private Fingerprints fingerprints(Submission s) {
+        return winnowing.getPercentableCalculator().generateFromSubmission(s);
+    }
+
+    private AlgorithmResults cmp(Submission a, Submission b) {
+        return winnowing.detectSimilarity(Pair.of(a, b), fingerprints(a), fingerprints(b));
+    }
+
+    private PreparedSubmissions<Fingerprints> prepare(Submission... submissions) {
+        Map<Submission, Fingerprints> prepared = new HashMap<>();
+
+        for(Submission s : submissions) {
+            prepared.put(s, fingerprints(s));
+        }
+
+        return new PreparedSubmissions<>(prepared);
+    }
+
+    @Test
+    public void TestFingerprintsAreSortedAndDistinct() {
+        Fingerprints prints = new Fingerprints(new int[] { 5, -3, 5, 9, -3 });
+
+        assertEquals(3, prints.size());
+        assertEquals(-3, prints.get(0));
+        assertEquals(5, prints.get(1));
+        assertEquals(9, prints.get(2));
+    }
+
+    @Test
+    public void TestCountShared() {
+        Fingerprints a = new Fingerprints(new int[] { 1, 2, 3, 4 });
+        Fingerprints b = new Fingerprints(new int[] { 3, 4, 5 });
+
+        assertEquals(2, a.countShared(b));
+        assertEquals(2, b.countShared(a));
+    }
+
+    @Test
+    public void TestFingerprinterRejectsNonpositiveK() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        new WinnowingFingerprinter(0, 4);
+    }
+
+    @Test
+    public void TestFewerTokensThanKHasNoFingerprints() {
+        assertEquals(0, fingerprints(shortSub).size());
+        assertEquals(0, fingerprints(empty).size());
+    }
+
+    @Test
+    public void TestEmptySubmissionsNoMatch() {
+        checkResultsNoMatch(cmp(empty, shortSub), empty, shortSub);
+    }
+
+    @Test
+    public void TestIdenticalContentFullyMatched() {
+        AlgorithmResults results = cmp(alpha, alphaCopy);
+
+        assertEquals(Real.ONE, results.percentMatchedA());
+        assertEquals(Real.ONE, results.percentMatchedB());
+    }
+
+    @Test
+    public void TestNoOverlapNoMatch() {
+        checkResultsNoMatch(cmp(alpha, unrelated), alpha, unrelated);
+    }
+
+    @Test
+    public void TestContainedSubmissionFullyMatched() {
+        AlgorithmResults results = cmp(alpha, alphaExtended);
+
+        assertEquals(Real.ONE, results.percentMatchedA());
+        assertTrue(results.percentMatchedB().asDouble() > 0.0);
+        assertTrue(results.percentMatchedB().asDouble() < 1.0);
+    }
+
+    @Test
+    public void TestFingerprintsStableAcrossLexemeTables() {
+        WinnowingFingerprinter fingerprinter = new WinnowingFingerprinter(WinnowingDetector.DEFAULT_K,
+                WinnowingDetector.DEFAULT_WINDOW);
+
+        Fingerprints first;
+        int firstGeneration;
+        try(LexemeMap.Scope scope = LexemeMap.openScope()) {
+            first = fingerprinter.generateFromSubmission(alphaExtended);
+            firstGeneration = LexemeMap.getGeneration();
+        }
+
+        // Closing the last scope released the table, so the same tokens now have other lexemes
+        try(LexemeMap.Scope scope = LexemeMap.openScope()) {
+            Fingerprints second = fingerprinter.generateFromSubmission(alphaExtended);
+
+            assertNotEquals(firstGeneration, LexemeMap.getGeneration());
+            assertEquals(first, second);
+        }
+    }
+
+    @Test
+    public void TestIndexCountsMatchPairwise() throws Exception {
+        Set<Submission> all = setFromElements(empty, shortSub, alpha, alphaCopy, alphaExtended, unrelated);
+        PreparedSubmissions<Fingerprints> prepared = prepare(empty, shortSub, alpha, alphaCopy, alphaExtended,
+                unrelated);
+
+        FingerprintIndex index = new FingerprintIndex(all, prepared);
+
+        for(Pair<Submission, Submission> pair : PairGenerator.generatePairs(all)) {
+            int expected = prepared.get(pair.getLeft()).countShared(prepared.get(pair.getRight()));
+
+            assertEquals(expected, index.getSharedCount(pair.getLeft(), pair.getRight()));
+            assertEquals(expected, index.getSharedCount(pair.getRight(), pair.getLeft()));
+        }
+    }
+
+    @Test
+    public void TestIndexIgnoresCommonFingerprints() throws Exception {
+        Set<Submission> all = setFromElements(alpha, alphaCopy, alphaExtended, unrelated);
+        PreparedSubmissions<Fingerprints> prepared = prepare(alpha, alphaCopy, alphaExtended, unrelated);
+
+        // Every fingerprint of alpha is also in alphaCopy and alphaExtended, so is common at a frequency of 2
+        FingerprintIndex index = new FingerprintIndex(all, prepared, 2, null);
+
+        assertEquals(0, index.getSharedCount(alpha, alphaCopy));
+        assertEquals(0, index.getSharedCount(alpha, alphaExtended));
+        assertTrue(index.getNumCommonFingerprints() > 0);
+
+        FingerprintIndex uncapped = new FingerprintIndex(all, prepared, 3, null);
+
+        assertEquals(prepared.get(alpha).countShared(prepared.get(alphaCopy)),
+                uncapped.getSharedCount(alpha, alphaCopy));
+    }
+
+    @Test
+    public void TestIndexSkipsArchivePairs() throws Exception {
+        alphaCopy.setFlag(SubmissionPairs.ARCHIVE_FLAG);
+        alphaExtended.setFlag(SubmissionPairs.ARCHIVE_FLAG);
+
+        Set<Submission> all = setFromElements(alpha, alphaCopy, alphaExtended);
+        PreparedSubmissions<Fingerprints> prepared = prepare(alpha, alphaCopy, alphaExtended);
+
+        FingerprintIndex index = new FingerprintIndex(all, prepared);
+
+        assertEquals(0, index.getSharedCount(alphaCopy, alphaExtended));
+        assertEquals(prepared.get(alpha).countShared(prepared.get(alphaCopy)), index.getSharedCount(alpha, alphaCopy));
+        assertEquals(2, index.getNumSharingPairs());
+    }
+
+    @Test
+    public void TestIndexRejectsUnindexedSubmission() throws Exception {
+        FingerprintIndex index = new FingerprintIndex(setFromElements(alpha, alphaCopy), prepare(alpha, alphaCopy));
+
+        expectedEx.expect(IllegalArgumentException.class);
+
+        index.getSharedCount(alpha, unrelated);
+    }
+
+    @Test
+    public void TestDetectAllMatchesPairwise() throws Exception {
+        Set<Submission> all = setFromElements(empty, shortSub, alpha, alphaCopy, alphaExtended, unrelated);
+        Set<Pair<Submission, Submission>> pairs = PairGenerator.generatePairs(all);
+        PreparedSubmissions<Fingerprints> prepared = prepare(empty, shortSub, alpha, alphaCopy, alphaExtended,
+                unrelated);
+
+        Set<AlgorithmResults> expected = new HashSet<>();
+        for(Pair<Submission, Submission> pair : pairs) {
+            expected.add(winnowing.detectSimilarity(pair, prepared.get(pair.getLeft()),
+                    prepared.get(pair.getRight())));
+        }
+
+        try(ExecutionContext context = new ExecutionContext()) {
+            Set<AlgorithmResults> actual = AlgorithmRunner.runAlgorithm(pairs, winnowing, prepared, context,
+                    new DefaultLoggerStatusLogger());
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void TestRunnerUsesIndex() throws Exception {
+        Set<Pair<Submission, Submission>> pairs = PairGenerator.generatePairs(
+                setFromElements(alpha, alphaCopy, alphaExtended, unrelated));
+
+        try(ExecutionContext context = new ExecutionContext()) {
+            Set<AlgorithmResults> results = AlgorithmRunner.runAlgorithm(pairs, winnowing, context,
+                    new DefaultLoggerStatusLogger());
+
+            checkResultsContainsPairs(results, pairs);
+        }
+    }
+
+    @Test
+    public void TestIndexedDetectionStopsWhenCancelled() throws Exception {
+        Set<Pair<Submission, Submission>> pairs = PairGenerator.generatePairs(setFromElements(alpha, alphaCopy));
+        PreparedSubmissions<Fingerprints> prepared = prepare(alpha, alphaCopy);
+
+        try(ExecutionContext context = new ExecutionContext()) {
+            context.cancel();
+
+            expectedEx.expect(ChecksimsException.class);
+
+            AlgorithmRunner.runAlgorithm(pairs, winnowing, prepared, context, new DefaultLoggerStatusLogger(),
+                    (result) -> { });
+        }
+    }
+}
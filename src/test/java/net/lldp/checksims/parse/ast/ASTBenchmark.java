@@ -0,0 +1,127 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.ast;
+
+import net.lldp.checksims.algorithm.syntaxtree.java.JavaSyntaxParser;
+import net.lldp.checksims.submission.Submission;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+
+/**
+ * Compares building flat syntax trees from complete ANTLR parse trees against building them while parsing.
+ *
+ * Not a unit test; run manually with the test classpath. Every Java file under the given directory is built into a
+ * tree both ways, and every pair of files is compared. Memory is measured with the intermediate parse trees of the
+ * first approach still held, as they would be at its peak.
+ *
+ * Arguments, all optional: directory of Java sources, number of rounds.
+ */
+public final class ASTBenchmark {
+    private ASTBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "src/main/java");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        LanguageDependantSyntaxParser ldsp = new JavaSyntaxParser();
+        List<Submission> sources = new ArrayList<>();
+        for(Path file : javaFiles(directory)) {
+            sources.add(submissionFromString(file.toString(),
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+        }
+
+        // Parse trees are held until memory is measured, as they would be at the peak of building from them
+        List<Set<ParserRuleContext>> held = new ArrayList<>();
+        Function<Submission, FlatAST> fromParseTree = (s) -> {
+            Set<ParserRuleContext> contexts = ldsp.sourceToDefaultcontext(s, s.getContentAsString());
+            held.add(contexts);
+
+            FlatAST.Builder builder = new FlatAST.Builder(1024);
+            contexts.forEach(builder::add);
+            return builder.node("#PROGRAM", contexts.size()).build();
+        };
+        Function<Submission, FlatAST> whileParsing = (s) -> {
+            FlatAST.Builder builder = ldsp.sourceToTree(s, s.getContentAsString(), false);
+            return builder.node("#PROGRAM", builder.getNumSubtrees()).build();
+        };
+
+        System.out.println("Building syntax trees of " + sources.size() + " files under " + directory);
+        System.out.println("construction\tretained (MB)\tbuild (ms)\tcompare (pairs/s)");
+
+        for(int round = 0; round < rounds; round++) {
+            report("parse tree", sources, fromParseTree);
+            held.clear();
+            report("streamed", sources, whileParsing);
+        }
+    }
+
+    private static void report(String name, List<Submission> sources, Function<Submission, FlatAST> build) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        List<FlatAST> trees = sources.stream().map(build).collect(Collectors.toList());
+        long buildNanos = System.nanoTime() - start;
+        long retained = usedMemory() - before;
+
+        double checksum = 0;
+        long pairs = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < trees.size(); i++) {
+            for(int j = i + 1; j < trees.size(); j++) {
+                checksum += trees.get(i).getPercentMatched(trees.get(j)).asDouble()
+                        + trees.get(j).getPercentMatched(trees.get(i)).asDouble();
+                pairs++;
+            }
+        }
+        long compareNanos = System.nanoTime() - start;
+
+        System.out.printf("%s\t%.1f\t%d\t%.0f\t(checksum %.3f)%n", name, retained / 1048576.0, buildNanos / 1000000,
+                pairs * 1e9 / compareNanos, checksum);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<Path> javaFiles(Path directory) throws IOException {
+        try(Stream<Path> files = Files.walk(directory)) {
+            return files.filter((file) -> file.toString().endsWith(".java")).collect(Collectors.toList());
+        }
+    }
+}
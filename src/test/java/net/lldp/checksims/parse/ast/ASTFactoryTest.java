@@ -0,0 +1,137 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.ast;
+
+import net.lldp.checksims.algorithm.syntaxtree.c.CSyntaxParser;
+import net.lldp.checksims.algorithm.syntaxtree.cpp.CPPSyntaxParser;
+import net.lldp.checksims.algorithm.syntaxtree.java.JavaSyntaxParser;
+import net.lldp.checksims.algorithm.syntaxtree.python.PythonSyntaxParser;
+import net.lldp.checksims.submission.Submission;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for pooled, SLL-first parsing
+ */
+public class ASTFactoryTest {
+    private static final String java = "public class A {\n"
+            + "    int f(int x) { if(x > 0) { return x; } return -x; }\n"
+            + "    void h() { int a = 1; while(a < 10) { a++; } System.out.println(a); }\n"
+            + "}\n"
+            + "class C { String s; }\n";
+    private static final String python = "def f(x):\n    if x > 0:\n        return x\n    return -x\n\n"
+            + "for i in range(10):\n    print(f(i))\n";
+    private static final String c = "int f(int x) {\n    if(x > 0) { return x; }\n    return -x;\n}\n"
+            + "int main(void) {\n    int i;\n    for(i = 0; i < 10; i++) { f(i); }\n    return 0;\n}\n";
+    private static final String cpp = "class A {\npublic:\nint f(int x) { if(x > 0) { return x; } return 0 - x; }\n};\n"
+            + "int main() {\nA a;\nreturn a.f(1);\n}\n";
+
+    private static FlatAST parse(LanguageDependantSyntaxParser ldsp, boolean sllFirst, Submission submission) {
+        return new SubmissionParser(ldsp, sllFirst).generateFromSubmission(submission);
+    }
+
+    private static void checkSLLMatchesLL(LanguageDependantSyntaxParser ldsp, String content) {
+        Submission ll = submissionFromString("LL", content);
+        Submission sll = submissionFromString("SLL", content);
+
+        FlatAST expected = parse(ldsp, false, ll);
+        FlatAST actual = parse(ldsp, true, sll);
+
+        assertFalse(ll.testFlag("invalid"));
+        assertFalse(sll.testFlag("invalid"));
+        assertTrue(expected.size() > 1);
+        assertEquals(expected, actual);
+        assertEquals(expected.getRootHash(), actual.getRootHash());
+    }
+
+    @Test
+    public void TestSLLFirstMatchesLL() {
+        checkSLLMatchesLL(new JavaSyntaxParser(), java);
+        checkSLLMatchesLL(new PythonSyntaxParser(), python);
+        checkSLLMatchesLL(new CSyntaxParser(), c);
+        checkSLLMatchesLL(new CPPSyntaxParser(), cpp);
+    }
+
+    private static void checkStreamedMatchesParseTree(LanguageDependantSyntaxParser ldsp, String content) {
+        Set<ParserRuleContext> contexts = ldsp.sourceToDefaultcontext(submissionFromString("Tree", content), content);
+        FlatAST.Builder fromContexts = new FlatAST.Builder(1024);
+        contexts.forEach(fromContexts::add);
+
+        FlatAST.Builder streamed = ldsp.sourceToTree(submissionFromString("Streamed", content), content, false);
+
+        assertEquals(contexts.size(), streamed.getNumSubtrees());
+        assertEquals(fromContexts.node("#PROGRAM", contexts.size()).build(),
+                streamed.node("#PROGRAM", contexts.size()).build());
+    }
+
+    @Test
+    public void TestStreamedTreeMatchesParseTree() {
+        checkStreamedMatchesParseTree(new JavaSyntaxParser(), java);
+        checkStreamedMatchesParseTree(new JavaSyntaxParser(), "class A { int x; }\nclass B { int f() { return 1;");
+        checkStreamedMatchesParseTree(new PythonSyntaxParser(), python);
+        checkStreamedMatchesParseTree(new CSyntaxParser(), c);
+        checkStreamedMatchesParseTree(new CPPSyntaxParser(), cpp);
+    }
+
+    @Test
+    public void TestPooledParserIsResetBetweenSubmissions() {
+        LanguageDependantSyntaxParser ldsp = new JavaSyntaxParser();
+
+        FlatAST first = parse(ldsp, true, submissionFromString("A", java));
+        parse(ldsp, true, submissionFromString("B", "class B { int x; }"));
+        parse(ldsp, true, submissionFromString("C", "public class {"));
+        FlatAST again = parse(ldsp, true, submissionFromString("D", java));
+
+        assertEquals(first, again);
+    }
+
+    @Test
+    public void TestSyntaxErrorFallsBackToLL() {
+        long fallbacks = ASTFactory.ParserPool.getNumFallbacks();
+        Submission invalid = submissionFromString("Bad", "public class {");
+
+        parse(new JavaSyntaxParser(), true, invalid);
+
+        assertTrue(invalid.testFlag("invalid"));
+        assertTrue(ASTFactory.ParserPool.getNumFallbacks() > fallbacks);
+    }
+
+    @Test
+    public void TestTruncatedJavaKeepsEarlierDeclarations() {
+        String truncated = "class A { int x; }\nclass B { int f() { return 1;";
+
+        FlatAST ll = parse(new JavaSyntaxParser(), false, submissionFromString("LL", truncated));
+        FlatAST sll = parse(new JavaSyntaxParser(), true, submissionFromString("SLL", truncated));
+        FlatAST complete = parse(new JavaSyntaxParser(), false, submissionFromString("A", "class A { int x; }"));
+
+        assertEquals(complete, ll);
+        assertEquals(complete, sll);
+    }
+}
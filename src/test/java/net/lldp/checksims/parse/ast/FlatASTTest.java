@@ -0,0 +1,146 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.ast;
+
+import net.lldp.checksims.algorithm.syntaxtree.java.JavaSyntaxParser;
+import net.lldp.checksims.algorithm.syntaxtree.python.PythonSyntaxParser;
+import net.lldp.checksims.util.data.Real;
+import org.junit.Test;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the flat syntax tree
+ */
+public class FlatASTTest {
+    private static final String javaA = "public class A {\n"
+            + "    int f(int x) { if(x > 0) { return x; } return -x; }\n"
+            + "    int g(int x) { if(x > 0) { return x; } return -x; }\n"
+            + "    void h() { int a = 1; int b = 2; int c = a + b; System.out.println(c); }\n"
+            + "}\n";
+    private static final String javaRenamed = "public class Z {\n"
+            + "    int p(int q) { if(q > 0) { return q; } return -q; }\n"
+            + "    int r(int q) { if(q > 0) { return q; } return -q; }\n"
+            + "    void s() { int d = 1; int e = 2; int k = d + e; System.out.println(k); }\n"
+            + "}\n";
+    private static final String javaB = "public class B {\n"
+            + "    int f(int y) { if(y > 0) { return y; } return -y; }\n"
+            + "    void h() { int a = 1; while(a < 10) { a++; } }\n"
+            + "}\n"
+            + "class C { String s; }\n";
+    private static final String pythonA = "def f(x):\n    if x > 0:\n        return x\n    return -x\n\n"
+            + "for i in range(10):\n    print(f(i))\n    print(f(i))\n";
+    private static final String pythonB = "def g(y):\n    if y > 0:\n        return y\n    return 0\n\n"
+            + "while True:\n    print(g(1))\n";
+
+    private static FlatAST parse(LanguageDependantSyntaxParser ldsp, String content) {
+        return new SubmissionParser(ldsp).generateFromSubmission(submissionFromString("A", content));
+    }
+
+    private static void checkPartialMatch(Real score) {
+        assertTrue(score.getNumerator() > 0);
+        assertTrue(score.getNumerator() < score.getDenominator());
+    }
+
+    @Test
+    public void TestRenamedJavaMatchesFully() {
+        FlatAST a = parse(new JavaSyntaxParser(), javaA);
+        FlatAST renamed = parse(new JavaSyntaxParser(), javaRenamed);
+
+        assertEquals(a.getRootHash(), renamed.getRootHash());
+        assertEquals(Real.ONE, a.getPercentMatched(renamed));
+        assertEquals(Real.ONE, renamed.getPercentMatched(a));
+    }
+
+    @Test
+    public void TestSimilarSourcesMatchPartially() {
+        FlatAST javaTreeA = parse(new JavaSyntaxParser(), javaA);
+        FlatAST javaTreeB = parse(new JavaSyntaxParser(), javaB);
+        checkPartialMatch(javaTreeA.getPercentMatched(javaTreeB));
+        checkPartialMatch(javaTreeB.getPercentMatched(javaTreeA));
+
+        // Top-level declarations are hashed in source order, so the same source always gives the same tree
+        assertEquals(javaTreeB.getRootHash(), parse(new JavaSyntaxParser(), javaB).getRootHash());
+
+        FlatAST pythonTreeA = parse(new PythonSyntaxParser(), pythonA);
+        FlatAST pythonTreeB = parse(new PythonSyntaxParser(), pythonB);
+        checkPartialMatch(pythonTreeA.getPercentMatched(pythonTreeB));
+        checkPartialMatch(pythonTreeB.getPercentMatched(pythonTreeA));
+    }
+
+    @Test
+    public void TestChildOrderMatters() {
+        FlatAST xy = new FlatAST.Builder(0).leaf("x").leaf("y").node("a", 2).build();
+        FlatAST yx = new FlatAST.Builder(0).leaf("y").leaf("x").node("a", 2).build();
+
+        assertFalse(xy.getRootHash() == yx.getRootHash());
+        assertEquals(new Real(2, 5), xy.getPercentMatched(yx));
+    }
+
+    @Test
+    public void TestRepeatedChildrenMatter() {
+        FlatAST repeated = new FlatAST.Builder(0).leaf("x").leaf("x").node("a", 2).build();
+        FlatAST single = new FlatAST.Builder(0).leaf("x").node("a", 1).build();
+
+        assertFalse(repeated.getRootHash() == single.getRootHash());
+        assertEquals(new Real(2, 5), repeated.getPercentMatched(single));
+        assertEquals(new Real(1, 3), single.getPercentMatched(repeated));
+    }
+
+    @Test
+    public void TestRepeatedSubtreesShareOneWeightedFingerprint() {
+        FlatAST tree = new FlatAST.Builder(0).leaf("x").node("a", 1).leaf("x").node("b", 1).node("root", 2).build();
+        FlatAST other = new FlatAST.Builder(0).leaf("x").node("c", 1).build();
+
+        assertEquals(5, tree.size());
+        assertEquals(4, tree.getNumFingerprints());
+        assertEquals(2, tree.getNumChildren(tree.getRoot()));
+        assertEquals("b", tree.getTag(3));
+
+        Real score = tree.getPercentMatched(other);
+        assertEquals(2, score.getNumerator());
+        assertEquals(11, score.getDenominator());
+    }
+
+    @Test
+    public void TestTreesWithDifferentStructureAreNotEqual() {
+        FlatAST a = new FlatAST.Builder(0).leaf("x").leaf("y").node("z", 2).build();
+        FlatAST b = new FlatAST.Builder(0).leaf("x").leaf("y").node("z", 1).node("z", 2).build();
+
+        assertEquals(a, new FlatAST.Builder(0).leaf("x").leaf("y").node("z", 2).build());
+        assertFalse(a.equals(b));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestTooManyChildrenThrows() {
+        new FlatAST.Builder(0).leaf("x").node("y", 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void TestIncompleteTreeThrows() {
+        new FlatAST.Builder(0).leaf("x").leaf("y").build();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import com.google.common.collect.ImmutableMap;
+
+import net.lldp.checksims.ChecksimsConfig;
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.ChecksimsRunner;
+import net.lldp.checksims.algorithm.AlgorithmRegistry;
+import net.lldp.checksims.algorithm.syntaxtree.java.JavaParser;
+import net.lldp.checksims.algorithm.winnowing.WinnowingFingerprinter;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.ast.FlatAST;
+import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
+import net.lldp.checksims.parse.token.SubmissionTokenizer;
+import net.lldp.checksims.parse.token.TokenType;
+import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
+import net.lldp.checksims.submission.Submission;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for precomputed archive indexes
+ */
+public class ArchiveIndexTest {
+    private SubmissionTokenizer tokenizer;
+    private Submission a;
+    private Submission b;
+    private Path indexFile;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Before
+    public void setUp() throws Exception {
+        tokenizer = new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.LINE));
+        a = submissionFromString("A", "first line\nsecond line\nthird line");
+        b = submissionFromString("B", "another line");
+        indexFile = folder.getRoot().toPath().resolve("archive.index");
+    }
+
+    @Test
+    public void TestRoundTrip() throws Exception {
+        Map<Submission, PercentableTokenListDecorator> prepared = new HashMap<>();
+        prepared.put(a, tokenizer.generateFromSubmission(a));
+        prepared.put(b, tokenizer.generateFromSubmission(b));
+        ArchiveIndex.write(indexFile, new PreparedSubmissions<>(prepared), tokenizer, "linecompare",
+                Collections.emptyList());
+
+        assertTrue(ArchiveIndex.isIndex(indexFile));
+
+        ArchiveIndex index = ArchiveIndex.open(indexFile);
+        SubmissionPercentableCalculator<PercentableTokenListDecorator> calculator = index.wrap(tokenizer,
+                "linecompare", Collections.emptyList());
+
+        assertEquals(2, index.getSubmissions().size());
+        for(Submission indexed : index.getSubmissions()) {
+            Submission original = indexed.getName().equals("A") ? a : b;
+
+            assertEquals(original.getLinesOfCode(), indexed.getLinesOfCode());
+            assertEquals(prepared.get(original), calculator.generateFromSubmission(indexed));
+        }
+
+        // Submissions not in the index are still generated
+        Submission other = submissionFromString("C", "not indexed");
+        assertEquals(tokenizer.generateFromSubmission(other), calculator.generateFromSubmission(other));
+    }
+
+    @Test
+    public void TestRewriteReplacesIndex() throws Exception {
+        ArchiveIndex.write(indexFile,
+                new PreparedSubmissions<>(Collections.singletonMap(a, tokenizer.generateFromSubmission(a))),
+                tokenizer, "linecompare", Collections.emptyList());
+        ArchiveIndex.write(indexFile,
+                new PreparedSubmissions<>(Collections.singletonMap(b, tokenizer.generateFromSubmission(b))),
+                tokenizer, "linecompare", Collections.emptyList());
+
+        ArchiveIndex index = ArchiveIndex.open(indexFile);
+        Submission indexed = index.getSubmissions().iterator().next();
+
+        assertEquals(1, index.getSubmissions().size());
+        assertEquals("B", indexed.getName());
+        assertEquals(tokenizer.generateFromSubmission(b),
+                index.wrap(tokenizer, "linecompare", Collections.emptyList()).generateFromSubmission(indexed));
+
+        // No temporary file is left beside the index
+        try(Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(Collections.singletonList(indexFile), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void TestInvalidFlagIsKept() throws Exception {
+        SubmissionPercentableCalculator<FlatAST> parser = JavaParser.getInstance().getPercentableCalculator();
+        Submission invalid = submissionFromString("Bad", "public class {");
+        ArchiveIndex.write(indexFile,
+                new PreparedSubmissions<>(Collections.singletonMap(invalid, parser.generateFromSubmission(invalid))),
+                parser, "javaAST", Collections.emptyList());
+
+        Submission indexed = ArchiveIndex.open(indexFile).getSubmissions().iterator().next();
+
+        assertTrue(indexed.testFlag("invalid"));
+    }
+
+    @Test
+    public void TestOtherFilesAreNotIndexes() throws Exception {
+        Path file = folder.newFile("source.java").toPath();
+        Files.write(file, "class A {}".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(ArchiveIndex.isIndex(file));
+        assertFalse(ArchiveIndex.isIndex(folder.getRoot().toPath()));
+    }
+
+    @Test
+    public void TestMismatchedConfigurationIsRejected() throws Exception {
+        ArchiveIndex.write(indexFile,
+                new PreparedSubmissions<>(Collections.singletonMap(a, tokenizer.generateFromSubmission(a))),
+                tokenizer, "linecompare", Collections.emptyList());
+
+        expectedEx.expect(ChecksimsException.class);
+
+        ArchiveIndex.open(indexFile).wrap(tokenizer, "linecompare", Collections.singletonList("lowercase"));
+    }
+
+    @Test
+    public void TestFingerprintsCannotBeIndexed() {
+        assertFalse(ArchiveIndex.canIndex(new WinnowingFingerprinter(5, 4)));
+        assertTrue(ArchiveIndex.canIndex(tokenizer));
+    }
+
+    @Test
+    public void TestIndexReplacesArchiveInRun() throws Exception {
+        Submission c = submissionFromString("C", "first line\nanother line\nunrelated");
+        Submission d = submissionFromString("D", "second line\nthird line");
+
+        ChecksimsConfig base = new ChecksimsConfig()
+                .setAlgorithm(AlgorithmRegistry.getInstance().getImplementationInstance("linecompare"))
+                .setNumThreads(1);
+
+        ChecksimsRunner.buildArchiveIndex(new ChecksimsConfig(base).setSubmissions(setFromElements(a, b)),
+                indexFile);
+
+        ImmutableMap<String, String> fromDirectory = ChecksimsRunner.runChecksims(new ChecksimsConfig(base)
+                .setSubmissions(setFromElements(c, d))
+                .setArchiveSubmissions(setFromElements(a, b)));
+        ImmutableMap<String, String> fromIndex = ChecksimsRunner.runChecksims(new ChecksimsConfig(base)
+                .setSubmissions(setFromElements(c, d))
+                .setArchiveIndexes(Collections.singletonList(ArchiveIndex.open(indexFile))));
+
+        assertEquals(fromDirectory, fromIndex);
+        assertTrue(fromIndex.get("threshold").contains("between submissions \"D\" and \"A\""));
+    }
+}
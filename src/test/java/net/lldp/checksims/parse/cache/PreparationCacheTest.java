@@ -0,0 +1,186 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.cache;
+
+import net.lldp.checksims.algorithm.syntaxtree.java.JavaParser;
+import net.lldp.checksims.algorithm.winnowing.WinnowingFingerprinter;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.ast.FlatAST;
+import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
+import net.lldp.checksims.parse.token.SubmissionTokenizer;
+import net.lldp.checksims.parse.token.TokenType;
+import net.lldp.checksims.parse.token.tokenizer.Tokenizer;
+import net.lldp.checksims.submission.Submission;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the on-disk cache of prepared submissions
+ */
+public class PreparationCacheTest {
+    private SubmissionTokenizer tokenizer;
+    private Path directory;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        tokenizer = new SubmissionTokenizer(Tokenizer.getTokenizer(TokenType.WHITESPACE));
+        directory = folder.newFolder("cache").toPath();
+    }
+
+    @Test
+    public void TestTokensAreReadBackOnHit() throws Exception {
+        PercentableTokenListDecorator generated = wrapTokenizer(newCache()).generateFromSubmission(
+                submissionFromString("A", "hello world hello"));
+
+        PreparationCache cache = newCache();
+        PercentableTokenListDecorator cached = wrapTokenizer(cache).generateFromSubmission(
+                submissionFromString("B", "hello world hello"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(generated, cached);
+        assertEquals("hello world hello", cached.toString());
+    }
+
+    @Test
+    public void TestChangedContentMisses() throws Exception {
+        wrapTokenizer(newCache()).generateFromSubmission(submissionFromString("A", "hello world"));
+
+        PreparationCache cache = newCache();
+        wrapTokenizer(cache).generateFromSubmission(submissionFromString("A", "hello there"));
+
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void TestChangedConfigurationMisses() throws Exception {
+        Submission submission = submissionFromString("A", "hello world");
+        newCache().wrap(tokenizer, "smithwaterman", Collections.emptyList()).generateFromSubmission(submission);
+
+        PreparationCache cache = newCache();
+        cache.wrap(tokenizer, "smithwaterman", Collections.singletonList("lowercase"))
+                .generateFromSubmission(submission);
+
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void TestSyntaxTreeAndInvalidFlagAreReadBackOnHit() throws Exception {
+        SubmissionPercentableCalculator<FlatAST> parser = JavaParser.getInstance().getPercentableCalculator();
+        String content = "public class A { int f() { return 1; } }";
+        FlatAST generated = newCache().wrap(parser, "javaAST", Collections.emptyList())
+                .generateFromSubmission(submissionFromString("A", content));
+
+        PreparationCache cache = newCache();
+        FlatAST cached = cache.wrap(parser, "javaAST", Collections.emptyList())
+                .generateFromSubmission(submissionFromString("B", content));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(generated, cached);
+        assertEquals(generated.getRootHash(), cached.getRootHash());
+
+        Submission invalid = submissionFromString("C", "public class {");
+        newCache().wrap(parser, "javaAST", Collections.emptyList()).generateFromSubmission(invalid);
+        assertTrue(invalid.testFlag("invalid"));
+
+        Submission invalidAgain = submissionFromString("D", "public class {");
+        newCache().wrap(parser, "javaAST", Collections.emptyList()).generateFromSubmission(invalidAgain);
+        assertTrue(invalidAgain.testFlag("invalid"));
+    }
+
+    @Test
+    public void TestUnreadableEntryIsDiscarded() throws Exception {
+        Submission submission = submissionFromString("A", "hello world");
+        PreparationCache cache = newCache();
+        wrapTokenizer(cache).generateFromSubmission(submission);
+
+        Path entry = cache.entryPath(PreparationCache.keyFor(Arrays.asList("test", tokenizer.toString()),
+                "hello world"));
+        Files.write(entry, "garbage".getBytes(StandardCharsets.UTF_8));
+
+        PreparationCache reopened = newCache();
+        PercentableTokenListDecorator tokens = wrapTokenizer(reopened).generateFromSubmission(submission);
+
+        assertEquals(0, reopened.getHits());
+        assertEquals(1, reopened.getMisses());
+        assertEquals("hello world", tokens.toString());
+    }
+
+    @Test
+    public void TestEvictsLeastRecentlyUsed() throws Exception {
+        PreparationCache unbounded = newCache();
+        Path[] entries = new Path[3];
+        for(int i = 0; i < entries.length; i++) {
+            String content = "submission number " + i;
+            wrapTokenizer(unbounded).generateFromSubmission(submissionFromString("S" + i, content));
+
+            entries[i] = unbounded.entryPath(PreparationCache.keyFor(Arrays.asList("test", tokenizer.toString()),
+                    content));
+            Files.setLastModifiedTime(entries[i], FileTime.fromMillis(1000000L * (i + 1)));
+        }
+
+        long entrySize = Files.size(entries[0]);
+        PreparationCache bounded = new PreparationCache(directory, entrySize * 2);
+        bounded.evict();
+
+        assertEquals(1, bounded.getEvictions());
+        assertFalse(Files.exists(entries[0]));
+        assertTrue(Files.exists(entries[1]));
+        assertTrue(Files.exists(entries[2]));
+    }
+
+    @Test
+    public void TestUncacheableCalculatorIsNotWrapped() throws Exception {
+        WinnowingFingerprinter fingerprinter = new WinnowingFingerprinter(5, 4);
+
+        assertSame(fingerprinter, newCache().wrap(fingerprinter, "winnowing", Collections.emptyList()));
+    }
+
+    private PreparationCache newCache() throws Exception {
+        return new PreparationCache(directory, PreparationCache.DEFAULT_MAX_BYTES);
+    }
+
+    private SubmissionPercentableCalculator<PercentableTokenListDecorator> wrapTokenizer(PreparationCache cache) {
+        return cache.wrap(tokenizer, "test", Collections.emptyList());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.parse.token;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compares multi-threaded interning throughput of the LexemeMap against its previous, fully synchronized
+ * implementation.
+ *
+ * Not a unit test; run manually with the test classpath. Each thread interns a stream of tokens drawn mostly from a
+ * shared vocabulary, as tokenizers of similar submissions do.
+ *
+ * Arguments, all optional: maximum thread count, tokens interned per thread, vocabulary size.
+ */
+public final class LexemeMapBenchmark {
+    private LexemeMapBenchmark() {}
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * The LexemeMap before it was made concurrent, kept as a baseline.
+     */
+    private static final class SynchronizedLexemeMap {
+        private final BiMap<Object, Integer> lexemeMap = Maps.synchronizedBiMap(HashBiMap.create());
+        private int lexemeIndex = 0;
+
+        synchronized int getLexemeForToken(Object token) {
+            if(!lexemeMap.containsKey(token)) {
+                lexemeMap.put(token, lexemeIndex);
+                lexemeIndex++;
+            }
+
+            return lexemeMap.get(token);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int tokensPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        int vocabulary = args.length > 2 ? Integer.parseInt(args[2]) : 50000;
+
+        String[] tokens = new String[vocabulary];
+        for(int i = 0; i < vocabulary; i++) {
+            tokens[i] = "token" + i;
+        }
+
+        System.out.println("Interning " + tokensPerThread + " tokens per thread from a vocabulary of " + vocabulary);
+        System.out.println("threads\tsynchronized (Mtok/s)\tconcurrent (Mtok/s)");
+
+        for(int threads = 1; threads <= maxThreads; threads *= 2) {
+            double baseline = 0;
+            double concurrent = 0;
+
+            for(int round = 0; round < ROUNDS; round++) {
+                SynchronizedLexemeMap old = new SynchronizedLexemeMap();
+                baseline = Math.max(baseline, run(threads, tokensPerThread, tokens, old::getLexemeForToken));
+
+                LexemeMap.resetMappings();
+                concurrent = Math.max(concurrent, run(threads, tokensPerThread, tokens, LexemeMap::getLexemeForToken));
+            }
+
+            System.out.printf("%d\t%.1f\t%.1f%n", threads, baseline, concurrent);
+        }
+
+        LexemeMap.resetMappings();
+    }
+
+    /**
+     * @return Throughput, in millions of tokens per second across all threads
+     */
+    private static double run(int threads, int tokensPerThread, String[] tokens, ToIntFunction<Object> intern)
+            throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            int seed = t;
+            tasks.add(() -> {
+                int checksum = 0;
+                int index = seed;
+                for(int i = 0; i < tokensPerThread; i++) {
+                    // Cheap pseudo-random walk over the vocabulary, so threads do not proceed in lockstep
+                    index = (index * 1103515245 + 12345) & Integer.MAX_VALUE;
+                    checksum += intern.applyAsInt(tokens[index % tokens.length]);
+                }
+                return checksum;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            for(Future<Integer> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            return (double)threads * tokensPerThread / elapsed * 1000;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
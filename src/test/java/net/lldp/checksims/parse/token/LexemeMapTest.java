@@ -26,6 +26,14 @@ import net.lldp.checksims.parse.token.LexemeMap;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.*;
 
 /**
@@ -106,4 +114,93 @@ public class LexemeMapTest {
         assertEquals("hello", token1);
         assertEquals("hello", token2);
     }
+
+    @Test
+    public void TestManyTokensRoundTrip() {
+        int[] lexemes = new int[10000];
+        for(int i = 0; i < lexemes.length; i++) {
+            lexemes[i] = LexemeMap.getLexemeForToken("token" + i);
+        }
+
+        assertEquals(lexemes.length, LexemeMap.size());
+        for(int i = 0; i < lexemes.length; i++) {
+            assertEquals("token" + i, LexemeMap.getTokenForLexeme(lexemes[i]));
+        }
+    }
+
+    @Test
+    public void TestConcurrentInterningAgrees() throws Exception {
+        int numThreads = 8;
+        List<String> tokens = new ArrayList<>();
+        for(int i = 0; i < 5000; i++) {
+            tokens.add("token" + i);
+        }
+
+        List<Callable<int[]>> tasks = new ArrayList<>();
+        for(int i = 0; i < numThreads; i++) {
+            List<String> order = new ArrayList<>(tokens);
+            Collections.shuffle(order);
+            tasks.add(() -> {
+                order.forEach(LexemeMap::getLexemeForToken);
+                return tokens.stream().mapToInt(LexemeMap::getLexemeForToken).toArray();
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<int[]>> results = executor.invokeAll(tasks);
+            int[] expected = results.get(0).get();
+            for(Future<int[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+            for(int i = 0; i < expected.length; i++) {
+                assertEquals(tokens.get(i), LexemeMap.getTokenForLexeme(expected[i]));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(tokens.size(), LexemeMap.size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void TestUnmappedLexemeThrows() {
+        LexemeMap.getTokenForLexeme(LexemeMap.getLexemeForToken("hello") + 1);
+    }
+
+    @Test
+    public void TestClosingLastScopeReleasesMappings() {
+        LexemeMap.Scope scope = LexemeMap.openScope();
+        int lexeme = LexemeMap.getLexemeForToken("hello");
+        int generation = LexemeMap.getGeneration();
+        scope.close();
+
+        assertNotEquals(generation, LexemeMap.getGeneration());
+        assertEquals(0, LexemeMap.size());
+        assertNotEquals(lexeme, LexemeMap.getLexemeForToken("hello"));
+
+        try {
+            LexemeMap.getTokenForLexeme(lexeme);
+            fail("Lexeme from released mappings was still mapped");
+        } catch(RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void TestOpenScopeKeepsMappings() {
+        LexemeMap.Scope outer = LexemeMap.openScope();
+        LexemeMap.Scope inner = LexemeMap.openScope();
+        int lexeme = LexemeMap.getLexemeForToken("hello");
+
+        inner.close();
+        inner.close();
+
+        assertEquals("hello", LexemeMap.getTokenForLexeme(lexeme));
+        assertEquals(lexeme, LexemeMap.getLexemeForToken("hello"));
+
+        outer.close();
+
+        assertEquals(0, LexemeMap.size());
+    }
 }
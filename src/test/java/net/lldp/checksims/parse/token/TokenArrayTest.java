@@ -0,0 +1,129 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.parse.token;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static net.lldp.checksims.testutil.TokenUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the TokenArray class
+ */
+public class TokenArrayTest {
+    private TokenList empty;
+    private TokenList abc;
+    private TokenList aInvalid;
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        empty = new TokenList(TokenType.CHARACTER);
+        abc = makeTokenListCharacter('a', 'b', 'c');
+        aInvalid = makeTokenListCharacter(new ConcreteToken('a', TokenType.CHARACTER, false), makeCharToken('b'));
+    }
+
+    @Test
+    public void TestFromTokenListNullThrowsException() {
+        expectedEx.expect(NullPointerException.class);
+
+        TokenArray.fromTokenList(null);
+    }
+
+    @Test
+    public void TestFromEmptyTokenList() {
+        TokenArray array = TokenArray.fromTokenList(empty);
+
+        assertEquals(0, array.size());
+        assertEquals(0, array.numValid());
+        assertEquals(empty, array.toTokenList());
+    }
+
+    @Test
+    public void TestFromTokenListPreservesContents() {
+        TokenArray array = TokenArray.fromTokenList(abc);
+
+        assertEquals(3, array.size());
+        assertEquals(TokenType.CHARACTER, array.getType());
+        assertEquals(abc.get(1).getLexeme(), array.getLexeme(1));
+        assertEquals(abc, array.toTokenList());
+    }
+
+    @Test
+    public void TestFromTokenListPreservesValidity() {
+        TokenArray array = TokenArray.fromTokenList(aInvalid);
+
+        assertFalse(array.isValid(0));
+        assertTrue(array.isValid(1));
+        assertEquals(1, array.numValid());
+        assertEquals(aInvalid, array.toTokenList());
+    }
+
+    @Test
+    public void TestCopyHasIndependentValidity() {
+        TokenArray array = TokenArray.fromTokenList(abc);
+        TokenArray copy = array.copy();
+
+        assertEquals(array, copy);
+
+        copy.setValid(0, false);
+
+        assertTrue(array.isValid(0));
+        assertFalse(copy.isValid(0));
+        assertNotEquals(array, copy);
+    }
+
+    @Test
+    public void TestInvalidateAll() {
+        TokenArray array = TokenArray.fromTokenList(abc);
+
+        array.invalidateAll();
+
+        assertEquals(0, array.numValid());
+    }
+
+    @Test
+    public void TestSetValidOutOfBoundsThrowsException() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        TokenArray.fromTokenList(abc).setValid(3, false);
+    }
+
+    @Test
+    public void TestBuilderProducesValidTokens() {
+        TokenArray.Builder builder = new TokenArray.Builder(TokenType.WHITESPACE, 1);
+        for(int i = 0; i < 100; i++) {
+            builder.add(i % 7);
+        }
+        TokenArray built = builder.build();
+
+        assertEquals(100, built.size());
+        assertEquals(100, built.numValid());
+        assertEquals(TokenType.WHITESPACE, built.getType());
+        assertEquals(3, built.getLexeme(10));
+    }
+}
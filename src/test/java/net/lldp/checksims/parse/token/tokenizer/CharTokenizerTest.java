@@ -21,6 +21,7 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.tokenizer.CharTokenizer;
 import net.lldp.checksims.testutil.TokenUtils;
@@ -84,4 +85,15 @@ public class CharTokenizerTest {
         assertNotNull(results);
         assertEquals(results, expected);
     }
+
+    @Test
+    public void TestTokenizeMatchesCharacters() {
+        String input = "aba\u00e9\u4e2d\u00e9";
+        TokenArray tokens = c.tokenize(input);
+
+        assertEquals(TokenArray.fromTokenList(TokenUtils.makeTokenListCharacter('a', 'b', 'a', '\u00e9', '\u4e2d',
+                '\u00e9')), tokens);
+        assertEquals(tokens.getLexeme(0), tokens.getLexeme(2));
+        assertEquals(tokens.getLexeme(3), tokens.getLexeme(5));
+    }
 }
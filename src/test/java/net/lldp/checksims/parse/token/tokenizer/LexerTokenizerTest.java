@@ -0,0 +1,93 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.parse.token.tokenizer;
+
+import net.lldp.checksims.parse.token.TokenArray;
+import net.lldp.checksims.parse.token.TokenList;
+import net.lldp.checksims.parse.token.TokenType;
+
+import org.junit.Test;
+
+import static net.lldp.checksims.testutil.TokenUtils.makeTokenListWhitespace;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for tokenizing with the lexers of programming languages
+ */
+public class LexerTokenizerTest {
+    @Test
+    public void TestEmptyReturnsEmpty() {
+        for(TokenType type : new TokenType[] { TokenType.JAVA, TokenType.C, TokenType.CPP, TokenType.PYTHON }) {
+            TokenArray tokens = Tokenizer.getTokenizer(type).tokenize("");
+
+            assertEquals(0, tokens.size());
+            assertEquals(type, tokens.getType());
+        }
+    }
+
+    @Test
+    public void TestJavaKeepsKeywordsAndNormalizesNames() {
+        TokenList tokens = LexerTokenizer.getInstance(TokenType.JAVA).splitString("int count = 42; // comment\n");
+
+        assertEquals("int <identifier> = <literal> ;", tokens.join(false));
+    }
+
+    @Test
+    public void TestJavaRenamingDoesNotChangeTokens() {
+        Tokenizer java = Tokenizer.getTokenizer(TokenType.JAVA);
+
+        TokenArray original = java.tokenize("class A { int total(int x) { return x + 1; } }");
+        TokenArray renamed = java.tokenize("class Bb {\n  int sum(int value) {\n    /* add */ return value + 7;\n  }\n}");
+
+        assertEquals(original, renamed);
+    }
+
+    @Test
+    public void TestSyntaxErrorsAreTokenized() {
+        TokenArray tokens = Tokenizer.getTokenizer(TokenType.JAVA).tokenize("int # x = ) \"unterminated");
+
+        assertTrue(tokens.size() > 0);
+    }
+
+    @Test
+    public void TestCAndCPPNormalizeLiterals() {
+        assertEquals("return <literal> ;",
+                LexerTokenizer.getInstance(TokenType.C).splitString("return 'a';").join(false));
+        assertEquals("<identifier> :: <identifier> << <literal> ;",
+                LexerTokenizer.getInstance(TokenType.CPP).splitString("std::cout << \"hi\";").join(false));
+    }
+
+    @Test
+    public void TestPythonKeepsStructure() {
+        TokenList tokens = LexerTokenizer.getInstance(TokenType.PYTHON).splitString("if x:\n    y = 'a'\n");
+
+        assertTrue(tokens.join(false).startsWith("if <identifier> : NEWLINE INDENT <identifier> = <literal>"));
+    }
+
+    @Test
+    public void TestNotComparableWithWhitespaceTokens() {
+        TokenList java = LexerTokenizer.getInstance(TokenType.JAVA).splitString("int");
+
+        assertNotEquals(makeTokenListWhitespace("int"), java);
+    }
+}
@@ -21,6 +21,7 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.tokenizer.LineTokenizer;
 import net.lldp.checksims.testutil.TokenUtils;
@@ -102,4 +103,29 @@ public class LineTokenizerTest {
         assertNotNull(results);
         assertNotNull(expected);
     }
+
+    @Test
+    public void TestTokenizeMatchesSplitOnNewline() {
+        String[] inputs = { "\n", "\n\n\n", "\nhello", "hello\n\n\nworld\n\n", "a\r\nb" };
+
+        for(String input : inputs) {
+            TokenList expected = TokenUtils.makeTokenListLine(input.split("\n"));
+
+            assertEquals(TokenArray.fromTokenList(expected), l.tokenize(input));
+        }
+    }
+
+    @Test
+    public void TestTokenizeManyDistinctLines() {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < 2000; i++) {
+            builder.append("line ").append(i % 1000).append('\n');
+        }
+
+        TokenArray tokens = l.tokenize(builder);
+
+        assertEquals(2000, tokens.size());
+        assertEquals(tokens.getLexeme(5), tokens.getLexeme(1005));
+        assertEquals(TokenArray.fromTokenList(l.splitString(builder.toString())), tokens);
+    }
 }
@@ -21,12 +21,15 @@
 
 package net.lldp.checksims.parse.token.tokenizer;
 
+import net.lldp.checksims.parse.token.TokenArray;
 import net.lldp.checksims.parse.token.TokenList;
 import net.lldp.checksims.parse.token.tokenizer.WhitespaceTokenizer;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static net.lldp.checksims.testutil.TokenUtils.makeTokenListWhitespace;
 import static org.junit.Assert.*;
 
@@ -84,4 +87,25 @@ public class WhitespaceTokenizerTest {
         assertNotNull(tokens);
         assertEquals(tokens, expected);
     }
+
+    @Test
+    public void testTokenizeMatchesRegexSplit() {
+        String[] inputs = { "", "   ", "hello", " hello  world ", "a\u000Bb\fc\r\nd", "x\u00A0y z x" };
+
+        for(String input : inputs) {
+            TokenList expected = makeTokenListWhitespace(Arrays.stream(input.split("\\s+"))
+                    .filter((str) -> !str.isEmpty()).toArray(String[]::new));
+
+            assertEquals(TokenArray.fromTokenList(expected), s.tokenize(input));
+        }
+    }
+
+    @Test
+    public void testTokenizeRepeatedWordsShareLexeme() {
+        TokenArray tokens = s.tokenize("int x = int y");
+
+        assertEquals(5, tokens.size());
+        assertEquals(tokens.getLexeme(0), tokens.getLexeme(3));
+        assertNotEquals(tokens.getLexeme(1), tokens.getLexeme(4));
+    }
 }
@@ -22,6 +22,9 @@
 package net.lldp.checksims.submission;
 
 import net.lldp.checksims.testutil.SubmissionUtils;
+import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
+import net.lldp.checksims.util.threading.SchedulingStrategy;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -234,4 +237,36 @@ public class SubmissionGenerationTest {
 
         SubmissionUtils.checkSubmissionCollections(expected, submissionList);
     }
+
+    @Test
+    public void TestGenerateListOfSubmissionFromDirInParallel() throws Exception {
+        Set<Submission> expected = Submission.submissionListFromDir(new File(basePath), "*.txt", true);
+
+        try(ExecutionContext context = new ExecutionContext(1, 2, SchedulingStrategy.FIFO)) {
+            Set<Submission> submissionList = Submission.submissionListFromDir(new File(basePath), "*.txt", true,
+                    context, new DefaultLoggerStatusLogger());
+
+            SubmissionUtils.checkSubmissionCollections(expected, submissionList);
+        }
+    }
+
+    @Test
+    public void TestGenerateLazyListOfSubmissionFromDir() throws Exception {
+        Set<Submission> expected = Submission.submissionListFromDir(new File(basePath), "*.txt", true);
+
+        try(ExecutionContext context = new ExecutionContext(1, 2, SchedulingStrategy.FIFO)) {
+            Set<Submission> submissionList = Submission.submissionListFromDir(new File(basePath), "*.txt", true,
+                    true, context, new DefaultLoggerStatusLogger());
+
+            SubmissionUtils.checkSubmissionCollections(expected, submissionList);
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void TestGenerateListOfSubmissionInParallelFromNonexistantFile() throws Exception {
+        try(ExecutionContext context = new ExecutionContext()) {
+            Submission.submissionListFromDir(new File("does_not_exist"), "*.txt", false, context,
+                    new DefaultLoggerStatusLogger());
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.submission;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for reading submissions through NIO
+ */
+public class SubmissionLoaderTest {
+    private SubmissionLoader loader;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        loader = new SubmissionLoader("*.txt", true);
+    }
+
+    @Test
+    public void TestReadsSmallFile() throws Exception {
+        Path file = write("small.txt", "hello \u00e9\u4e2d".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("hello \u00e9\u4e2d", loader.readFile(file).toString());
+        assertEquals(Files.size(file), loader.getBytesRead());
+        assertEquals(1, loader.getFilesRead());
+    }
+
+    @Test
+    public void TestReadsMappedFile() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        while(builder.length() < SubmissionLoader.MAP_THRESHOLD) {
+            builder.append("line \u00e9\u4e2d ").append(builder.length()).append('\n');
+        }
+        Path file = write("large.txt", builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(builder.toString(), loader.readFile(file).toString());
+        assertEquals(Files.size(file), loader.getBytesRead());
+    }
+
+    @Test
+    public void TestMalformedInputIsReplaced() throws Exception {
+        Path file = write("bad.txt", new byte[] { 'a', (byte)0xC3, 'b' });
+
+        assertEquals("a\uFFFDb", loader.readFile(file).toString());
+    }
+
+    @Test
+    public void TestLoadFilesOrdersByNameAndTerminatesLines() throws Exception {
+        Path b = write("b.txt", "second".getBytes(StandardCharsets.UTF_8));
+        Path a = write("a.txt", "first\n".getBytes(StandardCharsets.UTF_8));
+
+        Submission submission = loader.loadFiles("test", Arrays.asList(b, a));
+
+        assertEquals("first\nsecond\n", submission.getContentAsString());
+        assertEquals("test", submission.getName());
+    }
+
+    @Test
+    public void TestLoadDirectoryWalksRecursively() throws Exception {
+        File student = folder.newFolder("student", "nested");
+        Files.write(student.toPath().resolve("inner.txt"), "inner".getBytes(StandardCharsets.UTF_8));
+        Files.write(student.toPath().resolve("ignored.c"), "ignored".getBytes(StandardCharsets.UTF_8));
+        Files.write(student.toPath().getParent().resolve("outer.txt"), "outer".getBytes(StandardCharsets.UTF_8));
+
+        Submission submission = loader.loadDirectory(student.toPath().getParent());
+
+        assertEquals("student", submission.getName());
+        assertEquals("inner\nouter\n", submission.getContentAsString());
+        assertEquals(0, new SubmissionLoader("*.txt", false).findMatchingFiles(student.toPath().getParent())
+                .stream().filter((p) -> p.getFileName().toString().equals("inner.txt")).count());
+    }
+
+    @Test
+    public void TestLazySubmissionReadsOnDemand() throws Exception {
+        Path file = write("lazy.txt", "hello".getBytes(StandardCharsets.UTF_8));
+        SubmissionLoader lazy = new SubmissionLoader("*.txt", false, true);
+
+        Submission submission = lazy.loadFiles("lazy", Arrays.asList(file));
+
+        assertEquals(0, lazy.getFilesRead());
+        assertFalse(submission.isEmpty());
+        assertEquals("hello\n", submission.getContentAsString());
+        assertEquals(1, lazy.getFilesRead());
+
+        // Content is kept until released
+        submission.getContentAsString();
+        assertEquals(1, lazy.getFilesRead());
+    }
+
+    @Test
+    public void TestLazySubmissionRereadsAfterRelease() throws Exception {
+        Path file = write("lazy.txt", "before".getBytes(StandardCharsets.UTF_8));
+        Submission submission = new SubmissionLoader("*.txt", false, true).loadFiles("lazy", Arrays.asList(file));
+
+        assertEquals("before\n", submission.getContentAsString());
+
+        submission.releaseContent();
+        write("lazy.txt", "after".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("after\n", submission.getContentAsString());
+    }
+
+    @Test
+    public void TestLazySubmissionEquality() throws Exception {
+        Path file = write("lazy.txt", "content".getBytes(StandardCharsets.UTF_8));
+        SubmissionLoader lazy = new SubmissionLoader("*.txt", false, true);
+
+        Submission first = lazy.loadFiles("lazy", Arrays.asList(file));
+        Submission second = lazy.loadFiles("lazy", Arrays.asList(file));
+
+        assertEquals(first, second);
+        assertEquals(0, lazy.getFilesRead());
+        assertEquals(loader.loadFiles("lazy", Arrays.asList(file)), first);
+    }
+
+    @Test
+    public void TestEagerSubmissionKeepsContentOnRelease() throws Exception {
+        Path file = write("eager.txt", "content".getBytes(StandardCharsets.UTF_8));
+        Submission submission = loader.loadFiles("eager", Arrays.asList(file));
+
+        submission.releaseContent();
+        Files.delete(file);
+
+        assertEquals("content\n", submission.getContentAsString());
+    }
+
+    @Test
+    public void TestLazyEmptySubmission() throws Exception {
+        Path file = write("empty.txt", new byte[0]);
+
+        assertTrue(new SubmissionLoader("*.txt", false, true).loadFiles("empty", Arrays.asList(file)).isEmpty());
+    }
+
+    private Path write(String name, byte[] content) throws Exception {
+        return Files.write(folder.getRoot().toPath().resolve(name), content);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.submission;
+
+import com.google.common.io.ByteStreams;
+
+import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
+import net.lldp.checksims.util.threading.ExecutionContext;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for streaming submissions out of turnin archives
+ */
+public class TurninArchiveTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void TestZipTurninWithNestedZip() throws Exception {
+        Map<String, String> nested = new LinkedHashMap<>();
+        nested.put("x.txt", "x");
+        nested.put("y.c", "y");
+        nested.put("deep/z.txt", "z");
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("students/alice/b.txt", bytes("b"));
+        entries.put("students/alice/sub/a.txt", bytes("a"));
+        entries.put("students/bob/hw.zip", zip(toBytes(nested)));
+        entries.put("groups/team/g.txt", bytes("g"));
+        entries.put("other/ignored.txt", bytes("ignored"));
+        File archive = write("turnin.zip", zip(entries));
+
+        Map<String, String> flat = load(archive, false);
+        assertEquals(3, flat.size());
+        assertEquals("b\n", flat.get("alice"));
+        assertEquals("x\n", flat.get("bob"));
+        assertEquals("g\n", flat.get("team"));
+
+        Map<String, String> recursive = load(archive, true);
+        assertEquals("a\nb\n", recursive.get("alice"));
+        assertEquals("x\nz\n", recursive.get("bob"));
+    }
+
+    @Test
+    public void TestGzippedTarTurninWithNestedTar() throws Exception {
+        String longDirectory = "students/carol/" + repeat("d", 120);
+
+        Map<String, byte[]> nested = new LinkedHashMap<>();
+        nested.put("./inner.txt", bytes("inner"));
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("./students/carol/outer.txt", bytes("outer"));
+        entries.put(longDirectory + "/long.txt", bytes("long"));
+        entries.put("students/carol/lab.tar", tar(nested));
+        File archive = write("turnin.tar.gz", gzip(tar(entries)));
+
+        assertEquals("inner\nouter\n", load(archive, false).get("carol"));
+        assertEquals("inner\nlong\nouter\n", load(archive, true).get("carol"));
+    }
+
+    @Test
+    public void TestFileOutsideSubmissionDirectoryIsRejected() throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        entries.put("students/stray.txt", bytes("stray"));
+        File archive = write("turnin.tar", tar(entries));
+
+        try {
+            load(archive, true);
+            fail("Expected a stray file to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("students/stray.txt"));
+        }
+    }
+
+    @Test
+    public void TestTarReaderRejectsCorruptHeader() throws Exception {
+        byte[] data = tar(toBytes(Collections.singletonMap("a.txt", "a")));
+        data[0] ^= 1;
+
+        try {
+            new TarReader(new ByteArrayInputStream(data)).forEachFile((path, content) -> fail());
+            fail("Expected a corrupt header to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+    }
+
+    @Test
+    public void TestTarReaderSkipsUnreadContent() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("first.bin", new byte[700]);
+        entries.put("second.txt", bytes("second"));
+
+        Map<String, byte[]> read = new LinkedHashMap<>();
+        new TarReader(new ByteArrayInputStream(tar(entries))).forEachFile((path, content) -> {
+            if(path.endsWith(".txt")) {
+                read.put(path, ByteStreams.toByteArray(content));
+            }
+        });
+
+        assertEquals(1, read.size());
+        assertArrayEquals(bytes("second"), read.get("second.txt"));
+    }
+
+    @Test
+    public void TestIsArchive() {
+        assertTrue(TurninArchive.isArchive("a.zip"));
+        assertTrue(TurninArchive.isArchive("a.TAR"));
+        assertTrue(TurninArchive.isArchive("a.tar.gz"));
+        assertTrue(TurninArchive.isArchive("a.tgz"));
+        assertFalse(TurninArchive.isArchive("a.gz"));
+        assertFalse(TurninArchive.isArchive("a.java"));
+    }
+
+    private Map<String, String> load(File archive, boolean recursive) throws Exception {
+        try(ExecutionContext context = new ExecutionContext()) {
+            Set<Submission> submissions = Submission.submissionListFromArchive(archive, "*.txt", recursive, context,
+                    new DefaultLoggerStatusLogger());
+
+            Map<String, String> contents = new HashMap<>();
+            for(Submission s : submissions) {
+                contents.put(s.getName(), s.getContentAsString());
+            }
+            return contents;
+        }
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(String s, int times) {
+        char[] chars = new char[times];
+        Arrays.fill(chars, s.charAt(0));
+        return new String(chars);
+    }
+
+    private static Map<String, byte[]> toBytes(Map<String, String> files) {
+        Map<String, byte[]> converted = new LinkedHashMap<>();
+        files.forEach((name, content) -> converted.put(name, bytes(content)));
+        return converted;
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(ZipOutputStream zip = new ZipOutputStream(out)) {
+            for(Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a ustar archive, splitting names longer than 100 characters into the prefix field.
+     */
+    private static byte[] tar(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for(Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            String name = entry.getKey();
+            String prefix = "";
+            if(name.length() > 100) {
+                int split = name.lastIndexOf('/');
+                prefix = name.substring(0, split);
+                name = name.substring(split + 1);
+            }
+
+            byte[] header = new byte[512];
+            put(header, 0, name);
+            put(header, 100, "0000644");
+            put(header, 108, "0000000");
+            put(header, 116, "0000000");
+            put(header, 124, String.format("%011o", entry.getValue().length));
+            put(header, 136, "00000000000");
+            Arrays.fill(header, 148, 156, (byte)' ');
+            header[156] = '0';
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            put(header, 345, prefix);
+
+            int checksum = 0;
+            for(byte b : header) {
+                checksum += b & 0xFF;
+            }
+            put(header, 148, String.format("%06o", checksum));
+            header[154] = 0;
+
+            out.write(header);
+            out.write(entry.getValue());
+            out.write(new byte[(512 - entry.getValue().length % 512) % 512]);
+        }
+
+        out.write(new byte[1024]);
+        return out.toByteArray();
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(data, 0, header, offset, data.length);
+    }
+}
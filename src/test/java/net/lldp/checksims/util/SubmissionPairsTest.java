@@ -0,0 +1,135 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+
+package net.lldp.checksims.util;
+
+import net.lldp.checksims.submission.Submission;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for lazy enumeration of submission pairs
+ */
+public class SubmissionPairsTest {
+    private Submission a;
+    private Submission b;
+    private Submission c;
+    private Submission d;
+    private Submission e;
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        a = submissionFromString("A", "");
+        b = submissionFromString("B", "");
+        c = submissionFromString("C", "");
+        d = submissionFromString("D", "");
+        e = submissionFromString("E", "");
+    }
+
+    private static void checkMatchesGenerator(Set<Submission> submissions, Set<Submission> archive) {
+        SubmissionPairs pairs = new SubmissionPairs(submissions, archive);
+        List<Pair<Submission, Submission>> iterated = new ArrayList<>(pairs);
+
+        // No duplicates, and exactly the pairs the eager generator produces
+        assertEquals(pairs.size(), iterated.size());
+        assertEquals(iterated.size(), new HashSet<>(iterated).size());
+        assertEquals(PairGenerator.generatePairsWithArchive(submissions, archive), new HashSet<>(iterated));
+    }
+
+    @Test
+    public void TestNullSubmissionsThrowsException() {
+        expectedEx.expect(NullPointerException.class);
+
+        new SubmissionPairs(null, new HashSet<>());
+    }
+
+    @Test
+    public void TestOneSubmissionThrowsException() {
+        expectedEx.expect(IllegalArgumentException.class);
+
+        new SubmissionPairs(setFromElements(a), new HashSet<>());
+    }
+
+    @Test
+    public void TestTwoSubmissions() {
+        SubmissionPairs pairs = new SubmissionPairs(setFromElements(a, b), new HashSet<>());
+
+        assertEquals(1, pairs.size());
+        checkMatchesGenerator(setFromElements(a, b), new HashSet<>());
+    }
+
+    @Test
+    public void TestFiveSubmissions() {
+        SubmissionPairs pairs = new SubmissionPairs(setFromElements(a, b, c, d, e), new HashSet<>());
+
+        assertEquals(10, pairs.size());
+        checkMatchesGenerator(setFromElements(a, b, c, d, e), new HashSet<>());
+    }
+
+    @Test
+    public void TestWithArchive() {
+        SubmissionPairs pairs = new SubmissionPairs(setFromElements(a, b, c), setFromElements(d, e));
+
+        assertEquals(9, pairs.size());
+        checkMatchesGenerator(setFromElements(a, b, c), setFromElements(d, e));
+    }
+
+    @Test
+    public void TestIteratorIsRepeatable() {
+        SubmissionPairs pairs = new SubmissionPairs(setFromElements(a, b, c), setFromElements(d));
+
+        assertEquals(new ArrayList<>(pairs), new ArrayList<>(pairs));
+    }
+
+    @Test
+    public void TestIteratorThrowsWhenExhausted() {
+        Iterator<Pair<Submission, Submission>> iterator = new SubmissionPairs(setFromElements(a, b),
+                setFromElements(c)).iterator();
+
+        for(int i = 0; i < 3; i++) {
+            iterator.next();
+        }
+
+        assertFalse(iterator.hasNext());
+
+        expectedEx.expect(NoSuchElementException.class);
+
+        iterator.next();
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License (the "License").
+ * You may not use this file except in compliance with the License.
+ *
+ * See LICENSE.txt included in this distribution for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at LICENSE.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information: Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ * Copyright (c) 2014-2015 Nicholas DeMarinis, Matthew Heon, and Dolan Murvihill
+ */
+
+package net.lldp.checksims.util.threading;
+
+import net.lldp.checksims.ChecksimsException;
+import net.lldp.checksims.algorithm.AlgorithmResults;
+import net.lldp.checksims.algorithm.InternalAlgorithmError;
+import net.lldp.checksims.algorithm.SimilarityDetector;
+import net.lldp.checksims.algorithm.linesimilarity.LineSimilarityChecker;
+import net.lldp.checksims.algorithm.smithwaterman.SmithWaterman;
+import net.lldp.checksims.parse.PreparedSubmissions;
+import net.lldp.checksims.parse.SubmissionPercentableCalculator;
+import net.lldp.checksims.parse.token.PercentableTokenListDecorator;
+import net.lldp.checksims.submission.Submission;
+import net.lldp.checksims.util.completion.DefaultLoggerStatusLogger;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.lldp.checksims.testutil.SubmissionUtils.setFromElements;
+import static net.lldp.checksims.testutil.SubmissionUtils.submissionFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for scheduling of similarity detection in ParallelAlgorithm
+ */
+public class ParallelAlgorithmTest {
+    private Submission small;
+    private Submission medium;
+    private Submission large;
+    private PreparedSubmissions<PercentableTokenListDecorator> prepared;
+
+    @Rule
+    public ExpectedException expectedEx = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        small = submissionFromString("Small", "a b");
+        medium = submissionFromString("Medium", "a b c d");
+        large = submissionFromString("Large", "a b c d e f g h");
+
+        prepared = prepare(SmithWaterman.getInstance(), small, medium, large);
+    }
+
+    private static PreparedSubmissions<PercentableTokenListDecorator> prepare(
+            SmithWaterman algorithm, Submission... submissions) {
+        Map<Submission, PercentableTokenListDecorator> mapping = new HashMap<>();
+        for(Submission s : submissions) {
+            mapping.put(s, algorithm.getPercentableCalculator().generateFromSubmission(s));
+        }
+
+        return new PreparedSubmissions<>(mapping);
+    }
+
+    private static <T> List<T> drain(Iterator<T> iterator) {
+        List<T> drained = new ArrayList<>();
+        iterator.forEachRemaining(drained::add);
+        return drained;
+    }
+
+    @Test
+    public void TestLargestFirstOrdersByDescendingCost() throws InternalAlgorithmError {
+        Set<Pair<Submission, Submission>> pairs = setFromElements(Pair.of(small, medium), Pair.of(small, large),
+                Pair.of(medium, large));
+
+        List<Pair<Submission, Submission>> ordered = drain(ParallelAlgorithm.largestFirst(SmithWaterman.getInstance(),
+                pairs, prepared));
+
+        assertEquals(Arrays.asList(Pair.of(medium, large), Pair.of(small, large), Pair.of(small, medium)), ordered);
+    }
+
+    @Test
+    public void TestLargestFirstKeepsPairOrientation() throws InternalAlgorithmError {
+        Set<Pair<Submission, Submission>> pairs = setFromElements(Pair.of(large, small), Pair.of(medium, small));
+
+        List<Pair<Submission, Submission>> ordered = drain(ParallelAlgorithm.largestFirst(
+                LineSimilarityChecker.getInstance(), pairs, prepared));
+
+        assertEquals(Arrays.asList(Pair.of(large, small), Pair.of(medium, small)), ordered);
+    }
+
+    @Test
+    public void TestLargestFirstEmpty() throws InternalAlgorithmError {
+        assertFalse(ParallelAlgorithm.largestFirst(SmithWaterman.getInstance(), new HashSet<>(), prepared).hasNext());
+    }
+
+    @Test
+    public void TestLargestFirstUnpreparedSubmission() throws InternalAlgorithmError {
+        expectedEx.expect(InternalAlgorithmError.class);
+
+        Submission unprepared = submissionFromString("Unprepared", "z");
+
+        ParallelAlgorithm.largestFirst(SmithWaterman.getInstance(), setFromElements(Pair.of(small, unprepared)),
+                prepared);
+    }
+
+    @Test
+    public void TestLargestFirstDetectionCoversAllPairs() throws ChecksimsException {
+        Set<Pair<Submission, Submission>> pairs = setFromElements(Pair.of(small, medium), Pair.of(small, large),
+                Pair.of(medium, large));
+
+        try(ExecutionContext context = new ExecutionContext(2, SchedulingStrategy.LARGEST_FIRST)) {
+            Set<AlgorithmResults> results = ParallelAlgorithm.parallelSimilarityDetection(context,
+                    SmithWaterman.getInstance(), pairs, prepared, new DefaultLoggerStatusLogger());
+
+            assertEquals(pairs.size(), results.size());
+        }
+    }
+
+    @Test
+    public void TestCancelAbandonsRunningDetection() throws ChecksimsException {
+        expectedEx.expect(ChecksimsException.class);
+        expectedEx.expectMessage("cancelled");
+
+        SimilarityDetector<PercentableTokenListDecorator> neverFinishes = new SimilarityDetector<PercentableTokenListDecorator>() {
+            @Override
+            public String getName() {
+                return "neverfinishes";
+            }
+
+            @Override
+            public SubmissionPercentableCalculator<PercentableTokenListDecorator> getPercentableCalculator() {
+                return SmithWaterman.getInstance().getPercentableCalculator();
+            }
+
+            @Override
+            public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab,
+                    PercentableTokenListDecorator rft, PercentableTokenListDecorator comt)
+                    throws InternalAlgorithmError {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch(InterruptedException e) {
+                    throw new InternalAlgorithmError("Interrupted");
+                }
+                return new AlgorithmResults(ab, rft, comt);
+            }
+        };
+
+        // More pairs than threads, so some are still queued when the run is cancelled
+        Set<Pair<Submission, Submission>> pairs = setFromElements(Pair.of(small, medium), Pair.of(small, large),
+                Pair.of(medium, large));
+
+        try(ExecutionContext context = new ExecutionContext(1, SchedulingStrategy.FIFO)) {
+            Thread canceller = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch(InterruptedException e) {
+                    return;
+                }
+                context.cancel();
+            });
+            canceller.start();
+
+            ParallelAlgorithm.parallelSimilarityDetection(context, neverFinishes, pairs, prepared,
+                    new DefaultLoggerStatusLogger());
+        }
+    }
+
+    @Test
+    public void TestSinkFailureCancelsOutstandingTasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        // The first pair completes once another is running; every other pair runs until interrupted
+        SimilarityDetector<PercentableTokenListDecorator> blocking = new SimilarityDetector<PercentableTokenListDecorator>() {
+            @Override
+            public String getName() {
+                return "blocking";
+            }
+
+            @Override
+            public SubmissionPercentableCalculator<PercentableTokenListDecorator> getPercentableCalculator() {
+                return SmithWaterman.getInstance().getPercentableCalculator();
+            }
+
+            @Override
+            public AlgorithmResults detectSimilarity(Pair<Submission, Submission> ab,
+                    PercentableTokenListDecorator rft, PercentableTokenListDecorator comt)
+                    throws InternalAlgorithmError {
+                try {
+                    if(calls.getAndIncrement() == 0) {
+                        started.await();
+                    } else {
+                        started.countDown();
+                        Thread.sleep(Long.MAX_VALUE);
+                    }
+                } catch(InterruptedException e) {
+                    interrupted.countDown();
+                    throw new InternalAlgorithmError("Interrupted");
+                }
+                return new AlgorithmResults(ab, rft, comt);
+            }
+        };
+
+        Set<Pair<Submission, Submission>> pairs = setFromElements(Pair.of(small, medium), Pair.of(small, large),
+                Pair.of(medium, large));
+
+        try(ExecutionContext context = new ExecutionContext(2, SchedulingStrategy.FIFO)) {
+            try {
+                ParallelAlgorithm.parallelSimilarityDetection(context, blocking, pairs, prepared,
+                        new DefaultLoggerStatusLogger(), (results) -> {
+                            throw new IllegalStateException("Sink failed");
+                        });
+                fail("Sink failure was not propagated");
+            } catch(IllegalStateException e) {
+                assertEquals("Sink failed", e.getMessage());
+            }
+
+            // Checked before the context is closed, which would interrupt its threads regardless
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void TestBlockingTasksOverlap() throws ChecksimsException {
+        // Every task waits for all the others to start, so they only complete if they all run at once
+        int numTasks = 8;
+        CountDownLatch started = new CountDownLatch(numTasks);
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for(int i = 0; i < numTasks; i++) {
+            int task = i;
+            tasks.add(() -> {
+                started.countDown();
+                if(!started.await(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Blocking tasks did not run concurrently");
+                }
+                return task;
+            });
+        }
+
+        try(ExecutionContext context = new ExecutionContext(1, numTasks, SchedulingStrategy.FIFO)) {
+            Collection<Integer> results = ParallelAlgorithm.parallelBlockingTasks(context, tasks,
+                    new DefaultLoggerStatusLogger());
+
+            assertEquals(numTasks, new HashSet<>(results).size());
+        }
+    }
+
+    @Test
+    public void TestSchedulingStrategyFromString() throws ChecksimsException {
+        assertEquals(SchedulingStrategy.FIFO, SchedulingStrategy.fromString("fifo"));
+        assertEquals(SchedulingStrategy.LARGEST_FIRST, SchedulingStrategy.fromString("LARGEST"));
+    }
+
+    @Test
+    public void TestSchedulingStrategyFromStringInvalid() throws ChecksimsException {
+        expectedEx.expect(ChecksimsException.class);
+
+        SchedulingStrategy.fromString("smallest");
+    }
+}